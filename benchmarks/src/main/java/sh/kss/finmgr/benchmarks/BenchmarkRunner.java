@@ -0,0 +1,57 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks selected on the command line with the GC profiler attached, so every result reports its
+ * allocation rate alongside its time. Accepts the standard JMH options, e.g. to run the parser suite at 1k rows:
+ *
+ *     java -jar benchmarks/target/benchmarks.jar ParserBenchmark -p count=1000
+ *
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        // Listing and help requests are left to the stock JMH entry point
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListProfilers()
+            || commandLineOptions.shouldListResultFormats() || commandLineOptions.shouldListWithParams()) {
+
+            Main.main(args);
+            return;
+        }
+
+        new Runner(new OptionsBuilder()
+            .parent(commandLineOptions)
+            .addProfiler(GCProfiler.class)
+            .build()
+        ).run();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.javamoney.moneta.Money;
+import sh.kss.finmgr.lib.data.MarketDataApi;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * A market data source that prices every security without a network call, so benchmarks measure the operations
+ * rather than the market data lookups
+ *
+ */
+public class FixedPriceMarketDataApi implements MarketDataApi {
+
+    @Override
+    public Optional<MonetaryAmount> findClosingPrice(Security security, LocalDate date) {
+
+        return Optional.of(Money.of(100 + date.getDayOfMonth(), security.getCurrency()));
+    }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, List<LocalDate> dates) {
+
+        Map<LocalDate, MonetaryAmount> closingPrices = new HashMap<>();
+
+        for (LocalDate date : dates) {
+
+            findClosingPrice(security, date)
+                .ifPresent(p -> closingPrices.put(date, p));
+        }
+
+        return closingPrices;
+    }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        Map<LocalDate, MonetaryAmount> closingPrices = new TreeMap<>();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            closingPrices.put(date, findClosingPrice(security, date).orElseThrow());
+        }
+
+        return closingPrices;
+    }
+}
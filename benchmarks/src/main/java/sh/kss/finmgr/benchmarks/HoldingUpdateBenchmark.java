@@ -0,0 +1,126 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.kss.finmgr.lib.collect.PersistentHashMap;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A holding's quantity map updated once per transaction while every version is kept, comparing a full HashMap copy
+ * per update with a persistent map that shares the unchanged entries
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class HoldingUpdateBenchmark {
+
+    private static final CurrencyUnit CAD = Monetary.getCurrency("CAD");
+
+    // The number of distinct securities held
+    @Param({"10", "100", "1000", "10000"})
+    int securities;
+
+    // The number of updates, and versions retained, per invocation
+    @Param({"1000"})
+    int updates;
+
+    private Security[] updated;
+    private Map<Security, Quantity> hashMap;
+    private PersistentHashMap<Security, Quantity> persistentMap;
+
+    @Setup
+    public void setup() {
+
+        hashMap = new HashMap<>();
+
+        for (int i = 0; i < securities; i++) {
+
+            hashMap.put(new Security(String.format("S%05d", i), CAD), Quantity.HUNDRED);
+        }
+
+        persistentMap = PersistentHashMap.copyOf(hashMap);
+
+        // Update the held securities round robin
+        List<Security> held = new ArrayList<>(hashMap.keySet());
+        updated = new Security[updates];
+
+        for (int i = 0; i < updates; i++) {
+
+            updated[i] = held.get(i % securities);
+        }
+    }
+
+    @Benchmark
+    public List<Map<Security, Quantity>> hashMapCopy() {
+
+        List<Map<Security, Quantity>> history = new ArrayList<>(updates);
+        Map<Security, Quantity> current = hashMap;
+
+        for (int i = 0; i < updates; i++) {
+
+            Map<Security, Quantity> next = new HashMap<>(current);
+            next.put(updated[i], new Quantity(BigDecimal.valueOf(i)));
+
+            history.add(next);
+            current = next;
+        }
+
+        return history;
+    }
+
+    @Benchmark
+    public List<Map<Security, Quantity>> persistentPlus() {
+
+        List<Map<Security, Quantity>> history = new ArrayList<>(updates);
+        PersistentHashMap<Security, Quantity> current = persistentMap;
+
+        for (int i = 0; i < updates; i++) {
+
+            current = current.plus(updated[i], new Quantity(BigDecimal.valueOf(i)));
+
+            history.add(current);
+        }
+
+        return history;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import sh.kss.finmgr.lib.entity.Holding;
+import sh.kss.finmgr.lib.entity.Portfolio;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransactionValidator;
+import sh.kss.finmgr.lib.operation.AverageCostBasis;
+import sh.kss.finmgr.lib.operation.NetPresentValue;
+import sh.kss.finmgr.lib.service.TransactionServiceImpl;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations and the validator applied directly, without the Run loop
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class OperationBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int count;
+
+    private final AverageCostBasis averageCostBasis = new AverageCostBasis();
+    private final NetPresentValue netPresentValue = new NetPresentValue();
+    private final InvestmentTransactionValidator validator = new InvestmentTransactionValidator();
+
+    private List<InvestmentTransaction> transactions;
+    private Holding holding;
+
+    @Setup
+    public void setup() {
+
+        averageCostBasis.setTransactionService(new TransactionServiceImpl());
+        netPresentValue.setMarketDataApi(new FixedPriceMarketDataApi());
+
+        transactions = SyntheticData.transactions(count);
+
+        // A holding of every synthetic security
+        Map<Security, Quantity> quantities = new HashMap<>();
+        Map<Security, MonetaryAmount> costBasis = new HashMap<>();
+
+        for (Security security : SyntheticData.securities()) {
+
+            quantities.put(security, Quantity.HUNDRED);
+        }
+
+        holding = new Holding(new HashSet<>(quantities.keySet()), quantities, costBasis);
+    }
+
+    /**
+     * The cost of generating the synthetic transactions, which is included in the other transaction benchmarks
+     *
+     */
+    @Benchmark
+    public void generateTransactions(Blackhole blackhole) {
+
+        for (InvestmentTransaction transaction : transactions) {
+
+            blackhole.consume(transaction);
+        }
+    }
+
+    @Benchmark
+    public Portfolio averageCostBasisProcess() {
+
+        Portfolio portfolio = Portfolio.builder().holdings(Map.of()).build();
+
+        for (InvestmentTransaction transaction : transactions) {
+
+            portfolio = averageCostBasis.process(portfolio, transaction);
+        }
+
+        return portfolio;
+    }
+
+    /**
+     * Value the holding on consecutive days until count positions have been valued
+     *
+     */
+    @Benchmark
+    public void netPresentValueProcess(Blackhole blackhole) {
+
+        LocalDate date = SyntheticData.START_DATE;
+
+        for (int valued = 0; valued < count; valued += holding.getQuantities().size()) {
+
+            blackhole.consume(netPresentValue.process(holding, date));
+            date = date.plusDays(1);
+        }
+    }
+
+    @Benchmark
+    public void validatorValidate(Blackhole blackhole) {
+
+        for (InvestmentTransaction transaction : transactions) {
+
+            Errors errors = new BeanPropertyBindingResult(transaction, "transaction");
+            validator.validate(transaction, errors);
+
+            blackhole.consume(errors.getErrorCount());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sh.kss.finmgr.lib.parse.XlsxRow;
+import sh.kss.finmgr.lib.parse.brokerage.QuestradePdf;
+import sh.kss.finmgr.lib.parse.brokerage.QuestradeXlsx;
+import sh.kss.finmgr.lib.parse.brokerage.RbcCsv;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row level parsing of each supported brokerage format, excluding file I/O
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParserBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int count;
+
+    private final RbcCsv rbcCsv = new RbcCsv();
+    private final QuestradeXlsx questradeXlsx = new QuestradeXlsx();
+    private final QuestradePdf questradePdf = new QuestradePdf();
+
+    private String[] csvLines;
+    private XlsxRow[] xlsxRows;
+
+    @Setup
+    public void setup() {
+
+        csvLines = SyntheticData.rbcCsvLines();
+        xlsxRows = SyntheticData.questradeXlsxRows();
+
+        // Guard against measuring the fast path of rows that do not parse
+        for (int i = 0; i < csvLines.length; i++) {
+
+            if (rbcCsv.parse(csvLines[i]).isEmpty() || questradeXlsx.parse(xlsxRows[i]).isEmpty()) {
+
+                throw new IllegalStateException(String.format("Synthetic row %d does not parse", i));
+            }
+        }
+
+        if (questradePdf.parse(SyntheticData.questradePdfLines(1000), transaction -> {}) != 1000) {
+
+            throw new IllegalStateException("Synthetic statement lines do not parse");
+        }
+    }
+
+    @Benchmark
+    public void rbcCsvParse(Blackhole blackhole) {
+
+        for (int i = 0; i < count; i++) {
+
+            blackhole.consume(rbcCsv.parse(csvLines[i % csvLines.length]));
+        }
+    }
+
+    @Benchmark
+    public void questradeXlsxParse(Blackhole blackhole) {
+
+        for (int i = 0; i < count; i++) {
+
+            blackhole.consume(questradeXlsx.parse(xlsxRows[i % xlsxRows.length]));
+        }
+    }
+
+    @Benchmark
+    public int questradePdfParse(Blackhole blackhole) {
+
+        return questradePdf.parse(SyntheticData.questradePdfLines(count), blackhole::consume);
+    }
+}
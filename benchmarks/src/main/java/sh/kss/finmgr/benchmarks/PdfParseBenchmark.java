@@ -0,0 +1,199 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sh.kss.finmgr.lib.parse.PdfFileParserImpl;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a batch of Questrade PDF statements one at a time or on a fixed pool of threads, including file I/O
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfParseBenchmark {
+
+    // Statements in each batch
+    private static final int FILES = 32;
+
+    @Param({"100", "1000"})
+    int count;
+
+    @Param({"2", "8"})
+    int threads;
+
+    private final PdfFileParserImpl pdfFileParser = new PdfFileParserImpl();
+
+    private Path dir;
+    private List<File> statements;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() throws IOException {
+
+        pdfFileParser.setEntityRegistry(new EntityRegistryImpl());
+        pdfFileParser.setStripperPoolSize(threads);
+
+        dir = Files.createTempDirectory("statements");
+        statements = new ArrayList<>();
+
+        for (int i = 0; i < FILES; i++) {
+
+            Path statement = dir.resolve(String.format("statement-%d.pdf", i));
+            writeStatement(statement, count);
+            statements.add(statement.toFile());
+        }
+
+        // Guard against measuring documents that no parser matches
+        if (pdfFileParser.parsePdf(statements.get(0)).size() != count) {
+
+            throw new IllegalStateException("Synthetic statement does not parse");
+        }
+
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        executor.shutdown();
+
+        for (File statement : statements) {
+
+            Files.deleteIfExists(statement.toPath());
+        }
+
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void serialParse(Blackhole blackhole) {
+
+        for (File statement : statements) {
+
+            blackhole.consume(pdfFileParser.parsePdf(statement));
+        }
+    }
+
+    @Benchmark
+    public void concurrentParse(Blackhole blackhole) throws InterruptedException, ExecutionException {
+
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (File statement : statements) {
+
+            futures.add(executor.submit(() -> pdfFileParser.parsePdf(statement)));
+        }
+
+        for (Future<?> future : futures) {
+
+            blackhole.consume(future.get());
+        }
+    }
+
+    /**
+     * Write synthetic statement lines to a PDF, followed by the footer the Questrade parser matches on
+     *
+     * @param path the file to write
+     * @param count the number of transactions in the statement
+     */
+    private static void writeStatement(Path path, int count) throws IOException {
+
+        List<String> lines = new ArrayList<>();
+        Iterator<String> transactions = SyntheticData.questradePdfLines(count);
+
+        while (transactions.hasNext()) {
+
+            lines.add(transactions.next());
+        }
+
+        lines.addAll(List.of(
+            "Questrade, Inc.",
+            "5650 Yonge Street, Suite 1700, Toronto, ON M2M 4G3",
+            "Phone: 416.227.9876 Web: questrade.com",
+            "Dealer: Questrade",
+            "Account: 12345678",
+            "Currency: CAD / USD",
+            "ESTATEMENT 1 of 1"
+        ));
+
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.COURIER);
+
+        try (PDDocument document = new PDDocument()) {
+
+            for (int start = 0; start < lines.size(); start += 100) {
+
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+
+                    content.beginText();
+                    content.setFont(font, 6);
+                    content.setLeading(7);
+                    content.newLineAtOffset(20, 770);
+
+                    for (String line : lines.subList(start, Math.min(start + 100, lines.size()))) {
+
+                        content.showText(line);
+                        content.newLine();
+                    }
+
+                    content.endText();
+                }
+            }
+
+            document.save(path.toFile());
+        }
+    }
+}
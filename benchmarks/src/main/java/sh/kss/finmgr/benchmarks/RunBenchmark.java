@@ -0,0 +1,206 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.DailyResults;
+import sh.kss.finmgr.lib.entity.FixedPointHoldingAccumulator;
+import sh.kss.finmgr.lib.entity.IndexedHoldingAccumulator;
+import sh.kss.finmgr.lib.entity.Portfolio;
+import sh.kss.finmgr.lib.entity.PortfolioAccumulator;
+import sh.kss.finmgr.lib.entity.Run;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.operation.AverageCostBasis;
+import sh.kss.finmgr.lib.operation.DailyOperation;
+import sh.kss.finmgr.lib.operation.NetPresentValue;
+import sh.kss.finmgr.lib.operation.TransactionOperation;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
+import sh.kss.finmgr.lib.service.TransactionServiceImpl;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both Run.process overloads and Run.accumulate with the average cost basis operation, and net present value as the
+ * daily operation
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class RunBenchmark {
+
+    /**
+     * Shared operations, built the way Spring would wire them
+     *
+     */
+    public abstract static class Operations {
+
+        final Portfolio portfolio = Portfolio.builder().holdings(Map.of()).build();
+
+        List<TransactionOperation> transactionOperations;
+        List<DailyOperation> dailyOperations;
+        List<InvestmentTransaction> transactions;
+
+        void setupOperations(int count) {
+
+            AverageCostBasis averageCostBasis = new AverageCostBasis();
+            averageCostBasis.setTransactionService(new TransactionServiceImpl());
+
+            NetPresentValue netPresentValue = new NetPresentValue();
+            netPresentValue.setMarketDataApi(new FixedPriceMarketDataApi());
+
+            transactionOperations = List.of(averageCostBasis);
+            dailyOperations = List.of(netPresentValue);
+            transactions = SyntheticData.transactions(count);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class TransactionState extends Operations {
+
+        @Param({"1000", "100000", "1000000", "10000000"})
+        int count;
+
+        @Setup
+        public void setup() {
+
+            setupOperations(count);
+        }
+    }
+
+    /**
+     * The daily overload groups every transaction by date up front, so its sizes stop where the grouped
+     * transactions still fit in the default heap. Larger sizes can be run with -p count=... and a larger -Xmx.
+     *
+     */
+    @State(Scope.Benchmark)
+    public static class DailyState extends Operations {
+
+        @Param({"1000", "10000", "100000", "1000000"})
+        int count;
+
+        @Setup
+        public void setup() {
+
+            setupOperations(count);
+        }
+    }
+
+    @Benchmark
+    public Portfolio processTransactions(TransactionState state) {
+
+        return Run.process(state.portfolio, state.transactionOperations, state.transactions);
+    }
+
+    /**
+     * The account types replayed concurrently, only faster than processTransactions with a core per account type
+     *
+     */
+    @Benchmark
+    public Portfolio processTransactionsPartitioned(TransactionState state) {
+
+        return Run.processPartitioned(state.portfolio, state.transactionOperations, state.transactions);
+    }
+
+    /**
+     * The in-place accumulator keeps a single working portfolio, so even 10M transactions fit in a small fixed heap
+     *
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+    public Portfolio accumulateTransactions(TransactionState state) {
+
+        return Run.accumulate(state.portfolio, state.transactionOperations, state.transactions);
+    }
+
+    /**
+     * The in-place accumulator with quantities and cost bases held as scaled longs
+     *
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+    public Portfolio accumulateTransactionsFixedPoint(TransactionState state) {
+
+        PortfolioAccumulator accumulator = new PortfolioAccumulator(state.portfolio, FixedPointHoldingAccumulator::new);
+
+        return Run.accumulate(accumulator, state.transactionOperations, state.transactions);
+    }
+
+    /**
+     * The in-place accumulator with holdings indexed by registry id instead of hashed by security
+     *
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+    public Portfolio accumulateTransactionsIndexed(TransactionState state) {
+
+        EntityRegistry registry = new EntityRegistryImpl();
+        PortfolioAccumulator accumulator = new PortfolioAccumulator(state.portfolio, holding -> new IndexedHoldingAccumulator(holding, registry));
+
+        return Run.accumulate(accumulator, state.transactionOperations, state.transactions);
+    }
+
+    @Benchmark
+    public Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> processDaily(DailyState state) {
+
+        return Run.process(
+            state.portfolio,
+            state.transactionOperations,
+            state.transactions,
+            state.dailyOperations,
+            SyntheticData.START_DATE,
+            SyntheticData.START_DATE.plusDays(SyntheticData.DAYS - 1)
+        );
+    }
+
+    /**
+     * The incremental evaluator, storing only the days an account's output changed
+     *
+     */
+    @Benchmark
+    public DailyResults evaluateDaily(DailyState state) {
+
+        return Run.evaluate(
+            state.portfolio,
+            state.transactionOperations,
+            state.transactions,
+            state.dailyOperations,
+            SyntheticData.START_DATE,
+            SyntheticData.START_DATE.plusDays(SyntheticData.DAYS - 1)
+        );
+    }
+}
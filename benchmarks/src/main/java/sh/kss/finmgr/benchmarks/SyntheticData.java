@@ -0,0 +1,369 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.javamoney.moneta.Money;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.parse.XlsxRow;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Deterministic synthetic inputs for the benchmarks. Transactions are generated on demand from their index, so a
+ * run over 10M transactions does not need to hold them all in memory. Parser inputs cycle through a fixed pool of
+ * distinct rows so every size measures the same mix of rows.
+ *
+ */
+public final class SyntheticData {
+
+    // The number of distinct securities, held in every account type
+    public static final int SECURITY_COUNT = 50;
+    // Transactions are spread over this many days regardless of the count
+    public static final int DAYS = 3650;
+    public static final LocalDate START_DATE = LocalDate.of(2010, 1, 1);
+
+    // The number of distinct rows each parser input cycles through
+    private static final int POOL_SIZE = 1024;
+
+    private static final CurrencyUnit CAD = Monetary.getCurrency("CAD");
+    private static final CurrencyUnit USD = Monetary.getCurrency("USD");
+    private static final AccountType[] ACCOUNT_TYPES = {AccountType.NON_REGISTERED, AccountType.TFSA, AccountType.RRSP};
+    private static final Account[] ACCOUNTS = new Account[ACCOUNT_TYPES.length];
+    private static final Security[] SECURITIES = new Security[SECURITY_COUNT];
+    private static final MonetaryAmount[] COMMISSIONS = {Money.of(new BigDecimal("-4.95"), CAD), Money.of(new BigDecimal("-4.95"), USD)};
+
+    private static final DateTimeFormatter RBC_DATE_FORMAT = DateTimeFormatter.ofPattern("MMMM d, u", Locale.getDefault());
+    private static final DateTimeFormatter QUESTRADE_DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/yyyy");
+
+    static {
+
+        for (int i = 0; i < ACCOUNTS.length; i++) {
+
+            String id = String.format("%08d", 10_000_000 + i);
+            ACCOUNTS[i] = new Account(id, id, ACCOUNT_TYPES[i]);
+        }
+
+        for (int i = 0; i < SECURITY_COUNT; i++) {
+
+            SECURITIES[i] = new Security(String.format("SYM%02d", i), i % 2 == 0 ? CAD : USD);
+        }
+    }
+
+    private SyntheticData() {
+
+    }
+
+    /**
+     * A lazily generated list of transactions in date order. Each security and account pair cycles through buys,
+     * a reinvestment, a return of capital distribution and a partial sale, so quantities only grow.
+     *
+     * @param count the number of transactions
+     * @return the transactions, generated on each access
+     */
+    public static List<InvestmentTransaction> transactions(int count) {
+
+        return new SyntheticTransactions(count);
+    }
+
+    /**
+     * The distinct securities used by the generated transactions
+     *
+     * @return the securities
+     */
+    public static List<Security> securities() {
+
+        return List.of(SECURITIES);
+    }
+
+    /**
+     * Generate the transaction at an index
+     *
+     * @param index the index of the transaction
+     * @param count the total number of transactions, used to spread the dates
+     * @return the transaction
+     */
+    public static InvestmentTransaction transaction(int index, int count) {
+
+        Security security = SECURITIES[index % SECURITY_COUNT];
+        Account account = ACCOUNTS[(index / SECURITY_COUNT) % ACCOUNTS.length];
+        CurrencyUnit currency = security.getCurrency();
+        LocalDate date = START_DATE.plusDays((long) index * DAYS / Math.max(count, 1));
+
+        InvestmentAction action;
+        int units;
+
+        switch ((index / (SECURITY_COUNT * ACCOUNTS.length)) % 10) {
+
+            case 6:
+                action = InvestmentAction.Distribution;
+                units = 0;
+                break;
+
+            case 7:
+                action = InvestmentAction.Reinvest;
+                units = 1;
+                break;
+
+            case 8:
+                action = InvestmentAction.Sell;
+                units = -5;
+                break;
+
+            default:
+                action = InvestmentAction.Buy;
+                units = 10;
+                break;
+        }
+
+        Money price = Money.of(BigDecimal.valueOf(2_000 + (index % 97) * 25L, 2), currency);
+        MonetaryAmount gross = price.multiply(-units);
+        MonetaryAmount commission = COMMISSIONS[currency == CAD ? 0 : 1];
+
+        InvestmentTransaction.InvestmentTransactionBuilder builder = InvestmentTransaction.builder()
+            .transactionDate(date)
+            .settlementDate(date.plusDays(2))
+            .action(action)
+            .account(account)
+            .currency(currency)
+            .security(security)
+            .description(action.name().toUpperCase() + " " + security.getValue());
+
+        if (action == InvestmentAction.Distribution) {
+
+            MonetaryAmount returnOfCapital = Money.of(BigDecimal.valueOf(-(index % 13) - 1, 2), currency);
+
+            return builder
+                .netAmount(returnOfCapital.negate())
+                .returnOfCapital(returnOfCapital)
+                .build();
+        }
+
+        return builder
+            .price(price)
+            .quantity(new Quantity(BigDecimal.valueOf(units)))
+            .grossAmount(gross)
+            .commission(commission)
+            .netAmount(gross.add(commission))
+            .build();
+    }
+
+    /**
+     * Cycle through a pool of RBC activity export rows
+     *
+     * @return the distinct rows
+     */
+    public static String[] rbcCsvLines() {
+
+        String[] lines = new String[POOL_SIZE];
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+
+            InvestmentTransaction transaction = buyOrSell(i);
+
+            lines[i] = String.format(
+                "\"%s\",\"%s\",\"%s\",\"%s ETF\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",\"%s\"",
+                transaction.getTransactionDate().format(RBC_DATE_FORMAT),
+                transaction.getAction() == InvestmentAction.Buy ? "Buy" : "Dividends",
+                transaction.getSecurity().getValue(),
+                transaction.getSecurity().getValue(),
+                transaction.getQuantity().getValue().toPlainString(),
+                decimal(transaction.getPrice()),
+                transaction.getSettlementDate().format(RBC_DATE_FORMAT),
+                transaction.getAccount().getId(),
+                decimal(transaction.getNetAmount()),
+                transaction.getCurrency().getCurrencyCode(),
+                transaction.getDescription()
+            );
+        }
+
+        return lines;
+    }
+
+    /**
+     * Cycle through a pool of Questrade activity export rows
+     *
+     * @return the distinct rows
+     */
+    public static XlsxRow[] questradeXlsxRows() {
+
+        XlsxRow[] rows = new XlsxRow[POOL_SIZE];
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+
+            InvestmentTransaction transaction = buyOrSell(i);
+
+            rows[i] = XlsxRow.of(
+                i + 1,
+                transaction.getTransactionDate() + " 12:00:00 AM",
+                transaction.getSettlementDate() + " 12:00:00 AM",
+                transaction.getAction() == InvestmentAction.Reinvest ? "REI" : transaction.getAction().name(),
+                transaction.getSecurity().getValue(),
+                transaction.getDescription(),
+                transaction.getQuantity().getValue().toPlainString(),
+                decimal(transaction.getPrice()),
+                decimal(transaction.getGrossAmount()),
+                decimal(transaction.getCommission()),
+                decimal(transaction.getNetAmount()),
+                transaction.getCurrency().getCurrencyCode(),
+                transaction.getAccount().getId(),
+                "Trades",
+                "Individual TFSA"
+            );
+        }
+
+        return rows;
+    }
+
+    /**
+     * Questrade statement lines holding the given number of transactions. Every fourth transaction is spread over
+     * three lines, the others are on a single line.
+     *
+     * @param count the number of transactions
+     * @return the lines, generated on each call to next
+     */
+    public static Iterator<String> questradePdfLines(int count) {
+
+        String[] pool = new String[POOL_SIZE];
+        int[] transactionsAt = new int[POOL_SIZE];
+
+        for (int i = 0; i < POOL_SIZE; ) {
+
+            InvestmentTransaction transaction = buyOrSell(i);
+
+            String dates = transaction.getTransactionDate().format(QUESTRADE_DATE_FORMAT)
+                + " " + transaction.getSettlementDate().format(QUESTRADE_DATE_FORMAT)
+                + " " + transaction.getAction().name();
+            String amounts = String.format(
+                "%s $%s.000 %s $4.95 %s",
+                transaction.getQuantity().getValue().abs().toPlainString(),
+                transaction.getPrice().getNumber().intValue(),
+                statementAmount(transaction.getGrossAmount()),
+                statementAmount(transaction.getNetAmount())
+            );
+
+            if (i % 4 == 3 && i + 2 < POOL_SIZE) {
+
+                pool[i] = dates;
+                pool[i + 1] = transaction.getDescription();
+                pool[i + 2] = amounts;
+                transactionsAt[i] = 1;
+                i += 3;
+
+            } else {
+
+                pool[i] = dates + " " + transaction.getDescription() + " " + amounts;
+                transactionsAt[i] = 1;
+                i++;
+            }
+        }
+
+        return new Iterator<>() {
+
+            private int emitted;
+            private int cursor;
+
+            @Override
+            public boolean hasNext() {
+
+                // Finish a multi-line transaction before stopping
+                return emitted < count || transactionsAt[cursor] == 0;
+            }
+
+            @Override
+            public String next() {
+
+                if (!hasNext()) {
+
+                    throw new NoSuchElementException();
+                }
+
+                emitted += transactionsAt[cursor];
+                String line = pool[cursor];
+                cursor = (cursor + 1) % POOL_SIZE;
+
+                return line;
+            }
+        };
+    }
+
+    private static InvestmentTransaction buyOrSell(int index) {
+
+        InvestmentTransaction transaction = transaction(index, POOL_SIZE);
+
+        return transaction.getQuantity() == null ? transaction(index + SECURITY_COUNT * ACCOUNTS.length, POOL_SIZE) : transaction;
+    }
+
+    private static String decimal(MonetaryAmount amount) {
+
+        return amount.getNumber().numberValue(BigDecimal.class).toPlainString();
+    }
+
+    private static String statementAmount(MonetaryAmount amount) {
+
+        String value = String.format("$%,.2f", amount.getNumber().numberValue(BigDecimal.class).abs());
+
+        return amount.isNegative() ? "(" + value + ")" : value;
+    }
+
+    /**
+     * A read only list that builds each transaction when it is accessed
+     *
+     */
+    private static final class SyntheticTransactions extends AbstractList<InvestmentTransaction> implements RandomAccess {
+
+        private final int count;
+
+        SyntheticTransactions(int count) {
+
+            this.count = count;
+        }
+
+        @Override
+        public InvestmentTransaction get(int index) {
+
+            if (index < 0 || index >= count) {
+
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            return transaction(index, count);
+        }
+
+        @Override
+        public int size() {
+
+            return count;
+        }
+    }
+}
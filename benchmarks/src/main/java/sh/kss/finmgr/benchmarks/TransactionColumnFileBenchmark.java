@@ -0,0 +1,88 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sh.kss.finmgr.lib.store.TransactionColumn;
+import sh.kss.finmgr.lib.store.TransactionColumnFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading transactions from a transaction column file, decoding only the columns a replay needs or every column
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransactionColumnFileBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int count;
+
+    private Path path;
+
+    @Setup
+    public void setup() throws IOException {
+
+        path = Files.createTempFile("transactions", ".col");
+
+        TransactionColumnFile.write(path, SyntheticData.transactions(count));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public void readColumns(Blackhole blackhole) throws IOException {
+
+        TransactionColumnFile file = TransactionColumnFile.open(path);
+
+        blackhole.consume(file.getEpochDays(TransactionColumn.TRANSACTION_DATE));
+        blackhole.consume(file.getAccounts());
+        blackhole.consume(file.getSecurities());
+        blackhole.consume(file.getAmounts(TransactionColumn.NET_AMOUNT));
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) throws IOException {
+
+        blackhole.consume(TransactionColumnFile.open(path).readAll());
+    }
+}
@@ -20,33 +20,53 @@ package sh.kss.finmgr.core;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import sh.kss.finmgr.core.jobs.JobQueueFullException;
+import sh.kss.finmgr.core.jobs.JobResponse;
+import sh.kss.finmgr.core.jobs.UploadJob;
+import sh.kss.finmgr.core.jobs.UploadJobService;
 import sh.kss.finmgr.core.storage.FileSystemStorageService;
-import sh.kss.finmgr.core.storage.StorageService;
+
+import java.net.URI;
 
 @RestController
 public class FileUploadController {
 
-    private final StorageService storageService;
+    private final UploadJobService uploadJobService;
 
     private static final Logger LOG = LoggerFactory.getLogger(FileSystemStorageService.class);
 
     @Autowired
-    public FileUploadController(StorageService storageService) {
-        this.storageService = storageService;
+    public FileUploadController(UploadJobService uploadJobService) {
+        this.uploadJobService = uploadJobService;
     }
 
     @PostMapping("/upload")
-    @CrossOrigin(origins = "http://localhost:3000")
+    @CrossOrigin(origins = "http://localhost:3000", exposedHeaders = {HttpHeaders.LOCATION, HttpHeaders.RETRY_AFTER})
     @ResponseBody
-    public String handleFileUpload(@RequestParam("file") MultipartFile file,
-                                   RedirectAttributes redirectAttributes) {
+    public ResponseEntity<JobResponse> handleFileUpload(@RequestParam("file") MultipartFile file,
+                                                        RedirectAttributes redirectAttributes) {
 
         LOG.info("handleFileUpload on file: " + file.getOriginalFilename());
-        storageService.store(file);
 
-        return "uploaded";
+        // The document is parsed in the background, its progress is polled from /jobs/{id}
+        UploadJob job = uploadJobService.submit(file);
+
+        return ResponseEntity.accepted()
+            .location(URI.create("/jobs/" + job.getId()))
+            .body(job.toResponse());
+    }
+
+    @ExceptionHandler(JobQueueFullException.class)
+    public ResponseEntity<String> handleJobQueueFull(JobQueueFullException e) {
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Integer.toString(e.getRetryAfterSeconds()))
+            .body(e.getMessage());
     }
 }
@@ -28,9 +28,10 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import sh.kss.finmgr.core.jobs.JobProperties;
+import sh.kss.finmgr.core.storage.IngestService;
 import sh.kss.finmgr.core.storage.StorageProperties;
 import sh.kss.finmgr.core.storage.StorageService;
-import sh.kss.finmgr.lib.parse.Parser;
 
 /**
  * A Java Spring web API wrapping the finmgr library project
@@ -39,13 +40,11 @@ import sh.kss.finmgr.lib.parse.Parser;
 @SpringBootApplication(scanBasePackages = "sh.kss")
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
-@EnableConfigurationProperties(StorageProperties.class)
+@EnableConfigurationProperties({StorageProperties.class, JobProperties.class})
 public class FinmgrCoreApplication {
 
     private static final Logger LOG = LoggerFactory.getLogger(FinmgrCoreApplication.class);
 
-    private Parser parser;
-
     private final HomeResponse defaultResponse = new HomeResponse("hello world");
 
     /**
@@ -61,19 +60,6 @@ public class FinmgrCoreApplication {
         return defaultResponse;
     }
 
-    /**
-     *
-     *
-     * @return
-     */
-    @GetMapping("/transactions")
-    @ResponseBody
-    public TransactionsResponse transactions() {
-        LOG.info("Received /transactions");
-
-        return new TransactionsResponse(parser.traversePath("upload-dir"));
-    }
-
     /**
      *
      *
@@ -89,12 +75,16 @@ public class FinmgrCoreApplication {
      *
      *
      * @param storageService
+     * @param ingestService
      * @return
      */
     @Bean
-    CommandLineRunner init(StorageService storageService) {
+    CommandLineRunner init(StorageService storageService, IngestService ingestService) {
         return (args) -> {
             storageService.init();
+
+            // Documents stored before the transaction log existed
+            ingestService.ingestAll();
         };
     }
 }
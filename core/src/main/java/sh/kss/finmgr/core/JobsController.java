@@ -0,0 +1,60 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import sh.kss.finmgr.core.jobs.JobResponse;
+import sh.kss.finmgr.core.jobs.UploadJob;
+import sh.kss.finmgr.core.jobs.UploadJobService;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000")
+public class JobsController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JobsController.class);
+
+    private final UploadJobService uploadJobService;
+
+    @Autowired
+    public JobsController(UploadJobService uploadJobService) {
+        this.uploadJobService = uploadJobService;
+    }
+
+    /**
+     * The progress and errors of an upload job
+     *
+     * @param id the job id returned by /upload
+     * @return the job state, or 404 if the job is unknown
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<JobResponse> job(@PathVariable String id) {
+        LOG.debug("Received /jobs/" + id);
+
+        return uploadJobService.get(id)
+            .map(UploadJob::toResponse)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,229 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.store.TransactionIndex;
+import sh.kss.finmgr.lib.store.TransactionLog;
+import sh.kss.finmgr.lib.store.TransactionQuery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+/**
+ * Serves the transactions of the transaction log, filtered through the transaction index. JSON responses are pages
+ * with the cursor of the next page. Newline delimited JSON responses are written as the transactions are read from
+ * the log, either a page with the next cursor in a header or every match when no limit is given.
+ *
+ */
+@RestController
+@CrossOrigin(origins = "http://localhost:3000", exposedHeaders = TransactionsController.NEXT_CURSOR_HEADER)
+public class TransactionsController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionsController.class);
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Pages are bounded so a response never holds more than this many transactions
+    private static final int MAX_LIMIT = 10_000;
+
+    private final TransactionLog transactionLog;
+
+    private final TransactionIndex transactionIndex;
+
+    private final ObjectWriter writer;
+
+    @Autowired
+    public TransactionsController(TransactionLog transactionLog, TransactionIndex transactionIndex, ObjectMapper objectMapper) {
+        this.transactionLog = transactionLog;
+        this.transactionIndex = transactionIndex;
+        this.writer = objectMapper.writerFor(InvestmentTransaction.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * A page of the transactions matching the filters, in log order
+     *
+     * @param account the external account id
+     * @param symbol the security symbol
+     * @param action the transaction action
+     * @param from the first transaction date
+     * @param to the last transaction date
+     * @param cursor the next cursor of the previous page, or 0 for the first page
+     * @param limit the most transactions in the page
+     * @return the page and the cursor of the next page
+     */
+    @GetMapping(value = "/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public TransactionsResponse transactions(@RequestParam(required = false) String account,
+                                             @RequestParam(required = false) String symbol,
+                                             @RequestParam(required = false) InvestmentAction action,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                             @RequestParam(defaultValue = "0") long cursor,
+                                             @RequestParam(defaultValue = "1000") int limit) {
+        LOG.info("Received /transactions");
+
+        Page page = page(query(account, symbol, action, from, to, cursor), limit);
+        List<InvestmentTransaction> transactions = new ArrayList<>(page.positions().length);
+
+        transactionLog.read(Arrays.stream(page.positions()).iterator(), (position, transaction) -> transactions.add(transaction));
+
+        return new TransactionsResponse(transactions, page.nextCursor());
+    }
+
+    /**
+     * The transactions matching the filters as newline delimited JSON, written while they are read from the log
+     *
+     * @param account the external account id
+     * @param symbol the security symbol
+     * @param action the transaction action
+     * @param from the first transaction date
+     * @param to the last transaction date
+     * @param cursor the next cursor of the previous page, or 0 to start at the first match
+     * @param limit the most transactions to write, every match if not given
+     * @return the streamed transactions, with the cursor of the next page in a header when there is one
+     */
+    @GetMapping(value = "/transactions", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTransactions(@RequestParam(required = false) String account,
+                                                                    @RequestParam(required = false) String symbol,
+                                                                    @RequestParam(required = false) InvestmentAction action,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                    @RequestParam(defaultValue = "0") long cursor,
+                                                                    @RequestParam(required = false) Integer limit) {
+        LOG.info("Received streaming /transactions");
+
+        TransactionQuery query = query(account, symbol, action, from, to, cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE));
+
+        // Without a limit every match is streamed as it is found
+        if (limit == null) {
+
+            PrimitiveIterator.OfLong positions = transactionIndex.find(query);
+
+            return response.body(out -> write(positions, out));
+        }
+
+        Page page = page(query, limit);
+
+        if (page.nextCursor() != null) {
+
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+
+        return response.body(out -> write(Arrays.stream(page.positions()).iterator(), out));
+    }
+
+    private TransactionQuery query(String account, String symbol, InvestmentAction action, LocalDate from, LocalDate to, long cursor) {
+
+        return TransactionQuery.builder()
+            .account(account)
+            .symbol(symbol)
+            .action(action)
+            .fromDate(from)
+            .toDate(to)
+            .cursor(cursor)
+            .build();
+    }
+
+    /**
+     * Find the positions of a page, and the position the next page starts at
+     *
+     * @param query the filters and cursor
+     * @param limit the most positions in the page, clamped between 1 and MAX_LIMIT
+     * @return the page
+     */
+    private Page page(TransactionQuery query, int limit) {
+
+        PrimitiveIterator.OfLong matches = transactionIndex.find(query);
+        long[] positions = new long[Math.max(1, Math.min(limit, MAX_LIMIT))];
+        int count = 0;
+
+        while (count < positions.length && matches.hasNext()) {
+
+            positions[count++] = matches.nextLong();
+        }
+
+        return new Page(Arrays.copyOf(positions, count), matches.hasNext() ? matches.nextLong() : null);
+    }
+
+    /**
+     * Write each transaction on its own line as it is decoded
+     *
+     * @param positions the log positions to write
+     * @param out the response body
+     * @throws IOException if the response cannot be written
+     */
+    private void write(PrimitiveIterator.OfLong positions, OutputStream out) throws IOException {
+
+        JsonGenerator generator = writer.createGenerator(out);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+
+        try {
+
+            transactionLog.read(positions, (position, transaction) -> {
+
+                try {
+
+                    writer.writeValue(generator, transaction);
+
+                } catch (IOException ioe) {
+
+                    throw new UncheckedIOException(ioe);
+                }
+
+                return true;
+            });
+
+        } catch (UncheckedIOException uioe) {
+
+            throw uioe.getCause();
+        }
+
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private record Page(long[] positions, Long nextCursor) {
+
+    }
+}
@@ -17,6 +17,7 @@
  */
 package sh.kss.finmgr.core;
 
+import jakarta.annotation.Nullable;
 import lombok.Value;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
@@ -27,4 +28,7 @@ import java.util.List;
 public class TransactionsResponse {
 
     List<InvestmentTransaction> transactions;
+
+    // The cursor of the next page, null on the last page
+    @Nullable Long nextCursor;
 }
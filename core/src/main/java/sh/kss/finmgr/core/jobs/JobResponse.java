@@ -0,0 +1,48 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.jobs;
+
+import jakarta.annotation.Nullable;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of an upload job when it was requested
+ *
+ */
+@Value
+public class JobResponse {
+
+    String id;
+    String filename;
+    JobStatus status;
+    Instant submitted;
+    @Nullable Instant started;
+    @Nullable Instant finished;
+    // Transactions parsed from the upload, and how many of them break validation rules
+    int transactions;
+    int invalidTransactions;
+    // Breaches of each validation rule
+    Map<String, Integer> ruleCounts;
+    // False when the same document was already in the transaction log
+    boolean appended;
+    List<String> errors;
+}
@@ -0,0 +1,37 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.jobs;
+
+/**
+ * The steps of an upload job, in the order they happen
+ *
+ */
+public enum JobStatus {
+
+    QUEUED,
+    PARSING,
+    VALIDATING,
+    PERSISTING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isDone() {
+
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
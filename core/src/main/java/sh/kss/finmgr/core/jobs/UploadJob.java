@@ -0,0 +1,151 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.jobs;
+
+import sh.kss.finmgr.core.storage.IngestListener;
+import sh.kss.finmgr.lib.entity.transaction.ValidationRule;
+import sh.kss.finmgr.lib.parse.FileParseResult;
+import sh.kss.finmgr.lib.service.ValidationReport;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An upload being ingested by a worker, updated by the worker as it goes through the steps of the ingest and read by
+ * the status API
+ *
+ */
+public class UploadJob implements IngestListener {
+
+    private final String id;
+    private final String filename;
+    private final Instant submitted = Instant.now();
+
+    private JobStatus status = JobStatus.QUEUED;
+    private Instant started;
+    private Instant finished;
+    private int transactions;
+    private int invalidTransactions;
+    private final Map<String, Integer> ruleCounts = new LinkedHashMap<>();
+    private boolean appended;
+    private boolean duplicate;
+    private final List<String> errors = new ArrayList<>();
+
+    public UploadJob(String id, String filename) {
+        this.id = id;
+        this.filename = filename;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public synchronized void duplicate() {
+
+        duplicate = true;
+    }
+
+    /**
+     * @return whether the upload was already in the transaction log
+     */
+    public synchronized boolean isDuplicate() {
+
+        return duplicate;
+    }
+
+    @Override
+    public synchronized void parsing() {
+
+        status = JobStatus.PARSING;
+        started = Instant.now();
+    }
+
+    @Override
+    public synchronized void parsed(FileParseResult result) {
+
+        if (result.isFailed()) {
+
+            errors.add("Failed to parse " + filename + ": " + result.getFailure());
+
+        } else {
+
+            transactions = result.getTransactions().size();
+            status = JobStatus.VALIDATING;
+        }
+    }
+
+    @Override
+    public synchronized void validated(ValidationReport report) {
+
+        invalidTransactions = report.getInvalidRows().length;
+
+        for (Map.Entry<ValidationRule, Integer> count : report.getCounts().entrySet()) {
+
+            ruleCounts.put(count.getKey().getField() + "." + count.getKey().getCode(), count.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void persisting() {
+
+        status = JobStatus.PERSISTING;
+    }
+
+    /**
+     * The ingest returned
+     *
+     * @param appended whether the transactions were appended to the log
+     */
+    public synchronized void finish(boolean appended) {
+
+        this.appended = appended;
+        this.status = errors.isEmpty() ? JobStatus.SUCCEEDED : JobStatus.FAILED;
+        this.finished = Instant.now();
+    }
+
+    /**
+     * The ingest threw
+     *
+     * @param failure what was thrown
+     */
+    public synchronized void fail(Throwable failure) {
+
+        errors.add(failure.toString());
+        status = JobStatus.FAILED;
+        finished = Instant.now();
+    }
+
+    /**
+     * Take a consistent copy of the job state
+     *
+     * @return the job state
+     */
+    public synchronized JobResponse toResponse() {
+
+        return new JobResponse(id, filename, status, submitted, started, finished, transactions, invalidTransactions,
+            Map.copyOf(ruleCounts), appended, List.copyOf(errors));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.jobs;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Optional;
+
+/**
+ * Ingests uploads in the background on a bounded pool of workers
+ *
+ */
+public interface UploadJobService {
+
+    /**
+     * Store an upload and queue it to be parsed, validated and appended to the transaction log
+     *
+     * @param file the upload
+     * @return the queued job
+     * @throws JobQueueFullException if every worker is busy and the queue is full, before the upload is stored
+     */
+    UploadJob submit(MultipartFile file);
+
+    /**
+     * Find a job that was submitted recently
+     *
+     * @param id the job id
+     * @return the job, empty if it is unknown or was forgotten
+     */
+    Optional<UploadJob> get(String id);
+}
@@ -0,0 +1,200 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.jobs;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import sh.kss.finmgr.core.storage.IngestService;
+import sh.kss.finmgr.core.storage.StorageService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs upload jobs on a fixed pool of workers. A permit is taken for each job from the workers plus the queue
+ * capacity before its upload is stored and given back when the job is done, so a burst of uploads is turned away
+ * instead of queueing without bound.
+ *
+ */
+@Service
+public class UploadJobServiceImpl implements UploadJobService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadJobServiceImpl.class);
+
+    private final StorageService storageService;
+
+    private final IngestService ingestService;
+
+    private final int retryAfterSeconds;
+
+    private final Semaphore permits;
+
+    private final ThreadPoolExecutor executor;
+
+    // The most recent jobs by id, in submission order
+    private final Map<String, UploadJob> jobs;
+
+    @Autowired
+    public UploadJobServiceImpl(StorageService storageService, IngestService ingestService, JobProperties properties) {
+        this.storageService = storageService;
+        this.ingestService = ingestService;
+        this.retryAfterSeconds = properties.getRetryAfterSeconds();
+        this.permits = new Semaphore(properties.getWorkers() + properties.getQueueCapacity());
+        this.executor = new ThreadPoolExecutor(properties.getWorkers(), properties.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+        this.jobs = new LinkedHashMap<>() {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UploadJob> eldest) {
+                return size() > properties.getRetainedJobs();
+            }
+        };
+    }
+
+    @Override
+    public UploadJob submit(MultipartFile file) {
+
+        // The permit bounds the queued jobs, the queue itself never rejects
+        if (!permits.tryAcquire()) {
+
+            LOG.warn("Upload job queue is full, turning away " + file.getOriginalFilename());
+            throw new JobQueueFullException("Too many uploads are being processed", retryAfterSeconds);
+        }
+
+        try {
+
+            UploadJob job = new UploadJob(UUID.randomUUID().toString(), StringUtils.cleanPath(file.getOriginalFilename()));
+
+            // The upload only lives as long as the request, so it is stored before the request returns, under a name
+            // of its own so that a later upload of the same file cannot replace it before the job reads it
+            storageService.store(file, storedFilename(job));
+
+            synchronized (jobs) {
+
+                jobs.put(job.getId(), job);
+            }
+
+            executor.execute(() -> run(job));
+
+            LOG.info("Queued upload job " + job.getId() + " for " + job.getFilename());
+            return job;
+        }
+        catch (RuntimeException e) {
+
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<UploadJob> get(String id) {
+
+        synchronized (jobs) {
+
+            return Optional.ofNullable(jobs.get(id));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        executor.shutdown();
+    }
+
+    private void run(UploadJob job) {
+
+        boolean appended = false;
+        Throwable failure = null;
+
+        try {
+
+            appended = ingestService.ingest(storageService.load(storedFilename(job)), job);
+
+            // The log already holds the content, so the copy would only be hashed again by every ingestAll
+            if (job.isDuplicate()) {
+
+                storageService.delete(storedFilename(job));
+            }
+        }
+        catch (Throwable t) {
+
+            LOG.error("Upload job " + job.getId() + " failed", t);
+            failure = t;
+        }
+        finally {
+
+            permits.release();
+        }
+
+        // The permit is given back before the job reads as done, so a client that sees it finish can submit again
+        if (failure != null) {
+
+            job.fail(failure);
+
+            // The job is done either way, errors still end the worker as they would have
+            if (failure instanceof Error error) {
+
+                throw error;
+            }
+        }
+        else {
+
+            job.finish(appended);
+        }
+    }
+
+    /**
+     * The job id keeps the name unique and the client filename keeps the extension the parser goes by
+     *
+     */
+    private static String storedFilename(UploadJob job) {
+
+        return job.getId() + "-" + job.getFilename();
+    }
+
+    /**
+     * Names the workers so they can be told apart in thread dumps
+     *
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "upload-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -51,7 +51,12 @@ public class FileSystemStorageService implements StorageService {
     @Override
     public void store(MultipartFile file) {
 
-        String filename = StringUtils.cleanPath(file.getOriginalFilename());
+        store(file, StringUtils.cleanPath(file.getOriginalFilename()));
+    }
+
+    @Override
+    public void store(MultipartFile file, String filename) {
+
         LOG.info("Calling store on filename: " + filename);
 
         try {
@@ -134,6 +139,22 @@ public class FileSystemStorageService implements StorageService {
         }
     }
 
+    @Override
+    public void delete(String filename) {
+
+        LOG.info("Calling delete on filename: " + filename);
+
+        try {
+
+            Files.deleteIfExists(load(filename));
+        }
+        catch (IOException e) {
+
+            LOG.error("IOException trying to delete " + filename);
+            throw new StorageException("Failed to delete file " + filename, e);
+        }
+    }
+
     @Override
     public void deleteAll() {
 
@@ -0,0 +1,68 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.storage;
+
+import sh.kss.finmgr.lib.parse.FileParseResult;
+import sh.kss.finmgr.lib.service.ValidationReport;
+
+/**
+ * Follows the steps of ingesting a document. Every step is optional to listen to.
+ *
+ */
+public interface IngestListener {
+
+    IngestListener NONE = new IngestListener() {
+    };
+
+    /**
+     * The document is already in the transaction log, so it is not appended again
+     *
+     */
+    default void duplicate() {
+    }
+
+    /**
+     * The document is being parsed
+     *
+     */
+    default void parsing() {
+    }
+
+    /**
+     * The document was parsed, or failed to parse
+     *
+     * @param result the transactions of the document, or its failure
+     */
+    default void parsed(FileParseResult result) {
+    }
+
+    /**
+     * The parsed transactions were validated
+     *
+     * @param report the rules broken by each transaction
+     */
+    default void validated(ValidationReport report) {
+    }
+
+    /**
+     * The transactions are being appended to the transaction log
+     *
+     */
+    default void persisting() {
+    }
+}
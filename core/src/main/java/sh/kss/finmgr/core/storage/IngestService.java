@@ -0,0 +1,53 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.storage;
+
+import java.nio.file.Path;
+
+/**
+ * Records the transactions of stored documents in the transaction log, so that each document is parsed only once
+ *
+ */
+public interface IngestService {
+
+    /**
+     * Parse a stored document and append its transactions to the log, unless a document with the same content was
+     * already appended
+     *
+     * @param document the stored document
+     * @return true if the transactions were appended
+     */
+    boolean ingest(Path document);
+
+    /**
+     * Parse, validate and append a stored document, reporting each step to a listener. Transactions that break
+     * validation rules are still appended, the report tells which ones they are.
+     *
+     * @param document the stored document
+     * @param listener follows the steps of the ingest
+     * @return true if the transactions were appended
+     */
+    boolean ingest(Path document, IngestListener listener);
+
+    /**
+     * Ingest every stored document that is not in the log yet, such as documents stored before the log existed
+     *
+     * @return the number of documents appended
+     */
+    int ingestAll();
+}
@@ -29,11 +29,15 @@ public interface StorageService {
 
     void store(MultipartFile file);
 
+    void store(MultipartFile file, String filename);
+
     Stream<Path> loadAll();
 
     Path load(String filename);
 
     Resource loadAsResource(String filename);
 
+    void delete(String filename);
+
     void deleteAll();
 }
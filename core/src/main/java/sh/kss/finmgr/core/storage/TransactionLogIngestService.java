@@ -0,0 +1,145 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.parse.FileParseResult;
+import sh.kss.finmgr.lib.parse.Parser;
+import sh.kss.finmgr.lib.service.ValidationReport;
+import sh.kss.finmgr.lib.service.ValidationService;
+import sh.kss.finmgr.lib.store.ContentHash;
+import sh.kss.finmgr.lib.store.TransactionLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@Service
+public class TransactionLogIngestService implements IngestService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionLogIngestService.class);
+
+    private final StorageService storageService;
+
+    private final Parser parser;
+
+    private final TransactionLog transactionLog;
+
+    private final ValidationService validationService;
+
+    @Autowired
+    public TransactionLogIngestService(StorageService storageService, Parser parser, TransactionLog transactionLog, ValidationService validationService) {
+        this.storageService = storageService;
+        this.parser = parser;
+        this.transactionLog = transactionLog;
+        this.validationService = validationService;
+    }
+
+    @Override
+    public boolean ingest(Path document) {
+
+        return ingest(document, IngestListener.NONE);
+    }
+
+    @Override
+    public boolean ingest(Path document, IngestListener listener) {
+
+        LOG.debug("ingest on document: " + document);
+
+        // Documents are identified by their content, so a renamed upload is not appended twice
+        String source = hash(document);
+
+        if (transactionLog.contains(source)) {
+
+            LOG.info("Document already in the transaction log " + document);
+            listener.duplicate();
+            return false;
+        }
+
+        listener.parsing();
+
+        FileParseResult result = parser.ingestFiles(List.of(document.toFile())).getResults().get(0);
+
+        listener.parsed(result);
+
+        if (result.isFailed()) {
+
+            // Not appended, so the document is parsed again on the next ingestAll
+            LOG.warn("Failed to parse document " + document);
+            return false;
+        }
+
+        ValidationReport report = validationService.validate(document.getFileName().toString(), result.getTransactions());
+
+        if (!report.isValid()) {
+
+            LOG.warn(report.getInvalidRows().length + " transactions of " + document + " break validation rules " + report.getCounts());
+        }
+
+        listener.validated(report);
+        listener.persisting();
+
+        // Another ingest of the same content may have appended it since it was checked
+        boolean appended = transactionLog.append(source, result.getTransactions());
+
+        if (!appended) {
+
+            listener.duplicate();
+        }
+
+        return appended;
+    }
+
+    @Override
+    public int ingestAll() {
+
+        LOG.info("Calling ingestAll");
+
+        try (var paths = storageService.loadAll()) {
+
+            return (int) paths
+                .map(path -> storageService.load(path.toString()))
+                .filter(Files::isRegularFile)
+                .filter(this::ingest)
+                .count();
+        }
+    }
+
+    /**
+     * Compute the SHA-256 of the document content
+     *
+     * @param document the document to hash
+     * @return the hex encoded hash
+     */
+    private static String hash(Path document) {
+
+        try {
+
+            return ContentHash.sha256(document);
+        }
+        catch (IOException e) {
+
+            LOG.error("IOException trying to hash " + document);
+            throw new StorageException("Failed to read stored file " + document, e);
+        }
+    }
+}
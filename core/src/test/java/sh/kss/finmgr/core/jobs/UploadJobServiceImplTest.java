@@ -0,0 +1,332 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.core.jobs;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+import sh.kss.finmgr.core.storage.IngestListener;
+import sh.kss.finmgr.core.storage.IngestService;
+import sh.kss.finmgr.core.storage.StorageService;
+import sh.kss.finmgr.lib.parse.FileParseResult;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the bounded upload job queue
+ *
+ */
+public class UploadJobServiceImplTest {
+
+    /**
+     * Uploads beyond the workers and queue capacity are turned away without being stored, and accepted again once a
+     * job is done
+     *
+     */
+    @Test
+    public void backpressureTest() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingStorageService storageService = new RecordingStorageService();
+        UploadJobServiceImpl uploadJobService = new UploadJobServiceImpl(storageService, ingestService((document, listener) -> {
+
+            await(release);
+            return true;
+
+        }), properties(1, 2));
+
+        try {
+
+            List<UploadJob> jobs = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+
+                jobs.add(uploadJobService.submit(upload("statement-" + i + ".csv")));
+            }
+
+            JobQueueFullException e = assertThrows(JobQueueFullException.class, () -> uploadJobService.submit(upload("statement-3.csv")));
+
+            assertEquals(7, e.getRetryAfterSeconds());
+            assertEquals(jobs.stream().map(job -> job.getId() + "-" + job.getFilename()).toList(), storageService.stored);
+
+            release.countDown();
+
+            for (UploadJob job : jobs) {
+
+                assertEquals(JobStatus.SUCCEEDED, awaitDone(job).getStatus());
+            }
+
+            assertTrue(uploadJobService.submit(upload("statement-3.csv")).getId().length() > 0);
+
+        } finally {
+
+            uploadJobService.shutdown();
+        }
+    }
+
+    /**
+     * A job reports the steps of its ingest, and a parse failure is reported as an error of the job
+     *
+     */
+    @Test
+    public void statusTest() throws Exception {
+
+        UploadJobServiceImpl uploadJobService = new UploadJobServiceImpl(new RecordingStorageService(), ingestService((document, listener) -> {
+
+            listener.parsing();
+            listener.parsed(FileParseResult.failure(document.toFile(), new IllegalStateException("not a statement"), Duration.ZERO));
+            return false;
+
+        }), properties(1, 1));
+
+        try {
+
+            UploadJob job = uploadJobService.submit(upload("broken.csv"));
+            JobResponse response = awaitDone(job);
+
+            assertEquals(JobStatus.FAILED, response.getStatus());
+            assertEquals("broken.csv", response.getFilename());
+            assertFalse(response.isAppended());
+            assertEquals(1, response.getErrors().size());
+            assertTrue(response.getErrors().get(0).contains("not a statement"));
+            assertEquals(job, uploadJobService.get(job.getId()).orElseThrow());
+            assertTrue(uploadJobService.get("unknown").isEmpty());
+
+        } finally {
+
+            uploadJobService.shutdown();
+        }
+    }
+
+    /**
+     * Uploads of the same file are stored apart, so each job ingests its own upload
+     *
+     */
+    @Test
+    public void sameFilenameTest() throws Exception {
+
+        Map<IngestListener, Path> documents = new ConcurrentHashMap<>();
+        UploadJobServiceImpl uploadJobService = new UploadJobServiceImpl(new RecordingStorageService(), ingestService((document, listener) -> {
+
+            documents.put(listener, document);
+            return true;
+
+        }), properties(2, 2));
+
+        try {
+
+            UploadJob first = uploadJobService.submit(upload("statement.csv"));
+            UploadJob second = uploadJobService.submit(upload("statement.csv"));
+
+            awaitDone(first);
+            awaitDone(second);
+
+            assertEquals(Path.of(first.getId() + "-statement.csv"), documents.get(first));
+            assertEquals(Path.of(second.getId() + "-statement.csv"), documents.get(second));
+
+        } finally {
+
+            uploadJobService.shutdown();
+        }
+    }
+
+    /**
+     * An upload already in the transaction log is not kept, while other uploads are
+     *
+     */
+    @Test
+    public void duplicateIsDeletedTest() throws Exception {
+
+        RecordingStorageService storageService = new RecordingStorageService();
+        UploadJobServiceImpl uploadJobService = new UploadJobServiceImpl(storageService, ingestService((document, listener) -> {
+
+            if (document.toString().endsWith("duplicate.csv")) {
+
+                listener.duplicate();
+                return false;
+            }
+
+            return true;
+
+        }), properties(1, 2));
+
+        try {
+
+            UploadJob duplicate = uploadJobService.submit(upload("duplicate.csv"));
+            UploadJob appended = uploadJobService.submit(upload("statement.csv"));
+
+            assertEquals(JobStatus.SUCCEEDED, awaitDone(duplicate).getStatus());
+            assertEquals(JobStatus.SUCCEEDED, awaitDone(appended).getStatus());
+            assertEquals(List.of(duplicate.getId() + "-duplicate.csv"), storageService.deleted);
+
+        } finally {
+
+            uploadJobService.shutdown();
+        }
+    }
+
+    /**
+     * A job that throws an error is still reported as failed and gives its permit back
+     *
+     */
+    @Test
+    public void errorFailsJobTest() throws Exception {
+
+        UploadJobServiceImpl uploadJobService = new UploadJobServiceImpl(new RecordingStorageService(), ingestService((document, listener) -> {
+
+            throw new AssertionError("ingest broke");
+
+        }), properties(1, 0));
+
+        try {
+
+            UploadJob job = uploadJobService.submit(upload("statement.csv"));
+            JobResponse response = awaitDone(job);
+
+            assertEquals(JobStatus.FAILED, response.getStatus());
+            assertTrue(response.getErrors().get(0).contains("ingest broke"));
+            assertEquals(JobStatus.FAILED, awaitDone(uploadJobService.submit(upload("statement.csv"))).getStatus());
+
+        } finally {
+
+            uploadJobService.shutdown();
+        }
+    }
+
+    private static IngestService ingestService(BiFunction<Path, IngestListener, Boolean> ingest) {
+
+        return new IngestService() {
+
+            @Override
+            public boolean ingest(Path document) {
+                return ingest(document, IngestListener.NONE);
+            }
+
+            @Override
+            public boolean ingest(Path document, IngestListener listener) {
+                return ingest.apply(document, listener);
+            }
+
+            @Override
+            public int ingestAll() {
+                return 0;
+            }
+        };
+    }
+
+    private static JobProperties properties(int workers, int queueCapacity) {
+
+        JobProperties properties = new JobProperties();
+        properties.setWorkers(workers);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setRetryAfterSeconds(7);
+
+        return properties;
+    }
+
+    private static MultipartFile upload(String filename) {
+
+        return new MockMultipartFile("file", filename, "text/csv", "Date,Symbol".getBytes());
+    }
+
+    private static JobResponse awaitDone(UploadJob job) throws InterruptedException {
+
+        for (int i = 0; i < 500 && !job.toResponse().getStatus().isDone(); i++) {
+
+            Thread.sleep(10);
+        }
+
+        return job.toResponse();
+    }
+
+    private static void await(CountDownLatch latch) {
+
+        try {
+
+            latch.await(10, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the stored uploads instead of writing them
+     *
+     */
+    private static final class RecordingStorageService implements StorageService {
+
+        private final List<String> stored = new ArrayList<>();
+        private final List<String> deleted = new ArrayList<>();
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void store(MultipartFile file) {
+            store(file, file.getOriginalFilename());
+        }
+
+        @Override
+        public synchronized void store(MultipartFile file, String filename) {
+            stored.add(filename);
+        }
+
+        @Override
+        public Stream<Path> loadAll() {
+            return Stream.empty();
+        }
+
+        @Override
+        public Path load(String filename) {
+            return new File(filename).toPath();
+        }
+
+        @Override
+        public Resource loadAsResource(String filename) {
+            return null;
+        }
+
+        @Override
+        public synchronized void delete(String filename) {
+            deleted.add(filename);
+        }
+
+        @Override
+        public void deleteAll() {
+        }
+    }
+}
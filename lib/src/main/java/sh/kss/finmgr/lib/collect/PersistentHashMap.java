@@ -0,0 +1,547 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.collect;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash map stored as a hash array mapped trie. Adding or removing a key copies only the path from the
+ * root to the changed entry, at most 7 nodes of up to 32 entries, and shares every other node with the previous
+ * version. Keeping every version of a map that is updated N times therefore costs O(N log n) rather than O(N n).
+ *
+ * The Map mutators throw UnsupportedOperationException, use plus and minus to derive a new version. Null keys and
+ * values are not permitted. Equality and hashing follow the Map contract, so a PersistentHashMap is equal to any
+ * other Map with the same entries.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    // Bits of the hash consumed at each level of the trie
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+
+    private Set<Entry<K, V>> entrySet;
+
+    private PersistentHashMap(Node root, int size) {
+
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * The empty map
+     *
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * A persistent map with the entries of another map, returned as is if it is already persistent
+     *
+     * @param map the entries
+     * @return the persistent map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+
+        if (map instanceof PersistentHashMap) {
+
+            return (PersistentHashMap<K, V>) map;
+        }
+
+        PersistentHashMap<K, V> copy = empty();
+
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+
+            copy = copy.plus(entry.getKey(), entry.getValue());
+        }
+
+        return copy;
+    }
+
+    /**
+     * A version of this map with a key mapped to a value
+     *
+     * @param key the key
+     * @param value the value
+     * @return the new version, or this map if the key already maps to the same value instance
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+
+        boolean[] added = new boolean[1];
+        Node node = root == null ? BitmapNode.EMPTY : root;
+        Node updated = node.assoc(0, hash(key), key, value, added);
+
+        return updated == root ? this : new PersistentHashMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * A version of this map without a key
+     *
+     * @param key the key
+     * @return the new version, or this map if the key is absent
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+
+        if (root == null || key == null) {
+
+            return this;
+        }
+
+        Node updated = root.without(0, hash(key), key);
+
+        if (updated == root) {
+
+            return this;
+        }
+
+        return updated == null ? empty() : new PersistentHashMap<>(updated, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+
+        return root == null || key == null ? null : (V) root.find(0, hash(key), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+
+        if (entrySet == null) {
+
+            entrySet = new AbstractSet<>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+
+                    return size;
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    private static int hash(Object key) {
+
+        int h = key.hashCode();
+
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * A trie node. Entries are stored in pairs in an array: a key and its value, or a null key and a child node.
+     *
+     */
+    private abstract static class Node {
+
+        final Object[] array;
+
+        Node(Object[] array) {
+
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    /**
+     * An inner node holding one pair for each bit set in its bitmap
+     *
+     */
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+
+            int bit = bit(hash, shift);
+
+            if ((bitmap & bit) == 0) {
+
+                return null;
+            }
+
+            int i = 2 * index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+
+            if (k == null) {
+
+                return ((Node) v).find(shift + BITS, hash, key);
+            }
+
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+
+            int bit = bit(hash, shift);
+            int i = 2 * index(bit);
+
+            // A new slot at this level
+            if ((bitmap & bit) == 0) {
+
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(array, i, copy, i + 2, array.length - i);
+                added[0] = true;
+
+                return new BitmapNode(bitmap | bit, copy);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+
+            // Descend into the child node
+            if (k == null) {
+
+                Node child = ((Node) v).assoc(shift + BITS, hash, key, value, added);
+
+                return child == v ? this : with(i + 1, child);
+            }
+
+            // Replace the value of the same key
+            if (key.equals(k)) {
+
+                return v == value ? this : with(i + 1, value);
+            }
+
+            // Two keys share the slot, push both down a level
+            added[0] = true;
+
+            return with(i, null, createNode(shift + BITS, k, v, hash, key, value));
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+
+            int bit = bit(hash, shift);
+
+            if ((bitmap & bit) == 0) {
+
+                return this;
+            }
+
+            int i = 2 * index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+
+            if (k == null) {
+
+                Node child = ((Node) v).without(shift + BITS, hash, key);
+
+                if (child == v) {
+
+                    return this;
+                }
+
+                if (child != null) {
+
+                    return with(i + 1, child);
+                }
+
+            } else if (!key.equals(k)) {
+
+                return this;
+            }
+
+            // Remove the pair, dropping the node if it was the last one
+            if (bitmap == bit) {
+
+                return null;
+            }
+
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+
+        private BitmapNode with(int i, Object value) {
+
+            Object[] copy = array.clone();
+            copy[i] = value;
+
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+
+            int hash1 = hash(key1);
+
+            if (hash1 == hash2) {
+
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+
+            boolean[] added = new boolean[1];
+
+            return EMPTY
+                .assoc(shift, hash1, key1, value1, added)
+                .assoc(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * A leaf holding the keys whose hashes are all equal
+     *
+     */
+    private static final class CollisionNode extends Node {
+
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+
+            for (int i = 0; i < array.length; i += 2) {
+
+                if (key.equals(array[i])) {
+
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+
+            int i = hash == this.hash ? indexOf(key) : -1;
+
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+
+            // A different hash splits the collision under a new inner node
+            if (hash != this.hash) {
+
+                return new BitmapNode(bit(this.hash, shift), new Object[] {null, this})
+                    .assoc(shift, hash, key, value, added);
+            }
+
+            int i = indexOf(key);
+
+            if (i >= 0) {
+
+                if (array[i + 1] == value) {
+
+                    return this;
+                }
+
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+
+                return new CollisionNode(hash, copy);
+            }
+
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+
+            int i = hash == this.hash ? indexOf(key) : -1;
+
+            if (i < 0) {
+
+                return this;
+            }
+
+            if (array.length == 2) {
+
+                return null;
+            }
+
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+
+            return new CollisionNode(hash, copy);
+        }
+    }
+
+    /**
+     * Walks the trie depth first, yielding the key and value pairs
+     *
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        // The nodes being walked and the next pair index in each
+        private final Deque<Node> nodes = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+
+            if (root != null) {
+
+                nodes.push(root);
+                positions.push(0);
+            }
+
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+
+            next = null;
+
+            while (!nodes.isEmpty()) {
+
+                Node node = nodes.peek();
+                int i = positions.pop();
+
+                if (i >= node.array.length) {
+
+                    nodes.pop();
+                    continue;
+                }
+
+                positions.push(i + 2);
+
+                Object k = node.array[i];
+                Object v = node.array[i + 1];
+
+                if (k == null) {
+
+                    nodes.push((Node) v);
+                    positions.push(0);
+
+                } else {
+
+                    next = new SimpleImmutableEntry<>((K) k, (V) v);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+
+            if (next == null) {
+
+                throw new NoSuchElementException();
+            }
+
+            Entry<K, V> entry = next;
+            advance();
+
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.collect;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * An immutable hash set backed by a PersistentHashMap, so adding or removing an element shares structure with the
+ * previous version. The Set mutators throw UnsupportedOperationException, use plus and minus to derive a new
+ * version.
+ *
+ * @param <E> the element type
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(PersistentHashMap.empty());
+
+    private final PersistentHashMap<E, Boolean> map;
+
+    private PersistentHashSet(PersistentHashMap<E, Boolean> map) {
+
+        this.map = map;
+    }
+
+    /**
+     * The empty set
+     *
+     * @return the empty set
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> empty() {
+
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    /**
+     * A persistent set with the elements of another collection, returned as is if it is already persistent
+     *
+     * @param collection the elements
+     * @return the persistent set
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> copyOf(Collection<? extends E> collection) {
+
+        if (collection instanceof PersistentHashSet) {
+
+            return (PersistentHashSet<E>) collection;
+        }
+
+        PersistentHashSet<E> copy = empty();
+
+        for (E element : collection) {
+
+            copy = copy.plus(element);
+        }
+
+        return copy;
+    }
+
+    /**
+     * A version of this set with an element added
+     *
+     * @param element the element
+     * @return the new version, or this set if the element is already present
+     */
+    public PersistentHashSet<E> plus(E element) {
+
+        PersistentHashMap<E, Boolean> updated = map.plus(element, Boolean.TRUE);
+
+        return updated == map ? this : new PersistentHashSet<>(updated);
+    }
+
+    /**
+     * A version of this set with an element removed
+     *
+     * @param element the element
+     * @return the new version, or this set if the element is absent
+     */
+    public PersistentHashSet<E> minus(Object element) {
+
+        PersistentHashMap<E, Boolean> updated = map.minus(element);
+
+        return updated == map ? this : new PersistentHashSet<>(updated);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+
+        return map.containsKey(element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+
+        return map.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+
+        return map.size();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Market data lookups that run concurrently rather than blocking the caller. Lookups of the same close or range that
+ * are already in flight share one fetch.
+ *
+ */
+public interface AsyncMarketDataApi {
+
+    /**
+     * Look up the closing price of a security
+     *
+     * @param security the security
+     * @param date the day, before today
+     * @return completes with the close of the last business day on or before the date
+     */
+    CompletableFuture<Optional<MonetaryAmount>> findClosingPrice(Security security, LocalDate date);
+
+    /**
+     * Look up the closing prices of a security over a range
+     *
+     * @param security the security
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return completes with the closing prices as MarketDataApi.getClosingPrices returns them
+     */
+    CompletableFuture<Map<LocalDate, MonetaryAmount>> getClosingPrices(Security security, LocalDate from, LocalDate to);
+
+    /**
+     * Look up the closing prices of several securities over a range, fetching the securities concurrently
+     *
+     * @param securities the securities
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return completes with the closing prices of each security once all have been fetched
+     */
+    CompletableFuture<Map<Security, Map<LocalDate, MonetaryAmount>>> getClosingPrices(Collection<Security> securities, LocalDate from, LocalDate to);
+
+    /**
+     * Look up the closing prices of a security over a range, along with the days that could not be fetched
+     *
+     * @param security the security
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return completes with the closing prices as MarketDataApi.fetchClosingPrices returns them
+     */
+    CompletableFuture<ClosingPrices> fetchClosingPrices(Security security, LocalDate from, LocalDate to);
+
+    /**
+     * Look up the closing prices of several securities over a range, along with the days that could not be fetched,
+     * fetching the securities concurrently
+     *
+     * @param securities the securities
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return completes with the closing prices of each security once all have been fetched
+     */
+    CompletableFuture<Map<Security, ClosingPrices>> fetchClosingPrices(Collection<Security> securities, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,181 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking market data lookups on virtual threads. Each lookup in flight is registered under its key until
+ * it completes, and callers asking for the same key get the registered future instead of a new fetch. Throughput is
+ * bounded by the rate limit of the market data source rather than by the latency of each request.
+ *
+ */
+@Service
+public class AsyncMarketDataApiImpl implements AsyncMarketDataApi {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncMarketDataApiImpl.class);
+
+    private MarketDataApi marketDataApi;
+
+    // A virtual thread per lookup, most of their time is spent waiting on the rate limit or the network
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Lookups in flight by key
+    private final Map<ClosingPriceKey, CompletableFuture<Optional<MonetaryAmount>>> closingPrices = new ConcurrentHashMap<>();
+    private final Map<RangeKey, CompletableFuture<ClosingPrices>> ranges = new ConcurrentHashMap<>();
+
+    @Autowired
+    public void setMarketDataApi(MarketDataApi marketDataApi) {
+        this.marketDataApi = marketDataApi;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        executor.shutdown();
+    }
+
+    @Override
+    public CompletableFuture<Optional<MonetaryAmount>> findClosingPrice(Security security, LocalDate date) {
+
+        return coalesce(closingPrices, new ClosingPriceKey(security, date), () -> marketDataApi.findClosingPrice(security, date));
+    }
+
+    @Override
+    public CompletableFuture<Map<LocalDate, MonetaryAmount>> getClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        return fetchClosingPrices(security, from, to).thenApply(ClosingPrices::getClosingPrices);
+    }
+
+    @Override
+    public CompletableFuture<Map<Security, Map<LocalDate, MonetaryAmount>>> getClosingPrices(Collection<Security> securities, LocalDate from, LocalDate to) {
+
+        return fetchClosingPrices(securities, from, to).thenApply(fetched -> {
+
+            Map<Security, Map<LocalDate, MonetaryAmount>> closingPrices = new HashMap<>();
+
+            fetched.forEach((security, prices) -> closingPrices.put(security, prices.getClosingPrices()));
+
+            return closingPrices;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ClosingPrices> fetchClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        return coalesce(ranges, new RangeKey(security, from, to), () -> marketDataApi.fetchClosingPrices(security, from, to));
+    }
+
+    @Override
+    public CompletableFuture<Map<Security, ClosingPrices>> fetchClosingPrices(Collection<Security> securities, LocalDate from, LocalDate to) {
+
+        List<Security> requested = new ArrayList<>(securities);
+        List<CompletableFuture<ClosingPrices>> futures = new ArrayList<>(requested.size());
+
+        for (Security security : requested) {
+
+            futures.add(fetchClosingPrices(security, from, to));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+            .thenApply(done -> {
+
+                Map<Security, ClosingPrices> closingPrices = new HashMap<>();
+
+                for (int i = 0; i < requested.size(); i++) {
+
+                    closingPrices.put(requested.get(i), futures.get(i).join());
+                }
+
+                return closingPrices;
+            });
+    }
+
+    /**
+     * Join the lookup in flight for the key, or start one
+     *
+     * @param inFlight the lookups in flight
+     * @param key the lookup key
+     * @param lookup the blocking lookup
+     * @return the shared future of the lookup
+     */
+    private <K, V> CompletableFuture<V> coalesce(Map<K, CompletableFuture<V>> inFlight, K key, Supplier<V> lookup) {
+
+        CompletableFuture<V> started = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, started);
+
+        if (existing != null) {
+
+            LOG.debug(String.format("Joining market data lookup in flight for %s", key));
+
+            return existing;
+        }
+
+        executor.execute(() -> {
+
+            V value;
+
+            try {
+
+                value = lookup.get();
+
+            } catch (Throwable t) {
+
+                inFlight.remove(key, started);
+                started.completeExceptionally(t);
+
+                return;
+            }
+
+            // Unregister before completing, so a woken caller's next lookup of the key fetches again or reads the
+            // cache below rather than joining the finished future
+            inFlight.remove(key, started);
+            started.complete(value);
+        });
+
+        return started;
+    }
+
+    private record ClosingPriceKey(Security security, LocalDate date) {
+
+    }
+
+    private record RangeKey(Security security, LocalDate from, LocalDate to) {
+
+    }
+}
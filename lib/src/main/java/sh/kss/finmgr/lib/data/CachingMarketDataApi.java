@@ -0,0 +1,317 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-through cache in front of the market data source, keeping the daily closes of each security in a
+ * memory-mapped price series on disk. A close more than a week old is final, so once stored it is never fetched
+ * again, and lookups of stored days are memory reads. In offline mode nothing is fetched and only the stored closes
+ * are returned.
+ *
+ */
+@Primary
+@Service
+@ConditionalOnProperty("finmgr.market-data.cache-location")
+public class CachingMarketDataApi implements MarketDataApi {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(CachingMarketDataApi.class);
+    // Closes this many days old or newer may still be revised or missing at the source
+    private static final int SETTLE_DAYS = 7;
+    // A single day miss fetches the whole aligned block around it, since one request costs the same either way
+    private static final int FETCH_BLOCK_DAYS = 64;
+
+    private MarketDataApi delegate;
+
+    // Directory holding one price series per security
+    private Path location = Paths.get("market-data");
+
+    // Never fetch, answer only from the stored closes
+    private boolean offline = false;
+
+    private final Map<Security, PriceSeries> series = new ConcurrentHashMap<>();
+
+    // Closes that are not final yet, kept in memory only
+    private final Map<Security, Map<LocalDate, RecentClose>> recent = new ConcurrentHashMap<>();
+
+    @Autowired
+    public void setDelegate(@Qualifier("marketDataApiImpl") MarketDataApi delegate) {
+        this.delegate = delegate;
+    }
+
+    @Value("${finmgr.market-data.cache-location}")
+    public void setLocation(String location) {
+        this.location = Paths.get(location);
+    }
+
+    @Value("${finmgr.market-data.offline:false}")
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    @Override
+    public Optional<MonetaryAmount> findClosingPrice(Security security, LocalDate date) {
+
+        // You can't get a closing price for a future date
+        Validate.isTrue(date.isBefore(LocalDate.now()));
+
+        PriceSeries prices = getSeries(security);
+
+        if (!isCached(security, prices, date)) {
+
+            // Fetch the block around the date so the neighbouring days are stored too
+            long blockStart = Math.floorDiv(date.toEpochDay(), FETCH_BLOCK_DAYS) * FETCH_BLOCK_DAYS;
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            LocalDate blockEnd = LocalDate.ofEpochDay(blockStart + FETCH_BLOCK_DAYS - 1);
+
+            fetch(security, prices, LocalDate.ofEpochDay(blockStart), blockEnd.isAfter(yesterday) ? yesterday : blockEnd);
+        }
+
+        return lookup(security, prices, date);
+    }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, List<LocalDate> dates) {
+
+        Map<LocalDate, MonetaryAmount> closingPrices = new HashMap<>();
+
+        if (dates.isEmpty()) {
+
+            return closingPrices;
+        }
+
+        Map<LocalDate, MonetaryAmount> range = getClosingPrices(security, Collections.min(dates), Collections.max(dates));
+
+        for (LocalDate date : dates) {
+
+            MonetaryAmount closingPrice = range.get(date);
+
+            if (closingPrice != null) {
+
+                closingPrices.put(date, closingPrice);
+            }
+        }
+
+        return closingPrices;
+    }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        return fetchClosingPrices(security, from, to).getClosingPrices();
+    }
+
+    @Override
+    public ClosingPrices fetchClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        // You can't get a closing price for a future date
+        Validate.isTrue(!from.isAfter(to));
+        Validate.isTrue(to.isBefore(LocalDate.now()));
+
+        PriceSeries prices = getSeries(security);
+
+        // Fetch each run of days that is not stored yet with one call
+        LocalDate missStart = null;
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            if (!isCached(security, prices, date)) {
+
+                missStart = missStart == null ? date : missStart;
+
+            } else if (missStart != null) {
+
+                fetch(security, prices, missStart, date.minusDays(1));
+                missStart = null;
+            }
+        }
+
+        if (missStart != null) {
+
+            fetch(security, prices, missStart, to);
+        }
+
+        Map<LocalDate, MonetaryAmount> closingPrices = new TreeMap<>();
+        Set<LocalDate> unfetched = new HashSet<>();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            LocalDate day = date;
+
+            // The days still not stored failed to fetch, or were not fetched at all in offline mode
+            if (!isStored(security, prices, day)) {
+
+                unfetched.add(day);
+            }
+
+            lookup(security, prices, day).ifPresent(closingPrice -> closingPrices.put(day, closingPrice));
+        }
+
+        return new ClosingPrices(closingPrices, unfetched);
+    }
+
+    /**
+     * Flush and unmap the price series
+     *
+     */
+    @PreDestroy
+    public void close() {
+
+        for (PriceSeries prices : series.values()) {
+
+            try {
+
+                prices.close();
+
+            } catch (IOException e) {
+
+                LOG.error("IOException when closing a price series");
+                e.printStackTrace();
+            }
+        }
+
+        series.clear();
+    }
+
+    private boolean isCached(Security security, PriceSeries prices, LocalDate date) {
+
+        return offline || isStored(security, prices, date);
+    }
+
+    private boolean isStored(Security security, PriceSeries prices, LocalDate date) {
+
+        if (isSettled(date)) {
+
+            return prices.contains(date);
+        }
+
+        // A close that has not settled is only reused on the day it was fetched
+        RecentClose recentClose = recent.getOrDefault(security, Map.of()).get(date);
+
+        return recentClose != null && recentClose.fetched.equals(LocalDate.now());
+    }
+
+    private Optional<MonetaryAmount> lookup(Security security, PriceSeries prices, LocalDate date) {
+
+        if (isSettled(date)) {
+
+            return prices.get(date);
+        }
+
+        RecentClose recentClose = recent.getOrDefault(security, Map.of()).get(date);
+
+        return recentClose != null ? recentClose.close : Optional.empty();
+    }
+
+    private static boolean isSettled(LocalDate date) {
+
+        return date.isBefore(LocalDate.now().minusDays(SETTLE_DAYS));
+    }
+
+    /**
+     * Fetch a range from the source and store its settled closes
+     *
+     * @param security the security
+     * @param prices the series of the security
+     * @param from the first day to fetch
+     * @param to the last day to fetch (inclusive)
+     */
+    private void fetch(Security security, PriceSeries prices, LocalDate from, LocalDate to) {
+
+        LOG.debug(String.format("Fetching closing prices of %s from %s to %s", security.getValue(), from, to));
+
+        ClosingPrices fetched = delegate.fetchClosingPrices(security, from, to);
+
+        try {
+
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+                // A day whose request failed stays missing so that it is fetched again
+                if (!fetched.isFetched(date)) {
+
+                    continue;
+                }
+
+                if (isSettled(date)) {
+
+                    prices.put(date, fetched.getClosingPrices().get(date));
+
+                } else {
+
+                    recent.computeIfAbsent(security, s -> new ConcurrentHashMap<>())
+                        .put(date, new RecentClose(Optional.ofNullable(fetched.getClosingPrices().get(date)), LocalDate.now()));
+                }
+            }
+
+        } catch (IOException e) {
+
+            LOG.error(String.format("IOException when storing closing prices of %s", security.getValue()));
+            e.printStackTrace();
+        }
+    }
+
+    private PriceSeries getSeries(Security security) {
+
+        return series.computeIfAbsent(security, s -> {
+
+            // One directory per currency since the same symbol can trade on several exchanges
+            String file = s.getValue().replaceAll("[^A-Za-z0-9._-]", "_") + ".prices";
+
+            try {
+
+                return PriceSeries.open(location.resolve(s.getCurrency().getCurrencyCode()).resolve(file), s.getCurrency());
+
+            } catch (IOException e) {
+
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private record RecentClose(Optional<MonetaryAmount> close, LocalDate fetched) {
+
+    }
+}
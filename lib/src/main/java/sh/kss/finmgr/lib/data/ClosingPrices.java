@@ -0,0 +1,50 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The closing prices of a range along with the days the source could not be reached for. A day of the range that is
+ * in neither has no close at the source.
+ *
+ */
+@Value
+public class ClosingPrices {
+
+    // The closing price of each day that has one, in date order
+    @NonNull Map<LocalDate, MonetaryAmount> closingPrices;
+
+    // The days whose request failed, so whether they have a close is unknown
+    @NonNull Set<LocalDate> unfetched;
+
+    /**
+     * @param date a day of the range
+     * @return whether the close of the day is known, including knowing there is none
+     */
+    public boolean isFetched(LocalDate date) {
+
+        return !unfetched.contains(date);
+    }
+}
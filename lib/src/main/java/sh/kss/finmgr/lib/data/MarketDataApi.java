@@ -21,9 +21,13 @@ import sh.kss.finmgr.lib.entity.Security;
 
 import javax.money.MonetaryAmount;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -34,4 +38,54 @@ public interface MarketDataApi {
     Optional<MonetaryAmount> findClosingPrice(Security security, LocalDate date);
     Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, List<LocalDate> dates);
 
+    /**
+     * The closing price of a security on every day of a range, fetched a range at a time rather than a day at a time.
+     * Days without a close of their own, such as weekends and holidays, take the close of the last business day
+     * before them if it is at most a few days older.
+     *
+     * @param security the security
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return the closing prices in date order, without the days that have no recent close or could not be fetched
+     */
+    Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, LocalDate from, LocalDate to);
+
+    /**
+     * The closing prices of a range as getClosingPrices returns them, also telling the days left out because the
+     * source could not be reached from the days that have no close. A source that cannot tell them apart treats an
+     * empty range as a failed one.
+     *
+     * @param security the security
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return the closing prices and the days that could not be fetched
+     */
+    default ClosingPrices fetchClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        Map<LocalDate, MonetaryAmount> closingPrices = getClosingPrices(security, from, to);
+
+        return new ClosingPrices(
+            closingPrices,
+            closingPrices.isEmpty() ? from.datesUntil(to.plusDays(1)).collect(Collectors.toSet()) : Set.of());
+    }
+
+    /**
+     * The closing prices of several securities over the same range
+     *
+     * @param securities the securities
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive), before today
+     * @return the closing prices of each security, as getClosingPrices returns them for one security
+     */
+    default Map<Security, Map<LocalDate, MonetaryAmount>> getClosingPrices(Collection<Security> securities, LocalDate from, LocalDate to) {
+
+        Map<Security, Map<LocalDate, MonetaryAmount>> closingPrices = new HashMap<>();
+
+        for (Security security : securities) {
+
+            closingPrices.put(security, getClosingPrices(security, from, to));
+        }
+
+        return closingPrices;
+    }
 }
@@ -19,10 +19,13 @@ package sh.kss.finmgr.lib.data;
 
 import org.apache.commons.lang3.Validate;
 import org.javamoney.moneta.Money;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import sh.kss.finmgr.lib.entity.Security;
 import sh.kss.finmgr.lib.map.CurrencyAndCountry;
@@ -30,12 +33,22 @@ import sh.kss.finmgr.lib.map.CurrencyAndCountry;
 import javax.money.CurrencyUnit;
 import javax.money.MonetaryAmount;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -49,8 +62,48 @@ public class MarketDataApiImpl implements MarketDataApi {
 
     private static final DateTimeFormatter MARKET_WATCH_DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
     private static final String MARKET_WATCH_PRICE_LOOKUP = "div.tab__pane:nth-child(1) > mw-downloaddata:nth-child(1) > div:nth-child(2) > div:nth-child(1) > table:nth-child(1) > tbody:nth-child(2) > tr:nth-child(1) > td:nth-child(5) > div:nth-child(1)";
-    private static final String MARKET_WATCH_URL = "https://www.marketwatch.com/investing/fund/%s/downloaddatapartial?partial=true&index=0&countryCode=%s&iso=&startDate=%s&endDate=%s&frequency=null&downloadPartial=false&csvDownload=false&newDates=true";
+    private static final String MARKET_WATCH_ROW_LOOKUP = "div.tab__pane:nth-child(1) > mw-downloaddata:nth-child(1) > div:nth-child(2) > div:nth-child(1) > table:nth-child(1) > tbody:nth-child(2) > tr";
+    private static final String MARKET_WATCH_DATE_CELL = "td:nth-child(1) > div:nth-child(1)";
+    private static final String MARKET_WATCH_CLOSE_CELL = "td:nth-child(5) > div:nth-child(1)";
+    private static final String MARKET_WATCH_URL = "%s/investing/fund/%s/downloaddatapartial?partial=true&index=0&countryCode=%s&iso=&startDate=%s&endDate=%s&frequency=null&downloadPartial=false&csvDownload=false&newDates=true";
+    // MarketWatch returns at most a year of daily rows per request
+    private static final int MAX_RANGE_DAYS = 365;
+    // Far enough back to reach the last business day close before a date
+    private static final int LOOK_BACK_DAYS = 5;
 
+    private String baseUrl = "https://www.marketwatch.com";
+
+    // Requests started per second to each host, zero for no limit
+    private double requestsPerSecond = 2;
+
+    // Attempts per request before giving up, retrying throttled, failed and unreachable requests
+    private int maxAttempts = 3;
+
+    // Wait before the first retry, doubling with each further retry
+    private long retryBackoffMillis = 500;
+
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    @Value("${finmgr.market-data.base-url:https://www.marketwatch.com}")
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Value("${finmgr.market-data.requests-per-second:2}")
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.rateLimiters.clear();
+    }
+
+    @Value("${finmgr.market-data.max-attempts:3}")
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Value("${finmgr.market-data.retry-backoff-millis:500}")
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
 
     @Override
     public Optional<MonetaryAmount> findClosingPrice(Security security, LocalDate date) {
@@ -62,14 +115,11 @@ public class MarketDataApiImpl implements MarketDataApi {
         Validate.isTrue(date.isBefore(LocalDate.now()));
 
         // Ensure our date range will get us the latest business day closing price
-        String formattedStartDate = date.minusDays(5).format(MARKET_WATCH_DATE_FORMAT);
-        String formattedTargetDate = date.format(MARKET_WATCH_DATE_FORMAT);
-        String countryCode = CurrencyAndCountry.CURRENCY_TO_COUNTRY.get(currency).equalsIgnoreCase("US") ? "" : CurrencyAndCountry.CURRENCY_TO_COUNTRY.get(currency);
-        String connectionUrl = String.format(MARKET_WATCH_URL, security.getValue(), countryCode, formattedStartDate, formattedTargetDate);
+        String connectionUrl = getUrl(security, date.minusDays(LOOK_BACK_DAYS), date);
 
         try {
 
-            Document doc = Jsoup.connect(connectionUrl).get();
+            Document doc = getDocument(connectionUrl);
 
             return Optional.of(
                 Money.parse(currency.getCurrencyCode() + " " + doc.selectFirst(MARKET_WATCH_PRICE_LOOKUP).html().substring(1)));
@@ -83,6 +133,13 @@ public class MarketDataApiImpl implements MarketDataApi {
         return Optional.empty();
     }
 
+    /**
+     * Look up the closing prices of the dates from one range covering all of them
+     *
+     * @param security the security
+     * @param dates the dates to look up, each before today
+     * @return the closing price of each date that has one
+     */
     @Override
     public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, List<LocalDate> dates) {
 
@@ -90,12 +147,208 @@ public class MarketDataApiImpl implements MarketDataApi {
 
         Map<LocalDate, MonetaryAmount> closingPrices = new HashMap<>();
 
+        if (dates.isEmpty()) {
+
+            return closingPrices;
+        }
+
+        Map<LocalDate, MonetaryAmount> range = getClosingPrices(security, Collections.min(dates), Collections.max(dates));
+
         for (LocalDate date : dates) {
 
-            findClosingPrice(security, date)
-                .ifPresent(p -> closingPrices.put(date, p));
+            MonetaryAmount closingPrice = range.get(date);
+
+            if (closingPrice != null) {
+
+                closingPrices.put(date, closingPrice);
+            }
         }
 
         return closingPrices;
     }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        return fetchClosingPrices(security, from, to).getClosingPrices();
+    }
+
+    @Override
+    public ClosingPrices fetchClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        LOG.debug(String.format("called fetchClosingPrices(%s, %s, %s)", security.getValue(), from, to));
+
+        // You can't get a closing price for a future date
+        Validate.isTrue(!from.isAfter(to));
+        Validate.isTrue(to.isBefore(LocalDate.now()));
+
+        // Fetch from before the range so its first days can take an earlier close
+        NavigableMap<LocalDate, MonetaryAmount> closes = new TreeMap<>();
+        NavigableMap<LocalDate, LocalDate> failedWindows = new TreeMap<>();
+        LocalDate windowStart = from.minusDays(LOOK_BACK_DAYS);
+
+        while (!windowStart.isAfter(to)) {
+
+            LocalDate windowEnd = windowStart.plusDays(MAX_RANGE_DAYS - 1);
+
+            if (windowEnd.isAfter(to)) {
+
+                windowEnd = to;
+            }
+
+            if (!fetchWindow(security, windowStart, windowEnd, closes)) {
+
+                failedWindows.put(windowStart, windowEnd);
+            }
+
+            windowStart = windowEnd.plusDays(1);
+        }
+
+        // Every day takes the last close at most LOOK_BACK_DAYS before it, as findClosingPrice does
+        Map<LocalDate, MonetaryAmount> closingPrices = new TreeMap<>();
+        Set<LocalDate> unfetched = new HashSet<>();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            LocalDate lookBack = date.minusDays(LOOK_BACK_DAYS);
+            Map.Entry<LocalDate, MonetaryAmount> close = closes.floorEntry(date);
+
+            if (close != null && close.getKey().isBefore(lookBack)) {
+
+                close = null;
+            }
+
+            // The day is only known if no failed window hides a later close between its close and the day
+            Map.Entry<LocalDate, LocalDate> failedWindow = failedWindows.floorEntry(date);
+
+            if (failedWindow != null && !failedWindow.getValue().isBefore(close != null ? close.getKey() : lookBack)) {
+
+                unfetched.add(date);
+
+            } else if (close != null) {
+
+                closingPrices.put(date, close.getValue());
+            }
+        }
+
+        return new ClosingPrices(closingPrices, unfetched);
+    }
+
+    /**
+     * Fetch the closes of every business day in a window with one request
+     *
+     * @param security the security
+     * @param start the first day of the window
+     * @param end the last day of the window (inclusive)
+     * @param closes receives the close of each business day found
+     * @return whether the window was fetched
+     */
+    private boolean fetchWindow(Security security, LocalDate start, LocalDate end, Map<LocalDate, MonetaryAmount> closes) {
+
+        CurrencyUnit currency = security.getCurrency();
+        String connectionUrl = getUrl(security, start, end);
+
+        try {
+
+            Document doc = getDocument(connectionUrl);
+
+            for (Element row : doc.select(MARKET_WATCH_ROW_LOOKUP)) {
+
+                Element date = row.selectFirst(MARKET_WATCH_DATE_CELL);
+                Element close = row.selectFirst(MARKET_WATCH_CLOSE_CELL);
+
+                if (date == null || close == null) {
+
+                    continue;
+                }
+
+                try {
+
+                    closes.put(
+                        LocalDate.parse(date.text().trim(), MARKET_WATCH_DATE_FORMAT),
+                        Money.of(new BigDecimal(close.text().trim().substring(1).replace(",", "")), currency));
+
+                } catch (DateTimeParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+
+                    LOG.debug(String.format("Skipping unreadable price row %s from url: %s", row.text(), connectionUrl));
+                }
+            }
+
+            return true;
+
+        } catch (IOException e) {
+
+            LOG.error(String.format("IOException when trying to connect to url: %s", connectionUrl));
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Get a page under the rate limit of its host, retrying with exponential backoff when the host throttles, fails
+     * or cannot be reached
+     *
+     * @param connectionUrl the page url
+     * @return the parsed page
+     * @throws IOException if the last attempt fails, or the page is refused for another reason
+     */
+    private Document getDocument(String connectionUrl) throws IOException {
+
+        RateLimiter rateLimiter = rateLimiters.computeIfAbsent(URI.create(connectionUrl).getHost(), host -> new RateLimiter(requestsPerSecond));
+
+        for (int attempt = 1; ; attempt++) {
+
+            try {
+
+                rateLimiter.acquire();
+
+                return Jsoup.connect(connectionUrl).get();
+
+            } catch (HttpStatusException e) {
+
+                // Only throttling and server errors are worth trying again
+                if (attempt >= maxAttempts || (e.getStatusCode() != 429 && e.getStatusCode() < 500)) {
+
+                    throw e;
+                }
+
+                LOG.debug(String.format("HTTP %d from url: %s, attempt %d of %d", e.getStatusCode(), connectionUrl, attempt, maxAttempts));
+
+            } catch (IOException e) {
+
+                if (attempt >= maxAttempts) {
+
+                    throw e;
+                }
+
+                LOG.debug(String.format("%s from url: %s, attempt %d of %d", e.getClass().getSimpleName(), connectionUrl, attempt, maxAttempts));
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException(String.format("Interrupted waiting to connect to url: %s", connectionUrl));
+            }
+
+            try {
+
+                Thread.sleep(retryBackoffMillis << (attempt - 1));
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException(String.format("Interrupted retrying url: %s", connectionUrl));
+            }
+        }
+    }
+
+    private String getUrl(Security security, LocalDate start, LocalDate end) {
+
+        String country = CurrencyAndCountry.CURRENCY_TO_COUNTRY.get(security.getCurrency());
+        String countryCode = country.equalsIgnoreCase("US") ? "" : country;
+
+        return String.format(MARKET_WATCH_URL, baseUrl, security.getValue(), countryCode, start.format(MARKET_WATCH_DATE_FORMAT), end.format(MARKET_WATCH_DATE_FORMAT));
+    }
 }
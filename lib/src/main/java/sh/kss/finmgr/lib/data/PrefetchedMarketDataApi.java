@@ -0,0 +1,136 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Closing prices loaded in bulk ahead of time, answering lookups inside the loaded ranges from memory and passing
+ * any other lookup on to the market data source, including those of the days the bulk load could not fetch. Ranges are loaded before the lookups start and are not changed
+ * after, so lookups may run concurrently.
+ *
+ */
+public class PrefetchedMarketDataApi implements MarketDataApi {
+
+    private final MarketDataApi marketDataApi;
+
+    private final Map<Security, Range> ranges = new HashMap<>();
+
+    /**
+     * @param marketDataApi answers the lookups outside of the loaded ranges
+     */
+    public PrefetchedMarketDataApi(MarketDataApi marketDataApi) {
+
+        this.marketDataApi = marketDataApi;
+    }
+
+    /**
+     * Load the closing prices of a range, as MarketDataApi.fetchClosingPrices returned them
+     *
+     * @param security the security
+     * @param from the first day of the range
+     * @param to the last day of the range (inclusive)
+     * @param closingPrices the closing prices of the range and the days that could not be fetched
+     */
+    public void put(Security security, LocalDate from, LocalDate to, ClosingPrices closingPrices) {
+
+        ranges.put(security, new Range(from, to, new HashMap<>(closingPrices.getClosingPrices()), new HashSet<>(closingPrices.getUnfetched())));
+    }
+
+    @Override
+    public Optional<MonetaryAmount> findClosingPrice(Security security, LocalDate date) {
+
+        Range range = ranges.get(security);
+
+        // The days the load could not fetch are left to the source
+        if (range != null && range.covers(date, date) && !range.unfetched.contains(date)) {
+
+            return Optional.ofNullable(range.closingPrices.get(date));
+        }
+
+        return marketDataApi.findClosingPrice(security, date);
+    }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, List<LocalDate> dates) {
+
+        Map<LocalDate, MonetaryAmount> closingPrices = new HashMap<>();
+
+        for (LocalDate date : dates) {
+
+            findClosingPrice(security, date)
+                .ifPresent(closingPrice -> closingPrices.put(date, closingPrice));
+        }
+
+        return closingPrices;
+    }
+
+    @Override
+    public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        return fetchClosingPrices(security, from, to).getClosingPrices();
+    }
+
+    @Override
+    public ClosingPrices fetchClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+        Range range = ranges.get(security);
+
+        if (range == null || !range.isFetched(from, to)) {
+
+            return marketDataApi.fetchClosingPrices(security, from, to);
+        }
+
+        Map<LocalDate, MonetaryAmount> closingPrices = new TreeMap<>();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            MonetaryAmount closingPrice = range.closingPrices.get(date);
+
+            if (closingPrice != null) {
+
+                closingPrices.put(date, closingPrice);
+            }
+        }
+
+        return new ClosingPrices(closingPrices, Set.of());
+    }
+
+    private record Range(LocalDate from, LocalDate to, Map<LocalDate, MonetaryAmount> closingPrices, Set<LocalDate> unfetched) {
+
+        boolean covers(LocalDate start, LocalDate end) {
+
+            return !start.isBefore(from) && !end.isAfter(to);
+        }
+
+        boolean isFetched(LocalDate start, LocalDate end) {
+
+            return covers(start, end) && unfetched.stream().noneMatch(date -> !date.isBefore(start) && !date.isAfter(end));
+        }
+    }
+}
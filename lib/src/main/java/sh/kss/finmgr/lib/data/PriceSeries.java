@@ -0,0 +1,267 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import org.javamoney.moneta.Money;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * The daily closes of one security, stored as a memory-mapped file of two columns indexed by the day since the
+ * first day of the series: the unscaled value of each close and its scale. The scale column also marks the days
+ * that have not been stored yet and the days known to have no close.
+ *
+ */
+final class PriceSeries implements AutoCloseable {
+
+    // Identifies a price series file
+    private static final int MAGIC = 0x464D5053;
+    // Bump whenever the file layout changes
+    private static final int VERSION = 1;
+    // Magic, version, first epoch day and capacity
+    private static final int HEADER_BYTES = 20;
+    // Capacity is grown in whole blocks of days so that appending a range rarely rewrites the file
+    private static final int BLOCK_DAYS = 512;
+
+    // Scale column values that are not scales
+    private static final byte MISSING = Byte.MIN_VALUE;
+    private static final byte NO_CLOSE = Byte.MIN_VALUE + 1;
+
+    private final Path path;
+    private final CurrencyUnit currency;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long firstDay;
+    private int capacity;
+
+    // Closes already decoded from the file, so repeated lookups do not build a new amount
+    private MonetaryAmount[] amounts;
+
+    private PriceSeries(Path path, CurrencyUnit currency) {
+
+        this.path = path;
+        this.currency = currency;
+    }
+
+    /**
+     * Open the series stored at the path, or an empty series if there is no file yet
+     *
+     * @param path the series file
+     * @param currency the currency of the closes
+     * @return the opened series
+     * @throws IOException if an existing file cannot be read
+     */
+    static PriceSeries open(Path path, CurrencyUnit currency) throws IOException {
+
+        PriceSeries series = new PriceSeries(path, currency);
+
+        if (Files.exists(path)) {
+
+            series.map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+
+            if (series.buffer.capacity() < HEADER_BYTES || series.buffer.getInt(0) != MAGIC || series.buffer.getInt(4) != VERSION) {
+
+                // Written with another layout, start over rather than misread it
+                series.close();
+                Files.delete(path);
+
+                return new PriceSeries(path, currency);
+            }
+        }
+
+        return series;
+    }
+
+    /**
+     * Whether the day has been stored, with or without a close
+     *
+     * @param date the day
+     * @return true if the day is stored
+     */
+    synchronized boolean contains(LocalDate date) {
+
+        int index = index(date);
+
+        return index >= 0 && index < capacity && buffer.get(scaleOffset(index)) != MISSING;
+    }
+
+    /**
+     * The stored close of the day
+     *
+     * @param date a stored day
+     * @return the close, empty if the day has none or is not stored
+     */
+    synchronized Optional<MonetaryAmount> get(LocalDate date) {
+
+        int index = index(date);
+
+        if (index < 0 || index >= capacity) {
+
+            return Optional.empty();
+        }
+
+        if (amounts[index] == null) {
+
+            byte scale = buffer.get(scaleOffset(index));
+
+            if (scale == MISSING || scale == NO_CLOSE) {
+
+                return Optional.empty();
+            }
+
+            amounts[index] = Money.of(BigDecimal.valueOf(buffer.getLong(unscaledOffset(index)), scale), currency);
+        }
+
+        return Optional.of(amounts[index]);
+    }
+
+    /**
+     * Store the close of a day
+     *
+     * @param date the day
+     * @param close the close, or null if the day has none
+     * @throws IOException if the file cannot be grown
+     */
+    synchronized void put(LocalDate date, MonetaryAmount close) throws IOException {
+
+        BigDecimal value = close != null ? close.getNumber().numberValue(BigDecimal.class) : null;
+
+        // Closes that do not fit the columns are left to be fetched again
+        if (value != null && (value.unscaledValue().bitLength() > 63 || value.scale() < NO_CLOSE + 1 || value.scale() > Byte.MAX_VALUE)) {
+
+            return;
+        }
+
+        ensureCapacity(date);
+
+        int index = index(date);
+
+        if (value != null) {
+
+            buffer.putLong(unscaledOffset(index), value.unscaledValue().longValue());
+            buffer.put(scaleOffset(index), (byte) value.scale());
+
+        } else {
+
+            buffer.put(scaleOffset(index), NO_CLOSE);
+        }
+
+        amounts[index] = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        if (channel != null) {
+
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Grow the series to cover the day, rewriting the file with the stored days copied to their new positions
+     *
+     * @param date the day to cover
+     * @throws IOException if the file cannot be written
+     */
+    private void ensureCapacity(LocalDate date) throws IOException {
+
+        long day = date.toEpochDay();
+
+        if (channel != null && day >= firstDay && day < firstDay + capacity) {
+
+            return;
+        }
+
+        long newFirstDay = channel == null ? Math.floorDiv(day, BLOCK_DAYS) * BLOCK_DAYS : Math.min(firstDay, Math.floorDiv(day, BLOCK_DAYS) * BLOCK_DAYS);
+        long newEndDay = channel == null ? newFirstDay + BLOCK_DAYS : Math.max(firstDay + capacity, (Math.floorDiv(day, BLOCK_DAYS) + 1) * BLOCK_DAYS);
+        int newCapacity = Math.toIntExact(newEndDay - newFirstDay);
+
+        Files.createDirectories(path.getParent());
+        Path grown = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel out = FileChannel.open(grown, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) newCapacity * (Long.BYTES + 1));
+
+            target.putInt(0, MAGIC);
+            target.putInt(4, VERSION);
+            target.putLong(8, newFirstDay);
+            target.putInt(16, newCapacity);
+
+            int shift = Math.toIntExact(firstDay - newFirstDay);
+
+            for (int i = 0; i < newCapacity; i++) {
+
+                target.put(HEADER_BYTES + newCapacity * Long.BYTES + i, MISSING);
+            }
+
+            for (int i = 0; channel != null && i < capacity; i++) {
+
+                target.putLong(HEADER_BYTES + (shift + i) * Long.BYTES, buffer.getLong(unscaledOffset(i)));
+                target.put(HEADER_BYTES + newCapacity * Long.BYTES + shift + i, buffer.get(scaleOffset(i)));
+            }
+
+            target.force();
+        }
+
+        close();
+        Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    private void map(FileChannel channel) throws IOException {
+
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        this.firstDay = channel.size() >= HEADER_BYTES ? buffer.getLong(8) : 0;
+        this.capacity = channel.size() >= HEADER_BYTES && buffer.getInt(16) * (Long.BYTES + 1L) + HEADER_BYTES <= channel.size() ? buffer.getInt(16) : 0;
+        this.amounts = new MonetaryAmount[capacity];
+    }
+
+    private int index(LocalDate date) {
+
+        long index = date.toEpochDay() - firstDay;
+
+        return channel == null || index < 0 || index >= capacity ? -1 : (int) index;
+    }
+
+    private int unscaledOffset(int index) {
+
+        return HEADER_BYTES + index * Long.BYTES;
+    }
+
+    private int scaleOffset(int index) {
+
+        return HEADER_BYTES + capacity * Long.BYTES + index;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+/**
+ * Spaces out requests to a host so that no more than a fixed number start each second. Callers reserve the next
+ * free slot under a lock and wait for it outside of the lock, so waiting callers do not block each other's
+ * reservations.
+ *
+ */
+final class RateLimiter {
+
+    // Minimum time between the start of two requests, zero when unlimited
+    private final long intervalNanos;
+
+    // The earliest time the next request may start
+    private long nextSlot = System.nanoTime();
+
+    RateLimiter(double permitsPerSecond) {
+
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (1_000_000_000L / permitsPerSecond) : 0;
+    }
+
+    /**
+     * Wait until a request may start
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+
+        if (intervalNanos == 0) {
+
+            return;
+        }
+
+        long slot;
+
+        synchronized (this) {
+
+            long now = System.nanoTime();
+
+            slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+        }
+
+        long wait = slot - System.nanoTime();
+
+        if (wait > 0) {
+
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package sh.kss.finmgr.lib.entity;
 
+import lombok.EqualsAndHashCode;
 import lombok.Value;
 
 /**
@@ -24,6 +25,7 @@ import lombok.Value;
  *
  */
 @Value
+@EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
 public class Account {
 
     public static final Account UNKNOWN = new Account("UNKNOWN", "UNKNOWN", AccountType.NON_REGISTERED);
@@ -0,0 +1,181 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The outputs of daily operations over a range of days, stored as change points. Each account type and operation
+ * keeps its output only on the days it changed, and every other day takes the output of the last change point
+ * before it, so a long run of unchanged days costs nothing.
+ *
+ */
+public class DailyResults {
+
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    // The change points of each account type and operation name
+    private final Map<AccountType, Map<String, NavigableMap<LocalDate, Map<Security, MonetaryAmount>>>> changePoints = new HashMap<>();
+
+    private int changePointCount;
+
+    /**
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range (inclusive)
+     */
+    public DailyResults(LocalDate startDate, LocalDate endDate) {
+
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public LocalDate getStartDate() {
+
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+
+        return endDate;
+    }
+
+    /**
+     * The change points of each account type and operation, read by ResultCube
+     *
+     * @return the change points by account type and operation name
+     */
+    Map<AccountType, Map<String, NavigableMap<LocalDate, Map<Security, MonetaryAmount>>>> getChangePoints() {
+
+        return changePoints;
+    }
+
+    /**
+     * Record the output of an operation on a day, keeping it only if it differs from the output in effect
+     *
+     * @param accountType the account type the output is for
+     * @param operation the name of the operation
+     * @param date the day, not before the last recorded day of the account type and operation
+     * @param output the output of the operation
+     * @return true if a change point was added
+     */
+    public boolean put(AccountType accountType, String operation, LocalDate date, Map<Security, MonetaryAmount> output) {
+
+        NavigableMap<LocalDate, Map<Security, MonetaryAmount>> points = changePoints
+            .computeIfAbsent(accountType, a -> new HashMap<>())
+            .computeIfAbsent(operation, o -> new TreeMap<>());
+
+        Map.Entry<LocalDate, Map<Security, MonetaryAmount>> last = points.lastEntry();
+
+        if (last != null && last.getValue().equals(output)) {
+
+            return false;
+        }
+
+        points.put(date, output);
+        changePointCount++;
+
+        return true;
+    }
+
+    /**
+     * The output of an operation on a day
+     *
+     * @param date the day
+     * @param accountType the account type
+     * @param operation the name of the operation
+     * @return the output in effect on the day, or null if there was none yet
+     */
+    public Map<Security, MonetaryAmount> get(LocalDate date, AccountType accountType, String operation) {
+
+        if (date.isBefore(startDate) || date.isAfter(endDate)) {
+
+            return null;
+        }
+
+        NavigableMap<LocalDate, Map<Security, MonetaryAmount>> points = changePoints.getOrDefault(accountType, Map.of()).get(operation);
+        Map.Entry<LocalDate, Map<Security, MonetaryAmount>> point = points != null ? points.floorEntry(date) : null;
+
+        return point != null ? point.getValue() : null;
+    }
+
+    /**
+     * The outputs of every account type and operation on a day, in the layout of Run.process
+     *
+     * @param date the day
+     * @return the outputs by account type and operation name
+     */
+    public Map<AccountType, Map<String, Map<Security, MonetaryAmount>>> get(LocalDate date) {
+
+        Map<AccountType, Map<String, Map<Security, MonetaryAmount>>> accountResults = new HashMap<>();
+
+        for (Map.Entry<AccountType, Map<String, NavigableMap<LocalDate, Map<Security, MonetaryAmount>>>> account : changePoints.entrySet()) {
+
+            Map<String, Map<Security, MonetaryAmount>> securityResults = new HashMap<>();
+
+            for (String operation : account.getValue().keySet()) {
+
+                Map<Security, MonetaryAmount> output = get(date, account.getKey(), operation);
+
+                if (output != null) {
+
+                    securityResults.put(operation, output);
+                }
+            }
+
+            if (!securityResults.isEmpty()) {
+
+                accountResults.put(account.getKey(), securityResults);
+            }
+        }
+
+        return accountResults;
+    }
+
+    /**
+     * Expand the change points into one entry per day, as Run.process returns them
+     *
+     * @return the outputs of every day of the range
+     */
+    public Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> toDailyMap() {
+
+        Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> resultSet = new HashMap<>();
+
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+
+            resultSet.put(date, get(date));
+        }
+
+        return resultSet;
+    }
+
+    /**
+     * The number of outputs stored across all account types and operations
+     *
+     * @return the change point count
+     */
+    public int getChangePointCount() {
+
+        return changePointCount;
+    }
+}
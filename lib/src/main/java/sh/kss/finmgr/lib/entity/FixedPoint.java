@@ -0,0 +1,116 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * Arithmetic on decimals held as an unscaled long and a scale, with the same results BigDecimal gives. Any step that
+ * does not fit in a long throws ArithmeticException so the caller can fall back to BigDecimal.
+ *
+ */
+final class FixedPoint {
+
+    // The largest scale held as a long, 10^MAX_SCALE still fits
+    static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+
+        POWERS_OF_TEN[0] = 1;
+
+        for (int i = 1; i <= MAX_SCALE; i++) {
+
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+
+    }
+
+    /**
+     * Whether a decimal can be held as an unscaled long
+     *
+     * @param value the decimal
+     * @return true if the scale is between 0 and MAX_SCALE and the unscaled value fits in a long
+     */
+    static boolean fits(BigDecimal value) {
+
+        return value.scale() >= 0 && value.scale() <= MAX_SCALE && value.precision() <= MAX_SCALE;
+    }
+
+    /**
+     * The unscaled value of a decimal that fits
+     *
+     * @param value the decimal
+     * @return the unscaled long
+     */
+    static long unscaled(BigDecimal value) {
+
+        return value.scale() == 0 ? value.longValueExact() : value.movePointRight(value.scale()).longValueExact();
+    }
+
+    /**
+     * Add two fixed point values, the result has the larger of the two scales as BigDecimal.add does
+     *
+     * @param a the first unscaled value
+     * @param aScale the scale of the first value
+     * @param b the second unscaled value
+     * @param bScale the scale of the second value
+     * @return the unscaled sum at scale max(aScale, bScale)
+     * @throws ArithmeticException if the sum does not fit in a long
+     */
+    static long add(long a, int aScale, long b, int bScale) {
+
+        int scale = Math.max(aScale, bScale);
+
+        return Math.addExact(rescale(a, aScale, scale), rescale(b, bScale, scale));
+    }
+
+    /**
+     * The number of decimal digits in an unscaled value, at most MAX_SCALE + 1
+     *
+     * @param unscaled the unscaled value
+     * @return the digit count
+     */
+    static int digits(long unscaled) {
+
+        long magnitude = Math.abs(unscaled);
+        int digits = 1;
+
+        // Long.MIN_VALUE stays negative and has more digits than anything held
+        while (digits <= MAX_SCALE && (magnitude < 0 || magnitude >= POWERS_OF_TEN[digits])) {
+
+            digits++;
+        }
+
+        return digits;
+    }
+
+    static BigDecimal toBigDecimal(long unscaled, int scale) {
+
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private static long rescale(long unscaled, int fromScale, int toScale) {
+
+        return fromScale == toScale ? unscaled : Math.multiplyExact(unscaled, POWERS_OF_TEN[toScale - fromScale]);
+    }
+}
@@ -0,0 +1,372 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import org.javamoney.moneta.Money;
+import org.javamoney.moneta.spi.MoneyUtils;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import javax.money.MonetaryContext;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A holding accumulator that keeps quantities and cost bases as scaled longs, so replaying buys, reinvestments and
+ * distributions does no BigDecimal or Money arithmetic. Values that do not fit in a long, such as the cost basis left
+ * by an average cost division, fall back to BigDecimal using the same rounding and normalization Money applies, which
+ * avoids the string round trip Money makes on every result. Amounts are only converted to Money at the accessors and
+ * in snapshots, and every result is equal to the one HoldingAccumulatorImpl gives.
+ *
+ */
+public class FixedPointHoldingAccumulator implements HoldingAccumulator {
+
+    // Money rounds to its default context, so only sums with no more digits than it keeps are added as longs
+    private static final int MONEY_DIGITS;
+    private static final MathContext MONEY_MATH_CONTEXT;
+    // A maximum scale makes Money round in ways the fallback does not follow, so every amount is left to Money
+    private static final boolean MONEY_SUPPORTED;
+
+    static {
+
+        MonetaryContext context = Money.DEFAULT_MONETARY_CONTEXT;
+
+        MONEY_DIGITS = context.getPrecision() == 0 ? FixedPoint.MAX_SCALE : Math.min(context.getPrecision(), FixedPoint.MAX_SCALE);
+        MONEY_MATH_CONTEXT = MoneyUtils.getMathContext(context, RoundingMode.HALF_EVEN);
+        MONEY_SUPPORTED = context.getMaxScale() <= 0;
+    }
+
+    private final Set<Security> securities;
+    private final Map<Security, Position> positions = new HashMap<>();
+
+    public FixedPointHoldingAccumulator(Holding holding) {
+
+        this.securities = new HashSet<>(holding.getSecurities());
+
+        for (Map.Entry<Security, Quantity> entry : holding.getQuantities().entrySet()) {
+
+            setQuantity(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<Security, MonetaryAmount> entry : holding.getCostBasis().entrySet()) {
+
+            setCostBasis(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Quantity getQuantity(Security security) {
+
+        Position position = positions.get(security);
+
+        return position != null && position.held ? new Quantity(position.quantityValue()) : null;
+    }
+
+    @Override
+    public void setQuantity(Security security, Quantity quantity) {
+
+        Position position = position(security);
+
+        position.held = quantity != null;
+
+        if (quantity != null) {
+
+            position.setQuantity(quantity.getValue());
+        }
+    }
+
+    @Override
+    public void addQuantity(Security security, BigDecimal quantity) {
+
+        Position position = position(security);
+
+        // Start from Quantity.ZERO, which has a scale of zero
+        if (!position.held) {
+
+            position.held = true;
+            position.setQuantity(BigDecimal.ZERO);
+        }
+
+        if (position.quantityOverflow == null && FixedPoint.fits(quantity)) {
+
+            try {
+
+                position.quantity = FixedPoint.add(position.quantity, position.quantityScale, FixedPoint.unscaled(quantity), quantity.scale());
+                position.quantityScale = Math.max(position.quantityScale, quantity.scale());
+
+                return;
+
+            } catch (ArithmeticException e) {
+
+                // Fall through to BigDecimal
+            }
+        }
+
+        position.setQuantity(position.quantityValue().add(quantity));
+    }
+
+    @Override
+    public boolean isQuantityZero(Security security) {
+
+        Position position = positions.get(security);
+
+        if (position == null || !position.held) {
+
+            throw new NullPointerException(String.format("No quantity held of %s", security));
+        }
+
+        if (position.quantityOverflow != null) {
+
+            return position.quantityOverflow.equals(BigDecimal.ZERO);
+        }
+
+        return position.quantity == 0 && position.quantityScale == 0;
+    }
+
+    @Override
+    public MonetaryAmount getCostBasis(Security security) {
+
+        Position position = positions.get(security);
+
+        return position != null && position.currency != null ? position.costBasisValue() : null;
+    }
+
+    @Override
+    public void setCostBasis(Security security, MonetaryAmount costBasis) {
+
+        Position position = position(security);
+
+        if (costBasis == null) {
+
+            position.currency = null;
+
+        } else {
+
+            position.setCostBasis(costBasis);
+        }
+    }
+
+    @Override
+    public void addCostBasis(Security security, MonetaryAmount amount, CurrencyUnit currency) {
+
+        Position position = position(security);
+
+        if (position.currency == null) {
+
+            position.setCostBasis(currency, 0, 0);
+        }
+
+        // Only amounts in the same currency are added here, Money reports the mismatch otherwise
+        if (MONEY_SUPPORTED && position.costBasisAmount == null && sameCurrency(position.currency, amount.getCurrency())) {
+
+            // Money returns the amount unchanged when adding zero
+            if (amount.isZero()) {
+
+                return;
+            }
+
+            BigDecimal value = amount.getNumber().numberValue(BigDecimal.class);
+
+            if (position.costBasisDecimal == null && FixedPoint.fits(value)) {
+
+                try {
+
+                    long sum = FixedPoint.add(position.costBasis, position.costBasisScale, FixedPoint.unscaled(value), value.scale());
+
+                    if (FixedPoint.digits(sum) <= MONEY_DIGITS) {
+
+                        position.costBasis = sum;
+                        position.costBasisScale = Math.max(position.costBasisScale, value.scale());
+
+                        return;
+                    }
+
+                } catch (ArithmeticException e) {
+
+                    // Fall through to BigDecimal
+                }
+            }
+
+            position.setCostBasis(position.currency, normalize(position.costBasisDecimal().add(value, MONEY_MATH_CONTEXT)));
+
+            return;
+        }
+
+        position.setCostBasis(position.costBasisValue().add(amount));
+    }
+
+    @Override
+    public void resetCostBasis(Security security, CurrencyUnit currency) {
+
+        position(security).setCostBasis(currency, 0, 0);
+    }
+
+    @Override
+    public void addSecurity(Security security) {
+
+        securities.add(security);
+    }
+
+    @Override
+    public void removeSecurity(Security security) {
+
+        securities.remove(security);
+    }
+
+    @Override
+    public Holding snapshot() {
+
+        Map<Security, Quantity> quantities = new HashMap<>();
+        Map<Security, MonetaryAmount> costBasis = new HashMap<>();
+
+        for (Map.Entry<Security, Position> entry : positions.entrySet()) {
+
+            Position position = entry.getValue();
+
+            if (position.held) {
+
+                quantities.put(entry.getKey(), new Quantity(position.quantityValue()));
+            }
+
+            if (position.currency != null) {
+
+                costBasis.put(entry.getKey(), position.costBasisValue());
+            }
+        }
+
+        return new Holding(Set.copyOf(securities), Map.copyOf(quantities), Map.copyOf(costBasis));
+    }
+
+    private Position position(Security security) {
+
+        return positions.computeIfAbsent(security, s -> new Position());
+    }
+
+    /**
+     * Normalize a decimal the way Money does when it stores a number, dropping trailing zeros from the fraction
+     *
+     * @param value the decimal
+     * @return the normalized decimal
+     */
+    private static BigDecimal normalize(BigDecimal value) {
+
+        if (value.signum() == 0) {
+
+            return BigDecimal.ZERO;
+        }
+
+        return value.scale() > 0 ? value.stripTrailingZeros() : value;
+    }
+
+    private static boolean sameCurrency(CurrencyUnit a, CurrencyUnit b) {
+
+        return a == b || a.getCurrencyCode().equals(b.getCurrencyCode());
+    }
+
+    /**
+     * The quantity and cost basis of one security. Each is an unscaled long and a scale, or a BigDecimal when it does
+     * not fit. A cost basis that is not Money in the default context is kept as given.
+     *
+     */
+    private static final class Position {
+
+        boolean held;
+        long quantity;
+        int quantityScale;
+        BigDecimal quantityOverflow;
+
+        // Null when no cost basis has been recorded
+        CurrencyUnit currency;
+        long costBasis;
+        int costBasisScale;
+        BigDecimal costBasisDecimal;
+        MonetaryAmount costBasisAmount;
+
+        void setQuantity(BigDecimal value) {
+
+            if (FixedPoint.fits(value)) {
+
+                quantity = FixedPoint.unscaled(value);
+                quantityScale = value.scale();
+                quantityOverflow = null;
+
+            } else {
+
+                quantityOverflow = value;
+            }
+        }
+
+        BigDecimal quantityValue() {
+
+            return quantityOverflow != null ? quantityOverflow : FixedPoint.toBigDecimal(quantity, quantityScale);
+        }
+
+        void setCostBasis(MonetaryAmount value) {
+
+            // Only Money in the default context follows the arithmetic here
+            if (MONEY_SUPPORTED && value instanceof Money money && money.getContext() == Money.DEFAULT_MONETARY_CONTEXT) {
+
+                setCostBasis(money.getCurrency(), money.getNumber().numberValue(BigDecimal.class));
+
+            } else {
+
+                currency = value.getCurrency();
+                costBasisDecimal = null;
+                costBasisAmount = value;
+            }
+        }
+
+        void setCostBasis(CurrencyUnit currency, BigDecimal value) {
+
+            if (FixedPoint.fits(value) && value.precision() <= MONEY_DIGITS) {
+
+                setCostBasis(currency, FixedPoint.unscaled(value), value.scale());
+
+            } else {
+
+                this.currency = currency;
+                costBasisDecimal = value;
+                costBasisAmount = null;
+            }
+        }
+
+        void setCostBasis(CurrencyUnit currency, long unscaled, int scale) {
+
+            this.currency = currency;
+            costBasis = unscaled;
+            costBasisScale = scale;
+            costBasisDecimal = null;
+            costBasisAmount = null;
+        }
+
+        BigDecimal costBasisDecimal() {
+
+            return costBasisDecimal != null ? costBasisDecimal : FixedPoint.toBigDecimal(costBasis, costBasisScale);
+        }
+
+        MonetaryAmount costBasisValue() {
+
+            return costBasisAmount != null ? costBasisAmount : Money.of(costBasisDecimal(), currency);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import org.javamoney.moneta.Money;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+
+/**
+ * A mutable working copy of a holding, updated in place by transaction operations while a run accumulates. An
+ * immutable Holding is only built when a snapshot is taken.
+ *
+ */
+public interface HoldingAccumulator {
+
+    /**
+     * The quantity held of a security
+     *
+     * @param security the security
+     * @return the quantity, or null if the security has never been held
+     */
+    Quantity getQuantity(Security security);
+
+    void setQuantity(Security security, Quantity quantity);
+
+    /**
+     * The total cost basis of a security
+     *
+     * @param security the security
+     * @return the cost basis, or null if none has been recorded
+     */
+    MonetaryAmount getCostBasis(Security security);
+
+    void setCostBasis(Security security, MonetaryAmount costBasis);
+
+    void addSecurity(Security security);
+
+    void removeSecurity(Security security);
+
+    /**
+     * Add to the quantity held of a security, starting from zero if it has never been held
+     *
+     * @param security the security
+     * @param quantity the quantity to add, negative for a sale
+     */
+    default void addQuantity(Security security, BigDecimal quantity) {
+
+        Quantity held = getQuantity(security);
+        if (held == null) {
+            held = Quantity.ZERO;
+        }
+
+        setQuantity(security, held.withValue(held.getValue().add(quantity)));
+    }
+
+    /**
+     * Add to the cost basis of a security, starting from zero in the given currency if none has been recorded
+     *
+     * @param security the security
+     * @param amount the amount to add
+     * @param currency the currency of a new cost basis
+     */
+    default void addCostBasis(Security security, MonetaryAmount amount, CurrencyUnit currency) {
+
+        MonetaryAmount costBasis = getCostBasis(security);
+        if (costBasis == null) {
+            costBasis = Money.of(0, currency);
+        }
+
+        setCostBasis(security, costBasis.add(amount));
+    }
+
+    /**
+     * Set the cost basis of a security to zero
+     *
+     * @param security the security
+     * @param currency the currency of the cost basis
+     */
+    default void resetCostBasis(Security security, CurrencyUnit currency) {
+
+        setCostBasis(security, Money.of(0, currency));
+    }
+
+    /**
+     * Whether the quantity held of a security is zero, compared with BigDecimal.equals so a zero with a scale such
+     * as 0.0 is not zero
+     *
+     * @param security the security
+     * @return true if the quantity is BigDecimal.ZERO
+     * @throws NullPointerException if the security has never been held
+     */
+    default boolean isQuantityZero(Security security) {
+
+        return getQuantity(security).getValue().equals(BigDecimal.ZERO);
+    }
+
+    /**
+     * Copy the current state into an immutable holding
+     *
+     * @return the holding
+     */
+    Holding snapshot();
+}
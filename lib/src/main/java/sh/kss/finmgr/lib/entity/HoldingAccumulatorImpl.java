@@ -0,0 +1,84 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import javax.money.MonetaryAmount;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A holding accumulator backed by hash maps, holding the same values a Holding would
+ *
+ */
+public class HoldingAccumulatorImpl implements HoldingAccumulator {
+
+    private final Set<Security> securities;
+    private final Map<Security, Quantity> quantities;
+    private final Map<Security, MonetaryAmount> costBasis;
+
+    public HoldingAccumulatorImpl(Holding holding) {
+
+        this.securities = new HashSet<>(holding.getSecurities());
+        this.quantities = new HashMap<>(holding.getQuantities());
+        this.costBasis = new HashMap<>(holding.getCostBasis());
+    }
+
+    @Override
+    public Quantity getQuantity(Security security) {
+
+        return quantities.get(security);
+    }
+
+    @Override
+    public void setQuantity(Security security, Quantity quantity) {
+
+        quantities.put(security, quantity);
+    }
+
+    @Override
+    public MonetaryAmount getCostBasis(Security security) {
+
+        return costBasis.get(security);
+    }
+
+    @Override
+    public void setCostBasis(Security security, MonetaryAmount costBasis) {
+
+        this.costBasis.put(security, costBasis);
+    }
+
+    @Override
+    public void addSecurity(Security security) {
+
+        securities.add(security);
+    }
+
+    @Override
+    public void removeSecurity(Security security) {
+
+        securities.remove(security);
+    }
+
+    @Override
+    public Holding snapshot() {
+
+        return new Holding(Set.copyOf(securities), Map.copyOf(quantities), Map.copyOf(costBasis));
+    }
+}
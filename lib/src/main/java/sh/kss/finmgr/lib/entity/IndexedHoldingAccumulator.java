@@ -0,0 +1,157 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import javax.money.MonetaryAmount;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A holding accumulator that indexes quantities and cost bases by the dense id a registry gives each security, so
+ * updates are array writes rather than hash map puts. Snapshots hold the canonical securities from the registry.
+ *
+ */
+public class IndexedHoldingAccumulator implements HoldingAccumulator {
+
+    private final EntityRegistry registry;
+
+    private final BitSet securities = new BitSet();
+    private Quantity[] quantities = new Quantity[0];
+    private MonetaryAmount[] costBasis = new MonetaryAmount[0];
+
+    public IndexedHoldingAccumulator(Holding holding, EntityRegistry registry) {
+
+        this.registry = registry;
+
+        for (Security security : holding.getSecurities()) {
+
+            addSecurity(security);
+        }
+
+        for (Map.Entry<Security, Quantity> entry : holding.getQuantities().entrySet()) {
+
+            setQuantity(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<Security, MonetaryAmount> entry : holding.getCostBasis().entrySet()) {
+
+            setCostBasis(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Quantity getQuantity(Security security) {
+
+        int id = registry.getSecurityId(security);
+
+        return id < quantities.length ? quantities[id] : null;
+    }
+
+    @Override
+    public void setQuantity(Security security, Quantity quantity) {
+
+        // Grow before reading the array field
+        int id = index(security);
+
+        quantities[id] = quantity;
+    }
+
+    @Override
+    public MonetaryAmount getCostBasis(Security security) {
+
+        int id = registry.getSecurityId(security);
+
+        return id < costBasis.length ? costBasis[id] : null;
+    }
+
+    @Override
+    public void setCostBasis(Security security, MonetaryAmount costBasis) {
+
+        int id = index(security);
+
+        this.costBasis[id] = costBasis;
+    }
+
+    @Override
+    public void addSecurity(Security security) {
+
+        securities.set(registry.getSecurityId(security));
+    }
+
+    @Override
+    public void removeSecurity(Security security) {
+
+        securities.clear(registry.getSecurityId(security));
+    }
+
+    @Override
+    public Holding snapshot() {
+
+        Set<Security> securities = new HashSet<>();
+        Map<Security, Quantity> quantities = new HashMap<>();
+        Map<Security, MonetaryAmount> costBasis = new HashMap<>();
+
+        for (int id = this.securities.nextSetBit(0); id >= 0; id = this.securities.nextSetBit(id + 1)) {
+
+            securities.add(registry.getSecurity(id));
+        }
+
+        for (int id = 0; id < this.quantities.length; id++) {
+
+            if (this.quantities[id] != null) {
+
+                quantities.put(registry.getSecurity(id), this.quantities[id]);
+            }
+
+            if (this.costBasis[id] != null) {
+
+                costBasis.put(registry.getSecurity(id), this.costBasis[id]);
+            }
+        }
+
+        return new Holding(Set.copyOf(securities), Map.copyOf(quantities), Map.copyOf(costBasis));
+    }
+
+    /**
+     * The id of a security, growing the arrays to hold it
+     *
+     * @param security the security
+     * @return the id
+     */
+    private int index(Security security) {
+
+        int id = registry.getSecurityId(security);
+
+        if (id >= quantities.length) {
+
+            // Size for every security registered so far, the registry is usually shared by many holdings
+            int length = Math.max(id + 1, registry.getSecurityCount());
+
+            quantities = Arrays.copyOf(quantities, length);
+            costBasis = Arrays.copyOf(costBasis, length);
+        }
+
+        return id;
+    }
+}
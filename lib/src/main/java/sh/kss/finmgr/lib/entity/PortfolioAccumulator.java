@@ -0,0 +1,92 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The mutable working state of a portfolio while a run accumulates transactions. Holdings are updated in place, so
+ * replaying transactions allocates only what the operations themselves allocate, and immutable Portfolio snapshots
+ * are taken only when asked for.
+ *
+ */
+public class PortfolioAccumulator {
+
+    private final Map<AccountType, HoldingAccumulator> holdings = new EnumMap<>(AccountType.class);
+    // Creates the working copy of a holding
+    private final Function<Holding, HoldingAccumulator> holdingFactory;
+
+    public PortfolioAccumulator(Portfolio portfolio) {
+
+        this(portfolio, HoldingAccumulatorImpl::new);
+    }
+
+    public PortfolioAccumulator(Portfolio portfolio, Function<Holding, HoldingAccumulator> holdingFactory) {
+
+        this.holdingFactory = holdingFactory;
+
+        reset(portfolio);
+    }
+
+    /**
+     * The working copy of the holding for an account type, created empty if the portfolio has none
+     *
+     * @param accountType the account type
+     * @return the holding accumulator
+     */
+    public HoldingAccumulator getHolding(AccountType accountType) {
+
+        return holdings.computeIfAbsent(accountType, type -> holdingFactory.apply(Holding.EMPTY));
+    }
+
+    /**
+     * Replace the working state with the holdings of a portfolio
+     *
+     * @param portfolio the portfolio to copy
+     */
+    public void reset(Portfolio portfolio) {
+
+        holdings.clear();
+
+        for (Map.Entry<AccountType, Holding> entry : portfolio.getHoldings().entrySet()) {
+
+            holdings.put(entry.getKey(), holdingFactory.apply(entry.getValue()));
+        }
+    }
+
+    /**
+     * Copy the working state into an immutable portfolio
+     *
+     * @return the portfolio
+     */
+    public Portfolio snapshot() {
+
+        Map<AccountType, Holding> snapshot = new EnumMap<>(AccountType.class);
+
+        for (Map.Entry<AccountType, HoldingAccumulator> entry : holdings.entrySet()) {
+
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        return Portfolio.builder()
+            .holdings(Map.copyOf(snapshot))
+            .build();
+    }
+}
@@ -0,0 +1,555 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import org.javamoney.moneta.Money;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The outputs of daily operations over a range of days, held in columns of primitive arrays rather than nested maps.
+ * Each (account type, operation, security) that has an output gets a column with one cell per day, holding the
+ * unscaled value and scale of the amount. The account types, operations and securities are numbered in the order
+ * they are first seen, so a cell can be addressed by (dateIdx, accountIdx, operationIdx, securityIdx).
+ *
+ */
+public class ResultCube {
+
+    // Scales that mark a cell without a value, or with a value kept outside of the columns
+    private static final byte ABSENT = Byte.MIN_VALUE;
+    private static final byte OVERFLOW = Byte.MIN_VALUE + 1;
+
+    private final LocalDate startDate;
+    private final int days;
+
+    private final List<AccountType> accountTypes = new ArrayList<>();
+    private final List<String> operations = new ArrayList<>();
+    private final List<Security> securities = new ArrayList<>();
+
+    private final Map<AccountType, Integer> accountIndex = new HashMap<>();
+    private final Map<String, Integer> operationIndex = new HashMap<>();
+    private final Map<Security, Integer> securityIndex = new HashMap<>();
+
+    // The days each account type and operation has an output on, which may be empty
+    private final Map<Integer, BitSet> outputs = new HashMap<>();
+    // The columns of each account type and operation
+    private final Map<Integer, List<Column>> columnsByOutput = new HashMap<>();
+    private final Map<Long, Column> columns = new HashMap<>();
+
+    /**
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range (inclusive)
+     */
+    public ResultCube(LocalDate startDate, LocalDate endDate) {
+
+        this.startDate = startDate;
+        this.days = Math.toIntExact(endDate.toEpochDay() - startDate.toEpochDay() + 1);
+    }
+
+    /**
+     * Build a cube from the change points of an incremental evaluation, filling each run of unchanged days at once
+     *
+     * @param results the daily results
+     * @return the cube of every day of the results
+     */
+    public static ResultCube of(DailyResults results) {
+
+        ResultCube cube = new ResultCube(results.getStartDate(), results.getEndDate());
+
+        results.getChangePoints().forEach((accountType, byOperation) -> byOperation.forEach((operation, points) -> {
+
+            LocalDate[] dates = points.keySet().toArray(LocalDate[]::new);
+
+            for (int i = 0; i < dates.length; i++) {
+
+                int from = Math.max(0, cube.dateIndex(dates[i]));
+                int to = i + 1 < dates.length ? cube.dateIndex(dates[i + 1]) : cube.days;
+
+                if (from < to) {
+
+                    cube.put(from, to, accountType, operation, points.get(dates[i]));
+                }
+            }
+        }));
+
+        return cube;
+    }
+
+    /**
+     * Build a cube from the daily result of Run.process
+     *
+     * @param resultSet the outputs of each day
+     * @param startDate the first day of the range
+     * @param endDate the last day of the range (inclusive)
+     * @return the cube of the range
+     */
+    public static ResultCube of(Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> resultSet, LocalDate startDate, LocalDate endDate) {
+
+        ResultCube cube = new ResultCube(startDate, endDate);
+
+        resultSet.forEach((date, accountResults) -> accountResults.forEach((accountType, securityResults) ->
+            securityResults.forEach((operation, output) -> cube.put(date, accountType, operation, output))));
+
+        return cube;
+    }
+
+    /**
+     * Record the output of an operation on a day
+     *
+     * @param date the day
+     * @param accountType the account type the output is for
+     * @param operation the name of the operation
+     * @param output the output of the operation
+     */
+    public void put(LocalDate date, AccountType accountType, String operation, Map<Security, MonetaryAmount> output) {
+
+        int dateIdx = dateIndex(date);
+
+        if (dateIdx >= 0 && dateIdx < days) {
+
+            put(dateIdx, dateIdx + 1, accountType, operation, output);
+        }
+    }
+
+    public LocalDate getStartDate() {
+
+        return startDate;
+    }
+
+    public int getDayCount() {
+
+        return days;
+    }
+
+    public List<AccountType> getAccountTypes() {
+
+        return Collections.unmodifiableList(accountTypes);
+    }
+
+    public List<String> getOperations() {
+
+        return Collections.unmodifiableList(operations);
+    }
+
+    public List<Security> getSecurities() {
+
+        return Collections.unmodifiableList(securities);
+    }
+
+    /**
+     * The number of columns, each holding one cell per day
+     *
+     * @return the column count
+     */
+    public int getColumnCount() {
+
+        return columns.size();
+    }
+
+    /**
+     * The value of a cell
+     *
+     * @param dateIdx the day, counted from the start date
+     * @param accountIdx the account type, as numbered in getAccountTypes
+     * @param operationIdx the operation, as numbered in getOperations
+     * @param securityIdx the security, as numbered in getSecurities
+     * @return the value, or null if the cell is empty
+     */
+    public MonetaryAmount get(int dateIdx, int accountIdx, int operationIdx, int securityIdx) {
+
+        Column column = columns.get(columnKey(outputKey(accountIdx, operationIdx), securityIdx));
+
+        return column != null ? column.get(dateIdx) : null;
+    }
+
+    /**
+     * The value of a security in the output of an operation on a day
+     *
+     * @param date the day
+     * @param accountType the account type
+     * @param operation the name of the operation
+     * @param security the security
+     * @return the value, or null if there is none
+     */
+    public MonetaryAmount get(LocalDate date, AccountType accountType, String operation, Security security) {
+
+        Column column = getColumn(accountType, operation, security);
+        int dateIdx = dateIndex(date);
+
+        return column != null && dateIdx >= 0 && dateIdx < days ? column.get(dateIdx) : null;
+    }
+
+    /**
+     * The value of a security in the output of an operation on every day of the range
+     *
+     * @param accountType the account type
+     * @param operation the name of the operation
+     * @param security the security
+     * @return the value of each day by day index, null on the days without one
+     */
+    public MonetaryAmount[] getTimeSeries(AccountType accountType, String operation, Security security) {
+
+        MonetaryAmount[] series = new MonetaryAmount[days];
+        Column column = getColumn(accountType, operation, security);
+
+        if (column != null) {
+
+            // Consecutive equal cells share one amount
+            for (int i = 0; i < days; i++) {
+
+                series[i] = i > 0 && column.sameAs(i - 1, i) ? series[i - 1] : column.get(i);
+            }
+        }
+
+        return series;
+    }
+
+    /**
+     * The sum of the output of an operation across the securities of an account type on a day, by currency
+     *
+     * @param date the day
+     * @param accountType the account type
+     * @param operation the name of the operation
+     * @return the total of each currency in the output
+     */
+    public Map<CurrencyUnit, MonetaryAmount> getTotal(LocalDate date, AccountType accountType, String operation) {
+
+        Map<CurrencyUnit, MonetaryAmount> totals = new LinkedHashMap<>();
+        Integer accountIdx = accountIndex.get(accountType);
+        Integer operationIdx = operationIndex.get(operation);
+        int dateIdx = dateIndex(date);
+
+        if (accountIdx == null || operationIdx == null || dateIdx < 0 || dateIdx >= days) {
+
+            return totals;
+        }
+
+        Map<CurrencyUnit, BigDecimal> sums = new LinkedHashMap<>();
+
+        for (Column column : columnsByOutput.getOrDefault(outputKey(accountIdx, operationIdx), List.of())) {
+
+            byte scale = column.scales[dateIdx];
+
+            if (scale == ABSENT) {
+
+                continue;
+            }
+
+            if (scale == OVERFLOW) {
+
+                MonetaryAmount value = column.get(dateIdx);
+
+                sums.merge(value.getCurrency(), value.getNumber().numberValue(BigDecimal.class), BigDecimal::add);
+
+            } else {
+
+                sums.merge(column.currency, BigDecimal.valueOf(column.unscaled[dateIdx], scale), BigDecimal::add);
+            }
+        }
+
+        sums.forEach((currency, sum) -> totals.put(currency, Money.of(sum, currency)));
+
+        return totals;
+    }
+
+    /**
+     * The outputs of every account type and operation on a day, in the layout of Run.process
+     *
+     * @param date the day
+     * @return the outputs by account type and operation name
+     */
+    public Map<AccountType, Map<String, Map<Security, MonetaryAmount>>> get(LocalDate date) {
+
+        Map<AccountType, Map<String, Map<Security, MonetaryAmount>>> accountResults = new HashMap<>();
+        int dateIdx = dateIndex(date);
+
+        if (dateIdx < 0 || dateIdx >= days) {
+
+            return accountResults;
+        }
+
+        for (Map.Entry<Integer, BitSet> entry : outputs.entrySet()) {
+
+            if (!entry.getValue().get(dateIdx)) {
+
+                continue;
+            }
+
+            Map<Security, MonetaryAmount> output = new HashMap<>();
+
+            for (Column column : columnsByOutput.getOrDefault(entry.getKey(), List.of())) {
+
+                MonetaryAmount value = column.get(dateIdx);
+
+                if (value != null) {
+
+                    output.put(securities.get(column.securityIdx), value);
+                }
+            }
+
+            accountResults
+                .computeIfAbsent(accountTypes.get(entry.getKey() >>> 16), a -> new HashMap<>())
+                .put(operations.get(entry.getKey() & 0xFFFF), output);
+        }
+
+        return accountResults;
+    }
+
+    /**
+     * A read-only view of the cube in the layout of Run.process. The outputs of a day are only built when that day
+     * is read, so the view itself costs nothing.
+     *
+     * @return the outputs of every day of the range
+     */
+    public Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> toMap() {
+
+        return new AbstractMap<>() {
+
+            @Override
+            public Set<Entry<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>>> entrySet() {
+
+                return new AbstractSet<>() {
+
+                    @Override
+                    public Iterator<Entry<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>>> iterator() {
+
+                        return new Iterator<>() {
+
+                            private int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+
+                                return next < days;
+                            }
+
+                            @Override
+                            public Entry<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> next() {
+
+                                if (!hasNext()) {
+
+                                    throw new NoSuchElementException();
+                                }
+
+                                LocalDate date = startDate.plusDays(next++);
+
+                                return new SimpleImmutableEntry<>(date, ResultCube.this.get(date));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+
+                        return days;
+                    }
+                };
+            }
+
+            @Override
+            public Map<AccountType, Map<String, Map<Security, MonetaryAmount>>> get(Object key) {
+
+                return containsKey(key) ? ResultCube.this.get((LocalDate) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+
+                if (!(key instanceof LocalDate date)) {
+
+                    return false;
+                }
+
+                int dateIdx = dateIndex(date);
+
+                return dateIdx >= 0 && dateIdx < days;
+            }
+
+            @Override
+            public int size() {
+
+                return days;
+            }
+        };
+    }
+
+    /**
+     * Record an output on a run of days
+     *
+     * @param from the first day index
+     * @param to the day index after the last
+     * @param accountType the account type
+     * @param operation the name of the operation
+     * @param output the output of each of the days
+     */
+    private void put(int from, int to, AccountType accountType, String operation, Map<Security, MonetaryAmount> output) {
+
+        int accountIdx = accountIndex.computeIfAbsent(accountType, a -> add(accountTypes, a));
+        int operationIdx = operationIndex.computeIfAbsent(operation, o -> add(operations, o));
+        int outputKey = outputKey(accountIdx, operationIdx);
+
+        outputs.computeIfAbsent(outputKey, k -> new BitSet(days)).set(from, to);
+
+        for (Map.Entry<Security, MonetaryAmount> entry : output.entrySet()) {
+
+            int securityIdx = securityIndex.computeIfAbsent(entry.getKey(), s -> add(securities, s));
+            long columnKey = columnKey(outputKey, securityIdx);
+
+            Column column = columns.get(columnKey);
+
+            if (column == null) {
+
+                column = new Column(securityIdx, entry.getValue().getCurrency());
+                columns.put(columnKey, column);
+                columnsByOutput.computeIfAbsent(outputKey, k -> new ArrayList<>()).add(column);
+            }
+
+            column.set(from, to, entry.getValue());
+        }
+    }
+
+    private Column getColumn(AccountType accountType, String operation, Security security) {
+
+        Integer accountIdx = accountIndex.get(accountType);
+        Integer operationIdx = operationIndex.get(operation);
+        Integer securityIdx = securityIndex.get(security);
+
+        if (accountIdx == null || operationIdx == null || securityIdx == null) {
+
+            return null;
+        }
+
+        return columns.get(columnKey(outputKey(accountIdx, operationIdx), securityIdx));
+    }
+
+    private int dateIndex(LocalDate date) {
+
+        long index = date.toEpochDay() - startDate.toEpochDay();
+
+        return index < Integer.MIN_VALUE || index > Integer.MAX_VALUE ? -1 : (int) index;
+    }
+
+    private static <T> int add(List<T> values, T value) {
+
+        values.add(value);
+
+        return values.size() - 1;
+    }
+
+    private static int outputKey(int accountIdx, int operationIdx) {
+
+        return accountIdx << 16 | operationIdx;
+    }
+
+    private static long columnKey(int outputKey, int securityIdx) {
+
+        return (long) outputKey << 32 | securityIdx;
+    }
+
+    /**
+     * The cells of one account type, operation and security, one per day
+     *
+     */
+    private final class Column {
+
+        private final int securityIdx;
+        private final CurrencyUnit currency;
+
+        private final long[] unscaled = new long[days];
+        private final byte[] scales = new byte[days];
+
+        // Values that do not fit the arrays, by day index
+        private Map<Integer, MonetaryAmount> overflow;
+
+        private Column(int securityIdx, CurrencyUnit currency) {
+
+            this.securityIdx = securityIdx;
+            this.currency = currency;
+
+            Arrays.fill(scales, ABSENT);
+        }
+
+        private void set(int from, int to, MonetaryAmount value) {
+
+            BigDecimal number = value.getNumber().numberValue(BigDecimal.class);
+
+            if (value.getCurrency().equals(currency) && number.unscaledValue().bitLength() < Long.SIZE && number.scale() > OVERFLOW && number.scale() <= Byte.MAX_VALUE) {
+
+                Arrays.fill(unscaled, from, to, number.unscaledValue().longValue());
+                Arrays.fill(scales, from, to, (byte) number.scale());
+
+            } else {
+
+                Arrays.fill(scales, from, to, OVERFLOW);
+
+                if (overflow == null) {
+
+                    overflow = new HashMap<>();
+                }
+
+                for (int i = from; i < to; i++) {
+
+                    overflow.put(i, value);
+                }
+            }
+        }
+
+        private MonetaryAmount get(int dateIdx) {
+
+            if (dateIdx < 0 || dateIdx >= days) {
+
+                return null;
+            }
+
+            byte scale = scales[dateIdx];
+
+            if (scale == ABSENT) {
+
+                return null;
+            }
+
+            if (scale == OVERFLOW) {
+
+                return overflow.get(dateIdx);
+            }
+
+            return Money.of(BigDecimal.valueOf(unscaled[dateIdx], scale), currency);
+        }
+
+        private boolean sameAs(int a, int b) {
+
+            return scales[a] == scales[b] && scales[a] != OVERFLOW && unscaled[a] == unscaled[b];
+        }
+    }
+}
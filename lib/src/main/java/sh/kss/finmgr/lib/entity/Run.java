@@ -19,15 +19,33 @@ package sh.kss.finmgr.lib.entity;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sh.kss.finmgr.lib.collect.PersistentHashMap;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.entity.transaction.TransactionBatch;
 import sh.kss.finmgr.lib.operation.DailyOperation;
+import sh.kss.finmgr.lib.operation.PricePlan;
 import sh.kss.finmgr.lib.operation.TransactionOperation;
+import sh.kss.finmgr.lib.store.PortfolioSnapshot;
+import sh.kss.finmgr.lib.store.PortfolioSnapshotCodec;
+import sh.kss.finmgr.lib.store.PortfolioSnapshotStore;
 
 import javax.money.MonetaryAmount;
 import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 
@@ -66,7 +84,422 @@ public class Run {
         return portfolio;
     }
 
+    /**
+     * Perform the operations against a list of transactions, replaying the transactions of each account type
+     * concurrently on the common fork-join pool
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply
+     * @return the final state of the portfolio, equal to the result of process
+     */
+    public static Portfolio processPartitioned(Portfolio portfolio, List<TransactionOperation> transactionOperations, List<InvestmentTransaction> transactions) {
+
+        return processPartitioned(portfolio, transactionOperations, transactions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Perform the operations against a list of transactions, replaying the transactions of each account type
+     * concurrently and merging the holding each replay ends with. Each replay keeps the list order of its
+     * transactions. When an operation is not account independent the transactions are replayed serially.
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply
+     * @param pool the pool to replay the account types on
+     * @return the final state of the portfolio, equal to the result of process
+     */
+    public static Portfolio processPartitioned(Portfolio portfolio, List<TransactionOperation> transactionOperations, List<InvestmentTransaction> transactions, ForkJoinPool pool) {
+
+        return processPartitions(portfolio, transactionOperations, pool, () -> {
+
+            Map<AccountType, List<InvestmentTransaction>> partitions = new LinkedHashMap<>();
+
+            for (InvestmentTransaction transaction : transactions) {
+
+                partitions.computeIfAbsent(transaction.getAccount().getAccountType(), accountType -> new ArrayList<>()).add(transaction);
+            }
+
+            Map<AccountType, UnaryOperator<Portfolio>> replays = new LinkedHashMap<>();
+
+            partitions.forEach((accountType, partition) -> replays.put(accountType, start -> process(start, transactionOperations, partition)));
+
+            return replays;
+
+        }, () -> process(portfolio, transactionOperations, transactions));
+    }
+
+    /**
+     * Perform the operations against a batch of transactions, building each transaction from the batch columns only
+     * when it is replayed so the batch is never held as a list of transactions
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param batch the transactions to apply
+     * @return the final state of the portfolio, equal to the result of process over batch.asList()
+     */
+    public static Portfolio process(Portfolio portfolio, List<TransactionOperation> transactionOperations, TransactionBatch batch) {
+
+        return process(portfolio, transactionOperations, batch, null, batch.size());
+    }
+
+    /**
+     * Perform the operations against a batch of transactions, replaying the rows of each account type concurrently on
+     * the common fork-join pool
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param batch the transactions to apply
+     * @return the final state of the portfolio, equal to the result of process
+     */
+    public static Portfolio processPartitioned(Portfolio portfolio, List<TransactionOperation> transactionOperations, TransactionBatch batch) {
+
+        return processPartitioned(portfolio, transactionOperations, batch, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Perform the operations against a batch of transactions, replaying the rows of each account type concurrently.
+     * The rows are partitioned by their account columns without building a transaction.
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param batch the transactions to apply
+     * @param pool the pool to replay the account types on
+     * @return the final state of the portfolio, equal to the result of process
+     */
+    public static Portfolio processPartitioned(Portfolio portfolio, List<TransactionOperation> transactionOperations, TransactionBatch batch, ForkJoinPool pool) {
+
+        return processPartitions(portfolio, transactionOperations, pool, () -> {
+
+            Map<AccountType, int[]> partitions = new LinkedHashMap<>();
+            Map<AccountType, Integer> counts = new HashMap<>();
+
+            for (int row = 0; row < batch.size(); row++) {
+
+                AccountType accountType = batch.getAccount(row).getAccountType();
+                int[] rows = partitions.computeIfAbsent(accountType, key -> new int[16]);
+                int count = counts.getOrDefault(accountType, 0);
+
+                if (count == rows.length) {
+
+                    rows = Arrays.copyOf(rows, count * 2);
+                    partitions.put(accountType, rows);
+                }
+
+                rows[count] = row;
+                counts.put(accountType, count + 1);
+            }
+
+            Map<AccountType, UnaryOperator<Portfolio>> replays = new LinkedHashMap<>();
+
+            partitions.forEach((accountType, rows) -> replays.put(accountType, start -> process(start, transactionOperations, batch, rows, counts.get(accountType))));
+
+            return replays;
+
+        }, () -> process(portfolio, transactionOperations, batch));
+    }
+
+    /**
+     * Replay the transactions of each account type concurrently and merge the holding each replay ends with. When an
+     * operation is not account independent, or there is a single account type, the transactions are replayed
+     * serially instead.
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param pool the pool to replay the account types on
+     * @param partitioner builds the replay of each account type's transactions, in the order of the transactions
+     * @param serial replays every transaction in order
+     * @return the final state of the portfolio, equal to the result of the serial replay
+     */
+    private static Portfolio processPartitions(Portfolio portfolio, List<TransactionOperation> transactionOperations, ForkJoinPool pool,
+                                               Supplier<Map<AccountType, UnaryOperator<Portfolio>>> partitioner, Supplier<Portfolio> serial) {
+
+        // A single operation that reads across account types orders every transaction
+        for (TransactionOperation transactionOperation : transactionOperations) {
+
+            if (!transactionOperation.isAccountIndependent()) {
+
+                return serial.get();
+            }
+        }
+
+        Map<AccountType, UnaryOperator<Portfolio>> partitions = partitioner.get();
+
+        if (partitions.size() <= 1) {
+
+            return serial.get();
+        }
+
+        // Every replay starts from the whole portfolio and only its own account type changes
+        Map<AccountType, ForkJoinTask<Portfolio>> replays = new LinkedHashMap<>();
+
+        for (Map.Entry<AccountType, UnaryOperator<Portfolio>> partition : partitions.entrySet()) {
+
+            replays.put(partition.getKey(), pool.submit(() -> partition.getValue().apply(portfolio)));
+        }
+
+        PersistentHashMap<AccountType, Holding> holdings = PersistentHashMap.copyOf(portfolio.getHoldings());
+
+        for (Map.Entry<AccountType, ForkJoinTask<Portfolio>> replay : replays.entrySet()) {
+
+            Holding holding = replay.getValue().join().getHoldings().get(replay.getKey());
+
+            if (holding != null) {
+
+                holdings = holdings.plus(replay.getKey(), holding);
+            }
+        }
+
+        return portfolio.withHoldings(holdings);
+    }
+
+    private static Portfolio process(Portfolio portfolio, List<TransactionOperation> transactionOperations, TransactionBatch batch, int[] rows, int count) {
+
+        for (int i = 0; i < count; i++) {
+
+            // Only the transaction being replayed is built, it is garbage once the operations have run
+            InvestmentTransaction transaction = batch.get(rows != null ? rows[i] : i);
+
+            for (TransactionOperation transactionOperation : transactionOperations) {
+
+                portfolio = transactionOperation.process(portfolio, transaction);
+            }
+        }
+
+        return portfolio;
+    }
+
+    /**
+     * Perform the operations against a list of transactions, keeping the portfolio after every transaction. Operations
+     * that build portfolios from persistent maps share structure between the versions, so the history grows with the
+     * changes made rather than with the size of the portfolio.
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply
+     * @return the state of the portfolio after each transaction, in transaction order
+     */
+    public static List<Portfolio> processHistory(Portfolio portfolio, List<TransactionOperation> transactionOperations, List<InvestmentTransaction> transactions) {
+
+        List<Portfolio> history = new ArrayList<>(transactions.size());
+
+        for (InvestmentTransaction transaction : transactions) {
+
+            for (TransactionOperation transactionOperation : transactionOperations) {
+
+                portfolio = transactionOperation.process(portfolio, transaction);
+            }
+
+            history.add(portfolio);
+        }
+
+        return history;
+    }
+
+    /**
+     * Perform the operations against a list of transactions, updating a single mutable working state in place
+     * rather than building a new portfolio for every transaction
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply
+     * @return the final state of the portfolio after performing all operations
+     */
+    public static Portfolio accumulate(Portfolio portfolio, List<TransactionOperation> transactionOperations, Iterable<InvestmentTransaction> transactions) {
+
+        return accumulate(new PortfolioAccumulator(portfolio), transactionOperations, transactions);
+    }
+
+    /**
+     * Perform the operations against a list of transactions, updating the given working state in place. The working
+     * state decides how holdings are represented, for example with FixedPointHoldingAccumulator.
+     *
+     * @param accumulator the working state, holding the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply
+     * @return the final state of the portfolio after performing all operations
+     */
+    public static Portfolio accumulate(PortfolioAccumulator accumulator, List<TransactionOperation> transactionOperations, Iterable<InvestmentTransaction> transactions) {
+
+        accumulate(accumulator, transactionOperations, transactions.iterator(), null, null);
+
+        return accumulator.snapshot();
+    }
+
+    /**
+     * Perform the operations against a list of transactions in date order, updating a single mutable working state
+     * in place and taking a snapshot of the portfolio at the end of each checkpoint date
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply, ordered by transaction date
+     * @param checkpoints the dates to take snapshots at
+     * @return the state of the portfolio after all transactions on or before each checkpoint, in date order
+     */
+    public static Map<LocalDate, Portfolio> accumulate(Portfolio portfolio, List<TransactionOperation> transactionOperations, Iterable<InvestmentTransaction> transactions, Collection<LocalDate> checkpoints) {
+
+        PortfolioAccumulator accumulator = new PortfolioAccumulator(portfolio);
+        Map<LocalDate, Portfolio> snapshots = new LinkedHashMap<>();
+        Iterator<LocalDate> dates = new TreeSet<>(checkpoints).iterator();
+
+        accumulate(accumulator, transactionOperations, transactions.iterator(), dates, snapshots);
+
+        return snapshots;
+    }
+
+    private static void accumulate(PortfolioAccumulator accumulator, List<TransactionOperation> transactionOperations, Iterator<InvestmentTransaction> transactions, Iterator<LocalDate> checkpoints, Map<LocalDate, Portfolio> snapshots) {
+
+        LocalDate checkpoint = checkpoints != null && checkpoints.hasNext() ? checkpoints.next() : null;
+
+        while (transactions.hasNext()) {
+
+            InvestmentTransaction transaction = transactions.next();
+
+            // Snapshot every checkpoint that is before this transaction
+            while (checkpoint != null && checkpoint.isBefore(transaction.getTransactionDate())) {
+
+                snapshots.put(checkpoint, accumulator.snapshot());
+                checkpoint = checkpoints.hasNext() ? checkpoints.next() : null;
+            }
+
+            if (LOG.isDebugEnabled()) {
+
+                LOG.debug("Transaction: " + transaction.getDescription());
+            }
+
+            for (TransactionOperation transactionOperation : transactionOperations) {
+
+                transactionOperation.accumulate(accumulator, transaction);
+            }
+        }
+
+        // Checkpoints after the last transaction all see the final state
+        if (checkpoint != null) {
+
+            Portfolio last = accumulator.snapshot();
+
+            snapshots.put(checkpoint, last);
+            checkpoints.forEachRemaining(date -> snapshots.put(date, last));
+        }
+    }
+
+    /**
+     * Perform the operations against the transactions up to and including a date, resuming from the latest valid
+     * snapshot of the history and only replaying the transactions after it. A snapshot is saved at each month end
+     * the replay passes, so the next query or appended week of transactions replays at most about a month. A
+     * snapshot is valid while the transactions it replayed are still the first of the list, checked by their count,
+     * the checksum of the last one and the date of the next one; a history whose earlier transactions are edited
+     * must be invalidated from the edited date.
+     *
+     * @param store the store of the snapshots
+     * @param history the name of the transaction history
+     * @param portfolio the starting state of the portfolio, the same for every replay of the history
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions of the history, ordered by transaction date
+     * @param date the last day to apply transactions of
+     * @return the state of the portfolio at the end of the day, equal to the result of process
+     */
+    public static Portfolio processAsOf(PortfolioSnapshotStore store, String history, Portfolio portfolio, List<TransactionOperation> transactionOperations, List<InvestmentTransaction> transactions, LocalDate date) {
+
+        int start = 0;
+        Optional<PortfolioSnapshot> snapshot = findResumable(store, history, transactions, date);
+
+        if (snapshot.isPresent()) {
+
+            portfolio = snapshot.get().getPortfolio();
+            start = snapshot.get().getTransactionCount();
+        }
+
+        int end = start;
+
+        while (end < transactions.size() && !transactions.get(end).getTransactionDate().isAfter(date)) {
+
+            end++;
+        }
+
+        LOG.debug(String.format("Replaying %d transactions of %s from transaction %d", end - start, history, start));
+
+        if (start == end) {
+
+            return portfolio;
+        }
+
+        List<InvestmentTransaction> delta = transactions.subList(start, end);
+
+        // Every month end from the first replayed transaction, then the date itself
+        List<LocalDate> checkpoints = new ArrayList<>();
+
+        for (LocalDate monthEnd = delta.get(0).getTransactionDate().with(TemporalAdjusters.lastDayOfMonth()); monthEnd.isBefore(date); monthEnd = monthEnd.plusDays(1).with(TemporalAdjusters.lastDayOfMonth())) {
+
+            checkpoints.add(monthEnd);
+        }
+
+        checkpoints.add(date);
+
+        Map<LocalDate, Portfolio> portfolios = accumulate(portfolio, transactionOperations, delta, checkpoints);
+
+        // Save the month ends that replayed new transactions
+        int count = start;
+        int saved = start;
+
+        for (LocalDate checkpoint : checkpoints) {
+
+            while (count < end && !transactions.get(count).getTransactionDate().isAfter(checkpoint)) {
+
+                count++;
+            }
+
+            if (count > saved && checkpoint.equals(checkpoint.with(TemporalAdjusters.lastDayOfMonth()))) {
+
+                store.save(history, new PortfolioSnapshot(checkpoint, count, PortfolioSnapshotCodec.checksum(transactions.get(count - 1)), portfolios.get(checkpoint)));
+                saved = count;
+            }
+        }
+
+        return portfolios.get(date);
+    }
+
+    /**
+     * Find the latest snapshot of a history on or before a date that the transactions can be resumed from,
+     * invalidating the snapshots found to be stale on the way
+     *
+     * @param store the store of the snapshots
+     * @param history the name of the transaction history
+     * @param transactions the transactions of the history, ordered by transaction date
+     * @param date the latest snapshot date wanted
+     * @return the snapshot, empty if the history has to be replayed from the start
+     */
+    private static Optional<PortfolioSnapshot> findResumable(PortfolioSnapshotStore store, String history, List<InvestmentTransaction> transactions, LocalDate date) {
+
+        for (Optional<PortfolioSnapshot> found = store.findLatest(history, date); found.isPresent(); found = store.findLatest(history, date)) {
+
+            PortfolioSnapshot snapshot = found.get();
+            int count = snapshot.getTransactionCount();
+
+            if (count > 0
+                && count <= transactions.size()
+                && PortfolioSnapshotCodec.checksum(transactions.get(count - 1)) == snapshot.getLastTransactionChecksum()
+                && !transactions.get(count - 1).getTransactionDate().isAfter(snapshot.getDate())
+                && (count == transactions.size() || transactions.get(count).getTransactionDate().isAfter(snapshot.getDate()))) {
+
+                return found;
+            }
+
+            LOG.debug(String.format("Snapshot of %s at %s no longer matches the transactions", history, snapshot.getDate()));
+
+            store.invalidateFrom(history, snapshot.getDate());
+        }
+
+        return Optional.empty();
+    }
+
     public static Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> process(Portfolio portfolio, List<TransactionOperation> transactionOperations, List<InvestmentTransaction> transactions, List<DailyOperation> dailyOperations, LocalDate startDate, LocalDate endDate) {
+        // Load everything the daily operations will need before the daily loop
+        PricePlan plan = PricePlan.of(portfolio, transactions, startDate, endDate);
+        dailyOperations = dailyOperations.stream()
+            .map(dailyOperation -> dailyOperation.prepare(plan))
+            .toList();
+
         Map<LocalDate, List<InvestmentTransaction>> dailyTransactions = transactions.stream().collect(Collectors.groupingBy(InvestmentTransaction::getTransactionDate));
         List<LocalDate> dates = startDate.datesUntil(endDate.plusDays(1)).collect(Collectors.toList());
 
@@ -89,4 +522,59 @@ public class Run {
 
         return resultSet;
     }
+
+    /**
+     * Perform the daily operations over a range of days, only evaluating an account type on the days its holding
+     * changed or an operation reports that its inputs moved, and storing the outputs as change points
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactionOperations the operations to apply to each transaction
+     * @param transactions the transactions to apply
+     * @param dailyOperations the operations to evaluate each day
+     * @param startDate the first day to evaluate
+     * @param endDate the last day to evaluate (inclusive)
+     * @return the outputs of the daily operations, equal when expanded to the result of process
+     */
+    public static DailyResults evaluate(Portfolio portfolio, List<TransactionOperation> transactionOperations, List<InvestmentTransaction> transactions, List<DailyOperation> dailyOperations, LocalDate startDate, LocalDate endDate) {
+
+        // Load everything the daily operations will need before the daily loop
+        PricePlan plan = PricePlan.of(portfolio, transactions, startDate, endDate);
+        List<DailyOperation> preparedOperations = dailyOperations.stream()
+            .map(dailyOperation -> dailyOperation.prepare(plan))
+            .toList();
+
+        Map<LocalDate, List<InvestmentTransaction>> dailyTransactions = transactions.stream().collect(Collectors.groupingBy(InvestmentTransaction::getTransactionDate));
+        DailyResults results = new DailyResults(startDate, endDate);
+
+        // The holding each account type was last evaluated with
+        Map<AccountType, Holding> evaluated = new HashMap<>();
+        LocalDate previous = null;
+
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+
+            if (dailyTransactions.containsKey(date)) {
+
+                portfolio = process(portfolio, transactionOperations, dailyTransactions.get(date));
+            }
+
+            for (Map.Entry<AccountType, Holding> entry : portfolio.getHoldings().entrySet()) {
+
+                Holding holding = entry.getValue();
+                Holding last = evaluated.put(entry.getKey(), holding);
+                boolean holdingChanged = last == null || (last != holding && !last.equals(holding));
+
+                for (DailyOperation dailyOperation : preparedOperations) {
+
+                    if (holdingChanged || dailyOperation.isChanged(holding, previous, date)) {
+
+                        results.put(entry.getKey(), dailyOperation.getName(), date, dailyOperation.process(holding, date));
+                    }
+                }
+            }
+
+            previous = date;
+        }
+
+        return results;
+    }
 }
@@ -23,11 +23,12 @@ import lombok.Value;
 import javax.money.CurrencyUnit;
 
 /**
- * A symbol is a simple wrapper for a string representation of a holding
+ * A symbol is a simple wrapper for a string representation of a holding. Securities are hashed on every holding
+ * update, so the hash code is cached.
  *
  */
 @Value
-@EqualsAndHashCode
+@EqualsAndHashCode(cacheStrategy = EqualsAndHashCode.CacheStrategy.LAZY)
 public class Security {
     String value;
     CurrencyUnit currency;
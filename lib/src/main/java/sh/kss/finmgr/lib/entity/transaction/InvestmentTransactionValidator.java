@@ -82,6 +82,123 @@ public class InvestmentTransactionValidator implements Validator {
         getZeroFieldValueErrors(transaction, errors);
     }
 
+    /**
+     * Check a transaction against the same rules as validate without building an Errors object or any collection,
+     * for validating many transactions at once. Missing values are reported as empty, or skip the arithmetic rules
+     * that need them, where validate would throw.
+     *
+     * @param transaction the transaction to check
+     * @return the mask of the ValidationRule bits the transaction breaks, zero if it is valid
+     */
+    public long check(InvestmentTransaction transaction) {
+
+        long errors = 0;
+        CurrencyUnit currency = transaction.getCurrency();
+        InvestmentAction action = transaction.getAction();
+
+        // Expected string values must not be null or empty
+        errors |= isBlank(transaction.getAccount().getAlias()) ? ValidationRule.ACCOUNT_ALIAS_EMPTY.mask() : 0;
+        errors |= isBlank(transaction.getAccount().getId()) ? ValidationRule.ACCOUNT_ID_EMPTY.mask() : 0;
+        errors |= isBlank(currency.getCurrencyCode()) ? ValidationRule.CURRENCY_EMPTY.mask() : 0;
+        errors |= transaction.getSecurity() == null || isBlank(transaction.getSecurity().getValue()) ? ValidationRule.SYMBOL_EMPTY.mask() : 0;
+        errors |= isBlank(transaction.getDescription()) ? ValidationRule.DESCRIPTION_EMPTY.mask() : 0;
+
+        // Validate currency is consistent
+        errors |= inconsistent(transaction.getNetAmount(), currency, ValidationRule.NET_AMOUNT_CURRENCY);
+        errors |= inconsistent(transaction.getGrossAmount(), currency, ValidationRule.GROSS_AMOUNT_CURRENCY);
+        errors |= inconsistent(transaction.getPrice(), currency, ValidationRule.PRICE_CURRENCY);
+        errors |= inconsistent(transaction.getCommission(), currency, ValidationRule.COMMISSION_CURRENCY);
+        errors |= inconsistent(transaction.getCapitalGain(), currency, ValidationRule.CAPITAL_GAIN_CURRENCY);
+        errors |= inconsistent(transaction.getReturnOfCapital(), currency, ValidationRule.RETURN_OF_CAPITAL_CURRENCY);
+
+        // Validate correct signs are used for credits vs debits
+        errors |= transaction.getCommission() != null && transaction.getCommission().isPositive() ? ValidationRule.COMMISSION_POSITIVE.mask() : 0;
+        errors |= transaction.getReturnOfCapital() != null && transaction.getReturnOfCapital().isNegative() ? ValidationRule.RETURN_OF_CAPITAL_NEGATIVE.mask() : 0;
+        errors |= transaction.getCapitalGain() != null && transaction.getCapitalGain().isNegative() ? ValidationRule.CAPITAL_GAIN_NEGATIVE.mask() : 0;
+
+        if (action == InvestmentAction.Sell) {
+
+            errors |= transaction.getQuantity() != null && transaction.getQuantity().getValue().signum() > 0 ? ValidationRule.SELL_QUANTITY_POSITIVE.mask() : 0;
+            errors |= transaction.getGrossAmount() != null && transaction.getGrossAmount().isNegativeOrZero() ? ValidationRule.SELL_GROSS_AMOUNT_NEGATIVE_OR_ZERO.mask() : 0;
+
+        } else if (action == InvestmentAction.Buy) {
+
+            errors |= transaction.getQuantity() != null && transaction.getQuantity().getValue().signum() < 0 ? ValidationRule.BUY_QUANTITY_NEGATIVE.mask() : 0;
+            errors |= transaction.getGrossAmount() != null && transaction.getGrossAmount().isPositiveOrZero() ? ValidationRule.BUY_GROSS_AMOUNT_POSITIVE_OR_ZERO.mask() : 0;
+        }
+
+        // All non-distribution transactions must have the correct quantities and amounts specified
+        if (action != InvestmentAction.Distribution) {
+
+            errors |= getMathErrors(transaction, errors);
+        }
+
+        // The dates on the transaction must follow chronologically
+        errors |= transaction.getSettlementDate().isBefore(transaction.getTransactionDate()) ? ValidationRule.SETTLED_BEFORE_TRANSACTION.mask() : 0;
+
+        // Can't buy or sell zero quantities
+        if (action == InvestmentAction.Buy || action == InvestmentAction.Sell) {
+
+            if (action == InvestmentAction.Buy) {
+
+                errors |= transaction.getNetAmount().isZero() ? ValidationRule.NET_AMOUNT_ZERO.mask() : 0;
+            }
+
+            // Compared with its scale, as validate does, so 0.00 is not zero here
+            errors |= transaction.getQuantity() == null || transaction.getQuantity().getValue().equals(BigDecimal.ZERO) ? ValidationRule.QUANTITY_ZERO.mask() : 0;
+            errors |= transaction.getPrice() == null || transaction.getPrice().isNegativeOrZero() ? ValidationRule.PRICE_NEGATIVE_OR_ZERO.mask() : 0;
+            errors |= transaction.getGrossAmount() == null || transaction.getGrossAmount().isZero() ? ValidationRule.GROSS_AMOUNT_ZERO.mask() : 0;
+        }
+
+        return errors;
+    }
+
+    /**
+     * The arithmetic rules of check, with the same Money arithmetic as validate so that rounding and scale agree.
+     * Amounts in another currency are already reported and cannot be combined, so the rules that would combine them
+     * are skipped where validate would throw.
+     *
+     * @param transaction the transaction to check
+     * @param errors the rules already broken by the transaction
+     * @return the arithmetic rules broken
+     */
+    private long getMathErrors(InvestmentTransaction transaction, long errors) {
+
+        long mathErrors = 0;
+        MonetaryAmount gross = transaction.getGrossAmount();
+        MonetaryAmount price = transaction.getPrice();
+        MonetaryAmount commission = transaction.getCommission();
+
+        // Gross is product of negated quantity and price
+        if (gross != null && price != null && transaction.getQuantity() != null && gross.getCurrency().equals(price.getCurrency()) &&
+            !gross.isEqualTo(price.multiply(transaction.getQuantity().getValue()).negate())) {
+
+            mathErrors |= ValidationRule.GROSS_AMOUNT_PRODUCT.mask();
+        }
+
+        // Net is sum of gross and commission, and is not trusted if either was already rejected, before looking at them
+        long netOrCommission = ValidationRule.NET_AMOUNT_CURRENCY.mask() | ValidationRule.COMMISSION_CURRENCY.mask() | ValidationRule.COMMISSION_POSITIVE.mask();
+
+        if ((errors & netOrCommission) != 0 || (gross != null && commission != null &&
+            gross.getCurrency().equals(commission.getCurrency()) && !transaction.getNetAmount().isEqualTo(gross.add(commission)))) {
+
+            mathErrors |= ValidationRule.NET_AMOUNT_SUM.mask();
+        }
+
+        return mathErrors;
+    }
+
+    private static long inconsistent(MonetaryAmount amount, CurrencyUnit currency, ValidationRule rule) {
+
+        return amount != null && !amount.getCurrency().equals(currency) ? rule.mask() : 0;
+    }
+
+    private static boolean isBlank(String value) {
+
+        // Trimmed as validate does, which unlike String.isBlank keeps non-ASCII whitespace and drops control characters
+        return value == null || value.trim().isEmpty();
+    }
+
 
     /**
      * Check if all of the required string values in the transaction are null or empty
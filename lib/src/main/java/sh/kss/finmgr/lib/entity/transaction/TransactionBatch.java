@@ -0,0 +1,519 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity.transaction;
+
+import org.javamoney.moneta.Money;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Transactions held as columns of primitive arrays rather than as InvestmentTransaction objects. Securities and
+ * accounts are held by their registry id, amounts as an unscaled long and a scale in the currency of the transaction,
+ * and a bitmap per row marks which optional fields are present. The distribution fields are only stored for the rows
+ * that have them. Values that do not fit the columns, or amounts in another currency, are kept aside whole.
+ *
+ */
+public final class TransactionBatch {
+
+    // Bits of the presence bitmap, and field numbers of the decimals
+    private static final int SECURITY = 0;
+    private static final int PRICE = 1;
+    private static final int QUANTITY = 2;
+    private static final int GROSS_AMOUNT = 3;
+    private static final int COMMISSION = 4;
+    private static final int FIRST_DISTRIBUTION = 5;
+    private static final int NET_AMOUNT = 16;
+
+    // The distribution fields, in the order of their bits from FIRST_DISTRIBUTION
+    private static final List<Function<InvestmentTransaction, MonetaryAmount>> DISTRIBUTIONS = List.of(
+        InvestmentTransaction::getReturnOfCapital,
+        InvestmentTransaction::getCapitalGain,
+        InvestmentTransaction::getEligibleDividend,
+        InvestmentTransaction::getNonEligibleDividend,
+        InvestmentTransaction::getForeignBusinessIncome,
+        InvestmentTransaction::getForeignNonBusinessIncome,
+        InvestmentTransaction::getOtherIncome,
+        InvestmentTransaction::getNonReportableDistribution,
+        InvestmentTransaction::getCapitalGainsDeductionEligible,
+        InvestmentTransaction::getForeignBusinessIncomeTaxPaid,
+        InvestmentTransaction::getForeignNonBusinessIncomeTaxPaid);
+
+    private static final int DISTRIBUTION_MASK = ((1 << DISTRIBUTIONS.size()) - 1) << FIRST_DISTRIBUTION;
+
+    // The scale of a value kept aside whole
+    private static final byte OVERFLOW = Byte.MIN_VALUE;
+
+    private static final InvestmentAction[] ACTIONS = InvestmentAction.values();
+
+    private final EntityRegistry registry;
+    private final int size;
+
+    private final int[] transactionDays;
+    private final int[] settlementDays;
+    private final byte[] actions;
+    private final int[] accountIds;
+    private final int[] securityIds;
+    private final byte[] currencyIds;
+    private final String[] descriptions;
+    private final int[] present;
+
+    // The price, quantity, gross amount, commission and net amount of each row
+    private final long[][] unscaled;
+    private final byte[][] scales;
+
+    // The distribution fields of the rows that have any, from the offset of each row in field order
+    private final int[] distributionOffsets;
+    private final long[] distributionUnscaled;
+    private final byte[] distributionScales;
+
+    private final List<CurrencyUnit> currencies;
+    // Values that do not fit the columns, by row and field number
+    private final Map<Long, Object> overflow;
+
+    private TransactionBatch(Builder builder) {
+
+        this.registry = builder.registry;
+        this.size = builder.size;
+        this.transactionDays = Arrays.copyOf(builder.transactionDays, size);
+        this.settlementDays = Arrays.copyOf(builder.settlementDays, size);
+        this.actions = Arrays.copyOf(builder.actions, size);
+        this.accountIds = Arrays.copyOf(builder.accountIds, size);
+        this.securityIds = Arrays.copyOf(builder.securityIds, size);
+        this.currencyIds = Arrays.copyOf(builder.currencyIds, size);
+        this.descriptions = Arrays.copyOf(builder.descriptions, size);
+        this.present = Arrays.copyOf(builder.present, size);
+        this.unscaled = new long[builder.unscaled.length][];
+        this.scales = new byte[builder.scales.length][];
+
+        for (int i = 0; i < unscaled.length; i++) {
+
+            unscaled[i] = Arrays.copyOf(builder.unscaled[i], size);
+            scales[i] = Arrays.copyOf(builder.scales[i], size);
+        }
+
+        this.distributionOffsets = Arrays.copyOf(builder.distributionOffsets, size);
+        this.distributionUnscaled = Arrays.copyOf(builder.distributionUnscaled, builder.distributionCount);
+        this.distributionScales = Arrays.copyOf(builder.distributionScales, builder.distributionCount);
+        this.currencies = List.copyOf(builder.currencies);
+        this.overflow = Map.copyOf(builder.overflow);
+    }
+
+    /**
+     * Start a batch that takes the ids of its securities and accounts from a registry
+     *
+     * @param registry the registry the ids of the batch refer to
+     * @return an empty builder
+     */
+    public static Builder builder(EntityRegistry registry) {
+
+        return new Builder(registry);
+    }
+
+    /**
+     * Hold a list of transactions as a batch
+     *
+     * @param registry the registry the ids of the batch refer to
+     * @param transactions the transactions
+     * @return the batch, in list order
+     */
+    public static TransactionBatch of(EntityRegistry registry, List<InvestmentTransaction> transactions) {
+
+        Builder builder = new Builder(registry);
+
+        transactions.forEach(builder);
+
+        return builder.build();
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    public long getTransactionEpochDay(int row) {
+
+        return transactionDays[row];
+    }
+
+    public InvestmentAction getAction(int row) {
+
+        return ACTIONS[actions[row]];
+    }
+
+    /**
+     * The registry id of the account of a row
+     *
+     * @param row the row
+     * @return the account id
+     */
+    public int getAccountId(int row) {
+
+        return accountIds[row];
+    }
+
+    /**
+     * The account of a row, taken from the registry without building the transaction
+     *
+     * @param row the row
+     * @return the account
+     */
+    public Account getAccount(int row) {
+
+        return registry.getAccount(accountIds[row]);
+    }
+
+    /**
+     * The registry id of the security of a row
+     *
+     * @param row the row
+     * @return the security id, -1 if the transaction has no security
+     */
+    public int getSecurityId(int row) {
+
+        return securityIds[row];
+    }
+
+    /**
+     * Build the transaction of a row
+     *
+     * @param row the row
+     * @return a transaction equal to the one added at the row
+     */
+    public InvestmentTransaction get(int row) {
+
+        CurrencyUnit currency = currencies.get(currencyIds[row] & 0xFF);
+        int bits = present[row];
+
+        InvestmentTransaction.InvestmentTransactionBuilder builder = InvestmentTransaction.builder()
+            .transactionDate(LocalDate.ofEpochDay(transactionDays[row]))
+            .settlementDate(LocalDate.ofEpochDay(settlementDays[row]))
+            .action(ACTIONS[actions[row]])
+            .account(registry.getAccount(accountIds[row]))
+            .currency(currency)
+            .security((bits & 1 << SECURITY) != 0 ? registry.getSecurity(securityIds[row]) : null)
+            .description(descriptions[row])
+            .price((bits & 1 << PRICE) != 0 ? amount(row, PRICE, unscaled[0][row], scales[0][row], currency) : null)
+            .quantity((bits & 1 << QUANTITY) != 0 ? quantity(row) : null)
+            .grossAmount((bits & 1 << GROSS_AMOUNT) != 0 ? amount(row, GROSS_AMOUNT, unscaled[2][row], scales[2][row], currency) : null)
+            .commission((bits & 1 << COMMISSION) != 0 ? amount(row, COMMISSION, unscaled[3][row], scales[3][row], currency) : null)
+            .netAmount(amount(row, NET_AMOUNT, unscaled[4][row], scales[4][row], currency));
+
+        if ((bits & DISTRIBUTION_MASK) != 0) {
+
+            MonetaryAmount[] distributions = new MonetaryAmount[DISTRIBUTIONS.size()];
+            int offset = distributionOffsets[row];
+
+            for (int i = 0; i < distributions.length; i++) {
+
+                if ((bits & 1 << (FIRST_DISTRIBUTION + i)) != 0) {
+
+                    distributions[i] = amount(row, FIRST_DISTRIBUTION + i, distributionUnscaled[offset], distributionScales[offset], currency);
+                    offset++;
+                }
+            }
+
+            builder
+                .returnOfCapital(distributions[0])
+                .capitalGain(distributions[1])
+                .eligibleDividend(distributions[2])
+                .nonEligibleDividend(distributions[3])
+                .foreignBusinessIncome(distributions[4])
+                .foreignNonBusinessIncome(distributions[5])
+                .otherIncome(distributions[6])
+                .nonReportableDistribution(distributions[7])
+                .capitalGainsDeductionEligible(distributions[8])
+                .foreignBusinessIncomeTaxPaid(distributions[9])
+                .foreignNonBusinessIncomeTaxPaid(distributions[10]);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * A view of the batch as a list, each transaction is built when it is read
+     *
+     * @return the list view
+     */
+    public List<InvestmentTransaction> asList() {
+
+        return new TransactionList();
+    }
+
+    private MonetaryAmount amount(int row, int field, long value, byte scale, CurrencyUnit currency) {
+
+        return scale == OVERFLOW ? (MonetaryAmount) overflow.get(key(row, field)) : Money.of(BigDecimal.valueOf(value, scale), currency);
+    }
+
+    private Quantity quantity(int row) {
+
+        return scales[1][row] == OVERFLOW ? (Quantity) overflow.get(key(row, QUANTITY)) : new Quantity(BigDecimal.valueOf(unscaled[1][row], scales[1][row]));
+    }
+
+    private static long key(int row, int field) {
+
+        return (long) row << 5 | field;
+    }
+
+    /**
+     * Whether a decimal can be held as an unscaled long and a byte scale
+     *
+     * @param value the decimal
+     * @return true if it fits the columns
+     */
+    private static boolean fits(BigDecimal value) {
+
+        return value.precision() <= 18 && value.scale() > OVERFLOW && value.scale() <= Byte.MAX_VALUE;
+    }
+
+    private static long unscaled(BigDecimal value) {
+
+        return value.unscaledValue().longValue();
+    }
+
+    private final class TransactionList extends AbstractList<InvestmentTransaction> implements RandomAccess {
+
+        @Override
+        public InvestmentTransaction get(int index) {
+
+            return TransactionBatch.this.get(index);
+        }
+
+        @Override
+        public int size() {
+
+            return size;
+        }
+    }
+
+    /**
+     * Builds a batch one transaction at a time, and can be passed to a parser as the consumer of its transactions
+     *
+     */
+    public static final class Builder implements Consumer<InvestmentTransaction> {
+
+        private final EntityRegistry registry;
+        private int size;
+
+        private int[] transactionDays = new int[64];
+        private int[] settlementDays = new int[64];
+        private byte[] actions = new byte[64];
+        private int[] accountIds = new int[64];
+        private int[] securityIds = new int[64];
+        private byte[] currencyIds = new byte[64];
+        private String[] descriptions = new String[64];
+        private int[] present = new int[64];
+        private long[][] unscaled = new long[5][64];
+        private byte[][] scales = new byte[5][64];
+
+        private int[] distributionOffsets = new int[64];
+        private long[] distributionUnscaled = new long[64];
+        private byte[] distributionScales = new byte[64];
+        private int distributionCount;
+
+        private final List<CurrencyUnit> currencies = new ArrayList<>();
+        private final Map<CurrencyUnit, Integer> currencyIndex = new HashMap<>();
+        private final Map<Long, Object> overflow = new HashMap<>();
+
+        private Builder(EntityRegistry registry) {
+
+            this.registry = registry;
+        }
+
+        @Override
+        public void accept(InvestmentTransaction transaction) {
+
+            add(transaction);
+        }
+
+        /**
+         * Add a transaction as the next row
+         *
+         * @param transaction the transaction
+         * @return this builder
+         */
+        public Builder add(InvestmentTransaction transaction) {
+
+            if (size == transactionDays.length) {
+
+                grow();
+            }
+
+            int row = size;
+            CurrencyUnit currency = transaction.getCurrency();
+            int bits = 0;
+
+            transactionDays[row] = Math.toIntExact(transaction.getTransactionDate().toEpochDay());
+            settlementDays[row] = Math.toIntExact(transaction.getSettlementDate().toEpochDay());
+            actions[row] = (byte) transaction.getAction().ordinal();
+            accountIds[row] = registry.getAccountId(transaction.getAccount());
+            currencyIds[row] = (byte) currencyId(currency);
+            descriptions[row] = transaction.getDescription();
+            securityIds[row] = -1;
+
+            if (transaction.getSecurity() != null) {
+
+                securityIds[row] = registry.getSecurityId(transaction.getSecurity());
+                bits |= 1 << SECURITY;
+            }
+
+            bits |= putAmount(row, PRICE, 0, transaction.getPrice(), currency);
+            bits |= putAmount(row, GROSS_AMOUNT, 2, transaction.getGrossAmount(), currency);
+            bits |= putAmount(row, COMMISSION, 3, transaction.getCommission(), currency);
+            putAmount(row, NET_AMOUNT, 4, transaction.getNetAmount(), currency);
+
+            if (transaction.getQuantity() != null) {
+
+                BigDecimal value = transaction.getQuantity().getValue();
+
+                if (fits(value)) {
+
+                    unscaled[1][row] = unscaled(value);
+                    scales[1][row] = (byte) value.scale();
+
+                } else {
+
+                    scales[1][row] = OVERFLOW;
+                    overflow.put(key(row, QUANTITY), transaction.getQuantity());
+                }
+
+                bits |= 1 << QUANTITY;
+            }
+
+            distributionOffsets[row] = distributionCount;
+
+            for (int i = 0; i < DISTRIBUTIONS.size(); i++) {
+
+                MonetaryAmount amount = DISTRIBUTIONS.get(i).apply(transaction);
+
+                if (amount != null) {
+
+                    if (distributionCount == distributionUnscaled.length) {
+
+                        distributionUnscaled = Arrays.copyOf(distributionUnscaled, distributionCount * 2);
+                        distributionScales = Arrays.copyOf(distributionScales, distributionCount * 2);
+                    }
+
+                    BigDecimal value = amount.getNumber().numberValue(BigDecimal.class);
+
+                    if (amount.getCurrency().equals(currency) && fits(value)) {
+
+                        distributionUnscaled[distributionCount] = unscaled(value);
+                        distributionScales[distributionCount] = (byte) value.scale();
+
+                    } else {
+
+                        distributionScales[distributionCount] = OVERFLOW;
+                        overflow.put(key(row, FIRST_DISTRIBUTION + i), amount);
+                    }
+
+                    distributionCount++;
+                    bits |= 1 << (FIRST_DISTRIBUTION + i);
+                }
+            }
+
+            present[row] = bits;
+            size++;
+
+            return this;
+        }
+
+        public TransactionBatch build() {
+
+            return new TransactionBatch(this);
+        }
+
+        private int putAmount(int row, int field, int column, MonetaryAmount amount, CurrencyUnit currency) {
+
+            if (amount == null) {
+
+                return 0;
+            }
+
+            BigDecimal value = amount.getNumber().numberValue(BigDecimal.class);
+
+            if (amount.getCurrency().equals(currency) && fits(value)) {
+
+                unscaled[column][row] = unscaled(value);
+                scales[column][row] = (byte) value.scale();
+
+            } else {
+
+                scales[column][row] = OVERFLOW;
+                overflow.put(key(row, field), amount);
+            }
+
+            return 1 << field;
+        }
+
+        private int currencyId(CurrencyUnit currency) {
+
+            Integer id = currencyIndex.get(currency);
+
+            if (id == null) {
+
+                if (currencies.size() > 0xFF) {
+
+                    throw new IllegalStateException("A transaction batch holds at most 256 currencies");
+                }
+
+                id = currencies.size();
+                currencies.add(currency);
+                currencyIndex.put(currency, id);
+            }
+
+            return id;
+        }
+
+        private void grow() {
+
+            int capacity = transactionDays.length * 2;
+
+            transactionDays = Arrays.copyOf(transactionDays, capacity);
+            settlementDays = Arrays.copyOf(settlementDays, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            securityIds = Arrays.copyOf(securityIds, capacity);
+            currencyIds = Arrays.copyOf(currencyIds, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            present = Arrays.copyOf(present, capacity);
+            distributionOffsets = Arrays.copyOf(distributionOffsets, capacity);
+
+            for (int i = 0; i < unscaled.length; i++) {
+
+                unscaled[i] = Arrays.copyOf(unscaled[i], capacity);
+                scales[i] = Arrays.copyOf(scales[i], capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity.transaction;
+
+import java.util.EnumSet;
+
+/**
+ * The rejections of the investment transaction validator, each with the field and error code it is reported under.
+ * A set of rules fits in a long, so the errors of a transaction can be kept as a single bitmask.
+ *
+ */
+public enum ValidationRule {
+
+    ACCOUNT_ALIAS_EMPTY("accountAlias", "empty"),
+    ACCOUNT_ID_EMPTY("accountId", "empty"),
+    CURRENCY_EMPTY("currencyValue", "empty"),
+    SYMBOL_EMPTY("symbolValue", "empty"),
+    DESCRIPTION_EMPTY("description", "empty"),
+
+    NET_AMOUNT_CURRENCY("netAmount", "currencyInconsistent"),
+    GROSS_AMOUNT_CURRENCY("grossAmount", "currencyInconsistent"),
+    PRICE_CURRENCY("price", "currencyInconsistent"),
+    COMMISSION_CURRENCY("commission", "currencyInconsistent"),
+    CAPITAL_GAIN_CURRENCY("capitalGain", "currencyInconsistent"),
+    RETURN_OF_CAPITAL_CURRENCY("returnOfCapital", "currencyInconsistent"),
+
+    COMMISSION_POSITIVE("commission", "commissionPositive"),
+    RETURN_OF_CAPITAL_NEGATIVE("returnOfCapital", "returnOfCapitalNegative"),
+    CAPITAL_GAIN_NEGATIVE("capitalGain", "capitalGainNegative"),
+    SELL_QUANTITY_POSITIVE("quantity", "sellQuantityPositive"),
+    SELL_GROSS_AMOUNT_NEGATIVE_OR_ZERO("grossAmount", "sellGrossAmountNegativeOrZero"),
+    BUY_QUANTITY_NEGATIVE("quantity", "buyQuantityNegative"),
+    BUY_GROSS_AMOUNT_POSITIVE_OR_ZERO("grossAmount", "buyGrossAmountPositiveOrZero"),
+
+    GROSS_AMOUNT_PRODUCT("grossAmount", "grossAmountProduct"),
+    NET_AMOUNT_SUM("netAmount", "netAmountSum"),
+
+    SETTLED_BEFORE_TRANSACTION("settlementDate", "settledBeforeTransaction"),
+
+    NET_AMOUNT_ZERO("netAmount", "netAmountZero"),
+    QUANTITY_ZERO("quantity", "quantityZero"),
+    PRICE_NEGATIVE_OR_ZERO("price", "priceNegativeOrZero"),
+    // Reported under the quantity like the single transaction validator does
+    GROSS_AMOUNT_ZERO("quantity", "quantityZero");
+
+    private static final ValidationRule[] RULES = values();
+
+    private final String field;
+    private final String code;
+
+    ValidationRule(String field, String code) {
+
+        this.field = field;
+        this.code = code;
+    }
+
+    public String getField() {
+
+        return field;
+    }
+
+    public String getCode() {
+
+        return code;
+    }
+
+    /**
+     * The bit of the rule in an error mask
+     *
+     * @return the mask with only this rule set
+     */
+    public long mask() {
+
+        return 1L << ordinal();
+    }
+
+    /**
+     * The rules set in an error mask
+     *
+     * @param mask the error mask
+     * @return the rules, in rule order
+     */
+    public static EnumSet<ValidationRule> of(long mask) {
+
+        EnumSet<ValidationRule> rules = EnumSet.noneOf(ValidationRule.class);
+
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+
+            rules.add(RULES[Long.numberOfTrailingZeros(bits)]);
+        }
+
+        return rules;
+    }
+}
@@ -20,6 +20,8 @@ package sh.kss.finmgr.lib.operation;
 import org.javamoney.moneta.Money;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.collect.PersistentHashMap;
+import sh.kss.finmgr.lib.collect.PersistentHashSet;
 import sh.kss.finmgr.lib.entity.*;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 import sh.kss.finmgr.lib.service.TransactionService;
@@ -27,8 +29,6 @@ import sh.kss.finmgr.lib.service.TransactionService;
 import javax.money.CurrencyUnit;
 import javax.money.MonetaryAmount;
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -60,33 +60,32 @@ public class AverageCostBasis implements TransactionOperation {
 
         final AccountType ACCOUNT_TYPE = transaction.getAccount().getAccountType();
         final CurrencyUnit CURRENCY = transaction.getCurrency();
-        Map<AccountType, Holding> holdings = new HashMap<>(portfolio.getHoldings());
-        Holding holding = holdings.getOrDefault(ACCOUNT_TYPE, Holding.EMPTY);
+        Holding holding = portfolio.getHoldings().getOrDefault(ACCOUNT_TYPE, Holding.EMPTY);
 
-        // Get ACB Map for the cursor cost basis
-        Map<Security, MonetaryAmount> costBases = new HashMap<>(holding.getCostBasis());
+        // Persistent maps share structure with the previous holding, so each update only copies one trie path
+        PersistentHashMap<Security, MonetaryAmount> costBases = PersistentHashMap.copyOf(holding.getCostBasis());
         MonetaryAmount costBasis = costBases.getOrDefault(security, Money.of(0, CURRENCY));
 
-        Map<Security, Quantity> quantities = new HashMap<>(holding.getQuantities());
+        PersistentHashMap<Security, Quantity> quantities = PersistentHashMap.copyOf(holding.getQuantities());
         Quantity quantity = quantities.getOrDefault(security, ZERO);
 
-        Set<Security> securities = new HashSet<>(holding.getSecurities());
+        PersistentHashSet<Security> securities = PersistentHashSet.copyOf(holding.getSecurities());
 
         switch (transaction.getAction()) {
 
             // ACB is summed with net amount of purchases
             case Reinvest:
             case Buy:
-                quantities.put(security, quantity.withValue(quantity.getValue().add(transaction.getQuantity().getValue())));
-                costBases.put(security, costBasis.add(transaction.getNetAmount()));
-                securities.add(security);
+                quantities = quantities.plus(security, quantity.withValue(quantity.getValue().add(transaction.getQuantity().getValue())));
+                costBases = costBases.plus(security, costBasis.add(transaction.getNetAmount()));
+                securities = securities.plus(security);
                 break;
 
             // ACB per share remains constant during sales.
             case Sell:
                 MonetaryAmount acbPerShare = transactionService.getACB(portfolio, ACCOUNT_TYPE, security);
-                quantities.put(security, quantity.withValue(quantity.getValue().add(transaction.getQuantity().getValue())));
-                costBases.put(security, acbPerShare.multiply(quantities.get(security).getValue().negate()));
+                quantities = quantities.plus(security, quantity.withValue(quantity.getValue().add(transaction.getQuantity().getValue())));
+                costBases = costBases.plus(security, acbPerShare.multiply(quantities.get(security).getValue().negate()));
                 break;
 
             // Return of Capital reduces ACB
@@ -95,7 +94,7 @@ public class AverageCostBasis implements TransactionOperation {
 
                 // If a distribution has a RoC component, subtract from ACB
                 if (returnOfCapital != null) {
-                    costBases.put(security, costBasis.add(transaction.getReturnOfCapital()));
+                    costBases = costBases.plus(security, costBasis.add(transaction.getReturnOfCapital()));
                 }
                 break;
 
@@ -107,25 +106,87 @@ public class AverageCostBasis implements TransactionOperation {
         // TODO: Superficial loss rule?
         if (quantities.get(security).getValue().equals(BigDecimal.ZERO)) {
 
-            costBases.put(security, Money.of(0, CURRENCY));
-            securities.remove(security);
+            costBases = costBases.plus(security, Money.of(0, CURRENCY));
+            securities = securities.minus(security);
         }
 
         return getNewPortfolio(portfolio,  ACCOUNT_TYPE, costBases, quantities, securities);
     }
 
-    private Portfolio getNewPortfolio(Portfolio oldPortfolio, AccountType accountType, Map<Security, MonetaryAmount> costBases, Map<Security, Quantity> quantities, Set<Security> securities) {
+    /**
+     * Apply the same cost basis changes as process, updating the working holding in place instead of copying the
+     * portfolio
+     *
+     * @param portfolio the working state to update
+     * @param transaction the transaction to apply
+     */
+    @Override
+    public void accumulate(PortfolioAccumulator portfolio, InvestmentTransaction transaction) {
+
+        // ACB changes are limited to specific symbols so short circuit if not present
+        Security security = transaction.getSecurity();
+        if (security == null) {
+            return;
+        }
+
+        final CurrencyUnit CURRENCY = transaction.getCurrency();
+        HoldingAccumulator holding = portfolio.getHolding(transaction.getAccount().getAccountType());
+
+        // The arithmetic is left to the holding, so a fixed point holding avoids Money and BigDecimal entirely
+        switch (transaction.getAction()) {
+
+            // ACB is summed with net amount of purchases
+            case Reinvest:
+            case Buy:
+                holding.addQuantity(security, transaction.getQuantity().getValue());
+                holding.addCostBasis(security, transaction.getNetAmount(), CURRENCY);
+                holding.addSecurity(security);
+                break;
+
+            // ACB per share remains constant during sales.
+            case Sell:
+                MonetaryAmount acbPerShare = transactionService.getACB(holding, security);
+                holding.addQuantity(security, transaction.getQuantity().getValue());
+                holding.setCostBasis(security, acbPerShare.multiply(holding.getQuantity(security).getValue().negate()));
+                break;
+
+            // Return of Capital reduces ACB
+            case Distribution:
+                MonetaryAmount returnOfCapital = transaction.getReturnOfCapital();
 
-        // Build new Holdings map
-        HashMap<AccountType, Holding> newHoldings = new HashMap<>();
-        newHoldings.put(accountType, new Holding(securities, quantities, costBases));
-        for (AccountType oldType : oldPortfolio.getHoldings().keySet()) {
-            if (!oldType.equals(accountType)) {
-                newHoldings.put(oldType, oldPortfolio.getHoldings().get(oldType));
-            }
+                // If a distribution has a RoC component, subtract from ACB
+                if (returnOfCapital != null) {
+                    holding.addCostBasis(security, returnOfCapital, CURRENCY);
+                }
+                break;
+
+            default:
+                break;
         }
 
+        // If the quantity for a security is reduced to zero (sold all units), reset ACB
+        if (holding.isQuantityZero(security)) {
+
+            holding.resetCostBasis(security, CURRENCY);
+            holding.removeSecurity(security);
+        }
+    }
+
+    /**
+     * Cost bases are tracked per account type, so each account type can be replayed on its own
+     *
+     * @return true
+     */
+    @Override
+    public boolean isAccountIndependent() {
+
+        return true;
+    }
+
+    private Portfolio getNewPortfolio(Portfolio oldPortfolio, AccountType accountType, Map<Security, MonetaryAmount> costBases, Map<Security, Quantity> quantities, Set<Security> securities) {
+
+        // Replace the one holding, sharing the others with the old portfolio
         return oldPortfolio
-            .withHoldings(Map.copyOf(newHoldings));
+            .withHoldings(PersistentHashMap.copyOf(oldPortfolio.getHoldings()).plus(accountType, new Holding(securities, quantities, costBases)));
     }
 }
@@ -32,4 +32,30 @@ public interface DailyOperation {
 
     Map<Security, MonetaryAmount> process(Holding holding, LocalDate date);
     String getName();
+
+    /**
+     * Load what the operation needs for a run before its daily loop starts, so that processing a day does not wait
+     * on I/O
+     *
+     * @param plan the prices the run will need
+     * @return the operation to process the days of the run with
+     */
+    default DailyOperation prepare(PricePlan plan) {
+
+        return this;
+    }
+
+    /**
+     * Whether the output for an unchanged holding may differ between two days, for example because a price moved.
+     * Operations that cannot tell are evaluated every day.
+     *
+     * @param holding the holding, the same on both days
+     * @param previous the earlier day
+     * @param date the later day
+     * @return false only if the output of the later day is the output of the earlier day
+     */
+    default boolean isChanged(Holding holding, LocalDate previous, LocalDate date) {
+
+        return true;
+    }
 }
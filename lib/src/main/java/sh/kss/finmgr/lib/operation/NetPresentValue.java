@@ -18,29 +18,48 @@
 package sh.kss.finmgr.lib.operation;
 
 import org.javamoney.moneta.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.data.AsyncMarketDataApi;
+import sh.kss.finmgr.lib.data.ClosingPrices;
 import sh.kss.finmgr.lib.data.MarketDataApi;
+import sh.kss.finmgr.lib.data.PrefetchedMarketDataApi;
 import sh.kss.finmgr.lib.entity.Holding;
 import sh.kss.finmgr.lib.entity.Security;
 
 import javax.money.MonetaryAmount;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class NetPresentValue implements DailyOperation {
 
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(NetPresentValue.class);
+
     private MarketDataApi marketDataApi;
 
+    // Fetches the planned prices concurrently, when not set they are fetched one security at a time
+    private AsyncMarketDataApi asyncMarketDataApi;
+
     @Autowired
     public void setMarketDataApi(MarketDataApi marketDataApi) {
         this.marketDataApi = marketDataApi;
     }
 
+    @Autowired(required = false)
+    public void setAsyncMarketDataApi(AsyncMarketDataApi asyncMarketDataApi) {
+        this.asyncMarketDataApi = asyncMarketDataApi;
+    }
+
     @Override
     public Map<Security, MonetaryAmount> process(Holding holding, LocalDate date) {
         Set<Security> securities = holding.getQuantities().keySet();
@@ -48,6 +67,78 @@ public class NetPresentValue implements DailyOperation {
             .collect(Collectors.toMap(Function.identity(), s -> marketDataApi.findClosingPrice(s, date).orElse(Money.of(0, s.getCurrency())).multiply(holding.getQuantities().get(s).getValue())));
     }
 
+    /**
+     * The net present value of a holding only changes when the close of one of its securities does
+     *
+     * @param holding the holding, the same on both days
+     * @param previous the earlier day
+     * @param date the later day
+     * @return true if a close differs between the days
+     */
+    @Override
+    public boolean isChanged(Holding holding, LocalDate previous, LocalDate date) {
+
+        for (Security security : holding.getQuantities().keySet()) {
+
+            if (!marketDataApi.findClosingPrice(security, previous).equals(marketDataApi.findClosingPrice(security, date))) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Load the closing prices of every planned holding interval in one batch per interval
+     *
+     * @param plan the prices the run will need
+     * @return a net present value operation answering the planned prices from memory
+     */
+    @Override
+    public DailyOperation prepare(PricePlan plan) {
+
+        PrefetchedMarketDataApi prefetched = new PrefetchedMarketDataApi(marketDataApi);
+
+        for (Map.Entry<PricePlan.HoldingInterval, List<Security>> batch : plan.getBatches().entrySet()) {
+
+            LocalDate from = batch.getKey().getFrom();
+            LocalDate to = batch.getKey().getTo();
+
+            try {
+
+                Map<Security, ClosingPrices> closingPrices;
+
+                if (asyncMarketDataApi != null) {
+
+                    closingPrices = asyncMarketDataApi.fetchClosingPrices(batch.getValue(), from, to).join();
+
+                } else {
+
+                    closingPrices = new HashMap<>();
+
+                    for (Security security : batch.getValue()) {
+
+                        closingPrices.put(security, marketDataApi.fetchClosingPrices(security, from, to));
+                    }
+                }
+
+                closingPrices.forEach((security, prices) -> prefetched.put(security, from, to, prices));
+
+            } catch (CompletionException e) {
+
+                // The days of a failed batch are looked up one at a time instead
+                LOG.error(String.format("Failed prefetching closing prices from %s to %s", from, to));
+                e.printStackTrace();
+            }
+        }
+
+        NetPresentValue prepared = new NetPresentValue();
+        prepared.setMarketDataApi(prefetched);
+
+        return prepared;
+    }
+
     @Override
     public String getName() {
         return "NPV";
@@ -0,0 +1,121 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.operation;
+
+import lombok.NonNull;
+import lombok.Value;
+import sh.kss.finmgr.lib.entity.Holding;
+import sh.kss.finmgr.lib.entity.Portfolio;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The prices a run of daily operations will need, worked out from the transactions before the daily loop starts. A
+ * security can be held from the start of the run if the starting portfolio holds it, otherwise from its first
+ * transaction, until the end of the run.
+ *
+ */
+@Value
+public class PricePlan {
+
+    public static final PricePlan EMPTY = new PricePlan(Map.of());
+
+    // The days each security may be held on
+    @NonNull Map<Security, HoldingInterval> intervals;
+
+    /**
+     * Plan the prices for a run of daily operations
+     *
+     * @param portfolio the starting state of the portfolio
+     * @param transactions the transactions of the run
+     * @param startDate the first day of the run
+     * @param endDate the last day of the run (inclusive)
+     * @return the holding interval of every security that may be held during the run
+     */
+    public static PricePlan of(Portfolio portfolio, List<InvestmentTransaction> transactions, LocalDate startDate, LocalDate endDate) {
+
+        Map<Security, LocalDate> firstHeld = new HashMap<>();
+
+        for (Holding holding : portfolio.getHoldings().values()) {
+
+            for (Security security : holding.getQuantities().keySet()) {
+
+                firstHeld.put(security, startDate);
+            }
+        }
+
+        for (InvestmentTransaction transaction : transactions) {
+
+            Security security = transaction.getSecurity();
+            LocalDate date = transaction.getTransactionDate();
+
+            if (security == null || date.isAfter(endDate)) {
+
+                continue;
+            }
+
+            LocalDate from = date.isBefore(startDate) ? startDate : date;
+
+            firstHeld.merge(security, from, (a, b) -> a.isBefore(b) ? a : b);
+        }
+
+        Map<Security, HoldingInterval> intervals = new HashMap<>();
+
+        for (Map.Entry<Security, LocalDate> entry : firstHeld.entrySet()) {
+
+            intervals.put(entry.getKey(), new HoldingInterval(entry.getValue(), endDate));
+        }
+
+        return new PricePlan(intervals);
+    }
+
+    /**
+     * The securities sharing each holding interval, so that each interval can be fetched as one batch
+     *
+     * @return the securities of each distinct interval
+     */
+    public Map<HoldingInterval, List<Security>> getBatches() {
+
+        Map<HoldingInterval, List<Security>> batches = new LinkedHashMap<>();
+
+        for (Map.Entry<Security, HoldingInterval> entry : intervals.entrySet()) {
+
+            batches.computeIfAbsent(entry.getValue(), interval -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        return batches;
+    }
+
+    /**
+     * The days a security may be held on
+     *
+     */
+    @Value
+    public static class HoldingInterval {
+
+        @NonNull LocalDate from;
+        @NonNull LocalDate to;
+    }
+}
@@ -18,6 +18,7 @@
 package sh.kss.finmgr.lib.operation;
 
 import sh.kss.finmgr.lib.entity.Portfolio;
+import sh.kss.finmgr.lib.entity.PortfolioAccumulator;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
 /**
@@ -27,4 +28,27 @@ import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 public interface TransactionOperation {
 
     Portfolio process(Portfolio portfolio, InvestmentTransaction transaction);
+
+    /**
+     * Apply a transaction to the working state of a portfolio in place. Operations that only implement process are
+     * applied to a snapshot of the state, so overriding this avoids copying the portfolio for every transaction.
+     *
+     * @param portfolio the working state to update
+     * @param transaction the transaction to apply
+     */
+    default void accumulate(PortfolioAccumulator portfolio, InvestmentTransaction transaction) {
+
+        portfolio.reset(process(portfolio.snapshot(), transaction));
+    }
+
+    /**
+     * Whether the operation only reads and changes the holding of the account type of each transaction. The
+     * transactions of different account types can then be replayed concurrently, see Run.processPartitioned.
+     *
+     * @return true if the account types are independent of each other
+     */
+    default boolean isAccountIndependent() {
+
+        return false;
+    }
 }
@@ -21,8 +21,11 @@ import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
 import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface CsvFileParser {
 
     List<InvestmentTransaction> parseCsv(File file);
+
+    int parseCsv(File file, Consumer<InvestmentTransaction> consumer);
 }
@@ -19,22 +19,27 @@ package sh.kss.finmgr.lib.parse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 import sh.kss.finmgr.lib.parse.brokerage.RbcCsv;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * This class provides common functionality for the processing of .csv files into finmgr InvestmentTransactions
+ * Files are read once: the header is matched against a buffered prefix of lines and the rest is streamed to the parser
  *
  */
 @Component
@@ -43,14 +48,51 @@ public class CsvFileParserImpl implements CsvFileParser {
     private final Logger LOG = LoggerFactory.getLogger(CsvFileParserImpl.class);
     // A list of the available Csv parsers
     private final List<CsvParser> CSV_PARSERS = List.of(new RbcCsv());
+    // The number of lines buffered for header matching, enough for every parser
+    private final int HEADER_LINE_COUNT = CSV_PARSERS.stream().mapToInt(CsvParser::getHeaderLineCount).max().orElse(0);
+    // Read buffer size in chars
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Share one registry between the parsers so equal securities and accounts are the same instance across files
+     *
+     * @param entityRegistry the registry
+     */
+    @Autowired
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+
+        for (CsvParser parser : CSV_PARSERS) {
+
+            parser.setEntityRegistry(entityRegistry);
+        }
+    }
 
     @Override
     public List<InvestmentTransaction> parseCsv(File file) {
 
+        List<InvestmentTransaction> transactions = new ArrayList<>();
+
+        parseCsv(file, transactions::add);
+
+        return transactions;
+    }
+
+    @Override
+    public int parseCsv(File file, Consumer<InvestmentTransaction> consumer) {
+
         LOG.debug("Calling parseCsv()");
 
         // Wrap in try catch due to opening file input stream
-        try (FileInputStream inputStream = new FileInputStream(file)) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            // Buffer the prefix of the file that the parsers match against
+            List<String> header = new ArrayList<>(HEADER_LINE_COUNT);
+            String line;
+
+            while (header.size() < HEADER_LINE_COUNT && (line = reader.readLine()) != null) {
+
+                header.add(line);
+            }
 
             // Try to match against known row parsers
             for (CsvParser csvParser : CSV_PARSERS) {
@@ -58,17 +100,16 @@ public class CsvFileParserImpl implements CsvFileParser {
                 LOG.debug(String.format("Check CsvParser %s", csvParser));
 
                 // If the header matches, parse it
-                if (csvParser.isMatch(inputStream)) {
+                if (csvParser.isMatch(header)) {
 
                     LOG.debug(String.format("Matched CsvParser %s", csvParser));
 
-                    return parseLines(file, csvParser);
+                    return parseLines(header, reader, csvParser, consumer);
                 }
             }
 
             // If no Row Parsers matched, the file format is unknown and no transactions are parsed
-            return Collections.emptyList();
-
+            return 0;
 
         } catch (FileNotFoundException fnfe) {
 
@@ -77,52 +118,50 @@ public class CsvFileParserImpl implements CsvFileParser {
 
         } catch (IOException ioe) {
 
-            LOG.error(String.format("IOException occurred when creating FileInputStream for file %s", file.getAbsoluteFile()));
+            LOG.error(String.format("IOException occurred when reading file %s", file.getAbsoluteFile()));
             ioe.printStackTrace();
         }
 
-        return Collections.emptyList();
+        return 0;
     }
 
-    private List<InvestmentTransaction> parseLines(File file, CsvParser csvParser) {
+    private int parseLines(List<String> header, BufferedReader reader, CsvParser csvParser, Consumer<InvestmentTransaction> consumer) throws IOException {
 
         LOG.debug("Calling parseLines()");
 
-        // Wrap in try catch due to opening file input stream
-        try (FileInputStream inputStream = new FileInputStream(file)) {
+        int count = 0;
 
-            // Instantiate the list to hold transactions
-            List<InvestmentTransaction> transactions = new ArrayList<>();
+        // The buffered prefix is parsed first, the parser skips the preamble and header rows
+        for (String line : header) {
 
-            // Create a UTF-8 Scanner on the input stream
-            Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8);
+            count += parseLine(line, csvParser, consumer);
+        }
 
-            // While more lines exist
-            while (scanner.hasNextLine()) {
+        // Then stream the remaining lines without holding them in memory
+        String line;
 
-                // Fetch the line
-                String line = scanner.nextLine();
+        while ((line = reader.readLine()) != null) {
 
-                LOG.debug(line);
+            count += parseLine(line, csvParser, consumer);
+        }
 
-                // Parse the line and add to the list if a valid row was found
-                csvParser.parse(line)
-                    .ifPresent(transactions::add);
-            }
+        return count;
+    }
 
-            return transactions;
+    private int parseLine(String line, CsvParser csvParser, Consumer<InvestmentTransaction> consumer) {
 
-        } catch (FileNotFoundException fnfe) {
+        LOG.debug(line);
 
-            LOG.error(String.format("FileNotFoundException occurred when creating FileInputStream for file %s", file.getAbsoluteFile()));
-            fnfe.printStackTrace();
+        // Parse the line and pass it on if a valid row was found
+        Optional<InvestmentTransaction> transaction = csvParser.parse(line);
 
-        } catch (IOException ioe) {
+        if (transaction.isEmpty()) {
 
-            LOG.error(String.format("IOException occurred when creating FileInputStream for file %s", file.getAbsoluteFile()));
-            ioe.printStackTrace();
+            return 0;
         }
 
-        return Collections.emptyList();
+        consumer.accept(transaction.get());
+
+        return 1;
     }
 }
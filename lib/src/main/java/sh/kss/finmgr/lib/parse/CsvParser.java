@@ -18,8 +18,9 @@
 package sh.kss.finmgr.lib.parse;
 
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 
-import java.io.FileInputStream;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,14 +28,21 @@ import java.util.Optional;
  */
 public interface CsvParser {
 
+    /**
+     * The number of lines from the start of a file that are needed to check for a match
+     *
+     * @return the length of the prefix passed to isMatch
+     */
+    int getHeaderLineCount();
+
     /**
      * Checks if the header row from an input file is a match for the parser
      * Ideally this should be implemented in O(1) time
      *
-     * @param inputStream FileInputStream  - the sheet to perform matching against
+     * @param lines List<String> - the first lines of the file, fewer than the header line count if the file is shorter
      * @return the boolean if the input text is a match for the parser
      */
-    boolean isMatch(FileInputStream inputStream);
+    boolean isMatch(List<String> lines);
 
     /**
      * Parse the input row and return the transaction found
@@ -43,4 +51,13 @@ public interface CsvParser {
      * @return the transaction from the row
      */
     Optional<InvestmentTransaction> parse(String line);
+
+    /**
+     * Set the registry the parser takes canonical securities and accounts from
+     *
+     * @param entityRegistry the registry shared by the parsers
+     */
+    default void setEntityRegistry(EntityRegistry entityRegistry) {
+
+    }
 }
@@ -0,0 +1,102 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a line of comma separated values into fields without using regular expressions.
+ * Quoted fields may contain commas and escaped ("") quotes, characters after a closing quote are ignored.
+ *
+ */
+public final class CsvTokenizer {
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    private CsvTokenizer() {
+
+    }
+
+    /**
+     * Split the line into its fields, removing the quotes around quoted fields
+     *
+     * @param line String - a line from a csv file
+     * @return the fields of the line, an empty line has a single empty field
+     */
+    public static List<String> tokenize(String line) {
+
+        List<String> fields = new ArrayList<>(16);
+        int length = line.length();
+        int i = 0;
+
+        while (true) {
+
+            int end;
+
+            if (i < length && line.charAt(i) == QUOTE) {
+
+                int start = ++i;
+                StringBuilder unescaped = null;
+
+                // Find the closing quote, unescaping doubled quotes along the way
+                while (i < length) {
+
+                    if (line.charAt(i) == QUOTE) {
+
+                        if (i + 1 < length && line.charAt(i + 1) == QUOTE) {
+
+                            if (unescaped == null) {
+
+                                unescaped = new StringBuilder();
+                            }
+
+                            unescaped.append(line, start, i + 1);
+                            i += 2;
+                            start = i;
+
+                            continue;
+                        }
+
+                        break;
+                    }
+
+                    i++;
+                }
+
+                // Most fields have no escaped quotes and are a plain substring of the line
+                fields.add(unescaped == null ? line.substring(start, i) : unescaped.append(line, start, i).toString());
+
+                end = line.indexOf(DELIMITER, Math.min(i + 1, length));
+
+            } else {
+
+                end = line.indexOf(DELIMITER, i);
+                fields.add(line.substring(i, end < 0 ? length : end));
+            }
+
+            if (end < 0) {
+
+                return fields;
+            }
+
+            i = end + 1;
+        }
+    }
+}
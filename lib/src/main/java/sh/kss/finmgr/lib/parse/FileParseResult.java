@@ -0,0 +1,71 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import jakarta.annotation.Nullable;
+import lombok.NonNull;
+import lombok.Value;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The outcome of parsing a single file, including how long it took and the failure if one occurred
+ *
+ */
+@Value
+public class FileParseResult {
+
+    @NonNull File file;
+    @NonNull List<InvestmentTransaction> transactions;
+    @NonNull Duration elapsed;
+    @Nullable Throwable failure;
+
+    /**
+     * A file that was parsed without throwing
+     *
+     * @param file the parsed file
+     * @param transactions the transactions found in the file
+     * @param elapsed the time spent parsing the file
+     * @return the successful result
+     */
+    public static FileParseResult success(File file, List<InvestmentTransaction> transactions, Duration elapsed) {
+
+        return new FileParseResult(file, transactions, elapsed, null);
+    }
+
+    /**
+     * A file that threw while being parsed, no transactions are kept from it
+     *
+     * @param file the file that failed
+     * @param failure the exception thrown by the parser
+     * @param elapsed the time spent before the failure
+     * @return the failed result
+     */
+    public static FileParseResult failure(File file, Throwable failure, Duration elapsed) {
+
+        return new FileParseResult(file, List.of(), elapsed, failure);
+    }
+
+    public boolean isFailed() {
+
+        return failure != null;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import lombok.NonNull;
+import lombok.Value;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The per-file results of an ingestion, kept in the order the files were traversed
+ *
+ */
+@Value
+public class ParseReport {
+
+    public static final ParseReport EMPTY = new ParseReport(List.of());
+
+    @NonNull List<FileParseResult> results;
+
+    /**
+     * Merge the transactions of every file in traversal order
+     *
+     * @return the transactions of all successfully parsed files
+     */
+    public List<InvestmentTransaction> getTransactions() {
+
+        int size = 0;
+
+        for (FileParseResult result : results) {
+
+            size += result.getTransactions().size();
+        }
+
+        List<InvestmentTransaction> transactions = new ArrayList<>(size);
+
+        for (FileParseResult result : results) {
+
+            transactions.addAll(result.getTransactions());
+        }
+
+        return transactions;
+    }
+
+    /**
+     * The files that threw while being parsed
+     *
+     * @return the failed results
+     */
+    public List<FileParseResult> getFailures() {
+
+        return results.stream()
+            .filter(FileParseResult::isFailed)
+            .toList();
+    }
+
+    /**
+     * The sum of the time spent parsing each file, which exceeds the wall time when files are parsed in parallel
+     *
+     * @return the total parse time
+     */
+    public Duration getTotalElapsed() {
+
+        return results.stream()
+            .map(FileParseResult::getElapsed)
+            .reduce(Duration.ZERO, Duration::plus);
+    }
+}
@@ -21,6 +21,7 @@ import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
 import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface Parser {
 
@@ -29,4 +30,10 @@ public interface Parser {
     List<InvestmentTransaction> traverseFiles(List<File> files);
 
     List<InvestmentTransaction> parseFile(File file);
+
+    int parseFile(File file, Consumer<InvestmentTransaction> consumer);
+
+    ParseReport ingestPath(String path);
+
+    ParseReport ingestFiles(List<File> files);
 }
@@ -20,14 +20,22 @@ package sh.kss.finmgr.lib.parse;
 import org.apache.commons.compress.utils.FileNameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Can consume one or many files and convert them into a list of transactions
@@ -44,6 +52,29 @@ public class ParserImpl implements Parser {
 
     private PdfFileParser pdfFileParser;
 
+    // The number of files parsed concurrently during ingestion, defaults to the number of cores
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    @Autowired
+    public void setCsvFileParser(CsvFileParser csvFileParser) {
+        this.csvFileParser = csvFileParser;
+    }
+
+    @Autowired
+    public void setXlsxFileParser(XlsxFileParser xlsxFileParser) {
+        this.xlsxFileParser = xlsxFileParser;
+    }
+
+    @Autowired
+    public void setPdfFileParser(PdfFileParser pdfFileParser) {
+        this.pdfFileParser = pdfFileParser;
+    }
+
+    @Value("${finmgr.parser.parallelism:0}")
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Traverse the input file for transactions
      *
@@ -158,4 +189,192 @@ public class ParserImpl implements Parser {
                 return Collections.emptyList();
         }
     }
+
+    /**
+     * Parse the specified file, passing each transaction to a consumer as it is found rather than collecting a list
+     *
+     * @param file    the file to parse
+     * @param consumer    receives the transactions in file order, such as a TransactionBatch builder
+     * @return the number of transactions parsed
+     */
+    public int parseFile(File file, Consumer<InvestmentTransaction> consumer) {
+
+        LOG.debug(String.format("Parsing input file %s", file.getAbsolutePath()));
+
+        // Lowercase the extension for case-insensitive matching
+        String extension = FileNameUtils.getExtension(file.getPath()).toLowerCase();
+
+        switch (extension) {
+
+            case "pdf":
+                return pdfFileParser.parsePdf(file, consumer);
+
+            case "xlsx":
+                return xlsxFileParser.parseXlsx(file, consumer);
+
+            case "csv":
+                return csvFileParser.parseCsv(file, consumer);
+
+            default:
+                // Don't know how to parse
+                return 0;
+        }
+    }
+
+    /**
+     * Ingest an input path string, parsing the files found beneath it in parallel
+     *
+     * @param path    the absolute path to ingest
+     * @return the per-file results in traversal order
+     */
+    public ParseReport ingestPath(String path) {
+
+        LOG.debug(String.format("Ingesting path %s", path));
+
+        return ingestFiles(List.of(new File(path)));
+    }
+
+    /**
+     * Ingest a list of input files, parsing them on a bounded pool sized to the configured parallelism.
+     * Results are merged in traversal order regardless of the order the parses complete in, and a file that
+     * throws is reported as a failed result rather than aborting the ingestion.
+     *
+     * @param files   the files to ingest
+     * @return the per-file results in traversal order
+     */
+    public ParseReport ingestFiles(List<File> files) {
+
+        // Expand directories up front so the traversal order is fixed before any parsing starts
+        List<File> leaves = new ArrayList<>();
+
+        for (File file : files) {
+
+            collectFiles(file, leaves);
+        }
+
+        if (leaves.isEmpty()) {
+
+            return ParseReport.EMPTY;
+        }
+
+        LOG.debug(String.format("Ingesting %d files with parallelism %d", leaves.size(), parallelism));
+
+        long start = System.nanoTime();
+
+        List<FileParseResult> results = new ArrayList<>(leaves.size());
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, leaves.size()))) {
+
+            List<Future<FileParseResult>> futures = new ArrayList<>(leaves.size());
+
+            for (File leaf : leaves) {
+
+                futures.add(executor.submit(() -> timedParseFile(leaf)));
+            }
+
+            // Collect in submission order so the merged transactions are deterministic
+            for (int i = 0; i < futures.size(); i++) {
+
+                results.add(awaitResult(leaves.get(i), futures.get(i)));
+            }
+        }
+
+        ParseReport report = new ParseReport(results);
+
+        LOG.info(String.format("Ingested %d files (%d failed) in %d ms, %d ms spent parsing",
+            leaves.size(),
+            report.getFailures().size(),
+            Duration.ofNanos(System.nanoTime() - start).toMillis(),
+            report.getTotalElapsed().toMillis()));
+
+        return report;
+    }
+
+    /**
+     * Recursively add the files beneath the input file, visiting directory entries in name order
+     *
+     * @param file    the file or directory to expand
+     * @param leaves  the list to add the non-directory files to
+     */
+    private void collectFiles(File file, List<File> leaves) {
+
+        if (!file.isDirectory()) {
+
+            leaves.add(file);
+
+            return;
+        }
+
+        File[] listFiles = file.listFiles();
+
+        if (listFiles == null) {
+
+            LOG.warn(String.format("Could not list directory %s, skipping", file.getAbsolutePath()));
+
+            return;
+        }
+
+        Arrays.sort(listFiles);
+
+        for (File listFile : listFiles) {
+
+            collectFiles(listFile, leaves);
+        }
+    }
+
+    /**
+     * Parse a single file, capturing the elapsed time and any exception thrown by the parser
+     *
+     * @param file    the file to parse
+     * @return the result of parsing the file
+     */
+    private FileParseResult timedParseFile(File file) {
+
+        long start = System.nanoTime();
+
+        try {
+
+            List<InvestmentTransaction> transactions = parseFile(file);
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            LOG.debug(String.format("Parsed %d transactions from %s in %d ms", transactions.size(), file.getAbsolutePath(), elapsed.toMillis()));
+
+            return FileParseResult.success(file, transactions, elapsed);
+
+        } catch (RuntimeException e) {
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            LOG.error(String.format("%s when parsing file %s: %s", e.getClass().getSimpleName(), file.getAbsolutePath(), e.getMessage()));
+
+            return FileParseResult.failure(file, e, elapsed);
+        }
+    }
+
+    /**
+     * Wait for a submitted parse to complete
+     *
+     * @param file    the file being parsed
+     * @param future  the pending parse result
+     * @return the parse result, or a failed result if the task itself did not complete
+     */
+    private FileParseResult awaitResult(File file, Future<FileParseResult> future) {
+
+        try {
+
+            return future.get();
+
+        } catch (ExecutionException ee) {
+
+            LOG.error(String.format("ExecutionException when parsing file %s", file.getAbsolutePath()));
+
+            return FileParseResult.failure(file, ee.getCause(), Duration.ZERO);
+
+        } catch (InterruptedException ie) {
+
+            Thread.currentThread().interrupt();
+
+            return FileParseResult.failure(file, ie, Duration.ZERO);
+        }
+    }
 }
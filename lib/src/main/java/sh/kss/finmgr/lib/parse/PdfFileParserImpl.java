@@ -23,19 +23,26 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 import sh.kss.finmgr.lib.parse.brokerage.QuestradePdf;
 import sh.kss.finmgr.lib.parse.brokerage.QuestradePdfOld;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * This class provides common processing for .pdf files into finmgr InvestmentTransactions
+ * This class provides common processing for .pdf files into finmgr InvestmentTransactions. The text is extracted
+ * a page at a time: parsers are matched against the first and last lines of the document, then the lines are
+ * streamed into the matched parser as the pages are extracted. Each parse borrows its own PDFTextStripper from a
+ * pool, so documents can be parsed concurrently.
  *
  */
 @Component
@@ -43,51 +50,75 @@ public class PdfFileParserImpl implements PdfFileParser {
 
     // A list of the available PDF parsers
     private final List<PdfParser> PDF_PARSERS = List.of(new QuestradePdfOld(), new QuestradePdf());
-    // pdfbox PDF to Text object
-    private PDFTextStripper textStripper = new PDFTextStripper();
     // Log manager
     private final Logger LOG = LoggerFactory.getLogger(PdfFileParserImpl.class);
+    // The most lines any parser needs from the start and end of a document to match it
+    private final int HEAD_LINE_COUNT = PDF_PARSERS.stream().mapToInt(PdfParser::getHeadLineCount).max().orElse(0);
+    private final int TAIL_LINE_COUNT = PDF_PARSERS.stream().mapToInt(PdfParser::getTailLineCount).max().orElse(0);
+
+    // PDFTextStripper is stateful so concurrent parses each borrow their own
+    private PdfTextStripperPool stripperPool = new PdfTextStripperPool(Runtime.getRuntime().availableProcessors());
+
+    @Value("${finmgr.parser.pdf-stripper-pool-size:0}")
+    public void setStripperPoolSize(int stripperPoolSize) {
+        this.stripperPool = new PdfTextStripperPool(stripperPoolSize > 0 ? stripperPoolSize : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Share one registry between the parsers so equal securities and accounts are the same instance across files
+     *
+     * @param entityRegistry the registry
+     */
+    @Autowired
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+
+        for (PdfParser parser : PDF_PARSERS) {
+
+            parser.setEntityRegistry(entityRegistry);
+        }
+    }
 
     @Override
     public List<InvestmentTransaction> parsePdf(File file) {
 
+        List<InvestmentTransaction> transactions = new ArrayList<>();
+
+        parsePdf(file, transactions::add);
+
+        return transactions;
+    }
+
+    @Override
+    public int parsePdf(File file, Consumer<InvestmentTransaction> consumer) {
+
         LOG.debug("Calling parsePdf()");
 
+        PDFTextStripper stripper = stripperPool.borrow();
+
         // .pdf handler
         try (PDDocument document = Loader.loadPDF(new RandomAccessReadBufferedFile(file))) {
 
             // Skip any encrypted documents
             if (!document.isEncrypted()) {
 
-                // Get the text from the document
-                String pdfFileInText = textStripper.getText(document);
-
-                // Split it into a list of strings
-                List<String> lines = Arrays.asList(pdfFileInText.split("\\r?\\n"));
-
-                // In debug mode output every line in the document
-                StringBuilder stringBuilder = new StringBuilder();
+                PdfPageLines lines = new PdfPageLines(document, stripper);
 
-                for (int i = 0; i < lines.size(); i++) {
-
-                    stringBuilder
-                    .append(i)
-                    .append(": ")
-                    .append(lines.get(i))
-                    .append("\n");
-                }
-
-                LOG.debug(String.valueOf(stringBuilder));
+                // Only the pages holding the first and last lines are extracted to match the document
+                List<String> tail = lines.tail(TAIL_LINE_COUNT);
+                List<String> head = lines.head(HEAD_LINE_COUNT);
 
                 // Try all the parsers on the document
                 for (PdfParser pdfParser : PDF_PARSERS) {
 
-                    // If it matches then short-circuit and return the parse results
-                    if (pdfParser.isMatch(lines)) {
+                    // If it matches then short-circuit and stream the remaining pages into the parser
+                    if (pdfParser.isMatch(
+                        head.subList(0, Math.min(pdfParser.getHeadLineCount(), head.size())),
+                        tail.subList(Math.max(0, tail.size() - pdfParser.getTailLineCount()), tail.size())
+                    )) {
 
                         LOG.debug(String.format("Matched parser %s", pdfParser.toString()));
 
-                        return pdfParser.parse(lines);
+                        return pdfParser.parse(lines, consumer);
 
                     } else {
 
@@ -99,12 +130,16 @@ public class PdfFileParserImpl implements PdfFileParser {
                 LOG.debug(String.format("Skipped file %s because it is encrypted", file.getAbsoluteFile()));
             }
         }
-        catch (IOException ioe) {
+        catch (IOException | UncheckedIOException ioe) {
 
             LOG.error(String.format("IOException occurred when loading PDDocumnent with file %s", file.getAbsoluteFile()));
             ioe.printStackTrace();
+
+        } finally {
+
+            stripperPool.release(stripper);
         }
 
-        return Collections.emptyList();
+        return 0;
     }
 }
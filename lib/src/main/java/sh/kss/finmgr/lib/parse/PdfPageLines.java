@@ -0,0 +1,227 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the lines of text of a PDF document, extracting one page at a time as the lines are consumed. The lines
+ * are the same as splitting the text of the whole document on line breaks: a line may continue across a page break
+ * and trailing blank lines at the end of the document are dropped.
+ *
+ */
+final class PdfPageLines implements Iterator<String> {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(PdfPageLines.class);
+
+    private final PDDocument document;
+    private final PDFTextStripper stripper;
+    private final int pageCount;
+
+    // Pages already extracted while reading the tail, used once when the iteration reaches them
+    private final Map<Integer, String> extracted = new HashMap<>();
+    // Complete lines that have not been consumed yet
+    private final Deque<String> ready = new ArrayDeque<>();
+
+    private int nextPage = 1;
+    // Text after the last line break of the pages extracted so far
+    private String partial = "";
+    // Blank lines are held back until a non-blank line follows, so trailing ones can be dropped
+    private int blankLines;
+    private int lineNumber;
+
+    PdfPageLines(PDDocument document, PDFTextStripper stripper) {
+
+        this.document = document;
+        this.stripper = stripper;
+        this.pageCount = document.getNumberOfPages();
+    }
+
+    /**
+     * The first lines of the document, extracting only as many pages as needed. The lines are not consumed.
+     *
+     * @param count the number of lines
+     * @return up to count lines from the start of the document
+     */
+    List<String> head(int count) {
+
+        while (ready.size() < count && nextPage <= pageCount) {
+
+            loadNextPage();
+        }
+
+        List<String> head = new ArrayList<>(Math.min(count, ready.size()));
+        Iterator<String> iterator = ready.iterator();
+
+        while (head.size() < count && iterator.hasNext()) {
+
+            head.add(iterator.next());
+        }
+
+        return head;
+    }
+
+    /**
+     * The last lines of the document, extracting pages backwards from the last page until there are enough lines
+     *
+     * @param count the number of lines
+     * @return up to count lines from the end of the document
+     */
+    List<String> tail(int count) {
+
+        if (count == 0 || pageCount == 0) {
+
+            return List.of();
+        }
+
+        int page = pageCount;
+        String text = "";
+        List<String> lines;
+
+        // One extra line is needed because the first line may continue from the previous page
+        do {
+
+            String pageText = pageText(page);
+
+            // Keep the extracted page for when the iteration reaches it
+            extracted.put(page, pageText);
+
+            text = pageText + text;
+            lines = split(text);
+            page--;
+
+        } while (lines.size() <= count && page >= 1);
+
+        return lines.subList(Math.max(0, lines.size() - count), lines.size());
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        while (ready.isEmpty() && nextPage <= pageCount) {
+
+            loadNextPage();
+        }
+
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public String next() {
+
+        if (!hasNext()) {
+
+            throw new NoSuchElementException();
+        }
+
+        return ready.pollFirst();
+    }
+
+    private void loadNextPage() {
+
+        String[] parts = (partial + pageText(nextPage)).split("\\r?\\n", -1);
+        boolean lastPage = nextPage == pageCount;
+
+        nextPage++;
+
+        // The text after the last line break carries over to the next page
+        int complete = lastPage ? parts.length : parts.length - 1;
+        partial = lastPage ? "" : parts[parts.length - 1];
+
+        // In debug mode output every line of the page
+        StringBuilder dump = LOG.isDebugEnabled() ? new StringBuilder() : null;
+
+        for (int i = 0; i < complete; i++) {
+
+            if (parts[i].isEmpty()) {
+
+                blankLines++;
+                continue;
+            }
+
+            for (; blankLines > 0; blankLines--) {
+
+                offer("", dump);
+            }
+
+            offer(parts[i], dump);
+        }
+
+        if (dump != null) {
+
+            LOG.debug(String.valueOf(dump));
+        }
+    }
+
+    private void offer(String line, StringBuilder dump) {
+
+        if (dump != null) {
+
+            dump.append(lineNumber)
+                .append(": ")
+                .append(line)
+                .append("\n");
+        }
+
+        lineNumber++;
+        ready.addLast(line);
+    }
+
+    private String pageText(int page) {
+
+        String text = extracted.remove(page);
+
+        if (text != null) {
+
+            return text;
+        }
+
+        try {
+
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+
+            return stripper.getText(document);
+
+        } catch (IOException ioe) {
+
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private static List<String> split(String text) {
+
+        return Arrays.asList(text.split("\\r?\\n"));
+    }
+}
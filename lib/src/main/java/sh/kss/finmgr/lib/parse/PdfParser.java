@@ -18,8 +18,12 @@
 package sh.kss.finmgr.lib.parse;
 
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A class that can parse the text from a specific format of input file into finmgr transactions
@@ -27,13 +31,54 @@ import java.util.List;
 public interface PdfParser {
 
     /**
-     * Checks if the input text from an input file is a match for the parser
+     * The number of lines from the start of the document that isMatch inspects
+     *
+     * @return the head line count
+     */
+    int getHeadLineCount();
+
+    /**
+     * The number of lines from the end of the document that isMatch inspects
+     *
+     * @return the tail line count
+     */
+    int getTailLineCount();
+
+    /**
+     * Checks if the first and last lines of an input file are a match for the parser, so a document can be matched
+     * without extracting the pages in between
      * Ideally this should be implemented in O(1) time
      *
+     * @param head List<String> - up to getHeadLineCount() lines from the start of the input file
+     * @param tail List<String> - up to getTailLineCount() lines from the end of the input file
+     * @return the boolean if the input text is a match for the parser
+     */
+    boolean isMatch(List<String> head, List<String> tail);
+
+    /**
+     * Parse the input lines as they are read and pass each transaction found to the consumer, in document order
+     *
+     * @param lines Iterator<String> - the lines of text from an input file
+     * @param consumer receives each transaction found
+     * @return the number of transactions found
+     */
+    int parse(Iterator<String> lines, Consumer<InvestmentTransaction> consumer);
+
+    /**
+     * Checks if the input text from an input file is a match for the parser
+     *
      * @param lines List<String> - the lines of text from an input file
      * @return the boolean if the input text is a match for the parser
      */
-    boolean isMatch(List<String> lines);
+    default boolean isMatch(List<String> lines) {
+
+        int size = lines.size();
+
+        return isMatch(
+            lines.subList(0, Math.min(getHeadLineCount(), size)),
+            lines.subList(Math.max(0, size - getTailLineCount()), size)
+        );
+    }
 
     /**
      * Parse the input text and return all of the transactions found
@@ -43,5 +88,21 @@ public interface PdfParser {
      * @param lines List<String> - the lines of text from an input file
      * @return the list of transactions from the text
      */
-    List<InvestmentTransaction> parse(List<String> lines);
+    default List<InvestmentTransaction> parse(List<String> lines) {
+
+        List<InvestmentTransaction> transactions = new ArrayList<>();
+
+        parse(lines.iterator(), transactions::add);
+
+        return transactions;
+    }
+
+    /**
+     * Set the registry the parser takes canonical securities and accounts from
+     *
+     * @param entityRegistry the registry shared by the parsers
+     */
+    default void setEntityRegistry(EntityRegistry entityRegistry) {
+
+    }
 }
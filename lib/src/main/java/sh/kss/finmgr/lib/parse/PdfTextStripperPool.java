@@ -0,0 +1,74 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of PDFTextStripper instances. A stripper is stateful and not thread-safe, so each concurrent parse
+ * borrows its own one and returns it when done. When the pool is empty a new stripper is created rather than
+ * waiting, and strippers returned to a full pool are discarded.
+ *
+ */
+final class PdfTextStripperPool {
+
+    private final BlockingQueue<PDFTextStripper> idle;
+
+    PdfTextStripperPool(int capacity) {
+
+        this.idle = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Take an idle stripper, or create one if none are idle
+     *
+     * @return a stripper owned by the caller until it is released
+     */
+    PDFTextStripper borrow() {
+
+        PDFTextStripper stripper = idle.poll();
+
+        return stripper != null ? stripper : new PDFTextStripper();
+    }
+
+    /**
+     * Return a stripper to the pool, resetting the page range left by the last parse
+     *
+     * @param stripper the borrowed stripper
+     */
+    void release(PDFTextStripper stripper) {
+
+        stripper.setStartPage(1);
+        stripper.setEndPage(Integer.MAX_VALUE);
+
+        idle.offer(stripper);
+    }
+
+    /**
+     * The number of idle strippers
+     *
+     * @return the idle count
+     */
+    int size() {
+
+        return idle.size();
+    }
+}
@@ -21,8 +21,11 @@ import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
 import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface XlsxFileParser {
 
     List<InvestmentTransaction> parseXlsx(File file);
+
+    int parseXlsx(File file, Consumer<InvestmentTransaction> consumer);
 }
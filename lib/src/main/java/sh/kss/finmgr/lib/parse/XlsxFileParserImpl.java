@@ -17,27 +17,39 @@
  */
 package sh.kss.finmgr.lib.parse;
 
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 import sh.kss.finmgr.lib.parse.brokerage.QuestradeXlsx;
 
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * This class provides common functionality for the processing of .xlsx files into finmgr InvestmentTransactions
+ * This class provides common functionality for the processing of .xlsx files into finmgr InvestmentTransactions.
+ * The first sheet is read with POI's SAX event model, so rows are handed to the parsers one at a time as a reused
+ * XlsxRow view instead of building the whole workbook in memory.
  *
  */
 @Component
@@ -48,64 +60,191 @@ public class XlsxFileParserImpl implements XlsxFileParser {
     // A list of the available Xlsx parsers
     private final List<XlsxParser> XLSX_PARSERS = List.of(new QuestradeXlsx());
 
+    /**
+     * Share one registry between the parsers so equal securities and accounts are the same instance across files
+     *
+     * @param entityRegistry the registry
+     */
+    @Autowired
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+
+        for (XlsxParser parser : XLSX_PARSERS) {
+
+            parser.setEntityRegistry(entityRegistry);
+        }
+    }
+
     @Override
     public List<InvestmentTransaction> parseXlsx(File file) {
 
-        LOG.debug("Calling parseXlsx()");
+        List<InvestmentTransaction> transactions = new ArrayList<>();
+
+        parseXlsx(file, transactions::add);
+
+        return transactions;
+    }
 
-        // Wrap in try catch due to opening file input stream
-        try (FileInputStream inputStream = new FileInputStream(file)) {
+    @Override
+    public int parseXlsx(File file, Consumer<InvestmentTransaction> consumer) {
 
-            // Get the root sheet and header row
-            Workbook workbook = new XSSFWorkbook(inputStream);
-            Sheet sheet = workbook.getSheetAt(0);
+        LOG.debug("Calling parseXlsx()");
 
-            // Try to match against known row parsers
-            for (XlsxParser xlsxParser : XLSX_PARSERS) {
+        // Open read only so the package is never rewritten on close
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
 
-                LOG.debug(String.format("Check RowParser %s", xlsxParser));
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
 
-                // If the header matches, parse it
-                if (xlsxParser.isMatch(sheet)) {
+            // Only the first sheet holds transactions
+            if (!sheets.hasNext()) {
 
-                    LOG.debug(String.format("Matched RowParser %s", xlsxParser));
+                return 0;
+            }
 
-                    Iterator<Row> rowIterator = sheet.rowIterator();
-                    List<InvestmentTransaction> transactions = new ArrayList<>();
+            RowHandler rowHandler = new RowHandler(consumer);
+            XMLReader xmlReader = XMLHelper.newXMLReader();
 
-                    boolean skippedHeader = false;
+            xmlReader.setContentHandler(new XSSFSheetXMLHandler(
+                reader.getStylesTable(),
+                null,
+                new ReadOnlySharedStringsTable(pkg),
+                rowHandler,
+                new DataFormatter(),
+                false
+            ));
 
-                    // Parse each row into an InvestmentTransaction
-                    while (rowIterator.hasNext()) {
+            try (InputStream sheet = sheets.next()) {
 
-                        if (!skippedHeader) {
-                            rowIterator.next();
-                            skippedHeader = true;
-                        }
+                xmlReader.parse(new InputSource(sheet));
 
-                        // Parse the row and add it to the list of transactions if valid
-                        xlsxParser.parse(rowIterator.next())
-                            .ifPresent(transactions::add);
-                    }
+            } catch (UnmatchedHeaderException uhe) {
 
-                    return transactions;
-                }
+                LOG.debug(String.format("No XlsxParser matched the header of file %s", file.getAbsoluteFile()));
             }
 
-            // If no Row Parsers matched, the file format is unknown and no transactions are parsed
-            return Collections.emptyList();
+            return rowHandler.count;
+
+        } catch (OpenXML4JException oe) {
+
+            LOG.error(String.format("OpenXML4JException occurred when opening workbook %s", file.getAbsoluteFile()));
+            oe.printStackTrace();
 
-        } catch (FileNotFoundException fnfe) {
+        } catch (SAXException | ParserConfigurationException se) {
 
-            LOG.error(String.format("FileNotFoundException occurred when creating FileInputStream for file %s", file.getAbsoluteFile()));
-            fnfe.printStackTrace();
+            LOG.error(String.format("%s occurred when reading sheet of workbook %s", se.getClass().getSimpleName(), file.getAbsoluteFile()));
+            se.printStackTrace();
 
         } catch (IOException ioe) {
 
-            LOG.error(String.format("IOException occurred when creating FileInputStream for file %s", file.getAbsoluteFile()));
+            LOG.error(String.format("IOException occurred when reading workbook %s", file.getAbsoluteFile()));
             ioe.printStackTrace();
         }
 
-        return Collections.emptyList();
+        return 0;
+    }
+
+    /**
+     * Convert a cell reference such as "AB12" to its 0-based column index
+     *
+     * @param cellReference the A1 style reference of the cell
+     * @return the column index
+     */
+    static int columnIndex(String cellReference) {
+
+        int column = 0;
+
+        for (int i = 0; i < cellReference.length(); i++) {
+
+            char c = cellReference.charAt(i);
+
+            if (c < 'A' || c > 'Z') {
+
+                break;
+            }
+
+            column = column * 26 + (c - 'A' + 1);
+        }
+
+        return column - 1;
+    }
+
+    /**
+     * Thrown from the row handler to stop reading a sheet whose header no parser recognises
+     *
+     */
+    private static final class UnmatchedHeaderException extends RuntimeException {
+
+        UnmatchedHeaderException() {
+
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Fills the reused row view from the SAX cell events and dispatches each completed row
+     *
+     */
+    private final class RowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final Consumer<InvestmentTransaction> consumer;
+        private final XlsxRow row = new XlsxRow();
+
+        private XlsxParser matched;
+        private int nextColumn;
+        private int count;
+
+        RowHandler(Consumer<InvestmentTransaction> consumer) {
+
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+
+            row.reset(rowNum);
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+
+            // The first row is the header, match it against the known parsers
+            if (matched == null) {
+
+                for (XlsxParser xlsxParser : XLSX_PARSERS) {
+
+                    LOG.debug(String.format("Check RowParser %s", xlsxParser));
+
+                    if (xlsxParser.isMatch(row)) {
+
+                        LOG.debug(String.format("Matched RowParser %s", xlsxParser));
+
+                        matched = xlsxParser;
+
+                        return;
+                    }
+                }
+
+                // If no Row Parsers matched, the file format is unknown and the rest of the sheet is skipped
+                throw new UnmatchedHeaderException();
+            }
+
+            // Parse the row and pass it on if valid
+            matched.parse(row).ifPresent(transaction -> {
+
+                consumer.accept(transaction);
+                count++;
+            });
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+
+            // Cells without a reference follow the previous cell
+            int column = cellReference == null ? nextColumn : columnIndex(cellReference);
+
+            row.setCell(column, formattedValue);
+            nextColumn = column + 1;
+        }
     }
 }
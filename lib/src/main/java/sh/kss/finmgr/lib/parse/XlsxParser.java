@@ -17,9 +17,8 @@
  */
 package sh.kss.finmgr.lib.parse;
 
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 
 import java.util.Optional;
 
@@ -32,16 +31,25 @@ public interface XlsxParser {
      * Checks if the header row from an input file is a match for the parser
      * Ideally this should be implemented in O(1) time
      *
-     * @param sheet Sheet - the sheet to perform matching against
+     * @param header XlsxRow - the first row of the sheet to perform matching against
      * @return the boolean if the input text is a match for the parser
      */
-    boolean isMatch(Sheet sheet);
+    boolean isMatch(XlsxRow header);
 
     /**
      * Parse the input row and return the transaction found
      *
-     * @param row Row - the row from an input file
+     * @param row XlsxRow - the row from an input file, only valid for the duration of the call
      * @return optional transaction from the row
      */
-    Optional<InvestmentTransaction> parse(Row row);
+    Optional<InvestmentTransaction> parse(XlsxRow row);
+
+    /**
+     * Set the registry the parser takes canonical securities and accounts from
+     *
+     * @param entityRegistry the registry shared by the parsers
+     */
+    default void setEntityRegistry(EntityRegistry entityRegistry) {
+
+    }
 }
@@ -0,0 +1,138 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import java.util.Arrays;
+
+/**
+ * A lightweight view of the formatted cell values of one spreadsheet row. A single instance is reused for every
+ * row of a sheet, so parsers must not keep a reference to it after parsing the row.
+ *
+ */
+public final class XlsxRow {
+
+    private String[] cells = new String[16];
+    private int rowNum = -1;
+    private int firstCellNum = -1;
+    private int lastCellNum = -1;
+
+    /**
+     * A standalone row holding the given cell values from the first column, for parsing rows that were not read
+     * from a sheet
+     *
+     * @param rowNum the 0-based index of the row
+     * @param values the formatted cell values, a null value leaves the cell absent
+     * @return the row
+     */
+    public static XlsxRow of(int rowNum, String... values) {
+
+        XlsxRow row = new XlsxRow();
+        row.reset(rowNum);
+
+        for (int i = 0; i < values.length; i++) {
+
+            if (values[i] != null) {
+
+                row.setCell(i, values[i]);
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * The 0-based index of the row in the sheet
+     *
+     * @return the row number
+     */
+    public int getRowNum() {
+
+        return rowNum;
+    }
+
+    /**
+     * The formatted value of a cell
+     *
+     * @param column the 0-based column index
+     * @return the cell value, or null if the row has no cell in the column
+     */
+    public String getCellValue(int column) {
+
+        return column >= 0 && column < cells.length ? cells[column] : null;
+    }
+
+    /**
+     * The index of the first cell in the row, or -1 if the row has no cells
+     *
+     * @return the first cell index
+     */
+    public int getFirstCellNum() {
+
+        return firstCellNum;
+    }
+
+    /**
+     * One more than the index of the last cell in the row, or -1 if the row has no cells
+     *
+     * @return the last cell index plus one
+     */
+    public int getLastCellNum() {
+
+        return lastCellNum;
+    }
+
+    /**
+     * Clear the view so it can hold the cells of the next row
+     *
+     * @param rowNum the 0-based index of the next row
+     */
+    void reset(int rowNum) {
+
+        if (lastCellNum > 0) {
+
+            Arrays.fill(cells, 0, lastCellNum, null);
+        }
+
+        this.rowNum = rowNum;
+        this.firstCellNum = -1;
+        this.lastCellNum = -1;
+    }
+
+    /**
+     * Set the value of a cell in the current row
+     *
+     * @param column the 0-based column index
+     * @param value the formatted cell value
+     */
+    void setCell(int column, String value) {
+
+        if (column >= cells.length) {
+
+            cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+        }
+
+        cells[column] = value;
+
+        if (firstCellNum < 0 || column < firstCellNum) {
+
+            firstCellNum = column;
+        }
+
+        lastCellNum = Math.max(lastCellNum, column + 1);
+    }
+}
@@ -18,6 +18,7 @@
 package sh.kss.finmgr.lib.parse.brokerage;
 
 import org.javamoney.moneta.Money;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import sh.kss.finmgr.lib.entity.Account;
 import sh.kss.finmgr.lib.entity.InvestmentAction;
@@ -25,6 +26,8 @@ import sh.kss.finmgr.lib.entity.Quantity;
 import sh.kss.finmgr.lib.entity.Security;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 import sh.kss.finmgr.lib.parse.PdfParser;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
 
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
@@ -32,10 +35,11 @@ import javax.money.MonetaryAmount;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -95,75 +99,77 @@ public class QuestradePdf implements PdfParser {
     );
 
 
+    // The company name is on the 7th last line of the statement
+    private final int TAIL_LINE_COUNT = 7;
+    // Canonical securities and accounts, replaced by the shared registry when one is set
+    private EntityRegistry entityRegistry = new EntityRegistryImpl();
+
+    @Autowired
+    @Override
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+        this.entityRegistry = entityRegistry;
+    }
+
+
+    @Override
+    public int getHeadLineCount() {
+
+        return 0;
+    }
+
+    @Override
+    public int getTailLineCount() {
+
+        return TAIL_LINE_COUNT;
+    }
+
     /**
-     * Check if a list of input lines matches known Questrade format
+     * Check if the last input lines match known Questrade format
      *
-     * @param lines List<String> - the lines of text from an input file
+     * @param head List<String> - the first lines of text from an input file, unused
+     * @param tail List<String> - the last lines of text from an input file
      * @return a boolean if the list is a match
      */
     @Override
-    public boolean isMatch(List<String> lines) {
+    public boolean isMatch(List<String> head, List<String> tail) {
 
-        // Length of the list must be greater than 6 to avoid an out of bounds exception
+        // Length of the list must be at least 7 to avoid an out of bounds exception
 
-        return lines.size() > 6 &&
+        return tail.size() >= TAIL_LINE_COUNT &&
             (
-                lines.get(lines.size() - 7).trim().endsWith("Questrade, Inc.")
+                tail.get(tail.size() - TAIL_LINE_COUNT).trim().endsWith("Questrade, Inc.")
             )
         ;
     }
 
     /**
+     * Stream the statement lines, finding single and multi-line transactions
      *
-     *
-     * @param lines List<String> - the lines of text from an input file
-     * @return
+     * @param lines Iterator<String> - the lines of text from an input file
+     * @param consumer receives each transaction found
+     * @return the number of transactions found
      */
     @Override
-    public List<InvestmentTransaction> parse(List<String> lines) {
+    public int parse(Iterator<String> lines, Consumer<InvestmentTransaction> consumer) {
 
         CurrencyUnit cursorCurrencyUnit = Monetary.getCurrency("CAD");
-        Security cursorSecurity = new Security("UNKNOWN", cursorCurrencyUnit);
+        Security cursorSecurity = entityRegistry.getSecurity("UNKNOWN", cursorCurrencyUnit);
 
-        List<InvestmentTransaction> transactions = new ArrayList<>();
+        StatementLineScanner scanner = new StatementLineScanner(START_PATTERN, END_PATTERN, END_DIV_PATTERN, consumer);
 
-        for (int i = 0; i < lines.size(); i++) {
+        while (lines.hasNext()) {
 
-            String line = lines.get(i);
+            String line = lines.next();
 
             cursorSecurity = getSymbol(line, cursorSecurity);
 
-            parseTransaction(cursorCurrencyUnit, Account.UNKNOWN, cursorSecurity, line)
-                .ifPresent(transactions::add);
-
-            if (! startPartialTransaction(line)) {
-
-                continue;
-            }
-
-            StringBuilder multiLine = new StringBuilder();
-
-            multiLine.append(line).append(" ");
-
-            int lastLineIndex = i + 1;
-
-            while (!END_PATTERN.matcher(lines.get(lastLineIndex).trim()).find()
-                && !END_DIV_PATTERN.matcher(lines.get(lastLineIndex).trim()).find()
-                && lastLineIndex < lines.size() - 1
-            ) {
-
-                multiLine.append(lines.get(lastLineIndex)).append(" ");
-
-                lastLineIndex++;
-            }
-
-            multiLine.append(lines.get(lastLineIndex));
+            // Multi-line transactions keep the cursor state of their start line
+            Security security = cursorSecurity;
 
-            parseTransaction(cursorCurrencyUnit, Account.UNKNOWN, cursorSecurity, multiLine.toString())
-                .ifPresent(transactions::add);
+            scanner.accept(line, text -> parseTransaction(cursorCurrencyUnit, Account.UNKNOWN, security, text));
         }
 
-        return transactions;
+        return scanner.finish();
     }
 
 
@@ -32,10 +32,11 @@ import javax.money.MonetaryAmount;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -95,91 +96,84 @@ public class QuestradePdfOld implements PdfParser {
     );
 
 
+    // The company name is within the first 55 lines of the statement
+    private final int HEAD_LINE_COUNT = 55;
+
+
+    @Override
+    public int getHeadLineCount() {
+
+        return HEAD_LINE_COUNT;
+    }
+
+    @Override
+    public int getTailLineCount() {
+
+        return 0;
+    }
+
     /**
-     * Check if a list of input lines matches known Questrade format
+     * Check if the first input lines match known Questrade format
      *
-     * @param lines List<String> - the lines of text from an input file
+     * @param head List<String> - the first lines of text from an input file
+     * @param tail List<String> - the last lines of text from an input file, unused
      * @return a boolean if the list is a match
      */
     @Override
-    public boolean isMatch(List<String> lines) {
+    public boolean isMatch(List<String> head, List<String> tail) {
 
         // Length of the list must be greater than 53 to avoid an out of bounds exception
 
-        return lines.size() > 54 &&
+        return head.size() > 54 &&
             (
-                lines.get(37).trim().endsWith("Questrade")
-                || lines.get(38).trim().endsWith("Questrade")
-                || lines.get(41).trim().endsWith("Questrade")
-                || lines.get(42).trim().endsWith("Questrade")
-                || lines.get(44).trim().endsWith("Questrade")
-                || lines.get(16).trim().endsWith("Questrade, Inc.")
-                || lines.get(36).trim().endsWith("Questrade, Inc.")
-                || lines.get(37).trim().endsWith("Questrade, Inc.")
-                || lines.get(39).trim().endsWith("Questrade, Inc.")
-                || lines.get(41).trim().endsWith("Questrade, Inc.")
-                || lines.get(42).trim().endsWith("Questrade, Inc.")
-                || lines.get(44).trim().endsWith("Questrade, Inc.")
-                || lines.get(48).trim().endsWith("Questrade, Inc.")
-                || lines.get(49).trim().endsWith("Questrade, Inc.")
-                || lines.get(50).trim().endsWith("Questrade, Inc.")
-                || lines.get(54).trim().endsWith("Questrade, Inc.")
+                head.get(37).trim().endsWith("Questrade")
+                || head.get(38).trim().endsWith("Questrade")
+                || head.get(41).trim().endsWith("Questrade")
+                || head.get(42).trim().endsWith("Questrade")
+                || head.get(44).trim().endsWith("Questrade")
+                || head.get(16).trim().endsWith("Questrade, Inc.")
+                || head.get(36).trim().endsWith("Questrade, Inc.")
+                || head.get(37).trim().endsWith("Questrade, Inc.")
+                || head.get(39).trim().endsWith("Questrade, Inc.")
+                || head.get(41).trim().endsWith("Questrade, Inc.")
+                || head.get(42).trim().endsWith("Questrade, Inc.")
+                || head.get(44).trim().endsWith("Questrade, Inc.")
+                || head.get(48).trim().endsWith("Questrade, Inc.")
+                || head.get(49).trim().endsWith("Questrade, Inc.")
+                || head.get(50).trim().endsWith("Questrade, Inc.")
+                || head.get(54).trim().endsWith("Questrade, Inc.")
             )
         ;
     }
 
     /**
+     * Stream the statement lines, finding single and multi-line transactions
      *
-     *
-     * @param lines List<String> - the lines of text from an input file
-     * @return
+     * @param lines Iterator<String> - the lines of text from an input file
+     * @param consumer receives each transaction found
+     * @return the number of transactions found
      */
     @Override
-    public List<InvestmentTransaction> parse(List<String> lines) {
+    public int parse(Iterator<String> lines, Consumer<InvestmentTransaction> consumer) {
 
-        CurrencyUnit cursorCurrencyUnit;
+        CurrencyUnit cursorCurrencyUnit = Monetary.getCurrency("CAD");
         Security cursorSecurity = null;
 
-        List<InvestmentTransaction> transactions = new ArrayList<>();
+        StatementLineScanner scanner = new StatementLineScanner(START_PATTERN, END_PATTERN, END_DIV_PATTERN, consumer);
 
-        for (int i = 0; i < lines.size(); i++) {
+        while (lines.hasNext()) {
 
-            String line = lines.get(i);
+            String line = lines.next();
 
-            cursorCurrencyUnit = Monetary.getCurrency("CAD");
             cursorSecurity = getSymbol(line, cursorSecurity);
 
-            parseTransaction(cursorCurrencyUnit, Account.UNKNOWN, cursorSecurity, line)
-                .ifPresent(transactions::add);
-
-            if (! startPartialTransaction(line)) {
-
-                continue;
-            }
-
-            StringBuilder multiLine = new StringBuilder();
-
-            multiLine.append(line).append(" ");
-
-            int lastLineIndex = i + 1;
-
-            while (!END_PATTERN.matcher(lines.get(lastLineIndex).trim()).find()
-                && !END_DIV_PATTERN.matcher(lines.get(lastLineIndex).trim()).find()
-                && lastLineIndex < lines.size() - 1
-            ) {
-
-                multiLine.append(lines.get(lastLineIndex)).append(" ");
-
-                lastLineIndex++;
-            }
-
-            multiLine.append(lines.get(lastLineIndex));
+            // Multi-line transactions keep the cursor state of their start line
+            Security security = cursorSecurity;
 
-            parseTransaction(cursorCurrencyUnit, Account.UNKNOWN, cursorSecurity, multiLine.toString())
-                .ifPresent(transactions::add);
+            scanner.accept(line, text -> parseTransaction(cursorCurrencyUnit, Account.UNKNOWN, security, text));
         }
 
-        return transactions;
+        return scanner.finish();
     }
 
 
@@ -17,14 +17,15 @@
  */
 package sh.kss.finmgr.lib.parse.brokerage;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
 import org.javamoney.moneta.Money;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import sh.kss.finmgr.lib.entity.*;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 import sh.kss.finmgr.lib.parse.XlsxParser;
+import sh.kss.finmgr.lib.parse.XlsxRow;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
 
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
@@ -56,23 +57,29 @@ public class QuestradeXlsx implements XlsxParser {
         "Activity Type",
         "Account Type",
     };
+    // Canonical securities and accounts, replaced by the shared registry when one is set
+    private EntityRegistry entityRegistry = new EntityRegistryImpl();
+
+    @Autowired
+    @Override
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+        this.entityRegistry = entityRegistry;
+    }
 
     /**
      * Checks if the header row from an input file is a match for the parser
      * Ideally this should be implemented in O(1) time
      *
-     * @param sheet Sheet - the sheet to perform matching against
+     * @param header XlsxRow - the first row of the sheet to perform matching against
      * @return the boolean if the input text is a match for the parser
      */
     @Override
-    public boolean isMatch(Sheet sheet) {
-
-        Row header = sheet.getRow(0);
+    public boolean isMatch(XlsxRow header) {
 
         for (int i = 0; i < HEADER_COLUMNS.length; i++) {
 
             // Order and column header strings must all match
-            if (!HEADER_COLUMNS[i].equals(header.getCell(i).getStringCellValue())) {
+            if (!HEADER_COLUMNS[i].equals(header.getCellValue(i))) {
 
                 return false;
             }
@@ -85,35 +92,35 @@ public class QuestradeXlsx implements XlsxParser {
     /**
      * Parse the input row and return the transaction found
      *
-     * @param row Row - the row from an input file
+     * @param row XlsxRow - the row from an input file
      * @return the transaction from the row
      */
     @Override
-    public Optional<InvestmentTransaction> parse(Row row) {
+    public Optional<InvestmentTransaction> parse(XlsxRow row) {
 
-        String currencyCode = row.getCell(10).getStringCellValue();
+        String currencyCode = row.getCellValue(10);
         CurrencyUnit currency = Monetary.getCurrency(currencyCode);
 
         return Optional.of(InvestmentTransaction.builder()
-            .transactionDate(LocalDate.parse(row.getCell(0).getStringCellValue().substring(0, 10)))
-            .settlementDate(LocalDate.parse(row.getCell(1).getStringCellValue().substring(0, 10)))
-            .action(Objects.requireNonNull(parseAction(row.getCell(2), row.getCell(12))))
-            .security(new Security(row.getCell(3).getStringCellValue(), currency))
-            .description(row.getCell(4).getStringCellValue())
-            .quantity(new Quantity(new BigDecimal(row.getCell(5).getStringCellValue())))
-            .price(Money.parse(currency.getCurrencyCode() + " " + row.getCell(6).getStringCellValue()))
-            .grossAmount(Money.parse(currency.getCurrencyCode() + " " + row.getCell(7).getStringCellValue()))
-            .commission(Money.parse(currency.getCurrencyCode() + " " + row.getCell(8).getStringCellValue()))
-            .netAmount(Money.parse(currency.getCurrencyCode() + " " + row.getCell(9).getStringCellValue()))
+            .transactionDate(LocalDate.parse(row.getCellValue(0).substring(0, 10)))
+            .settlementDate(LocalDate.parse(row.getCellValue(1).substring(0, 10)))
+            .action(Objects.requireNonNull(parseAction(row.getCellValue(2), row.getCellValue(12))))
+            .security(entityRegistry.getSecurity(row.getCellValue(3), currency))
+            .description(row.getCellValue(4))
+            .quantity(new Quantity(new BigDecimal(row.getCellValue(5))))
+            .price(Money.of(new BigDecimal(row.getCellValue(6)), currency))
+            .grossAmount(Money.of(new BigDecimal(row.getCellValue(7)), currency))
+            .commission(Money.of(new BigDecimal(row.getCellValue(8)), currency))
+            .netAmount(Money.of(new BigDecimal(row.getCellValue(9)), currency))
             .currency(currency)
-            .account(new Account(row.getCell(11).getStringCellValue(), row.getCell(11).getStringCellValue(), parseAccountType(row.getCell(13))))
+            .account(entityRegistry.getAccount(row.getCellValue(11), row.getCellValue(11), parseAccountType(row.getCellValue(13))))
         .build());
     }
 
-    private InvestmentAction parseAction(Cell cell, Cell descriptor) {
+    private InvestmentAction parseAction(String action, String descriptor) {
 
-        // Case insensitive matching
-        switch (cell.getStringCellValue().toLowerCase()) {
+        // Case insensitive matching, a blank cell may be absent from the row
+        switch (Objects.requireNonNullElse(action, "").toLowerCase()) {
             case "con":
                 return InvestmentAction.Deposit;
 
@@ -150,7 +157,7 @@ public class QuestradeXlsx implements XlsxParser {
                 return InvestmentAction.Corporate;
 
             case "":
-                if (descriptor.getStringCellValue().equalsIgnoreCase("interest")) {
+                if ("interest".equalsIgnoreCase(descriptor)) {
 
                     return InvestmentAction.Fee;
 
@@ -165,9 +172,9 @@ public class QuestradeXlsx implements XlsxParser {
         return null;
     }
 
-    private AccountType parseAccountType(Cell cell) {
+    private AccountType parseAccountType(String accountType) {
 
-        switch (cell.getStringCellValue().toLowerCase()) {
+        switch (Objects.requireNonNullElse(accountType, "").toLowerCase()) {
 
             case "individual tfsa":
                 return AccountType.TFSA;
@@ -18,22 +18,22 @@
 package sh.kss.finmgr.lib.parse.brokerage;
 
 import org.javamoney.moneta.Money;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import sh.kss.finmgr.lib.entity.*;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 import sh.kss.finmgr.lib.parse.CsvParser;
+import sh.kss.finmgr.lib.parse.CsvTokenizer;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
 
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
-import java.io.FileInputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Scanner;
-import java.util.stream.Collectors;
 
 /**
  * This parser can parse RBC activity report .csv files for finmgr InvestmentTransactions
@@ -44,43 +44,36 @@ public class RbcCsv implements CsvParser {
 
     // Match RBC style header from raw csv
     private final String HEADER_MATCH = "\"Date\",\"Activity\",\"Symbol\",\"Symbol Description\",\"Quantity\",\"Price\",\"Settlement Date\",\"Account\",\"Value\",\"Currency\",\"Description\"";
+    // RBC header row for data is line 9
+    private final int HEADER_LINE = 9;
     // RBC style dates in csv file
     private final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMMM d, u");
+    // Canonical securities and accounts, replaced by the shared registry when one is set
+    private EntityRegistry entityRegistry = new EntityRegistryImpl();
+
+    @Autowired
+    @Override
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+        this.entityRegistry = entityRegistry;
+    }
+
+    @Override
+    public int getHeaderLineCount() {
+
+        return HEADER_LINE;
+    }
 
     /**
      * Checks if the header row from an input file is a match for the parser
      * Ideally this should be implemented in O(1) time
      *
-     * @param fileInputStream FileInputStream  - the sheet to perform matching against
+     * @param lines List<String> - the first lines of the file
      * @return the boolean if the input text is a match for the parser
      */
     @Override
-    public boolean isMatch(FileInputStream fileInputStream) {
-
-        try (Scanner scanner = new Scanner(fileInputStream, "UTF-8")) {
-
-            int lineCount = 0;
-            while (scanner.hasNextLine()) {
-
-                String line = scanner.nextLine();
-                lineCount++;
+    public boolean isMatch(List<String> lines) {
 
-                // RBC header row for data is line 9
-                if (lineCount == 9) {
-
-                    if (line.equalsIgnoreCase(HEADER_MATCH)) {
-
-                        return true;
-
-                    } else {
-
-                        break;
-                    }
-                }
-            }
-        }
-
-        return false;
+        return lines.size() >= HEADER_LINE && lines.get(HEADER_LINE - 1).equalsIgnoreCase(HEADER_MATCH);
     }
 
     /**
@@ -92,11 +85,8 @@ public class RbcCsv implements CsvParser {
     @Override
     public Optional<InvestmentTransaction> parse(String line) {
 
-        // Split line into raw string array
-        String[] raw_cols = line.split("\",\"");
-
-        // Clean the columns for object population
-        List<String> cols = Arrays.stream(raw_cols).map(x -> x.replaceAll("^\"|\"$", "")).collect(Collectors.toList());
+        // Split line into unquoted columns
+        List<String> cols = CsvTokenizer.tokenize(line);
 
         // Must have 11 columns, and the 8th column must contain an 8 digit account number
         if (cols.size() != 11 || cols.get(7).length() != 8) {
@@ -105,9 +95,7 @@ public class RbcCsv implements CsvParser {
 
         } else {
 
-            String currencyCode = cols.get(9);
-            Money zero = Money.of(0, currencyCode);
-            CurrencyUnit currency = Monetary.getCurrency(currencyCode);
+            CurrencyUnit currency = Monetary.getCurrency(cols.get(9));
 
             // Quantity defaults to 0 if blank
             Quantity quantity;
@@ -126,24 +114,26 @@ public class RbcCsv implements CsvParser {
 
             if (cols.get(5).length() == 0) {
 
-                price = zero;
+                price = Money.of(0, currency);
 
             } else {
 
-                price = Money.parse(currency.getCurrencyCode() + " " + cols.get(5));
+                price = Money.of(new BigDecimal(cols.get(5)), currency);
             }
 
+            Money value = Money.of(new BigDecimal(cols.get(8)), currency);
+
             return Optional.of(InvestmentTransaction.builder()
                 .transactionDate(LocalDate.parse(cols.get(0), DATE_FORMATTER))
                 .action(parseAction(cols.get(1)))
-                .security(new Security(cols.get(2), currency))
+                .security(entityRegistry.getSecurity(cols.get(2), currency))
                 .description(cols.get(10))
                 .quantity(quantity)
                 .price(price)
                 .settlementDate(LocalDate.parse(cols.get(6), DATE_FORMATTER))
-                .account(new Account(cols.get(7), cols.get(7), AccountType.NON_REGISTERED))
-                .grossAmount(Money.parse(currency.getCurrencyCode() + " " + cols.get(8)))
-                .netAmount(Money.parse(currency.getCurrencyCode() + " " + cols.get(8)))
+                .account(entityRegistry.getAccount(cols.get(7), cols.get(7), AccountType.NON_REGISTERED))
+                .grossAmount(value)
+                .netAmount(value)
                 .currency(currency)
             .build());
         }
@@ -0,0 +1,154 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse.brokerage;
+
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Scans statement lines one at a time for transactions that sit on a single line or that are spread over several
+ * lines. A multi-line transaction opens at a start line and closes at the next end line, and the lines in between
+ * are still scanned on their own. Transactions are passed to the consumer in the order the whole document scan
+ * would have found them, so a transaction is held back while an earlier multi-line transaction is still open.
+ *
+ */
+final class StatementLineScanner {
+
+    private final Pattern startPattern;
+    private final Pattern endPattern;
+    private final Pattern endDivPattern;
+    private final Consumer<InvestmentTransaction> consumer;
+
+    // Results in document order, the head is emitted as soon as it is resolved
+    private final Deque<Slot> pending = new ArrayDeque<>();
+
+    private int count;
+
+    StatementLineScanner(Pattern startPattern, Pattern endPattern, Pattern endDivPattern, Consumer<InvestmentTransaction> consumer) {
+
+        this.startPattern = startPattern;
+        this.endPattern = endPattern;
+        this.endDivPattern = endDivPattern;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Scan the next line of the document
+     *
+     * @param line the line of text
+     * @param parser parses a single or joined line into a transaction with the cursor state at this line
+     */
+    void accept(String line, Function<String, Optional<InvestmentTransaction>> parser) {
+
+        String trimmed = line.trim();
+        boolean end = endPattern.matcher(trimmed).find() || endDivPattern.matcher(trimmed).find();
+
+        // Extend every open multi-line transaction, closing them at an end line
+        for (Slot slot : pending) {
+
+            if (slot.multiLine != null) {
+
+                slot.multiLine.append(line);
+
+                if (end) {
+
+                    slot.close();
+
+                } else {
+
+                    slot.multiLine.append(" ");
+                }
+            }
+        }
+
+        Slot single = new Slot(parser);
+        single.result = parser.apply(line);
+        pending.addLast(single);
+
+        // Open a new multi-line transaction
+        if (startPattern.matcher(trimmed).find()) {
+
+            Slot multi = new Slot(parser);
+            multi.multiLine = new StringBuilder().append(line).append(" ");
+            pending.addLast(multi);
+        }
+
+        drain();
+    }
+
+    /**
+     * Close any multi-line transaction still open at the end of the document and emit the remaining results
+     *
+     * @return the number of transactions passed to the consumer
+     */
+    int finish() {
+
+        for (Slot slot : pending) {
+
+            if (slot.multiLine != null) {
+
+                slot.close();
+            }
+        }
+
+        drain();
+
+        return count;
+    }
+
+    private void drain() {
+
+        while (!pending.isEmpty() && pending.peekFirst().multiLine == null) {
+
+            pending.pollFirst().result.ifPresent(transaction -> {
+
+                consumer.accept(transaction);
+                count++;
+            });
+        }
+    }
+
+    /**
+     * A resolved result, or an open multi-line transaction while multiLine is set
+     *
+     */
+    private static final class Slot {
+
+        private final Function<String, Optional<InvestmentTransaction>> parser;
+
+        private StringBuilder multiLine;
+        private Optional<InvestmentTransaction> result = Optional.empty();
+
+        Slot(Function<String, Optional<InvestmentTransaction>> parser) {
+
+            this.parser = parser;
+        }
+
+        void close() {
+
+            result = parser.apply(multiLine.toString());
+            multiLine = null;
+        }
+    }
+}
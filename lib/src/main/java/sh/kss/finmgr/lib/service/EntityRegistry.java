@@ -0,0 +1,105 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.CurrencyUnit;
+
+/**
+ * Interns securities and accounts so that equal values share one canonical instance, and gives each canonical
+ * instance a dense integer id. State can then be indexed by array position instead of hashing the value objects.
+ *
+ */
+public interface EntityRegistry {
+
+    /**
+     * The canonical security for a symbol and currency, registering it if it has not been seen
+     *
+     * @param symbol the symbol
+     * @param currency the currency
+     * @return the canonical security
+     */
+    Security getSecurity(String symbol, CurrencyUnit currency);
+
+    /**
+     * The canonical instance of a security, registering it if it has not been seen
+     *
+     * @param security the security
+     * @return the canonical security, equal to the given one
+     */
+    Security intern(Security security);
+
+    /**
+     * The dense id of a security, registering it if it has not been seen
+     *
+     * @param security the security
+     * @return the id, between 0 and the security count
+     */
+    int getSecurityId(Security security);
+
+    /**
+     * The canonical security with an id
+     *
+     * @param id the id
+     * @return the security
+     * @throws IndexOutOfBoundsException if no security has the id
+     */
+    Security getSecurity(int id);
+
+    int getSecurityCount();
+
+    /**
+     * The canonical account for an id, alias and account type, registering it if it has not been seen
+     *
+     * @param id the external account id
+     * @param alias the alias
+     * @param accountType the account type
+     * @return the canonical account
+     */
+    Account getAccount(String id, String alias, AccountType accountType);
+
+    /**
+     * The canonical instance of an account, registering it if it has not been seen
+     *
+     * @param account the account
+     * @return the canonical account, equal to the given one
+     */
+    Account intern(Account account);
+
+    /**
+     * The dense id of an account, registering it if it has not been seen
+     *
+     * @param account the account
+     * @return the id, between 0 and the account count
+     */
+    int getAccountId(Account account);
+
+    /**
+     * The canonical account with an id
+     *
+     * @param id the id
+     * @return the account
+     * @throws IndexOutOfBoundsException if no account has the id
+     */
+    Account getAccount(int id);
+
+    int getAccountCount();
+}
@@ -0,0 +1,197 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.CurrencyUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry shared by the parsers, safe to use from parallel ingestion. Lookups of registered values do not lock
+ * or allocate, only registering a new value does. Values are never removed, the registry grows with the number of
+ * distinct securities and accounts seen rather than with the number of transactions.
+ *
+ */
+@Service
+public class EntityRegistryImpl implements EntityRegistry {
+
+    // Securities by currency and then symbol, so a lookup does not need a key object
+    private final Map<CurrencyUnit, Map<String, Security>> securitiesBySymbol = new ConcurrentHashMap<>();
+    // The most recently registered account for each external id
+    private final Map<String, Account> accountsById = new ConcurrentHashMap<>();
+
+    private final Table<Security> securities = new Table<>();
+    private final Table<Account> accounts = new Table<>();
+
+    @Override
+    public Security getSecurity(String symbol, CurrencyUnit currency) {
+
+        Map<String, Security> bySymbol = securitiesBySymbol.computeIfAbsent(currency, c -> new ConcurrentHashMap<>());
+        Security security = bySymbol.get(symbol);
+
+        if (security == null) {
+
+            security = intern(new Security(symbol, currency));
+        }
+
+        return security;
+    }
+
+    @Override
+    public Security intern(Security security) {
+
+        Security canonical = securities.intern(security);
+
+        securitiesBySymbol
+            .computeIfAbsent(canonical.getCurrency(), c -> new ConcurrentHashMap<>())
+            .putIfAbsent(canonical.getValue(), canonical);
+
+        return canonical;
+    }
+
+    @Override
+    public int getSecurityId(Security security) {
+
+        return securities.getId(security);
+    }
+
+    @Override
+    public Security getSecurity(int id) {
+
+        return securities.get(id);
+    }
+
+    @Override
+    public int getSecurityCount() {
+
+        return securities.size();
+    }
+
+    @Override
+    public Account getAccount(String id, String alias, AccountType accountType) {
+
+        Account account = accountsById.get(id);
+
+        // An id seen with a different alias or account type is a different account
+        if (account == null || !account.getAlias().equals(alias) || account.getAccountType() != accountType) {
+
+            account = intern(new Account(id, alias, accountType));
+        }
+
+        return account;
+    }
+
+    @Override
+    public Account intern(Account account) {
+
+        Account canonical = accounts.intern(account);
+
+        accountsById.put(canonical.getId(), canonical);
+
+        return canonical;
+    }
+
+    @Override
+    public int getAccountId(Account account) {
+
+        return accounts.getId(account);
+    }
+
+    @Override
+    public Account getAccount(int id) {
+
+        return accounts.get(id);
+    }
+
+    @Override
+    public int getAccountCount() {
+
+        return accounts.size();
+    }
+
+    /**
+     * Canonical values in id order, with a map from each value to its id
+     *
+     */
+    private static final class Table<T> {
+
+        private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+        // Replaced rather than written in place once published, so readers need no lock
+        private volatile Object[] values = new Object[16];
+        private volatile int size;
+
+        T intern(T value) {
+
+            return get(getId(value));
+        }
+
+        int getId(T value) {
+
+            Integer id = ids.get(value);
+
+            return id != null ? id : register(value);
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+
+            if (id < 0 || id >= size) {
+
+                throw new IndexOutOfBoundsException(String.format("No entity with id %d", id));
+            }
+
+            return (T) values[id];
+        }
+
+        int size() {
+
+            return size;
+        }
+
+        private synchronized int register(T value) {
+
+            // Another thread may have registered the value first
+            Integer registered = ids.get(value);
+
+            if (registered != null) {
+
+                return registered;
+            }
+
+            if (size == values.length) {
+
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            // Publish the value before its id, so a reader that finds the id can always read the value
+            int id = size;
+
+            values[id] = value;
+            size = id + 1;
+            ids.put(value, id);
+
+            return id;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package sh.kss.finmgr.lib.service;
 
 import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.HoldingAccumulator;
 import sh.kss.finmgr.lib.entity.Portfolio;
 import sh.kss.finmgr.lib.entity.Security;
 
@@ -28,5 +29,6 @@ import java.util.Map;
 public interface TransactionService {
 
     MonetaryAmount getACB(Portfolio portfolio, AccountType accountType, Security security);
+    MonetaryAmount getACB(HoldingAccumulator holding, Security security);
     Map<String, MonetaryAmount> getHistoricalPrices(Portfolio portfolio, LocalDate localDate);
 }
@@ -54,7 +54,11 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     public MonetaryAmount getACB(Portfolio portfolio, AccountType accountType, Security security) {
 
-        LOG.debug(String.format("getACB for portfolio=%s, account type=%s and security=%s", portfolio.toString(), accountType, security));
+        // Formatting the whole portfolio costs more than the lookup itself, so only do it when it will be logged
+        if (LOG.isDebugEnabled()) {
+
+            LOG.debug(String.format("getACB for portfolio=%s, account type=%s and security=%s", portfolio.toString(), accountType, security));
+        }
 
         Holding holding = portfolio.getHoldings().getOrDefault(accountType, Holding.EMPTY);
 
@@ -67,6 +71,29 @@ public class TransactionServiceImpl implements TransactionService {
         return holding.getCostBasis().get(security).divide(holding.getQuantities().get(security).getValue()).negate();
     }
 
+    /**
+     * getACB will retrieve the Average Cost Basis of a security from the working state of a holding
+     *
+     * @param holding the holding accumulator to query
+     * @param security the security
+     * @return the ACB as a MonetaryAmount
+     */
+    @Override
+    public MonetaryAmount getACB(HoldingAccumulator holding, Security security) {
+
+        Quantity quantity = holding.getQuantity(security);
+
+        // Check if quantity is zero first to avoid zero division
+        if (quantity == null || quantity.getValue().equals(BigDecimal.ZERO)) {
+
+            MonetaryAmount costBasis = holding.getCostBasis(security);
+
+            return costBasis != null ? costBasis : Money.of(0, "CAD");
+        }
+
+        return holding.getCostBasis(security).divide(quantity.getValue()).negate();
+    }
+
     /**
      * getHistoricalPrices will retrieve the value of all of the positions in a portfolio at a given previous point in time
      *
@@ -0,0 +1,210 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import sh.kss.finmgr.lib.entity.transaction.ValidationRule;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The errors of a validated list of transactions as one ValidationRule mask per row. Rows are grouped into
+ * consecutive runs by the source they came from, such as a parsed file, and the breaches of each rule are counted
+ * per source.
+ *
+ */
+public final class ValidationReport {
+
+    private static final ValidationRule[] RULES = ValidationRule.values();
+
+    private final List<String> sources;
+    // The row after the last row of each source
+    private final int[] sourceEnds;
+    private final long[] errors;
+    // Breaches of each rule, by source then rule ordinal
+    private final int[][] counts;
+
+    ValidationReport(List<String> sources, int[] sourceEnds, long[] errors) {
+
+        this.sources = List.copyOf(sources);
+        this.sourceEnds = sourceEnds;
+        this.errors = errors;
+        this.counts = new int[sources.size()][RULES.length];
+
+        int row = 0;
+
+        for (int source = 0; source < sourceEnds.length; source++) {
+
+            for (; row < sourceEnds[source]; row++) {
+
+                for (long bits = errors[row]; bits != 0; bits &= bits - 1) {
+
+                    counts[source][Long.numberOfTrailingZeros(bits)]++;
+                }
+            }
+        }
+    }
+
+    public int size() {
+
+        return errors.length;
+    }
+
+    /**
+     * The error mask of a row
+     *
+     * @param row the row
+     * @return the mask of the ValidationRule bits the row breaks, zero if it is valid
+     */
+    public long getErrors(int row) {
+
+        return errors[row];
+    }
+
+    /**
+     * The rules a row breaks
+     *
+     * @param row the row
+     * @return the rules, empty if the row is valid
+     */
+    public EnumSet<ValidationRule> getRules(int row) {
+
+        return ValidationRule.of(errors[row]);
+    }
+
+    /**
+     * The source a row came from
+     *
+     * @param row the row
+     * @return the source name
+     */
+    public String getSource(int row) {
+
+        // The first source ending after the row, sources without rows share their end with the one before
+        int low = 0;
+        int high = sourceEnds.length - 1;
+
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (sourceEnds[middle] > row) {
+
+                high = middle;
+
+            } else {
+
+                low = middle + 1;
+            }
+        }
+
+        return sources.get(low);
+    }
+
+    /**
+     * The rows that break at least one rule
+     *
+     * @return the invalid rows, in row order
+     */
+    public int[] getInvalidRows() {
+
+        int count = 0;
+
+        for (long mask : errors) {
+
+            count += mask != 0 ? 1 : 0;
+        }
+
+        int[] rows = new int[count];
+
+        for (int row = 0, i = 0; i < count; row++) {
+
+            if (errors[row] != 0) {
+
+                rows[i++] = row;
+            }
+        }
+
+        return rows;
+    }
+
+    public boolean isValid() {
+
+        for (long mask : errors) {
+
+            if (mask != 0) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The number of rows breaking each rule, across all sources
+     *
+     * @return the counts of the rules broken at least once
+     */
+    public Map<ValidationRule, Integer> getCounts() {
+
+        Map<ValidationRule, Integer> totals = new EnumMap<>(ValidationRule.class);
+
+        for (int[] sourceCounts : counts) {
+
+            for (int rule = 0; rule < RULES.length; rule++) {
+
+                if (sourceCounts[rule] > 0) {
+
+                    totals.merge(RULES[rule], sourceCounts[rule], Integer::sum);
+                }
+            }
+        }
+
+        return totals;
+    }
+
+    /**
+     * The number of rows breaking each rule, by source
+     *
+     * @return the counts of the rules broken at least once, for every source in row order
+     */
+    public Map<String, Map<ValidationRule, Integer>> getCountsBySource() {
+
+        Map<String, Map<ValidationRule, Integer>> bySource = new LinkedHashMap<>();
+
+        for (int source = 0; source < counts.length; source++) {
+
+            Map<ValidationRule, Integer> sourceCounts = bySource.computeIfAbsent(sources.get(source), key -> new EnumMap<>(ValidationRule.class));
+
+            for (int rule = 0; rule < RULES.length; rule++) {
+
+                if (counts[source][rule] > 0) {
+
+                    sourceCounts.merge(RULES[rule], counts[source][rule], Integer::sum);
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(bySource);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.entity.transaction.TransactionBatch;
+import sh.kss.finmgr.lib.parse.ParseReport;
+
+import java.util.List;
+
+/**
+ * Validates whole ingests of transactions at once, reporting the broken rules of every row
+ *
+ */
+public interface ValidationService {
+
+    /**
+     * Validate a list of transactions from a single source
+     *
+     * @param source the name the rows are counted under
+     * @param transactions the transactions to validate
+     * @return the errors of each transaction, in list order
+     */
+    ValidationReport validate(String source, List<InvestmentTransaction> transactions);
+
+    /**
+     * Validate a batch of transactions from a single source
+     *
+     * @param source the name the rows are counted under
+     * @param batch the transactions to validate
+     * @return the errors of each row of the batch
+     */
+    ValidationReport validate(String source, TransactionBatch batch);
+
+    /**
+     * Validate the transactions of an ingestion, counted by the file they were parsed from
+     *
+     * @param report the parse report
+     * @return the errors of each transaction, in the order of ParseReport.getTransactions
+     */
+    ValidationReport validate(ParseReport report);
+}
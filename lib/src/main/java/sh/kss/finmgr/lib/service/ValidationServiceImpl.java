@@ -0,0 +1,138 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransactionValidator;
+import sh.kss.finmgr.lib.entity.transaction.TransactionBatch;
+import sh.kss.finmgr.lib.parse.FileParseResult;
+import sh.kss.finmgr.lib.parse.ParseReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+/**
+ * Validates transactions with the rule masks of InvestmentTransactionValidator.check, splitting large ingests into
+ * chunks of rows that are checked concurrently on the common fork-join pool. Each chunk writes only its own rows of
+ * the shared error array.
+ *
+ */
+@Service
+public class ValidationServiceImpl implements ValidationService {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(ValidationServiceImpl.class);
+
+    // Rows checked by one task, large enough that scheduling is small next to checking
+    private static final int CHUNK_ROWS = 4096;
+
+    private InvestmentTransactionValidator validator = new InvestmentTransactionValidator();
+
+    @Autowired
+    public void setValidator(InvestmentTransactionValidator validator) {
+        this.validator = validator;
+    }
+
+    @Override
+    public ValidationReport validate(String source, List<InvestmentTransaction> transactions) {
+
+        List<InvestmentTransaction> rows = transactions instanceof RandomAccess ? transactions : new ArrayList<>(transactions);
+
+        return new ValidationReport(List.of(source), new int[] { rows.size() }, check(rows::get, rows.size()));
+    }
+
+    @Override
+    public ValidationReport validate(String source, TransactionBatch batch) {
+
+        return new ValidationReport(List.of(source), new int[] { batch.size() }, check(batch::get, batch.size()));
+    }
+
+    @Override
+    public ValidationReport validate(ParseReport report) {
+
+        List<FileParseResult> results = report.getResults();
+        List<String> sources = new ArrayList<>(results.size());
+        int[] sourceEnds = new int[results.size()];
+        int end = 0;
+
+        for (int i = 0; i < results.size(); i++) {
+
+            sources.add(results.get(i).getFile().getPath());
+            end += results.get(i).getTransactions().size();
+            sourceEnds[i] = end;
+        }
+
+        List<InvestmentTransaction> transactions = report.getTransactions();
+
+        return new ValidationReport(sources, sourceEnds, check(transactions::get, transactions.size()));
+    }
+
+    /**
+     * Check every row, concurrently once there is more than one chunk
+     *
+     * @param rows the transaction of each row
+     * @param size the number of rows
+     * @return the error mask of each row
+     */
+    private long[] check(IntFunction<InvestmentTransaction> rows, int size) {
+
+        long[] errors = new long[size];
+
+        if (size <= CHUNK_ROWS) {
+
+            check(rows, errors, 0, size);
+
+            return errors;
+        }
+
+        List<ForkJoinTask<?>> chunks = new ArrayList<>();
+
+        for (int from = 0; from < size; from += CHUNK_ROWS) {
+
+            int start = from;
+            int end = Math.min(size, from + CHUNK_ROWS);
+
+            chunks.add(ForkJoinPool.commonPool().submit(() -> check(rows, errors, start, end)));
+        }
+
+        for (ForkJoinTask<?> chunk : chunks) {
+
+            chunk.join();
+        }
+
+        LOG.debug(String.format("Validated %d transactions in %d chunks", size, chunks.size()));
+
+        return errors;
+    }
+
+    private void check(IntFunction<InvestmentTransaction> rows, long[] errors, int from, int to) {
+
+        for (int row = from; row < to; row++) {
+
+            errors[row] = validator.check(rows.apply(row));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Identifies a stored document by its content, so that the same document under another name is recognized as the
+ * same source
+ *
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+
+    }
+
+    /**
+     * Compute the SHA-256 of the file content
+     *
+     * @param path the file to hash
+     * @return the hex encoded hash
+     * @throws IOException if the file cannot be read
+     */
+    public static String sha256(Path path) throws IOException {
+
+        try (InputStream inputStream = Files.newInputStream(path)) {
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+
+            while ((read = inputStream.read(buffer)) != -1) {
+
+                digest.update(buffer, 0, read);
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+
+        } catch (NoSuchAlgorithmException nsae) {
+
+            // Every JVM is required to support SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+}
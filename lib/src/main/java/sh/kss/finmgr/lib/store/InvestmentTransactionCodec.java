@@ -0,0 +1,253 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.javamoney.moneta.Money;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+/**
+ * Reads and writes investment transactions as a compact binary record. Decimal values keep their scale so a
+ * decoded transaction is equal to the one that was encoded.
+ *
+ */
+public final class InvestmentTransactionCodec {
+
+    // Bump whenever the record layout changes
+    public static final int VERSION = 1;
+
+    private InvestmentTransactionCodec() {
+
+    }
+
+    /**
+     * Write a transaction to the output
+     *
+     * @param out the output to write to
+     * @param transaction the transaction to write
+     * @throws IOException if the output cannot be written
+     */
+    public static void write(DataOutput out, InvestmentTransaction transaction) throws IOException {
+
+        writeDate(out, transaction.getTransactionDate());
+        writeDate(out, transaction.getSettlementDate());
+        out.writeUTF(transaction.getAction().name());
+        writeAccount(out, transaction.getAccount());
+        writeCurrency(out, transaction.getCurrency());
+        writeSecurity(out, transaction.getSecurity());
+        out.writeUTF(transaction.getDescription());
+
+        writeAmount(out, transaction.getPrice());
+        writeQuantity(out, transaction.getQuantity());
+        writeAmount(out, transaction.getGrossAmount());
+        writeAmount(out, transaction.getCommission());
+        writeAmount(out, transaction.getNetAmount());
+
+        writeAmount(out, transaction.getReturnOfCapital());
+        writeAmount(out, transaction.getCapitalGain());
+        writeAmount(out, transaction.getEligibleDividend());
+        writeAmount(out, transaction.getNonEligibleDividend());
+
+        writeAmount(out, transaction.getForeignBusinessIncome());
+        writeAmount(out, transaction.getForeignNonBusinessIncome());
+        writeAmount(out, transaction.getOtherIncome());
+        writeAmount(out, transaction.getNonReportableDistribution());
+        writeAmount(out, transaction.getCapitalGainsDeductionEligible());
+        writeAmount(out, transaction.getForeignBusinessIncomeTaxPaid());
+        writeAmount(out, transaction.getForeignNonBusinessIncomeTaxPaid());
+    }
+
+    /**
+     * Read a transaction from the input
+     *
+     * @param in the input to read from
+     * @return the decoded transaction
+     * @throws IOException if the input cannot be read
+     */
+    public static InvestmentTransaction read(DataInput in) throws IOException {
+
+        return read(in, null);
+    }
+
+    /**
+     * Read a transaction from the input, taking its security and account from a registry
+     *
+     * @param in the input to read from
+     * @param registry interns the decoded security and account, or null to keep the decoded instances
+     * @return the decoded transaction
+     * @throws IOException if the input cannot be read
+     */
+    public static InvestmentTransaction read(DataInput in, EntityRegistry registry) throws IOException {
+
+        return InvestmentTransaction.builder()
+            .transactionDate(readDate(in))
+            .settlementDate(readDate(in))
+            .action(InvestmentAction.valueOf(in.readUTF()))
+            .account(intern(registry, readAccount(in)))
+            .currency(readCurrency(in))
+            .security(intern(registry, readSecurity(in)))
+            .description(in.readUTF())
+            .price(readAmount(in))
+            .quantity(readQuantity(in))
+            .grossAmount(readAmount(in))
+            .commission(readAmount(in))
+            .netAmount(readAmount(in))
+            .returnOfCapital(readAmount(in))
+            .capitalGain(readAmount(in))
+            .eligibleDividend(readAmount(in))
+            .nonEligibleDividend(readAmount(in))
+            .foreignBusinessIncome(readAmount(in))
+            .foreignNonBusinessIncome(readAmount(in))
+            .otherIncome(readAmount(in))
+            .nonReportableDistribution(readAmount(in))
+            .capitalGainsDeductionEligible(readAmount(in))
+            .foreignBusinessIncomeTaxPaid(readAmount(in))
+            .foreignNonBusinessIncomeTaxPaid(readAmount(in))
+            .build();
+    }
+
+    private static Account intern(EntityRegistry registry, Account account) {
+
+        return registry != null ? registry.intern(account) : account;
+    }
+
+    private static Security intern(EntityRegistry registry, Security security) {
+
+        return registry != null && security != null ? registry.intern(security) : security;
+    }
+
+    static void writeDate(DataOutput out, LocalDate date) throws IOException {
+
+        out.writeLong(date.toEpochDay());
+    }
+
+    static LocalDate readDate(DataInput in) throws IOException {
+
+        return LocalDate.ofEpochDay(in.readLong());
+    }
+
+    static void writeAccount(DataOutput out, Account account) throws IOException {
+
+        out.writeUTF(account.getId());
+        out.writeUTF(account.getAlias());
+        out.writeUTF(account.getAccountType().name());
+    }
+
+    static Account readAccount(DataInput in) throws IOException {
+
+        return new Account(in.readUTF(), in.readUTF(), AccountType.valueOf(in.readUTF()));
+    }
+
+    static void writeCurrency(DataOutput out, CurrencyUnit currency) throws IOException {
+
+        out.writeUTF(currency.getCurrencyCode());
+    }
+
+    static CurrencyUnit readCurrency(DataInput in) throws IOException {
+
+        return Monetary.getCurrency(in.readUTF());
+    }
+
+    static void writeSecurity(DataOutput out, Security security) throws IOException {
+
+        out.writeBoolean(security != null);
+
+        if (security != null) {
+
+            out.writeUTF(security.getValue());
+            writeCurrency(out, security.getCurrency());
+        }
+    }
+
+    static Security readSecurity(DataInput in) throws IOException {
+
+        return in.readBoolean() ? new Security(in.readUTF(), readCurrency(in)) : null;
+    }
+
+    static void writeQuantity(DataOutput out, Quantity quantity) throws IOException {
+
+        out.writeBoolean(quantity != null);
+
+        if (quantity != null) {
+
+            writeDecimal(out, quantity.getValue());
+        }
+    }
+
+    static Quantity readQuantity(DataInput in) throws IOException {
+
+        return in.readBoolean() ? new Quantity(readDecimal(in)) : null;
+    }
+
+    static void writeAmount(DataOutput out, MonetaryAmount amount) throws IOException {
+
+        out.writeBoolean(amount != null);
+
+        if (amount != null) {
+
+            writeCurrency(out, amount.getCurrency());
+            writeDecimal(out, amount.getNumber().numberValue(BigDecimal.class));
+        }
+    }
+
+    static MonetaryAmount readAmount(DataInput in) throws IOException {
+
+        if (!in.readBoolean()) {
+
+            return null;
+        }
+
+        CurrencyUnit currency = readCurrency(in);
+
+        return Money.of(readDecimal(in), currency);
+    }
+
+    static void writeDecimal(DataOutput out, BigDecimal decimal) throws IOException {
+
+        byte[] unscaled = decimal.unscaledValue().toByteArray();
+
+        out.writeInt(decimal.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    static BigDecimal readDecimal(DataInput in) throws IOException {
+
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+
+        in.readFully(unscaled);
+
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import lombok.NonNull;
+import lombok.Value;
+import sh.kss.finmgr.lib.entity.Portfolio;
+
+import java.time.LocalDate;
+
+/**
+ * The state of a portfolio at the end of a day, with the position in the date ordered transaction history it was
+ * replayed up to, so a later replay can resume from it
+ *
+ */
+@Value
+public class PortfolioSnapshot {
+
+    // The day the portfolio is the state at the end of
+    @NonNull LocalDate date;
+
+    // The number of transactions of the history replayed into the portfolio
+    int transactionCount;
+
+    // The checksum of the last replayed transaction, to detect a history that changed since the snapshot
+    int lastTransactionChecksum;
+
+    @NonNull Portfolio portfolio;
+}
@@ -0,0 +1,183 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.Holding;
+import sh.kss.finmgr.lib.entity.Portfolio;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import javax.money.MonetaryAmount;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes portfolio snapshots as a compact binary record, with the values encoded as
+ * InvestmentTransactionCodec encodes them
+ *
+ */
+public final class PortfolioSnapshotCodec {
+
+    // Bump whenever the record layout changes
+    public static final int VERSION = 1;
+
+    private PortfolioSnapshotCodec() {
+
+    }
+
+    /**
+     * Write a snapshot to the output
+     *
+     * @param out the output to write to
+     * @param snapshot the snapshot to write
+     * @throws IOException if the output cannot be written
+     */
+    public static void write(DataOutput out, PortfolioSnapshot snapshot) throws IOException {
+
+        InvestmentTransactionCodec.writeDate(out, snapshot.getDate());
+        out.writeInt(snapshot.getTransactionCount());
+        out.writeInt(snapshot.getLastTransactionChecksum());
+
+        Map<AccountType, Holding> holdings = snapshot.getPortfolio().getHoldings();
+
+        out.writeInt(holdings.size());
+
+        for (Map.Entry<AccountType, Holding> entry : holdings.entrySet()) {
+
+            Holding holding = entry.getValue();
+
+            out.writeUTF(entry.getKey().name());
+            out.writeInt(holding.getSecurities().size());
+
+            for (Security security : holding.getSecurities()) {
+
+                InvestmentTransactionCodec.writeSecurity(out, security);
+            }
+
+            out.writeInt(holding.getQuantities().size());
+
+            for (Map.Entry<Security, Quantity> quantity : holding.getQuantities().entrySet()) {
+
+                InvestmentTransactionCodec.writeSecurity(out, quantity.getKey());
+                InvestmentTransactionCodec.writeQuantity(out, quantity.getValue());
+            }
+
+            out.writeInt(holding.getCostBasis().size());
+
+            for (Map.Entry<Security, MonetaryAmount> costBasis : holding.getCostBasis().entrySet()) {
+
+                InvestmentTransactionCodec.writeSecurity(out, costBasis.getKey());
+                InvestmentTransactionCodec.writeAmount(out, costBasis.getValue());
+            }
+        }
+    }
+
+    /**
+     * Read a snapshot from the input, taking its securities from a registry
+     *
+     * @param in the input to read from
+     * @param registry interns the decoded securities, or null to keep the decoded instances
+     * @return the decoded snapshot
+     * @throws IOException if the input cannot be read
+     */
+    public static PortfolioSnapshot read(DataInput in, EntityRegistry registry) throws IOException {
+
+        var date = InvestmentTransactionCodec.readDate(in);
+        int transactionCount = in.readInt();
+        int lastTransactionChecksum = in.readInt();
+
+        int holdingCount = in.readInt();
+        Map<AccountType, Holding> holdings = new HashMap<>();
+
+        for (int i = 0; i < holdingCount; i++) {
+
+            AccountType accountType = AccountType.valueOf(in.readUTF());
+
+            int securityCount = in.readInt();
+            Set<Security> securities = new HashSet<>();
+
+            for (int j = 0; j < securityCount; j++) {
+
+                securities.add(readSecurity(in, registry));
+            }
+
+            int quantityCount = in.readInt();
+            Map<Security, Quantity> quantities = new HashMap<>();
+
+            for (int j = 0; j < quantityCount; j++) {
+
+                quantities.put(readSecurity(in, registry), InvestmentTransactionCodec.readQuantity(in));
+            }
+
+            int costBasisCount = in.readInt();
+            Map<Security, MonetaryAmount> costBases = new HashMap<>();
+
+            for (int j = 0; j < costBasisCount; j++) {
+
+                costBases.put(readSecurity(in, registry), InvestmentTransactionCodec.readAmount(in));
+            }
+
+            holdings.put(accountType, new Holding(securities, quantities, costBases));
+        }
+
+        return new PortfolioSnapshot(date, transactionCount, lastTransactionChecksum, Portfolio.builder().holdings(holdings).build());
+    }
+
+    /**
+     * The checksum of the encoded transaction, which unlike the hash code is the same in every process
+     *
+     * @param transaction the transaction to check
+     * @return the CRC-32 of the encoded transaction
+     */
+    public static int checksum(InvestmentTransaction transaction) {
+
+        CRC32 crc = new CRC32();
+
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(OutputStream.nullOutputStream(), crc))) {
+
+            InvestmentTransactionCodec.write(out, transaction);
+
+        } catch (IOException ioe) {
+
+            // The null output stream never throws
+            throw new UncheckedIOException(ioe);
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static Security readSecurity(DataInput in, EntityRegistry registry) throws IOException {
+
+        Security security = InvestmentTransactionCodec.readSecurity(in);
+
+        return registry != null && security != null ? registry.intern(security) : security;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Persists portfolio snapshots of named transaction histories, so that a replay can start from the nearest snapshot
+ * rather than from the first transaction
+ *
+ */
+public interface PortfolioSnapshotStore {
+
+    /**
+     * Find the latest snapshot of a history taken on or before a date
+     *
+     * @param history the name of the transaction history
+     * @param date the latest snapshot date wanted
+     * @return the snapshot, empty if the history has none on or before the date
+     */
+    Optional<PortfolioSnapshot> findLatest(String history, LocalDate date);
+
+    /**
+     * Save a snapshot of a history, replacing any snapshot of the same date
+     *
+     * @param history the name of the transaction history
+     * @param snapshot the snapshot to save
+     */
+    void save(String history, PortfolioSnapshot snapshot);
+
+    /**
+     * Remove the snapshots of a history taken on or after a date, used when the transactions they replayed changed
+     *
+     * @param history the name of the transaction history
+     * @param date the first snapshot date to remove
+     */
+    void invalidateFrom(String history, LocalDate date);
+}
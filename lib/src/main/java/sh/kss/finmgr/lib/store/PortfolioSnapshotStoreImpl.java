@@ -0,0 +1,246 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A snapshot store persisted as one binary file per snapshot, in a directory per history named by the snapshot
+ * date. The dates of each history are listed once and then kept in memory.
+ *
+ */
+@Component
+public class PortfolioSnapshotStoreImpl implements PortfolioSnapshotStore {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(PortfolioSnapshotStoreImpl.class);
+    // Identifies a portfolio snapshot file
+    private static final int MAGIC = 0x464D534E;
+    private static final String SUFFIX = ".snap";
+
+    // Interns the decoded securities, none when used outside of Spring
+    private EntityRegistry entityRegistry;
+
+    // Directory holding a directory of snapshots per history
+    private Path location = Paths.get("snapshots");
+
+    // The snapshot files of each history that has been listed, by snapshot date
+    private final Map<String, NavigableMap<LocalDate, Path>> indexes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+        this.entityRegistry = entityRegistry;
+    }
+
+    @Value("${finmgr.run.snapshot-location:snapshots}")
+    public void setLocation(String location) {
+        this.location = Paths.get(location);
+    }
+
+    @Override
+    public Optional<PortfolioSnapshot> findLatest(String history, LocalDate date) {
+
+        NavigableMap<LocalDate, Path> index = getIndex(history);
+
+        synchronized (index) {
+
+            for (Map.Entry<LocalDate, Path> entry = index.floorEntry(date); entry != null; entry = index.lowerEntry(entry.getKey())) {
+
+                Optional<PortfolioSnapshot> snapshot = read(entry.getValue());
+
+                if (snapshot.isPresent()) {
+
+                    return snapshot;
+                }
+
+                // An unreadable snapshot is skipped for an earlier one
+                index.remove(entry.getKey());
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public void save(String history, PortfolioSnapshot snapshot) {
+
+        NavigableMap<LocalDate, Path> index = getIndex(history);
+        Path directory = location.resolve(history);
+        Path entry = directory.resolve(snapshot.getDate() + SUFFIX);
+
+        synchronized (index) {
+
+            try {
+
+                Files.createDirectories(directory);
+
+                Path temporary = Files.createTempFile(directory, snapshot.getDate().toString(), ".tmp");
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+
+                    out.writeInt(MAGIC);
+                    out.writeInt(PortfolioSnapshotCodec.VERSION);
+                    PortfolioSnapshotCodec.write(out, snapshot);
+                }
+
+                try {
+
+                    Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+
+                } catch (AtomicMoveNotSupportedException amnse) {
+
+                    Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                index.put(snapshot.getDate(), entry);
+
+            } catch (IOException ioe) {
+
+                // Without the snapshot the next replay starts from an earlier one
+                LOG.error(String.format("IOException when writing snapshot %s", entry));
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void invalidateFrom(String history, LocalDate date) {
+
+        NavigableMap<LocalDate, Path> index = getIndex(history);
+
+        synchronized (index) {
+
+            NavigableMap<LocalDate, Path> invalid = index.tailMap(date, true);
+
+            for (Path entry : new ArrayList<>(invalid.values())) {
+
+                try {
+
+                    Files.deleteIfExists(entry);
+
+                } catch (IOException ioe) {
+
+                    LOG.error(String.format("IOException when deleting snapshot %s", entry));
+                    ioe.printStackTrace();
+                }
+            }
+
+            LOG.debug(String.format("Invalidated %d snapshots of %s from %s", invalid.size(), history, date));
+
+            invalid.clear();
+        }
+    }
+
+    /**
+     * Get the snapshot files of a history, listing its directory the first time
+     *
+     * @param history the name of the transaction history
+     * @return the snapshot files by date
+     */
+    private NavigableMap<LocalDate, Path> getIndex(String history) {
+
+        return indexes.computeIfAbsent(history, name -> {
+
+            NavigableMap<LocalDate, Path> index = new TreeMap<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(location.resolve(name), "*" + SUFFIX)) {
+
+                for (Path entry : entries) {
+
+                    String fileName = entry.getFileName().toString();
+
+                    try {
+
+                        index.put(LocalDate.parse(fileName.substring(0, fileName.length() - SUFFIX.length())), entry);
+
+                    } catch (DateTimeParseException dtpe) {
+
+                        LOG.debug(String.format("Ignoring snapshot file %s", entry));
+                    }
+                }
+
+            } catch (NoSuchFileException nsfe) {
+
+                // No snapshot of the history has been saved yet
+
+            } catch (IOException ioe) {
+
+                LOG.warn(String.format("IOException when listing snapshots of %s, they will be replayed again", name));
+            }
+
+            return index;
+        });
+    }
+
+    /**
+     * Read a snapshot file
+     *
+     * @param entry the snapshot file
+     * @return the snapshot, empty if the file cannot be read or was written with another format
+     */
+    private Optional<PortfolioSnapshot> read(Path entry) {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != PortfolioSnapshotCodec.VERSION) {
+
+                LOG.debug(String.format("Ignoring snapshot %s written with another format", entry));
+
+                return Optional.empty();
+            }
+
+            return Optional.of(PortfolioSnapshotCodec.read(in, entityRegistry));
+
+        } catch (NoSuchFileException nsfe) {
+
+            return Optional.empty();
+
+        } catch (IOException | RuntimeException e) {
+
+            LOG.warn(String.format("%s when reading snapshot %s, it will be replayed again", e.getClass().getSimpleName(), entry));
+
+            return Optional.empty();
+        }
+    }
+}
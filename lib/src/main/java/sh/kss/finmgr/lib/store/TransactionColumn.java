@@ -0,0 +1,85 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.util.function.Function;
+
+/**
+ * The columns of a transaction column file, one per field of InvestmentTransaction
+ *
+ */
+public enum TransactionColumn {
+
+    TRANSACTION_DATE(1, Encoding.DATE, InvestmentTransaction::getTransactionDate),
+    SETTLEMENT_DATE(2, Encoding.DATE, InvestmentTransaction::getSettlementDate),
+    ACTION(3, Encoding.DICTIONARY, InvestmentTransaction::getAction),
+    ACCOUNT(4, Encoding.DICTIONARY, InvestmentTransaction::getAccount),
+    CURRENCY(5, Encoding.DICTIONARY, InvestmentTransaction::getCurrency),
+    SECURITY(6, Encoding.DICTIONARY, InvestmentTransaction::getSecurity),
+    DESCRIPTION(7, Encoding.DICTIONARY, InvestmentTransaction::getDescription),
+
+    PRICE(8, Encoding.DENSE_AMOUNT, InvestmentTransaction::getPrice),
+    QUANTITY(9, Encoding.DENSE_QUANTITY, InvestmentTransaction::getQuantity),
+    GROSS_AMOUNT(10, Encoding.DENSE_AMOUNT, InvestmentTransaction::getGrossAmount),
+    COMMISSION(11, Encoding.DENSE_AMOUNT, InvestmentTransaction::getCommission),
+    NET_AMOUNT(12, Encoding.DENSE_AMOUNT, InvestmentTransaction::getNetAmount),
+
+    RETURN_OF_CAPITAL(13, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getReturnOfCapital),
+    CAPITAL_GAIN(14, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getCapitalGain),
+    ELIGIBLE_DIVIDEND(15, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getEligibleDividend),
+    NON_ELIGIBLE_DIVIDEND(16, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getNonEligibleDividend),
+    FOREIGN_BUSINESS_INCOME(17, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getForeignBusinessIncome),
+    FOREIGN_NON_BUSINESS_INCOME(18, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getForeignNonBusinessIncome),
+    OTHER_INCOME(19, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getOtherIncome),
+    NON_REPORTABLE_DISTRIBUTION(20, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getNonReportableDistribution),
+    CAPITAL_GAINS_DEDUCTION_ELIGIBLE(21, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getCapitalGainsDeductionEligible),
+    FOREIGN_BUSINESS_INCOME_TAX_PAID(22, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getForeignBusinessIncomeTaxPaid),
+    FOREIGN_NON_BUSINESS_INCOME_TAX_PAID(23, Encoding.SPARSE_AMOUNT, InvestmentTransaction::getForeignNonBusinessIncomeTaxPaid);
+
+    // Stored in the file rather than the ordinal, so constants can be added in any position
+    final int id;
+    final Encoding encoding;
+    final Function<InvestmentTransaction, Object> field;
+
+    TransactionColumn(int id, Encoding encoding, Function<InvestmentTransaction, Object> field) {
+
+        this.id = id;
+        this.encoding = encoding;
+        this.field = field;
+    }
+
+    /**
+     * How the values of a column are stored
+     *
+     */
+    enum Encoding {
+
+        // Epoch days, each stored as the difference from the previous row
+        DATE,
+        // Each distinct value stored once, and an index into them per row
+        DICTIONARY,
+        // Fixed point amounts with a presence bitmap, for fields most transactions have
+        DENSE_AMOUNT,
+        // Fixed point quantities with a presence bitmap, keeping the scale of each value
+        DENSE_QUANTITY,
+        // Fixed point amounts of only the rows that have one, for distribution fields most transactions do not have
+        SPARSE_AMOUNT
+    }
+}
@@ -0,0 +1,875 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.javamoney.moneta.Money;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import javax.money.CurrencyUnit;
+import javax.money.MonetaryAmount;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+
+/**
+ * A file of transactions stored column by column. Descriptive columns are dictionary encoded, dates are stored as
+ * the difference from the previous row and amounts as fixed point longs, with the distribution fields only stored
+ * for the rows that have them. A reader maps the file into memory and decodes only the columns it is asked for.
+ *
+ */
+public final class TransactionColumnFile {
+
+    // Identifies a transaction column file
+    private static final int MAGIC = 0x464D5443;
+    // Bump whenever the file layout changes
+    public static final int VERSION = 1;
+    // Magic, version, row count and column count
+    private static final int HEADER_BYTES = 16;
+    // Column id, offset and length
+    private static final int DIRECTORY_ENTRY_BYTES = 20;
+
+    // How the values of a decimal column are stored
+    private static final byte FIXED = 0;
+    private static final byte SCALED = 1;
+    private static final byte DECIMAL = 2;
+    // Any unscaled value of at most this many digits fits in a long
+    private static final int MAX_PRECISION = 18;
+    // The slots per currency of the cache of decoded values
+    private static final int DECODED_CACHE_BITS = 12;
+    private static final int DECODED_CACHE_SIZE = 1 << DECODED_CACHE_BITS;
+    private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+
+    static {
+
+        POWERS_OF_TEN[0] = 1;
+
+        for (int i = 1; i <= MAX_PRECISION; i++) {
+
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int size;
+    private final Map<TransactionColumn, ByteBuffer> columns;
+
+    // Interns the decoded securities and accounts, or null to keep the decoded instances
+    private final EntityRegistry registry;
+
+    private TransactionColumnFile(int size, Map<TransactionColumn, ByteBuffer> columns, EntityRegistry registry) {
+
+        this.size = size;
+        this.columns = columns;
+        this.registry = registry;
+    }
+
+    /**
+     * Write transactions to a file, replacing it only once the new file is complete
+     *
+     * @param path the file to write
+     * @param transactions the transactions to write, in the order they are read back
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, List<InvestmentTransaction> transactions) throws IOException {
+
+        TransactionColumn[] values = TransactionColumn.values();
+        ColumnEncoder[] encoders = new ColumnEncoder[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+
+            encoders[i] = switch (values[i].encoding) {
+
+                case DATE -> new DateEncoder(values[i]);
+                case DICTIONARY -> new DictionaryEncoder(values[i]);
+                default -> new DecimalEncoder(values[i]);
+            };
+        }
+
+        // A single pass over the transactions, so each one is only visited once for all of its fields
+        for (InvestmentTransaction transaction : transactions) {
+
+            for (ColumnEncoder encoder : encoders) {
+
+                encoder.add(transaction);
+            }
+        }
+
+        List<byte[]> blocks = new ArrayList<>(values.length);
+
+        for (ColumnEncoder encoder : encoders) {
+
+            blocks.add(encoder.finish(transactions));
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(transactions.size());
+            out.writeInt(values.length);
+
+            long offset = HEADER_BYTES + (long) values.length * DIRECTORY_ENTRY_BYTES;
+
+            for (int i = 0; i < values.length; i++) {
+
+                out.writeInt(values[i].id);
+                out.writeLong(offset);
+                out.writeLong(blocks.get(i).length);
+
+                offset += blocks.get(i).length;
+            }
+
+            for (byte[] block : blocks) {
+
+                out.write(block);
+            }
+        }
+
+        try {
+
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (AtomicMoveNotSupportedException amnse) {
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Map a file into memory, no column is decoded until it is asked for
+     *
+     * @param path the file to read
+     * @return the file
+     * @throws IOException if the file cannot be read or was written with another format
+     */
+    public static TransactionColumnFile open(Path path) throws IOException {
+
+        return open(path, null);
+    }
+
+    /**
+     * Map a file into memory, taking its securities and accounts from a registry
+     *
+     * @param path the file to read
+     * @param registry interns the decoded securities and accounts, or null to keep the decoded instances
+     * @return the file
+     * @throws IOException if the file cannot be read or was written with another format
+     */
+    public static TransactionColumnFile open(Path path, EntityRegistry registry) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            // The mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+
+                throw new IOException(String.format("%s is not a transaction column file of version %d", path, VERSION));
+            }
+
+            Map<Integer, TransactionColumn> ids = new HashMap<>();
+
+            for (TransactionColumn column : TransactionColumn.values()) {
+
+                ids.put(column.id, column);
+            }
+
+            Map<TransactionColumn, ByteBuffer> columns = new EnumMap<>(TransactionColumn.class);
+            int count = buffer.getInt(12);
+
+            for (int i = 0; i < count; i++) {
+
+                int entry = HEADER_BYTES + i * DIRECTORY_ENTRY_BYTES;
+                TransactionColumn column = ids.get(buffer.getInt(entry));
+
+                // Columns this version does not know are skipped
+                if (column != null) {
+
+                    columns.put(column, buffer.slice(Math.toIntExact(buffer.getLong(entry + 4)), Math.toIntExact(buffer.getLong(entry + 12))));
+                }
+            }
+
+            return new TransactionColumnFile(buffer.getInt(8), columns, registry);
+        }
+    }
+
+    /**
+     * The number of transactions in the file
+     *
+     * @return the row count
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Decode a date column as epoch days
+     *
+     * @param column TRANSACTION_DATE or SETTLEMENT_DATE
+     * @return the epoch day of each row
+     */
+    public long[] getEpochDays(TransactionColumn column) {
+
+        ByteBuffer in = getColumn(column, TransactionColumn.Encoding.DATE);
+        long[] days = new long[size];
+        long day = 0;
+
+        for (int i = 0; i < size; i++) {
+
+            day += decodeZigZag(readVarLong(in));
+            days[i] = day;
+        }
+
+        return days;
+    }
+
+    public InvestmentAction[] getActions() {
+
+        return decodeDictionary(TransactionColumn.ACTION, InvestmentAction[]::new);
+    }
+
+    public Account[] getAccounts() {
+
+        return decodeDictionary(TransactionColumn.ACCOUNT, Account[]::new);
+    }
+
+    public CurrencyUnit[] getCurrencies() {
+
+        return decodeDictionary(TransactionColumn.CURRENCY, CurrencyUnit[]::new);
+    }
+
+    public Security[] getSecurities() {
+
+        return decodeDictionary(TransactionColumn.SECURITY, Security[]::new);
+    }
+
+    public String[] getDescriptions() {
+
+        return decodeDictionary(TransactionColumn.DESCRIPTION, String[]::new);
+    }
+
+    /**
+     * Decode an amount column
+     *
+     * @param column a dense or sparse amount column
+     * @return the amount of each row, null for the rows without one
+     */
+    public MonetaryAmount[] getAmounts(TransactionColumn column) {
+
+        if (column.encoding != TransactionColumn.Encoding.DENSE_AMOUNT && column.encoding != TransactionColumn.Encoding.SPARSE_AMOUNT) {
+
+            throw new IllegalArgumentException(String.format("%s is not an amount column", column));
+        }
+
+        return decodeDecimals(column, new MonetaryAmount[size], Money::of);
+    }
+
+    public Quantity[] getQuantities() {
+
+        return decodeDecimals(TransactionColumn.QUANTITY, new Quantity[size], (value, currency) -> new Quantity(value));
+    }
+
+    /**
+     * Decode every column into transactions
+     *
+     * @return the transactions in the order they were written
+     */
+    public List<InvestmentTransaction> readAll() {
+
+        long[] transactionDates = getEpochDays(TransactionColumn.TRANSACTION_DATE);
+        long[] settlementDates = getEpochDays(TransactionColumn.SETTLEMENT_DATE);
+        InvestmentAction[] actions = getActions();
+        Account[] accounts = getAccounts();
+        CurrencyUnit[] currencies = getCurrencies();
+        Security[] securities = getSecurities();
+        String[] descriptions = getDescriptions();
+        Quantity[] quantities = getQuantities();
+
+        Map<TransactionColumn, MonetaryAmount[]> amounts = new EnumMap<>(TransactionColumn.class);
+
+        for (TransactionColumn column : TransactionColumn.values()) {
+
+            if (column.encoding == TransactionColumn.Encoding.DENSE_AMOUNT || column.encoding == TransactionColumn.Encoding.SPARSE_AMOUNT) {
+
+                amounts.put(column, getAmounts(column));
+            }
+        }
+
+        List<InvestmentTransaction> transactions = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+
+            transactions.add(InvestmentTransaction.builder()
+                .transactionDate(LocalDate.ofEpochDay(transactionDates[i]))
+                .settlementDate(LocalDate.ofEpochDay(settlementDates[i]))
+                .action(actions[i])
+                .account(accounts[i])
+                .currency(currencies[i])
+                .security(securities[i])
+                .description(descriptions[i])
+                .price(amounts.get(TransactionColumn.PRICE)[i])
+                .quantity(quantities[i])
+                .grossAmount(amounts.get(TransactionColumn.GROSS_AMOUNT)[i])
+                .commission(amounts.get(TransactionColumn.COMMISSION)[i])
+                .netAmount(amounts.get(TransactionColumn.NET_AMOUNT)[i])
+                .returnOfCapital(amounts.get(TransactionColumn.RETURN_OF_CAPITAL)[i])
+                .capitalGain(amounts.get(TransactionColumn.CAPITAL_GAIN)[i])
+                .eligibleDividend(amounts.get(TransactionColumn.ELIGIBLE_DIVIDEND)[i])
+                .nonEligibleDividend(amounts.get(TransactionColumn.NON_ELIGIBLE_DIVIDEND)[i])
+                .foreignBusinessIncome(amounts.get(TransactionColumn.FOREIGN_BUSINESS_INCOME)[i])
+                .foreignNonBusinessIncome(amounts.get(TransactionColumn.FOREIGN_NON_BUSINESS_INCOME)[i])
+                .otherIncome(amounts.get(TransactionColumn.OTHER_INCOME)[i])
+                .nonReportableDistribution(amounts.get(TransactionColumn.NON_REPORTABLE_DISTRIBUTION)[i])
+                .capitalGainsDeductionEligible(amounts.get(TransactionColumn.CAPITAL_GAINS_DEDUCTION_ELIGIBLE)[i])
+                .foreignBusinessIncomeTaxPaid(amounts.get(TransactionColumn.FOREIGN_BUSINESS_INCOME_TAX_PAID)[i])
+                .foreignNonBusinessIncomeTaxPaid(amounts.get(TransactionColumn.FOREIGN_NON_BUSINESS_INCOME_TAX_PAID)[i])
+                .build());
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Get a column positioned at its first byte, independent of other readers of the same column
+     *
+     * @param column the column
+     * @param encoding the encoding the caller decodes
+     * @return the column bytes
+     */
+    private ByteBuffer getColumn(TransactionColumn column, TransactionColumn.Encoding encoding) {
+
+        if (column.encoding != encoding) {
+
+            throw new IllegalArgumentException(String.format("%s is not a %s column", column, encoding));
+        }
+
+        ByteBuffer buffer = columns.get(column);
+
+        if (buffer == null) {
+
+            throw new IllegalStateException(String.format("The file has no %s column", column));
+        }
+
+        return buffer.duplicate();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T[] decodeDictionary(TransactionColumn column, IntFunction<T[]> array) {
+
+        ByteBuffer in = getColumn(column, TransactionColumn.Encoding.DICTIONARY);
+        DataInputStream entriesIn = new DataInputStream(new ByteBufferInputStream(in));
+
+        try {
+
+            // Index 0 is kept for rows without a value
+            T[] entries = array.apply(in.getInt() + 1);
+
+            for (int i = 1; i < entries.length; i++) {
+
+                entries[i] = (T) readEntry(column, entriesIn);
+            }
+
+            T[] values = array.apply(size);
+
+            for (int i = 0; i < size; i++) {
+
+                values[i] = entries[(int) readVarLong(in)];
+            }
+
+            return values;
+
+        } catch (IOException ioe) {
+
+            throw new IllegalStateException(String.format("The %s column is corrupt", column), ioe);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T[] decodeDecimals(TransactionColumn column, T[] values, BiFunction<BigDecimal, CurrencyUnit, T> factory) {
+
+        ByteBuffer in = getColumn(column, column.encoding);
+        DataInputStream dataIn = new DataInputStream(new ByteBufferInputStream(in));
+
+        try {
+
+            int[] rows = readPresence(column, in);
+
+            // Quantities have no currency, they are decoded as if they had a single one
+            CurrencyUnit[] dictionary = new CurrencyUnit[] {null};
+            int[] currencies = new int[rows.length];
+
+            if (column.encoding != TransactionColumn.Encoding.DENSE_QUANTITY) {
+
+                dictionary = new CurrencyUnit[in.getInt()];
+
+                for (int i = 0; i < dictionary.length; i++) {
+
+                    dictionary[i] = InvestmentTransactionCodec.readCurrency(dataIn);
+                }
+
+                for (int j = 0; dictionary.length > 1 && j < rows.length; j++) {
+
+                    currencies[j] = (int) readVarLong(in);
+                }
+            }
+
+            byte mode = in.get();
+
+            if (mode == FIXED) {
+
+                int scale = in.getInt();
+
+                // Values repeat, such as commissions and distributions, so equal values share one decoded instance.
+                // The cache is direct mapped per currency, a value replaces the one it collides with.
+                long[] keys = new long[dictionary.length * DECODED_CACHE_SIZE];
+                Object[] decoded = new Object[dictionary.length * DECODED_CACHE_SIZE];
+
+                for (int j = 0; j < rows.length; j++) {
+
+                    long unscaled = decodeZigZag(readVarLong(in));
+                    int slot = currencies[j] * DECODED_CACHE_SIZE + (int) ((unscaled * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - DECODED_CACHE_BITS));
+
+                    if (decoded[slot] == null || keys[slot] != unscaled) {
+
+                        keys[slot] = unscaled;
+                        decoded[slot] = factory.apply(BigDecimal.valueOf(unscaled, scale), dictionary[currencies[j]]);
+                    }
+
+                    values[rows[j]] = (T) decoded[slot];
+                }
+
+                return values;
+            }
+
+            for (int j = 0; j < rows.length; j++) {
+
+                BigDecimal value;
+
+                if (mode == SCALED) {
+
+                    int scale = (int) decodeZigZag(readVarLong(in));
+
+                    value = BigDecimal.valueOf(decodeZigZag(readVarLong(in)), scale);
+
+                } else {
+
+                    value = InvestmentTransactionCodec.readDecimal(dataIn);
+                }
+
+                values[rows[j]] = factory.apply(value, dictionary[currencies[j]]);
+            }
+
+            return values;
+
+        } catch (IOException ioe) {
+
+            throw new IllegalStateException(String.format("The %s column is corrupt", column), ioe);
+        }
+    }
+
+    /**
+     * Read which rows of a decimal column have a value
+     *
+     * @param column the column
+     * @param in the column bytes, positioned at the presence
+     * @return the rows with a value, in order
+     */
+    private int[] readPresence(TransactionColumn column, ByteBuffer in) {
+
+        if (column.encoding == TransactionColumn.Encoding.SPARSE_AMOUNT) {
+
+            int[] rows = new int[Math.toIntExact(readVarLong(in))];
+            int row = 0;
+
+            for (int j = 0; j < rows.length; j++) {
+
+                row += (int) readVarLong(in);
+                rows[j] = row;
+            }
+
+            return rows;
+        }
+
+        byte[] bitmap = new byte[(size + 7) / 8];
+        int count = 0;
+
+        in.get(bitmap);
+
+        for (byte bits : bitmap) {
+
+            count += Integer.bitCount(bits & 0xFF);
+        }
+
+        int[] rows = new int[count];
+
+        for (int i = 0, j = 0; i < size; i++) {
+
+            if ((bitmap[i >>> 3] & (1 << (i & 7))) != 0) {
+
+                rows[j++] = i;
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Encodes the values of one column as the transactions are visited in order
+     *
+     */
+    private interface ColumnEncoder {
+
+        void add(InvestmentTransaction transaction) throws IOException;
+
+        byte[] finish(List<InvestmentTransaction> transactions) throws IOException;
+    }
+
+    private static final class DateEncoder implements ColumnEncoder {
+
+        private final TransactionColumn column;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private long previous;
+
+        private DateEncoder(TransactionColumn column) {
+
+            this.column = column;
+        }
+
+        @Override
+        public void add(InvestmentTransaction transaction) throws IOException {
+
+            long day = ((LocalDate) column.field.apply(transaction)).toEpochDay();
+
+            writeVarLong(out, encodeZigZag(day - previous));
+            previous = day;
+        }
+
+        @Override
+        public byte[] finish(List<InvestmentTransaction> transactions) {
+
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class DictionaryEncoder implements ColumnEncoder {
+
+        private final TransactionColumn column;
+
+        // Each distinct value by its index, starting at 1 as 0 is kept for rows without a value
+        private final Map<Object, Integer> entries = new LinkedHashMap<>();
+        private final ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        private final DataOutputStream rowsOut = new DataOutputStream(rows);
+
+        private DictionaryEncoder(TransactionColumn column) {
+
+            this.column = column;
+        }
+
+        @Override
+        public void add(InvestmentTransaction transaction) throws IOException {
+
+            Object value = column.field.apply(transaction);
+
+            writeVarLong(rowsOut, value == null ? 0 : entries.computeIfAbsent(value, entry -> entries.size() + 1));
+        }
+
+        @Override
+        public byte[] finish(List<InvestmentTransaction> transactions) throws IOException {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() + entries.size() * 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(entries.size());
+
+            for (Object entry : entries.keySet()) {
+
+                writeEntry(column, entry, out);
+            }
+
+            rows.writeTo(out);
+
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class DecimalEncoder implements ColumnEncoder {
+
+        private final TransactionColumn column;
+        private final boolean quantity;
+
+        // The rows with a value, with the unscaled value, scale and currency of each, kept as primitives
+        private int[] rows = new int[64];
+        private long[] unscaled = new long[64];
+        private int[] scales = new int[64];
+        private int[] currencies = new int[64];
+        private final Map<CurrencyUnit, Integer> dictionary = new LinkedHashMap<>();
+        private int count;
+        private int row;
+
+        private int maxScale;
+        private int maxIntegerDigits;
+        private boolean sameScale = true;
+
+        // A value with more digits than a long holds, the column is then written as decimals
+        private boolean overflow;
+
+        private DecimalEncoder(TransactionColumn column) {
+
+            this.column = column;
+            this.quantity = column.encoding == TransactionColumn.Encoding.DENSE_QUANTITY;
+        }
+
+        @Override
+        public void add(InvestmentTransaction transaction) {
+
+            Object value = column.field.apply(transaction);
+
+            if (value != null) {
+
+                if (count == rows.length) {
+
+                    rows = Arrays.copyOf(rows, count * 2);
+                    unscaled = Arrays.copyOf(unscaled, count * 2);
+                    scales = Arrays.copyOf(scales, count * 2);
+                    currencies = Arrays.copyOf(currencies, count * 2);
+                }
+
+                BigDecimal decimal;
+
+                if (value instanceof MonetaryAmount amount) {
+
+                    decimal = amount.getNumber().numberValue(BigDecimal.class);
+                    currencies[count] = dictionary.computeIfAbsent(amount.getCurrency(), currency -> dictionary.size());
+
+                } else {
+
+                    decimal = ((Quantity) value).getValue();
+                }
+
+                rows[count] = row;
+                scales[count] = decimal.scale();
+
+                maxScale = count == 0 ? decimal.scale() : Math.max(maxScale, decimal.scale());
+                maxIntegerDigits = Math.max(maxIntegerDigits, decimal.precision() - decimal.scale());
+                sameScale &= decimal.scale() == scales[0];
+
+                if (decimal.precision() <= MAX_PRECISION) {
+
+                    unscaled[count] = decimal.scaleByPowerOfTen(decimal.scale()).longValueExact();
+
+                } else {
+
+                    overflow = true;
+                }
+
+                count++;
+            }
+
+            row++;
+        }
+
+        @Override
+        public byte[] finish(List<InvestmentTransaction> transactions) throws IOException {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            if (column.encoding == TransactionColumn.Encoding.SPARSE_AMOUNT) {
+
+                writeVarLong(out, count);
+
+                for (int j = 0; j < count; j++) {
+
+                    writeVarLong(out, rows[j] - (j == 0 ? 0 : rows[j - 1]));
+                }
+
+            } else {
+
+                byte[] bitmap = new byte[(transactions.size() + 7) / 8];
+
+                for (int j = 0; j < count; j++) {
+
+                    bitmap[rows[j] >>> 3] |= (byte) (1 << (rows[j] & 7));
+                }
+
+                out.write(bitmap);
+            }
+
+            if (!quantity) {
+
+                out.writeInt(dictionary.size());
+
+                for (CurrencyUnit currency : dictionary.keySet()) {
+
+                    InvestmentTransactionCodec.writeCurrency(out, currency);
+                }
+
+                // A single currency is not repeated per value
+                for (int j = 0; dictionary.size() > 1 && j < count; j++) {
+
+                    writeVarLong(out, currencies[j]);
+                }
+            }
+
+            // Amounts compare by value so they can share the largest scale, quantities keep their own. Every value
+            // then has at most MAX_PRECISION digits, so its unscaled value at the largest scale still fits.
+            boolean fixed = !overflow && (quantity ? sameScale : (long) maxIntegerDigits + maxScale <= MAX_PRECISION);
+
+            if (fixed) {
+
+                out.writeByte(FIXED);
+                out.writeInt(maxScale);
+
+                for (int j = 0; j < count; j++) {
+
+                    // Only a zero can be further than MAX_PRECISION digits from the largest scale
+                    writeVarLong(out, encodeZigZag(unscaled[j] == 0 ? 0 : unscaled[j] * POWERS_OF_TEN[maxScale - scales[j]]));
+                }
+
+            } else if (!overflow) {
+
+                out.writeByte(SCALED);
+
+                for (int j = 0; j < count; j++) {
+
+                    writeVarLong(out, encodeZigZag(scales[j]));
+                    writeVarLong(out, encodeZigZag(unscaled[j]));
+                }
+
+            } else {
+
+                out.writeByte(DECIMAL);
+
+                for (int j = 0; j < count; j++) {
+
+                    Object value = column.field.apply(transactions.get(rows[j]));
+
+                    InvestmentTransactionCodec.writeDecimal(out, value instanceof MonetaryAmount amount ? amount.getNumber().numberValue(BigDecimal.class) : ((Quantity) value).getValue());
+                }
+            }
+
+            return bytes.toByteArray();
+        }
+    }
+
+    private static void writeEntry(TransactionColumn column, Object entry, DataOutput out) throws IOException {
+
+        switch (column) {
+
+            case ACTION -> out.writeUTF(((InvestmentAction) entry).name());
+            case ACCOUNT -> InvestmentTransactionCodec.writeAccount(out, (Account) entry);
+            case CURRENCY -> InvestmentTransactionCodec.writeCurrency(out, (CurrencyUnit) entry);
+            case SECURITY -> InvestmentTransactionCodec.writeSecurity(out, (Security) entry);
+            default -> out.writeUTF((String) entry);
+        }
+    }
+
+    private Object readEntry(TransactionColumn column, DataInput in) throws IOException {
+
+        return switch (column) {
+
+            case ACTION -> InvestmentAction.valueOf(in.readUTF());
+            case ACCOUNT -> {
+
+                Account account = InvestmentTransactionCodec.readAccount(in);
+
+                yield registry != null ? registry.intern(account) : account;
+            }
+            case CURRENCY -> InvestmentTransactionCodec.readCurrency(in);
+            case SECURITY -> {
+
+                Security security = InvestmentTransactionCodec.readSecurity(in);
+
+                yield registry != null ? registry.intern(security) : security;
+            }
+            default -> in.readUTF();
+        };
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+
+        while ((value & ~0x7FL) != 0) {
+
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+
+        long value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+
+            byte b = in.get();
+
+            value |= (long) (b & 0x7F) << shift;
+
+            if (b >= 0) {
+
+                return value;
+            }
+        }
+    }
+
+    private static long encodeZigZag(long value) {
+
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long decodeZigZag(long value) {
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * Indexes the transactions of the transaction log by account, security, action and date so that a query reads only
+ * the positions that can match
+ *
+ */
+public interface TransactionIndex {
+
+    /**
+     * Find the log positions of the transactions matching a query, indexing anything appended since the last call
+     *
+     * @param query the filters and the first position to consider
+     * @return the matching positions in ascending order, found as the iterator advances
+     */
+    PrimitiveIterator.OfLong find(TransactionQuery query);
+
+    /**
+     * The number of transactions indexed
+     *
+     * @return the number of log positions indexed
+     */
+    long size();
+}
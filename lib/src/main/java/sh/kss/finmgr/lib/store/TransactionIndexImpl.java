@@ -0,0 +1,395 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.stream.LongStream;
+
+/**
+ * An in-memory index of the transaction log, caught up with the log on each query. Every position has its date,
+ * action, account and symbol in primitive columns, each account, symbol and action has the ascending list of its
+ * positions, and each block of positions has the range of its dates. A query walks the shortest list of its filters,
+ * or the blocks that overlap its dates, and checks the other filters against the columns. Only the transactions
+ * appended since the last query are read from the log.
+ *
+ */
+@Component
+public class TransactionIndexImpl implements TransactionIndex {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionIndexImpl.class);
+
+    // Positions per block of the date ranges
+    private static final int BLOCK_SHIFT = 10;
+
+    private static final InvestmentAction[] ACTIONS = InvestmentAction.values();
+
+    private TransactionLog transactionLog;
+
+    private int size;
+    private int[] days = new int[1024];
+    private byte[] actions = new byte[1024];
+    private int[] accounts = new int[1024];
+    // The symbol of each position, -1 for transactions without a security
+    private int[] symbols = new int[1024];
+
+    // The lowest and highest day of each block
+    private int[] blockMin = new int[1];
+    private int[] blockMax = new int[1];
+
+    // Dictionary ids of the accounts and symbols, indexing their position lists
+    private final Map<String, Integer> accountIds = new HashMap<>();
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final List<Positions> accountPositions = new ArrayList<>();
+    private final List<Positions> symbolPositions = new ArrayList<>();
+    private final Positions[] actionPositions = new Positions[ACTIONS.length];
+
+    @Autowired
+    public void setTransactionLog(TransactionLog transactionLog) {
+        this.transactionLog = transactionLog;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong find(TransactionQuery query) {
+
+        Matches matches = new Matches(query);
+
+        synchronized (this) {
+
+            refresh();
+
+            int account = -1;
+            int symbol = -1;
+
+            // A filter on a value that was never indexed matches nothing
+            if (query.getAccount() != null) {
+
+                Integer id = accountIds.get(query.getAccount());
+
+                if (id == null) {
+
+                    return LongStream.empty().iterator();
+                }
+
+                account = id;
+                matches.drive(accountPositions.get(id));
+            }
+
+            if (query.getSymbol() != null) {
+
+                Integer id = symbolIds.get(query.getSymbol());
+
+                if (id == null) {
+
+                    return LongStream.empty().iterator();
+                }
+
+                symbol = id;
+                matches.drive(symbolPositions.get(id));
+            }
+
+            if (query.getAction() != null) {
+
+                if (actionPositions[query.getAction().ordinal()] == null) {
+
+                    return LongStream.empty().iterator();
+                }
+
+                matches.drive(actionPositions[query.getAction().ordinal()]);
+            }
+
+            matches.capture(account, symbol);
+        }
+
+        return matches;
+    }
+
+    @Override
+    public synchronized long size() {
+
+        refresh();
+
+        return size;
+    }
+
+    /**
+     * Index the transactions appended to the log since the last refresh
+     *
+     */
+    private void refresh() {
+
+        long logSize = transactionLog.size();
+
+        if (logSize <= size) {
+
+            return;
+        }
+
+        int from = size;
+
+        transactionLog.read(LongStream.range(size, logSize).iterator(), (position, transaction) -> {
+
+            add(Math.toIntExact(position), transaction);
+
+            return true;
+        });
+
+        LOG.debug(String.format("Indexed transactions %d to %d", from, size));
+    }
+
+    private void add(int position, InvestmentTransaction transaction) {
+
+        if (position == days.length) {
+
+            int capacity = days.length * 2;
+
+            days = Arrays.copyOf(days, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+            accounts = Arrays.copyOf(accounts, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+
+        int day = Math.toIntExact(transaction.getTransactionDate().toEpochDay());
+        int block = position >>> BLOCK_SHIFT;
+
+        if (block == blockMin.length) {
+
+            blockMin = Arrays.copyOf(blockMin, block * 2);
+            blockMax = Arrays.copyOf(blockMax, block * 2);
+        }
+
+        if ((position & (1 << BLOCK_SHIFT) - 1) == 0) {
+
+            blockMin[block] = day;
+            blockMax[block] = day;
+
+        } else {
+
+            blockMin[block] = Math.min(blockMin[block], day);
+            blockMax[block] = Math.max(blockMax[block], day);
+        }
+
+        int action = transaction.getAction().ordinal();
+        int account = id(accountIds, accountPositions, transaction.getAccount().getId());
+
+        days[position] = day;
+        actions[position] = (byte) action;
+        accounts[position] = account;
+        symbols[position] = transaction.getSecurity() != null ? id(symbolIds, symbolPositions, transaction.getSecurity().getValue()) : -1;
+
+        accountPositions.get(account).add(position);
+
+        if (symbols[position] >= 0) {
+
+            symbolPositions.get(symbols[position]).add(position);
+        }
+
+        if (actionPositions[action] == null) {
+
+            actionPositions[action] = new Positions();
+        }
+
+        actionPositions[action].add(position);
+        size = position + 1;
+    }
+
+    private static int id(Map<String, Integer> ids, List<Positions> positions, String key) {
+
+        Integer id = ids.get(key);
+
+        if (id == null) {
+
+            id = positions.size();
+            ids.put(key, id);
+            positions.add(new Positions());
+        }
+
+        return id;
+    }
+
+    /**
+     * The ascending positions of one account, symbol or action
+     *
+     */
+    private static final class Positions {
+
+        private int[] positions = new int[16];
+        private int count;
+
+        void add(int position) {
+
+            if (count == positions.length) {
+
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+
+            positions[count++] = position;
+        }
+    }
+
+    /**
+     * Walks the candidate positions of a query, checking each against the columns captured when the query started.
+     * Later refreshes only write past the captured size, or widen the date range of the last block.
+     *
+     */
+    private final class Matches implements PrimitiveIterator.OfLong {
+
+        private final int action;
+        private final long fromDay;
+        private final long toDay;
+        private final long cursor;
+
+        private int account;
+        private int symbol;
+        private int size;
+        private int[] days;
+        private byte[] actions;
+        private int[] accounts;
+        private int[] symbols;
+        private int[] blockMin;
+        private int[] blockMax;
+
+        // The shortest position list of the filters, or null to walk every position
+        private int[] candidates;
+        private int candidateCount = Integer.MAX_VALUE;
+        private int index;
+
+        private long next = -1;
+
+        Matches(TransactionQuery query) {
+
+            this.action = query.getAction() != null ? query.getAction().ordinal() : -1;
+            this.fromDay = query.getFromDate() != null ? query.getFromDate().toEpochDay() : Long.MIN_VALUE;
+            this.toDay = query.getToDate() != null ? query.getToDate().toEpochDay() : Long.MAX_VALUE;
+            this.cursor = Math.max(0, query.getCursor());
+        }
+
+        void drive(Positions positions) {
+
+            if (positions.count < candidateCount) {
+
+                candidates = positions.positions;
+                candidateCount = positions.count;
+            }
+        }
+
+        void capture(int account, int symbol) {
+
+            this.account = account;
+            this.symbol = symbol;
+            this.size = TransactionIndexImpl.this.size;
+            this.days = TransactionIndexImpl.this.days;
+            this.actions = TransactionIndexImpl.this.actions;
+            this.accounts = TransactionIndexImpl.this.accounts;
+            this.symbols = TransactionIndexImpl.this.symbols;
+            this.blockMin = TransactionIndexImpl.this.blockMin;
+            this.blockMax = TransactionIndexImpl.this.blockMax;
+
+            if (candidates != null) {
+
+                // Start at the first candidate at or after the cursor
+                int found = Arrays.binarySearch(candidates, 0, candidateCount, (int) Math.min(cursor, Integer.MAX_VALUE));
+                index = found >= 0 ? found : -found - 1;
+
+            } else {
+
+                index = (int) Math.min(cursor, size);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            while (next < 0) {
+
+                int position;
+
+                if (candidates != null) {
+
+                    if (index >= candidateCount) {
+
+                        return false;
+                    }
+
+                    position = candidates[index++];
+
+                } else {
+
+                    if (index >= size) {
+
+                        return false;
+                    }
+
+                    int block = index >>> BLOCK_SHIFT;
+
+                    // Blocks with no day in the range are skipped whole
+                    if (blockMax[block] < fromDay || blockMin[block] > toDay) {
+
+                        index = (block + 1) << BLOCK_SHIFT;
+
+                        continue;
+                    }
+
+                    position = index++;
+                }
+
+                if (matches(position)) {
+
+                    next = position;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+
+            if (!hasNext()) {
+
+                throw new NoSuchElementException();
+            }
+
+            long position = next;
+            next = -1;
+
+            return position;
+        }
+
+        private boolean matches(int position) {
+
+            return days[position] >= fromDay && days[position] <= toDay
+                && (account < 0 || accounts[position] == account)
+                && (symbol < 0 || symbols[position] == symbol)
+                && (action < 0 || actions[position] == action);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+/**
+ * An append-only log of the transactions found in each source document, the system of record that replays and
+ * queries read instead of parsing the documents again. Transactions are numbered by their position in the log.
+ *
+ */
+public interface TransactionLog {
+
+    /**
+     * Append the transactions of a source document as one record, unless the source was already appended
+     *
+     * @param source identifies the source document, for example the hash of its content
+     * @param transactions the transactions parsed from the document
+     * @return true if the transactions were appended, false if the source was already in the log
+     */
+    boolean append(String source, List<InvestmentTransaction> transactions);
+
+    /**
+     * Whether the transactions of a source document have been appended
+     *
+     * @param source identifies the source document
+     * @return true if the source is in the log
+     */
+    boolean contains(String source);
+
+    /**
+     * The number of transactions in the log
+     *
+     * @return the position the next appended transaction will have
+     */
+    long size();
+
+    /**
+     * Read the transactions of the log in append order
+     *
+     * @param from the position of the first transaction to read
+     * @param limit the most transactions to read
+     * @return the transactions from the position
+     */
+    List<InvestmentTransaction> read(long from, int limit);
+
+    /**
+     * Pass the transactions at the given positions to a visitor as they are decoded, without collecting them
+     *
+     * @param positions the positions to read, in ascending order
+     * @param visitor receives each transaction with its position, and returns false to stop reading
+     */
+    void read(PrimitiveIterator.OfLong positions, TransactionVisitor visitor);
+
+    /**
+     * Read every transaction of the log in append order
+     *
+     * @return the transactions
+     */
+    default List<InvestmentTransaction> readAll() {
+
+        return read(0, Integer.MAX_VALUE);
+    }
+}
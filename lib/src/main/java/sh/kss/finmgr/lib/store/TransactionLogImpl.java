@@ -0,0 +1,454 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+import java.util.zip.CRC32;
+
+/**
+ * A transaction log persisted as a directory of segment files, each named by the position of its first transaction.
+ * A record holds the transactions of one source document behind its length and CRC-32, so an append is either read
+ * back whole or not at all. Appends go to the last segment until it reaches the segment size, and reads map the
+ * segments into memory and decode them sequentially, skipping the records that hold none of the wanted positions.
+ *
+ */
+@Component
+public class TransactionLogImpl implements TransactionLog {
+
+    // Log manager
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionLogImpl.class);
+    // Identifies a transaction log segment file
+    private static final int MAGIC = 0x464D544C;
+    // Magic, codec version and first position
+    private static final int HEADER_BYTES = 16;
+    // Length and checksum
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SUFFIX = ".log";
+
+    // Interns the decoded securities and accounts, none when used outside of Spring
+    private EntityRegistry entityRegistry;
+
+    // Directory holding the segments
+    private Path location = Paths.get("transaction-log");
+
+    // A segment is rolled once it would grow past this size
+    private long segmentBytes = 64L * 1024 * 1024;
+
+    // The segment files by the position of their first transaction, empty until the log is opened
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+
+    // The sources appended to the log
+    private final Set<String> sources = ConcurrentHashMap.newKeySet();
+
+    private boolean opened;
+    private long size;
+
+    // The last segment, appended to
+    private FileChannel active;
+    private long activeBytes;
+
+    @Autowired
+    public void setEntityRegistry(EntityRegistry entityRegistry) {
+        this.entityRegistry = entityRegistry;
+    }
+
+    @Value("${finmgr.transaction-log.location:transaction-log}")
+    public void setLocation(String location) {
+        this.location = Paths.get(location);
+    }
+
+    @Value("${finmgr.transaction-log.segment-bytes:67108864}")
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    @Override
+    public synchronized boolean append(String source, List<InvestmentTransaction> transactions) {
+
+        open();
+
+        if (sources.contains(source)) {
+
+            LOG.debug(String.format("Source %s is already in the transaction log", source));
+
+            return false;
+        }
+
+        try {
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeUTF(source);
+                out.writeInt(transactions.size());
+
+                for (InvestmentTransaction transaction : transactions) {
+
+                    InvestmentTransactionCodec.write(out, transaction);
+                }
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            CRC32 crc = new CRC32();
+
+            crc.update(record.array(), RECORD_HEADER_BYTES, record.capacity() - RECORD_HEADER_BYTES);
+            record.putInt(0, record.capacity() - RECORD_HEADER_BYTES);
+            record.putInt(4, (int) crc.getValue());
+
+            // Keep at least one record per segment however large it is
+            if (active == null || (activeBytes > HEADER_BYTES && activeBytes + record.capacity() > segmentBytes)) {
+
+                roll();
+            }
+
+            while (record.hasRemaining()) {
+
+                active.write(record);
+            }
+
+            active.force(false);
+
+            activeBytes += record.capacity();
+            size += transactions.size();
+            sources.add(source);
+
+            LOG.debug(String.format("Appended %d transactions of %s to the transaction log", transactions.size(), source));
+
+            return true;
+
+        } catch (IOException ioe) {
+
+            LOG.error(String.format("IOException when appending %s to the transaction log", source));
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public boolean contains(String source) {
+
+        synchronized (this) {
+
+            open();
+        }
+
+        return sources.contains(source);
+    }
+
+    @Override
+    public synchronized long size() {
+
+        open();
+
+        return size;
+    }
+
+    @Override
+    public List<InvestmentTransaction> read(long from, int limit) {
+
+        List<InvestmentTransaction> transactions = new ArrayList<>();
+
+        if (limit > 0) {
+
+            read(LongStream.range(from, Long.MAX_VALUE).iterator(), (position, transaction) -> transactions.add(transaction) && transactions.size() < limit);
+        }
+
+        return transactions;
+    }
+
+    @Override
+    public void read(PrimitiveIterator.OfLong positions, TransactionVisitor visitor) {
+
+        if (!positions.hasNext()) {
+
+            return;
+        }
+
+        long wanted = positions.nextLong();
+        List<Map.Entry<Long, Path>> reading;
+        long activeEnd;
+
+        // Only read what was appended when the read started
+        synchronized (this) {
+
+            open();
+
+            Long first = segments.floorKey(wanted);
+            reading = new ArrayList<>((first != null ? segments.tailMap(first, true) : segments).entrySet());
+            activeEnd = activeBytes;
+        }
+
+        for (int i = 0; i < reading.size(); i++) {
+
+            // Segments that end before the wanted position are not opened
+            if (i + 1 < reading.size() && reading.get(i + 1).getKey() <= wanted) {
+
+                continue;
+            }
+
+            Path segment = reading.get(i).getValue();
+            long position = reading.get(i).getKey();
+
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+
+                long end = i == reading.size() - 1 ? Math.min(activeEnd, channel.size()) : channel.size();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+                DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+
+                buffer.position(HEADER_BYTES);
+
+                while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+
+                    ByteBuffer payload = nextRecord(buffer);
+
+                    if (payload == null) {
+
+                        LOG.error(String.format("Transaction log segment %s is corrupt at byte %d", segment, buffer.position()));
+
+                        break;
+                    }
+
+                    int next = buffer.position() + payload.remaining();
+                    int sourceBytes = Short.BYTES + Short.toUnsignedInt(payload.getShort(0));
+                    int count = payload.getInt(sourceBytes);
+
+                    // Records before the wanted position are skipped without decoding their transactions
+                    if (wanted >= position + count) {
+
+                        position += count;
+                        buffer.position(next);
+
+                        continue;
+                    }
+
+                    long recordEnd = position + count;
+
+                    buffer.position(buffer.position() + sourceBytes + Integer.BYTES);
+
+                    // Decoding stops once the wanted position is past the record
+                    for (; position < recordEnd && wanted < recordEnd; position++) {
+
+                        InvestmentTransaction transaction = InvestmentTransactionCodec.read(in, entityRegistry);
+
+                        if (position == wanted) {
+
+                            if (!visitor.visit(position, transaction) || !positions.hasNext()) {
+
+                                return;
+                            }
+
+                            wanted = positions.nextLong();
+                        }
+                    }
+
+                    position = recordEnd;
+                    buffer.position(next);
+                }
+
+            } catch (IOException ioe) {
+
+                LOG.error(String.format("IOException when reading transaction log segment %s", segment));
+                throw new UncheckedIOException(ioe);
+            }
+        }
+    }
+
+    /**
+     * Check the record at the buffer position, leaving the position at its payload
+     *
+     * @param buffer a segment positioned at a record
+     * @return a view of the payload, null if the record is torn or does not match its checksum
+     */
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+
+        if (length < 0 || length > buffer.limit() - start - RECORD_HEADER_BYTES) {
+
+            return null;
+        }
+
+        ByteBuffer payload = buffer.slice(start + RECORD_HEADER_BYTES, length);
+        CRC32 crc = new CRC32();
+
+        crc.update(payload.duplicate());
+
+        if ((int) crc.getValue() != checksum) {
+
+            return null;
+        }
+
+        buffer.position(start + RECORD_HEADER_BYTES);
+
+        return payload;
+    }
+
+    /**
+     * List the segments and recover the sources and size of the log, cutting a torn record off the last segment
+     *
+     */
+    private void open() {
+
+        if (opened) {
+
+            return;
+        }
+
+        try {
+
+            Files.createDirectories(location);
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(location, "*" + SUFFIX)) {
+
+                for (Path entry : entries) {
+
+                    String fileName = entry.getFileName().toString();
+
+                    segments.put(Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length())), entry);
+                }
+            }
+
+            for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+
+                boolean last = entry.getKey().equals(segments.lastKey());
+                FileChannel channel = FileChannel.open(entry.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != InvestmentTransactionCodec.VERSION) {
+
+                    channel.close();
+                    throw new IOException(String.format("Transaction log segment %s was written with another format", entry.getValue()));
+                }
+
+                size = entry.getKey();
+                buffer.position(HEADER_BYTES);
+
+                while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+
+                    ByteBuffer payload = nextRecord(buffer);
+
+                    if (payload == null) {
+
+                        break;
+                    }
+
+                    DataInputStream in = new DataInputStream(new ByteBufferInputStream(payload));
+
+                    sources.add(in.readUTF());
+                    size += in.readInt();
+
+                    buffer.position(buffer.position() + payload.capacity());
+                }
+
+                if (buffer.hasRemaining()) {
+
+                    LOG.warn(String.format("Dropping %d bytes of a torn or corrupt record from transaction log segment %s", buffer.remaining(), entry.getValue()));
+
+                    if (last) {
+
+                        channel.truncate(buffer.position());
+                    }
+                }
+
+                if (last) {
+
+                    active = channel;
+                    activeBytes = buffer.position();
+                    active.position(activeBytes);
+
+                } else {
+
+                    channel.close();
+                }
+            }
+
+        } catch (IOException | RuntimeException e) {
+
+            LOG.error(String.format("%s when opening the transaction log at %s", e.getClass().getSimpleName(), location));
+            throw e instanceof IOException ioe ? new UncheckedIOException(ioe) : (RuntimeException) e;
+        }
+
+        opened = true;
+
+        LOG.info(String.format("Opened transaction log at %s with %d transactions in %d segments", location, size, segments.size()));
+    }
+
+    /**
+     * Start a new segment at the current size of the log
+     *
+     * @throws IOException if the segment cannot be created
+     */
+    private void roll() throws IOException {
+
+        if (active != null) {
+
+            active.close();
+        }
+
+        Path segment = location.resolve(String.format("%020d%s", size, SUFFIX));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        header.putInt(MAGIC);
+        header.putInt(InvestmentTransactionCodec.VERSION);
+        header.putLong(size);
+        header.flip();
+
+        active = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        while (header.hasRemaining()) {
+
+            active.write(header);
+        }
+
+        activeBytes = HEADER_BYTES;
+        segments.put(size, segment);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+
+import java.time.LocalDate;
+
+/**
+ * Filters on the transactions of a transaction log. Every filter that is set must match, and a transaction matches
+ * an unset filter.
+ *
+ */
+@Value
+@With
+@Builder
+public class TransactionQuery {
+
+    // The external id of the account
+    String account;
+    // The symbol of the security
+    String symbol;
+    InvestmentAction action;
+    // Inclusive bounds of the transaction date
+    LocalDate fromDate;
+    LocalDate toDate;
+    // The first log position to consider, the next cursor of a previous page
+    long cursor;
+
+    public static final TransactionQuery ALL = TransactionQuery.builder().build();
+}
@@ -0,0 +1,37 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+/**
+ * Receives the transactions of a transaction log read one at a time
+ *
+ */
+@FunctionalInterface
+public interface TransactionVisitor {
+
+    /**
+     * Visit a transaction
+     *
+     * @param position the position of the transaction in the log
+     * @param transaction the transaction
+     * @return true to keep reading, false to stop
+     */
+    boolean visit(long position, InvestmentTransaction transaction);
+}
@@ -0,0 +1,163 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.collect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the persistent collections against the java.util hash collections
+ */
+public class PersistentHashMapTest {
+
+    /**
+     * A key with a chosen hash code, to force collisions and deep tries
+     *
+     */
+    private record Key(int id, int hash) {
+
+        @Override
+        public int hashCode() {
+
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            return o instanceof Key key && key.id == id;
+        }
+    }
+
+    /**
+     * Random puts and removes agree with a HashMap, including keys whose hashes collide
+     *
+     */
+    @Test
+    public void matchesHashMapTest() {
+
+        Random random = new Random(42);
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+
+        for (int i = 0; i < 20_000; i++) {
+
+            int id = random.nextInt(2_000);
+            // Few distinct hashes so many keys collide or share long prefixes
+            Key key = new Key(id, id % 3 == 0 ? id % 7 : id * 0x9E3779B9);
+
+            if (random.nextInt(3) == 0) {
+
+                expected.remove(key);
+                map = map.minus(key);
+
+            } else {
+
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+
+        for (Key key : expected.keySet()) {
+
+            assertEquals(expected.get(key), map.get(key));
+        }
+
+        // Removing every key returns to empty
+        for (Key key : expected.keySet()) {
+
+            map = map.minus(key);
+        }
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    /**
+     * Earlier versions are unchanged by later updates
+     *
+     */
+    @Test
+    public void versionsAreIndependentTest() {
+
+        List<PersistentHashMap<Integer, Integer>> versions = new ArrayList<>();
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+
+        for (int i = 0; i < 1_000; i++) {
+
+            map = map.plus(i % 100, i);
+            versions.add(map);
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+
+            PersistentHashMap<Integer, Integer> version = versions.get(i);
+
+            assertEquals(Math.min(i + 1, 100), version.size());
+            assertEquals(i, version.get(i % 100));
+        }
+
+        // Unchanged updates return the same instance
+        Integer value = map.get(5);
+        assertSame(map, map.plus(5, value));
+        assertSame(map, map.minus(1_000));
+        assertNull(map.get(1_000));
+
+        assertThrows(UnsupportedOperationException.class, () -> versions.get(0).put(1, 1));
+    }
+
+    /**
+     * The persistent set agrees with a HashSet
+     *
+     */
+    @Test
+    public void setMatchesHashSetTest() {
+
+        Set<String> expected = new HashSet<>(Set.of("VTI", "VAB", "XIC"));
+        PersistentHashSet<String> set = PersistentHashSet.copyOf(expected);
+
+        assertEquals(expected, set);
+        assertSame(set, set.plus("VTI"));
+        assertSame(set, PersistentHashSet.copyOf(set));
+
+        PersistentHashSet<String> removed = set.minus("VAB");
+
+        assertEquals(Set.of("VTI", "XIC"), removed);
+        assertEquals(expected, set);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test coalescing and concurrency of the asynchronous market data lookups
+ */
+public class AsyncMarketDataApiImplTest {
+
+    private static final Security VTI = new Security("VTI", Monetary.getCurrency("USD"));
+
+    /**
+     * Lookups of the same close while one is in flight share its fetch
+     *
+     */
+    @Test
+    public void coalesceTest() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        LocalDate date = LocalDate.of(2024, 3, 8);
+
+        AsyncMarketDataApiImpl asyncMarketDataApi = new AsyncMarketDataApiImpl();
+        asyncMarketDataApi.setMarketDataApi(new MarketDataApi() {
+
+            @Override
+            public Optional<MonetaryAmount> findClosingPrice(Security security, LocalDate date) {
+
+                fetches.incrementAndGet();
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+
+                return Optional.of(Money.of(date.getDayOfMonth(), security.getCurrency()));
+            }
+
+            @Override
+            public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, List<LocalDate> dates) {
+
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<LocalDate, MonetaryAmount> getClosingPrices(Security security, LocalDate from, LocalDate to) {
+
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        List<CompletableFuture<Optional<MonetaryAmount>>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+
+            futures.add(asyncMarketDataApi.findClosingPrice(VTI, date));
+        }
+
+        // Another day is a separate fetch
+        CompletableFuture<Optional<MonetaryAmount>> other = asyncMarketDataApi.findClosingPrice(VTI, date.minusDays(1));
+
+        release.countDown();
+
+        for (CompletableFuture<Optional<MonetaryAmount>> future : futures) {
+
+            assertSame(futures.get(0), future);
+            assertEquals(Money.of(8, "USD"), future.get().orElseThrow());
+        }
+
+        assertEquals(Money.of(7, "USD"), other.get().orElseThrow());
+        assertEquals(2, fetches.get());
+
+        // Once complete, the next lookup fetches again
+        asyncMarketDataApi.findClosingPrice(VTI, date).get();
+
+        assertEquals(3, fetches.get());
+    }
+
+    /**
+     * Fetching many securities overlaps their requests instead of waiting for each in turn
+     *
+     */
+    @Test
+    public void concurrentBackfillTest() throws Exception {
+
+        try (MarketWatchStub stub = new MarketWatchStub(MarketWatchStub::weekdayCloses)) {
+
+            stub.setLatency(Duration.ofMillis(200));
+
+            MarketDataApiImpl marketDataApi = new MarketDataApiImpl();
+            marketDataApi.setBaseUrl(stub.getBaseUrl());
+            marketDataApi.setRequestsPerSecond(0);
+
+            AsyncMarketDataApiImpl asyncMarketDataApi = new AsyncMarketDataApiImpl();
+            asyncMarketDataApi.setMarketDataApi(marketDataApi);
+
+            List<Security> securities = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++) {
+
+                securities.add(new Security("S" + i, Monetary.getCurrency("USD")));
+            }
+
+            LocalDate from = LocalDate.of(2024, 1, 1);
+            LocalDate to = LocalDate.of(2024, 1, 31);
+
+            long start = System.nanoTime();
+            Map<Security, Map<LocalDate, MonetaryAmount>> closingPrices = asyncMarketDataApi.getClosingPrices(securities, from, to).get();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            assertEquals(10, stub.getRequestCount());
+            assertEquals(10, closingPrices.size());
+
+            for (Security security : securities) {
+
+                assertEquals(marketDataApi.getClosingPrices(security, from, to), closingPrices.get(security));
+            }
+
+            // Serial requests would take at least 2 seconds
+            assertTrue(elapsed.compareTo(Duration.ofMillis(1500)) < 0, elapsed.toString());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the read-through price store in front of a local stub of the price download
+ */
+public class CachingMarketDataApiTest {
+
+    private static final Security VTI = new Security("VTI", Monetary.getCurrency("USD"));
+    private static final Security XIC = new Security("XIC", Monetary.getCurrency("CAD"));
+
+    @TempDir
+    Path location;
+
+    private MarketWatchStub stub;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+
+        stub = new MarketWatchStub(MarketWatchStub::weekdayCloses);
+    }
+
+    @AfterEach
+    public void stopStub() {
+
+        stub.close();
+    }
+
+    /**
+     * Stored closes are answered without a request, including after a restart
+     *
+     */
+    @Test
+    public void readThroughTest() {
+
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        LocalDate to = LocalDate.of(2023, 6, 30);
+
+        Map<LocalDate, MonetaryAmount> fetched = cache(false).getClosingPrices(VTI, from, to);
+
+        assertEquals(1, stub.getRequestCount());
+
+        // A second instance reads the same files
+        MarketDataApi restarted = cache(false);
+
+        assertEquals(fetched, restarted.getClosingPrices(VTI, from, to));
+        assertEquals(new TreeMap<>(fetched).subMap(from.plusDays(20), true, to.minusDays(20), true), restarted.getClosingPrices(VTI, from.plusDays(20), to.minusDays(20)));
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            assertEquals(fetched.get(date), restarted.findClosingPrice(VTI, date).orElseThrow());
+        }
+
+        assertEquals(1, stub.getRequestCount());
+
+        // Extending the range only fetches the days that are not stored
+        Map<LocalDate, MonetaryAmount> extended = restarted.getClosingPrices(VTI, from.minusDays(10), to.plusDays(10));
+
+        assertEquals(3, stub.getRequestCount());
+        assertEquals(fetched.size() + 20, extended.size());
+        assertEquals(source().getClosingPrices(VTI, from.minusDays(10), to.plusDays(10)), extended);
+    }
+
+    /**
+     * The days of a failed request are not stored, so they are fetched again rather than answered as days without a
+     * close
+     *
+     */
+    @Test
+    public void failedFetchIsNotStoredTest() {
+
+        LocalDate from = LocalDate.of(2022, 1, 3);
+        LocalDate to = LocalDate.of(2023, 6, 30);
+
+        // The first of the two windows fails
+        stub.failNext(1, 503);
+
+        CachingMarketDataApi cache = cache(false);
+        ClosingPrices partial = cache.fetchClosingPrices(VTI, from, to);
+
+        // The days of the failed window are reported as unfetched rather than as days without a close
+        assertEquals(2, stub.getRequestCount());
+        assertEquals(from.datesUntil(LocalDate.of(2022, 12, 29)).collect(Collectors.toSet()), partial.getUnfetched());
+        assertFalse(partial.getClosingPrices().containsKey(from));
+        assertTrue(partial.getClosingPrices().containsKey(to));
+
+        cache.close();
+
+        // A restart only fetches the days that failed, and answers them all
+        ClosingPrices restarted = cache(false).fetchClosingPrices(VTI, from, to);
+
+        assertEquals(source().getClosingPrices(VTI, from, to), restarted.getClosingPrices());
+        assertTrue(restarted.getUnfetched().isEmpty());
+        assertEquals(5, stub.getRequestCount());
+    }
+
+    /**
+     * A single day miss stores the block around it, so the following days are answered without a request
+     *
+     */
+    @Test
+    public void findClosingPriceFetchesBlockTest() {
+
+        MarketDataApi cache = cache(false);
+        LocalDate date = LocalDate.of(2022, 3, 1);
+
+        for (int i = 0; i < 30; i++) {
+
+            cache.findClosingPrice(XIC, date.plusDays(i));
+        }
+
+        assertTrue(stub.getRequestCount() <= 2);
+    }
+
+    /**
+     * Offline only the stored closes are returned and nothing is requested
+     *
+     */
+    @Test
+    public void offlineTest() {
+
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        LocalDate to = LocalDate.of(2023, 1, 31);
+
+        assertTrue(cache(true).getClosingPrices(VTI, from, to).isEmpty());
+        assertTrue(cache(true).findClosingPrice(VTI, to).isEmpty());
+        assertEquals(0, stub.getRequestCount());
+
+        Map<LocalDate, MonetaryAmount> fetched = cache(false).getClosingPrices(VTI, from, to);
+
+        assertEquals(fetched, cache(true).getClosingPrices(VTI, from, to.plusDays(10)));
+        assertEquals(1, stub.getRequestCount());
+    }
+
+    private CachingMarketDataApi cache(boolean offline) {
+
+        CachingMarketDataApi cache = new CachingMarketDataApi();
+        cache.setDelegate(source());
+        cache.setLocation(location.toString());
+        cache.setOffline(offline);
+
+        return cache;
+    }
+
+    private MarketDataApiImpl source() {
+
+        MarketDataApiImpl source = new MarketDataApiImpl();
+        source.setBaseUrl(stub.getBaseUrl());
+        source.setRequestsPerSecond(0);
+        source.setMaxAttempts(1);
+
+        return source;
+    }
+}
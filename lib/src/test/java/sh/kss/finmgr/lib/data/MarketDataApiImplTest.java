@@ -0,0 +1,244 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the market data lookups against a local stub of the price download
+ */
+public class MarketDataApiImplTest {
+
+    private static final CurrencyUnit USD = Monetary.getCurrency("USD");
+    private static final Security VTI = new Security("VTI", USD);
+
+    private MarketWatchStub stub;
+    private MarketDataApiImpl marketDataApi;
+
+    @BeforeEach
+    public void startStub() throws IOException {
+
+        stub = new MarketWatchStub(MarketWatchStub::weekdayCloses);
+        marketDataApi = new MarketDataApiImpl();
+        marketDataApi.setBaseUrl(stub.getBaseUrl());
+        marketDataApi.setRequestsPerSecond(0);
+    }
+
+    @AfterEach
+    public void stopStub() {
+
+        stub.close();
+    }
+
+    /**
+     * A range is fetched with one request and the weekend takes Friday's close
+     *
+     */
+    @Test
+    public void rangeFillsWeekendsTest() {
+
+        // Saturday 2024-03-02 to Monday 2024-03-11
+        LocalDate from = LocalDate.of(2024, 3, 2);
+        LocalDate to = LocalDate.of(2024, 3, 11);
+
+        Map<LocalDate, MonetaryAmount> closingPrices = marketDataApi.getClosingPrices(VTI, from, to);
+
+        assertEquals(1, stub.getRequestCount());
+        assertEquals(10, closingPrices.size());
+        assertEquals(new ArrayList<>(closingPrices.keySet()), from.datesUntil(to.plusDays(1)).toList());
+
+        // The opening weekend comes from the close before the range
+        assertEquals(close(LocalDate.of(2024, 3, 1)), closingPrices.get(from));
+        assertEquals(close(LocalDate.of(2024, 3, 8)), closingPrices.get(LocalDate.of(2024, 3, 9)));
+        assertEquals(close(LocalDate.of(2024, 3, 8)), closingPrices.get(LocalDate.of(2024, 3, 10)));
+        assertEquals(close(to), closingPrices.get(to));
+
+        // The single-date lookups agree with the range
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+
+            assertEquals(closingPrices.get(date), marketDataApi.findClosingPrice(VTI, date).orElseThrow());
+        }
+    }
+
+    /**
+     * Ranges longer than a request can return are split into consecutive windows
+     *
+     */
+    @Test
+    public void longRangeIsWindowedTest() {
+
+        LocalDate from = LocalDate.of(2022, 1, 3);
+        LocalDate to = LocalDate.of(2023, 12, 29);
+
+        Map<LocalDate, MonetaryAmount> closingPrices = marketDataApi.getClosingPrices(VTI, from, to);
+
+        assertEquals(3, stub.getRequestCount());
+        assertEquals(from.datesUntil(to.plusDays(1)).count(), closingPrices.size());
+
+        for (Map.Entry<LocalDate, MonetaryAmount> entry : closingPrices.entrySet()) {
+
+            LocalDate business = entry.getKey();
+
+            while (MarketWatchStub.weekdayCloses(business).isEmpty()) {
+
+                business = business.minusDays(1);
+            }
+
+            assertEquals(close(business), entry.getValue());
+        }
+    }
+
+    /**
+     * Days before the first available close are left out rather than guessed
+     *
+     */
+    @Test
+    public void missingClosesTest() throws IOException {
+
+        stub.close();
+        stub = new MarketWatchStub(date -> date.isBefore(LocalDate.of(2024, 3, 6)) ? Optional.empty() : MarketWatchStub.weekdayCloses(date));
+        marketDataApi.setBaseUrl(stub.getBaseUrl());
+
+        List<LocalDate> dates = List.of(LocalDate.of(2024, 3, 4), LocalDate.of(2024, 3, 7), LocalDate.of(2024, 3, 10));
+        Map<LocalDate, MonetaryAmount> closingPrices = marketDataApi.getClosingPrices(VTI, dates);
+
+        assertEquals(1, stub.getRequestCount());
+        assertFalse(closingPrices.containsKey(LocalDate.of(2024, 3, 4)));
+        assertEquals(close(LocalDate.of(2024, 3, 7)), closingPrices.get(LocalDate.of(2024, 3, 7)));
+        assertEquals(close(LocalDate.of(2024, 3, 8)), closingPrices.get(LocalDate.of(2024, 3, 10)));
+    }
+
+    /**
+     * A day takes an earlier close only while it is at most a few days old
+     *
+     */
+    @Test
+    public void carryForwardIsBoundedTest() throws IOException {
+
+        // No trading from Wednesday 2024-03-06 to Tuesday 2024-03-19
+        stub.close();
+        stub = new MarketWatchStub(date -> date.isAfter(LocalDate.of(2024, 3, 5)) && date.isBefore(LocalDate.of(2024, 3, 20)) ? Optional.empty() : MarketWatchStub.weekdayCloses(date));
+        marketDataApi.setBaseUrl(stub.getBaseUrl());
+
+        ClosingPrices closingPrices = marketDataApi.fetchClosingPrices(VTI, LocalDate.of(2024, 3, 4), LocalDate.of(2024, 3, 22));
+
+        assertTrue(closingPrices.getUnfetched().isEmpty());
+        assertEquals(close(LocalDate.of(2024, 3, 5)), closingPrices.getClosingPrices().get(LocalDate.of(2024, 3, 10)));
+        assertFalse(closingPrices.getClosingPrices().containsKey(LocalDate.of(2024, 3, 11)));
+        assertFalse(closingPrices.getClosingPrices().containsKey(LocalDate.of(2024, 3, 19)));
+        assertEquals(close(LocalDate.of(2024, 3, 20)), closingPrices.getClosingPrices().get(LocalDate.of(2024, 3, 20)));
+    }
+
+    /**
+     * The days of a window that fails are left out and reported, not filled from an older window
+     *
+     */
+    @Test
+    public void failedWindowIsReportedTest() {
+
+        marketDataApi.setMaxAttempts(1);
+        stub.failNext(1, 503);
+
+        LocalDate from = LocalDate.of(2022, 1, 3);
+        LocalDate to = LocalDate.of(2023, 12, 29);
+
+        ClosingPrices closingPrices = marketDataApi.fetchClosingPrices(VTI, from, to);
+
+        // The first window ends on 2022-12-28
+        LocalDate fetchedFrom = LocalDate.of(2022, 12, 29);
+
+        assertEquals(3, stub.getRequestCount());
+        assertEquals(from.datesUntil(fetchedFrom).collect(Collectors.toSet()), closingPrices.getUnfetched());
+        assertEquals(fetchedFrom, closingPrices.getClosingPrices().keySet().iterator().next());
+        assertEquals(fetchedFrom.datesUntil(to.plusDays(1)).count(), closingPrices.getClosingPrices().size());
+    }
+
+    /**
+     * Requests to a host are spaced out by its rate limit
+     *
+     */
+    @Test
+    public void rateLimitTest() {
+
+        marketDataApi.setRequestsPerSecond(20);
+
+        LocalDate date = LocalDate.of(2024, 3, 8);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 11; i++) {
+
+            marketDataApi.findClosingPrice(VTI, date.minusDays(i));
+        }
+
+        assertEquals(11, stub.getRequestCount());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(450)) >= 0);
+    }
+
+    /**
+     * Throttled and failed requests are retried, other refusals are not
+     *
+     */
+    @Test
+    public void retryTest() {
+
+        marketDataApi.setRetryBackoffMillis(10);
+
+        LocalDate date = LocalDate.of(2024, 3, 8);
+
+        stub.failNext(2, 429);
+
+        assertEquals(close(date), marketDataApi.findClosingPrice(VTI, date).orElseThrow());
+        assertEquals(3, stub.getRequestCount());
+
+        // Every attempt fails
+        stub.failNext(3, 503);
+
+        assertTrue(marketDataApi.findClosingPrice(VTI, date).isEmpty());
+        assertEquals(6, stub.getRequestCount());
+
+        stub.failNext(1, 404);
+
+        assertTrue(marketDataApi.getClosingPrices(VTI, date, date).isEmpty());
+        assertEquals(7, stub.getRequestCount());
+    }
+
+    private static MonetaryAmount close(LocalDate date) {
+
+        return Money.of(MarketWatchStub.weekdayCloses(date).orElseThrow(), USD);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A local stand-in for the MarketWatch price download, serving the closes of a date range in the same table layout
+ * and counting the requests it receives
+ *
+ */
+public class MarketWatchStub implements AutoCloseable {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+    private final HttpServer server;
+    private final Function<LocalDate, Optional<BigDecimal>> closes;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile int failureStatus = 503;
+    private volatile Duration latency = Duration.ZERO;
+
+    /**
+     * Start serving on a free local port
+     *
+     * @param closes the close of each date, empty for the days without trading
+     * @throws IOException if the server cannot be started
+     */
+    public MarketWatchStub(Function<LocalDate, Optional<BigDecimal>> closes) throws IOException {
+
+        this.closes = closes;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/investing/fund/", this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.start();
+    }
+
+    /**
+     * Weekday closes that rise by a cent a day, so each date has a distinct price
+     *
+     * @param date the date
+     * @return the close, or empty on weekends
+     */
+    public static Optional<BigDecimal> weekdayCloses(LocalDate date) {
+
+        if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+
+            return Optional.empty();
+        }
+
+        return Optional.of(BigDecimal.valueOf(date.toEpochDay(), 2));
+    }
+
+    public String getBaseUrl() {
+
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int getRequestCount() {
+
+        return requests.get();
+    }
+
+    /**
+     * Answer the next requests with an error status instead of prices
+     *
+     * @param count the number of requests to fail
+     * @param status the status to answer with
+     */
+    public void failNext(int count, int status) {
+
+        failureStatus = status;
+        failures.set(count);
+    }
+
+    /**
+     * Delay every answer, as a remote host would
+     *
+     * @param latency the delay
+     */
+    public void setLatency(Duration latency) {
+
+        this.latency = latency;
+    }
+
+    @Override
+    public void close() {
+
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        requests.incrementAndGet();
+
+        try {
+
+            Thread.sleep(latency);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+
+            exchange.sendResponseHeaders(failureStatus, -1);
+            exchange.close();
+
+            return;
+        }
+
+        Map<String, String> query = new HashMap<>();
+
+        for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+
+        LocalDate start = LocalDate.parse(query.get("startDate"), DATE_FORMAT);
+        LocalDate end = LocalDate.parse(query.get("endDate"), DATE_FORMAT);
+
+        // MarketWatch lists the newest close first
+        StringBuilder rows = new StringBuilder();
+
+        for (LocalDate date = end; !date.isBefore(start); date = date.minusDays(1)) {
+
+            LocalDate day = date;
+
+            closes.apply(day).ifPresent(close -> rows.append(String.format(
+                "<tr><td><div>%s</div></td><td><div>$%s</div></td><td><div>$%s</div></td><td><div>$%s</div></td><td><div>$%s</div></td><td><div>1,000</div></td></tr>",
+                day.format(DATE_FORMAT), close, close, close, close)));
+        }
+
+        byte[] body = ("<div class=\"tab__pane\"><mw-downloaddata><div></div><div><div><table>"
+            + "<thead><tr><th>Date</th><th>Open</th><th>High</th><th>Low</th><th>Close</th><th>Volume</th></tr></thead>"
+            + "<tbody>" + rows + "</tbody></table></div></div></mw-downloaddata></div>").getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+
+            out.write(body);
+        }
+    }
+}
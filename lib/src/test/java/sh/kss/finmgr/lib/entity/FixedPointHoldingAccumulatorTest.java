@@ -0,0 +1,137 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import javax.money.MonetaryException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the fixed point holding accumulator against the BigDecimal and Money arithmetic of HoldingAccumulatorImpl
+ */
+public class FixedPointHoldingAccumulatorTest {
+
+    private static final CurrencyUnit CAD = Monetary.getCurrency("CAD");
+    private static final Security VTI = new Security("VTI", CAD);
+
+    /**
+     * Random updates, including values too large for a long and long decimals from division, agree exactly
+     *
+     */
+    @Test
+    public void matchesHoldingAccumulatorImplTest() {
+
+        Random random = new Random(7);
+        List<BigDecimal> values = List.of(
+            new BigDecimal("1"),
+            new BigDecimal("-1.00"),
+            new BigDecimal("0.001"),
+            new BigDecimal("12.5"),
+            new BigDecimal("99999999999999999"),
+            new BigDecimal("123456789012345678901234567890.12"),
+            BigDecimal.TEN.divide(new BigDecimal(3), Money.DEFAULT_MONETARY_CONTEXT.getPrecision(), RoundingMode.HALF_EVEN)
+        );
+
+        HoldingAccumulator expected = new HoldingAccumulatorImpl(Holding.EMPTY);
+        HoldingAccumulator actual = new FixedPointHoldingAccumulator(Holding.EMPTY);
+
+        for (int i = 0; i < 10_000; i++) {
+
+            BigDecimal value = values.get(random.nextInt(values.size()));
+
+            switch (random.nextInt(4)) {
+
+                case 0:
+                    expected.addQuantity(VTI, value);
+                    actual.addQuantity(VTI, value);
+                    break;
+
+                case 1:
+                    expected.addCostBasis(VTI, Money.of(value, CAD), CAD);
+                    actual.addCostBasis(VTI, Money.of(value, CAD), CAD);
+                    break;
+
+                case 2:
+                    expected.setCostBasis(VTI, Money.of(value, CAD));
+                    actual.setCostBasis(VTI, Money.of(value, CAD));
+                    break;
+
+                default:
+                    expected.resetCostBasis(VTI, CAD);
+                    actual.resetCostBasis(VTI, CAD);
+                    break;
+            }
+
+            assertEquals(expected.getQuantity(VTI), actual.getQuantity(VTI));
+            assertEquals(expected.getCostBasis(VTI), actual.getCostBasis(VTI));
+        }
+
+        assertEquals(expected.snapshot(), actual.snapshot());
+    }
+
+    /**
+     * Quantities keep the scale BigDecimal.add gives, so only an unscaled zero is zero
+     *
+     */
+    @Test
+    public void quantityZeroIsScaleSensitiveTest() {
+
+        HoldingAccumulator holding = new FixedPointHoldingAccumulator(Holding.EMPTY);
+
+        assertNull(holding.getQuantity(VTI));
+        assertThrows(NullPointerException.class, () -> holding.isQuantityZero(VTI));
+
+        holding.addQuantity(VTI, BigDecimal.TEN);
+        holding.addQuantity(VTI, BigDecimal.TEN.negate());
+
+        assertTrue(holding.isQuantityZero(VTI));
+
+        holding.addQuantity(VTI, new BigDecimal("0.0"));
+
+        assertFalse(holding.isQuantityZero(VTI));
+        assertEquals(new Quantity(new BigDecimal("0.0")), holding.getQuantity(VTI));
+    }
+
+    /**
+     * A cost basis in another currency is rejected as Money rejects it
+     *
+     */
+    @Test
+    public void currencyMismatchTest() {
+
+        HoldingAccumulator holding = new FixedPointHoldingAccumulator(Holding.EMPTY);
+
+        holding.addCostBasis(VTI, Money.of(10, CAD), CAD);
+
+        assertThrows(MonetaryException.class, () -> holding.addCostBasis(VTI, Money.of(10, "USD"), CAD));
+        assertEquals(Money.of(10, CAD), holding.getCostBasis(VTI));
+    }
+}
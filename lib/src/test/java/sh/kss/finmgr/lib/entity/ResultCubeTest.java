@@ -0,0 +1,195 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import javax.money.MonetaryAmount;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test the columnar result cube against the nested map layout of Run.process
+ */
+public class ResultCubeTest {
+
+    private static final CurrencyUnit CAD = Monetary.getCurrency("CAD");
+    private static final CurrencyUnit USD = Monetary.getCurrency("USD");
+    private static final Security VTI = new Security("VTI", USD);
+    private static final Security XIC = new Security("XIC", CAD);
+    private static final Security ZAG = new Security("ZAG", CAD);
+    private static final LocalDate START_DATE = LocalDate.of(2020, 1, 1);
+    private static final LocalDate END_DATE = START_DATE.plusDays(39);
+
+    /**
+     * Random outputs, including empty outputs, long decimals and values in another currency, read back unchanged
+     *
+     */
+    @Test
+    public void matchesDailyMapTest() {
+
+        Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> resultSet = randomResultSet(new Random(11));
+        ResultCube cube = ResultCube.of(resultSet, START_DATE, END_DATE);
+
+        assertEquals(resultSet, cube.toMap());
+        assertEquals(resultSet.size(), cube.toMap().size());
+        assertNull(cube.toMap().get(END_DATE.plusDays(1)));
+        assertFalse(cube.toMap().containsKey(START_DATE.minusDays(1)));
+
+        // Cells by index agree with cells by key
+        for (int d = 0; d < cube.getDayCount(); d++) {
+
+            LocalDate date = START_DATE.plusDays(d);
+
+            for (int a = 0; a < cube.getAccountTypes().size(); a++) {
+
+                for (int o = 0; o < cube.getOperations().size(); o++) {
+
+                    for (int s = 0; s < cube.getSecurities().size(); s++) {
+
+                        assertEquals(
+                            cube.get(date, cube.getAccountTypes().get(a), cube.getOperations().get(o), cube.getSecurities().get(s)),
+                            cube.get(d, a, o, s));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Time series and totals are read from the columns
+     *
+     */
+    @Test
+    public void sliceAndAggregateTest() {
+
+        Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> resultSet = randomResultSet(new Random(3));
+        ResultCube cube = ResultCube.of(resultSet, START_DATE, END_DATE);
+
+        MonetaryAmount[] series = cube.getTimeSeries(AccountType.TFSA, "NPV", XIC);
+
+        assertEquals(cube.getDayCount(), series.length);
+
+        for (int d = 0; d < series.length; d++) {
+
+            LocalDate date = START_DATE.plusDays(d);
+            Map<Security, MonetaryAmount> output = resultSet.get(date).getOrDefault(AccountType.TFSA, Map.of()).get("NPV");
+
+            assertEquals(output != null ? output.get(XIC) : null, series[d]);
+
+            // The total of each currency is the sum of the securities in it
+            Map<CurrencyUnit, MonetaryAmount> expected = new HashMap<>();
+
+            if (output != null) {
+
+                output.forEach((security, value) -> expected.merge(value.getCurrency(), value, MonetaryAmount::add));
+            }
+
+            assertEquals(expected, cube.getTotal(date, AccountType.TFSA, "NPV"));
+        }
+    }
+
+    /**
+     * Building from change points gives the same days as expanding them, and unchanged days share their amounts
+     *
+     */
+    @Test
+    public void fromDailyResultsTest() {
+
+        DailyResults results = new DailyResults(START_DATE, END_DATE);
+
+        results.put(AccountType.NON_REGISTERED, "NPV", START_DATE, Map.of());
+        results.put(AccountType.NON_REGISTERED, "NPV", START_DATE.plusDays(3), Map.of(VTI, Money.of(10, USD)));
+        results.put(AccountType.NON_REGISTERED, "NPV", START_DATE.plusDays(9), Map.of(VTI, Money.of(11, USD), XIC, Money.of(5, CAD)));
+        results.put(AccountType.TFSA, "NPV", START_DATE.plusDays(20), Map.of(ZAG, Money.of(7, CAD)));
+
+        ResultCube cube = ResultCube.of(results);
+
+        assertEquals(results.toDailyMap(), cube.toMap());
+        assertEquals(3, cube.getColumnCount());
+
+        MonetaryAmount[] series = cube.getTimeSeries(AccountType.NON_REGISTERED, "NPV", VTI);
+
+        assertNull(series[2]);
+        assertEquals(Money.of(10, USD), series[3]);
+        assertSame(series[3], series[8]);
+        assertEquals(Money.of(11, USD), series[39]);
+    }
+
+    private static Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> randomResultSet(Random random) {
+
+        List<MonetaryAmount> values = List.of(
+            Money.of(0, CAD),
+            Money.of(5_000, CAD),
+            Money.of(new BigDecimal("1234.5678"), CAD),
+            Money.of(new BigDecimal("123456789012345678901234567890.12"), CAD),
+            Money.of(BigDecimal.TEN.divide(new BigDecimal(3), Money.DEFAULT_MONETARY_CONTEXT.getPrecision(), RoundingMode.HALF_EVEN), CAD),
+            Money.of(42, USD));
+
+        Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> resultSet = new HashMap<>();
+
+        for (LocalDate date = START_DATE; !date.isAfter(END_DATE); date = date.plusDays(1)) {
+
+            Map<AccountType, Map<String, Map<Security, MonetaryAmount>>> accountResults = new HashMap<>();
+
+            for (AccountType accountType : List.of(AccountType.NON_REGISTERED, AccountType.TFSA)) {
+
+                if (random.nextInt(5) == 0) {
+
+                    continue;
+                }
+
+                Map<String, Map<Security, MonetaryAmount>> securityResults = new HashMap<>();
+
+                for (String operation : List.of("NPV", "ACB")) {
+
+                    Map<Security, MonetaryAmount> output = new HashMap<>();
+
+                    for (Security security : List.of(VTI, XIC, ZAG)) {
+
+                        if (random.nextBoolean()) {
+
+                            output.put(security, values.get(random.nextInt(values.size())));
+                        }
+                    }
+
+                    securityResults.put(operation, output);
+                }
+
+                accountResults.put(accountType, securityResults);
+            }
+
+            resultSet.put(date, accountResults);
+        }
+
+        return resultSet;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.entity.transaction.TransactionBatch;
+import sh.kss.finmgr.lib.operation.AverageCostBasis;
+import sh.kss.finmgr.lib.operation.TransactionOperation;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
+import sh.kss.finmgr.lib.service.TransactionServiceImpl;
+import sh.kss.finmgr.lib.store.PortfolioSnapshotStoreImpl;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Property tests of the partitioned and snapshot replays: for any seeded random history they end with the serial result
+ */
+public class RunTest {
+
+    private static final CurrencyUnit CAD = Monetary.getCurrency("CAD");
+    private static final CurrencyUnit USD = Monetary.getCurrency("USD");
+    private static final List<Security> SECURITIES = List.of(
+        new Security("VTI", USD),
+        new Security("VAB", CAD),
+        new Security("XIC", CAD),
+        new Security("XEF", CAD));
+    private static final List<Account> ACCOUNTS = List.of(
+        new Account("123-abc", "foo", AccountType.NON_REGISTERED),
+        new Account("456-def", "foo2", AccountType.TFSA),
+        new Account("789-ghi", "foo3", AccountType.RRSP),
+        new Account("012-jkl", "foo4", AccountType.RESP));
+
+    @TempDir
+    Path snapshotDir;
+
+    /**
+     * The partitioned replay matches the serial replay for random histories across account types
+     *
+     */
+    @Test
+    public void partitionedMatchesSerialTest() {
+
+        List<TransactionOperation> transactionOperations = List.of(averageCostBasis());
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+
+            for (long seed = 0; seed < 50; seed++) {
+
+                Random random = new Random(seed);
+                List<InvestmentTransaction> transactions = randomHistory(random, 1 + random.nextInt(300));
+                Portfolio portfolio = random.nextBoolean() ? Portfolio.EMPTY_NON_REGISTERED : Portfolio.builder().holdings(Map.of()).build();
+
+                Portfolio serial = Run.process(portfolio, transactionOperations, transactions);
+
+                assertEquals(serial, Run.processPartitioned(portfolio, transactionOperations, transactions, pool), "seed " + seed);
+                assertEquals(serial, Run.processPartitioned(portfolio, transactionOperations, transactions), "seed " + seed);
+            }
+
+        } finally {
+
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Replaying a transaction batch, serially or partitioned, matches replaying the list it was built from
+     *
+     */
+    @Test
+    public void batchMatchesSerialTest() {
+
+        List<TransactionOperation> transactionOperations = List.of(averageCostBasis());
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+
+            for (long seed = 0; seed < 20; seed++) {
+
+                Random random = new Random(seed);
+                List<InvestmentTransaction> transactions = randomHistory(random, 1 + random.nextInt(300));
+                TransactionBatch batch = TransactionBatch.of(new EntityRegistryImpl(), transactions);
+
+                Portfolio serial = Run.process(Portfolio.EMPTY_NON_REGISTERED, transactionOperations, transactions);
+
+                assertEquals(serial, Run.process(Portfolio.EMPTY_NON_REGISTERED, transactionOperations, batch), "seed " + seed);
+                assertEquals(serial, Run.processPartitioned(Portfolio.EMPTY_NON_REGISTERED, transactionOperations, batch, pool), "seed " + seed);
+                assertEquals(serial, Run.processPartitioned(Portfolio.EMPTY_NON_REGISTERED, transactionOperations, batch), "seed " + seed);
+            }
+
+        } finally {
+
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * An operation that is not account independent is replayed serially, in list order
+     *
+     */
+    @Test
+    public void dependentOperationIsSerialTest() {
+
+        List<String> order = new ArrayList<>();
+        TransactionOperation recorder = (portfolio, transaction) -> {
+
+            order.add(transaction.getDescription());
+
+            return portfolio;
+        };
+
+        List<InvestmentTransaction> transactions = randomHistory(new Random(1), 100);
+        List<TransactionOperation> transactionOperations = List.of(averageCostBasis(), recorder);
+
+        Portfolio partitioned = Run.processPartitioned(Portfolio.EMPTY_NON_REGISTERED, transactionOperations, transactions);
+
+        assertEquals(transactions.stream().map(InvestmentTransaction::getDescription).toList(), order);
+        assertEquals(Run.process(Portfolio.EMPTY_NON_REGISTERED, List.of(averageCostBasis()), transactions), partitioned);
+    }
+
+    /**
+     * Replays resumed from snapshots match the serial replay, including when the history changes under the snapshots
+     *
+     */
+    @Test
+    public void snapshotReplayMatchesSerialTest() {
+
+        List<TransactionOperation> transactionOperations = List.of(averageCostBasis());
+        PortfolioSnapshotStoreImpl store = new PortfolioSnapshotStoreImpl();
+        store.setLocation(snapshotDir.toString());
+
+        // Every seed replaces the history under the same name
+        for (long seed = 0; seed < 20; seed++) {
+
+            Random random = new Random(seed);
+            List<InvestmentTransaction> transactions = randomHistory(random, 1 + random.nextInt(300));
+            LocalDate last = transactions.get(transactions.size() - 1).getTransactionDate();
+
+            for (int query = 0; query < 5; query++) {
+
+                LocalDate date = LocalDate.of(2015, 1, 1).plusDays(random.nextInt((int) (last.toEpochDay() - LocalDate.of(2015, 1, 1).toEpochDay()) + 10));
+                List<InvestmentTransaction> prefix = transactions.stream()
+                    .filter(transaction -> !transaction.getTransactionDate().isAfter(date))
+                    .toList();
+
+                assertEquals(Run.process(Portfolio.EMPTY_NON_REGISTERED, transactionOperations, prefix), Run.processAsOf(store, "history", Portfolio.EMPTY_NON_REGISTERED, transactionOperations, transactions, date), "seed " + seed);
+            }
+        }
+    }
+
+    /**
+     * Querying again or appending a week of transactions only replays the transactions after the last month end
+     *
+     */
+    @Test
+    public void snapshotReplaysDeltaTest() {
+
+        AtomicInteger replayed = new AtomicInteger();
+        AverageCostBasis averageCostBasis = averageCostBasis();
+        TransactionOperation counter = (portfolio, transaction) -> {
+
+            replayed.incrementAndGet();
+
+            return averageCostBasis.process(portfolio, transaction);
+        };
+
+        List<TransactionOperation> transactionOperations = List.of(counter);
+        PortfolioSnapshotStoreImpl store = new PortfolioSnapshotStoreImpl();
+        store.setLocation(snapshotDir.toString());
+
+        List<InvestmentTransaction> history = randomHistory(new Random(7), 400);
+        LocalDate date = LocalDate.of(2015, 6, 15);
+        LocalDate monthEnd = LocalDate.of(2015, 5, 31);
+        List<InvestmentTransaction> transactions = history.stream()
+            .filter(transaction -> !transaction.getTransactionDate().isAfter(date))
+            .toList();
+
+        Portfolio first = Run.processAsOf(store, "history", Portfolio.EMPTY_NON_REGISTERED, transactionOperations, transactions, date);
+
+        assertEquals(transactions.size(), replayed.getAndSet(0));
+
+        long sinceMonthEnd = transactions.stream()
+            .filter(transaction -> transaction.getTransactionDate().isAfter(monthEnd))
+            .count();
+
+        assertEquals(first, Run.processAsOf(store, "history", Portfolio.EMPTY_NON_REGISTERED, transactionOperations, transactions, date));
+        assertEquals(sinceMonthEnd, replayed.getAndSet(0));
+
+        // Append the next week
+        List<InvestmentTransaction> appended = history.stream()
+            .filter(transaction -> !transaction.getTransactionDate().isAfter(date.plusDays(7)))
+            .toList();
+
+        Portfolio second = Run.processAsOf(store, "history", Portfolio.EMPTY_NON_REGISTERED, transactionOperations, appended, date.plusDays(7));
+
+        assertEquals(sinceMonthEnd + appended.size() - transactions.size(), replayed.getAndSet(0));
+        assertEquals(Run.process(Portfolio.EMPTY_NON_REGISTERED, List.of(averageCostBasis), appended), second);
+    }
+
+    private static AverageCostBasis averageCostBasis() {
+
+        AverageCostBasis averageCostBasis = new AverageCostBasis();
+        averageCostBasis.setTransactionService(new TransactionServiceImpl());
+
+        return averageCostBasis;
+    }
+
+    /**
+     * Buys, partial and full sells, distributions and cash transactions, never selling more than is held
+     *
+     */
+    private static List<InvestmentTransaction> randomHistory(Random random, int count) {
+
+        Map<Account, Map<Security, Integer>> held = new HashMap<>();
+        List<InvestmentTransaction> transactions = new ArrayList<>(count);
+        LocalDate date = LocalDate.of(2015, 1, 2);
+
+        for (int i = 0; i < count; i++) {
+
+            Account account = ACCOUNTS.get(random.nextInt(ACCOUNTS.size()));
+            Security security = SECURITIES.get(random.nextInt(SECURITIES.size()));
+            Map<Security, Integer> quantities = held.computeIfAbsent(account, a -> new HashMap<>());
+            int quantity = quantities.getOrDefault(security, 0);
+            BigDecimal price = BigDecimal.valueOf(1_000 + random.nextInt(20_000), 2);
+            date = date.plusDays(random.nextInt(3));
+
+            InvestmentTransaction.InvestmentTransactionBuilder builder = InvestmentTransaction.builder()
+                .transactionDate(date)
+                .settlementDate(date.plusDays(2))
+                .account(account)
+                .currency(security.getCurrency())
+                .description(String.format("%d %s", i, security.getValue()))
+                .price(Money.of(price, security.getCurrency()))
+                .commission(Money.of(-5, security.getCurrency()));
+
+            int choice = random.nextInt(10);
+
+            if (choice < 5 || quantity == 0) {
+
+                int bought = 1 + random.nextInt(200);
+                quantities.put(security, quantity + bought);
+
+                transactions.add(builder
+                    .action(random.nextInt(4) == 0 ? InvestmentAction.Reinvest : InvestmentAction.Buy)
+                    .security(security)
+                    .quantity(new Quantity(BigDecimal.valueOf(bought)))
+                    .netAmount(Money.of(price.multiply(BigDecimal.valueOf(-bought)).subtract(BigDecimal.valueOf(5)), security.getCurrency()))
+                    .build());
+
+            } else if (choice < 8) {
+
+                // Sell some or all of the position
+                int sold = random.nextBoolean() ? quantity : 1 + random.nextInt(quantity);
+                quantities.put(security, quantity - sold);
+
+                transactions.add(builder
+                    .action(InvestmentAction.Sell)
+                    .security(security)
+                    .quantity(new Quantity(BigDecimal.valueOf(-sold)))
+                    .netAmount(Money.of(price.multiply(BigDecimal.valueOf(sold)).subtract(BigDecimal.valueOf(5)), security.getCurrency()))
+                    .build());
+
+            } else if (choice < 9) {
+
+                transactions.add(builder
+                    .action(InvestmentAction.Distribution)
+                    .security(security)
+                    .returnOfCapital(random.nextBoolean() ? Money.of(BigDecimal.valueOf(random.nextInt(5_000), 2), security.getCurrency()) : null)
+                    .netAmount(Money.of(BigDecimal.valueOf(random.nextInt(5_000), 2), security.getCurrency()))
+                    .build());
+
+            } else {
+
+                transactions.add(builder
+                    .action(InvestmentAction.Deposit)
+                    .netAmount(Money.of(BigDecimal.valueOf(random.nextInt(100_000), 2), security.getCurrency()))
+                    .build());
+            }
+        }
+
+        return transactions;
+    }
+}
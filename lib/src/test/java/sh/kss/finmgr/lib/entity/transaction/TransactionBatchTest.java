@@ -0,0 +1,96 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.entity.transaction;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import sh.kss.finmgr.lib.FinmgrTest;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.service.EntityRegistry;
+import sh.kss.finmgr.lib.service.EntityRegistryImpl;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test that a transaction batch holds transactions without changing them
+ *
+ */
+public class TransactionBatchTest extends FinmgrTest {
+
+    /**
+     * Every row is built back equal to the transaction that was added, including decimal scales
+     *
+     */
+    @Test
+    public void roundTripTest() {
+
+        List<InvestmentTransaction> transactions = List.of(
+            BUY_VTI,
+            SELL_VTI_LOWER_PRICE,
+            VTI_DIVIDEND,
+            VTI_RETURN_OF_CAPITAL,
+            VTI_CAPITAL_GAIN,
+            BUY_VTI_TFSA,
+            // Cash without a security or quantity
+            BUY_VTI.withAction(InvestmentAction.Deposit).withSecurity(null).withQuantity(null).withPrice(null),
+            // Values that do not fit the columns are kept aside
+            BUY_VTI.withQuantity(new Quantity(new BigDecimal("12345678901234567890.123"))),
+            BUY_VTI.withCommission(Money.of(-5, CAD)));
+
+        EntityRegistry registry = new EntityRegistryImpl();
+        TransactionBatch batch = TransactionBatch.of(registry, transactions);
+
+        assertEquals(transactions.size(), batch.size());
+
+        for (int i = 0; i < transactions.size(); i++) {
+
+            assertEquals(transactions.get(i), batch.get(i), "row " + i);
+            assertEquals(transactions.get(i).getQuantity(), batch.get(i).getQuantity(), "row " + i);
+        }
+
+        assertEquals(transactions, batch.asList());
+    }
+
+    /**
+     * The columns can be read without building the transactions
+     *
+     */
+    @Test
+    public void columnTest() {
+
+        EntityRegistry registry = new EntityRegistryImpl();
+        TransactionBatch.Builder builder = TransactionBatch.builder(registry);
+
+        for (int i = 0; i < 100; i++) {
+
+            builder.accept(i % 2 == 0 ? BUY_VTI : BUY_VTI_TFSA.withTransactionDate(BASE_DATE.plusDays(i)));
+        }
+
+        TransactionBatch batch = builder.build();
+
+        assertEquals(100, batch.size());
+        assertEquals(registry.getSecurityId(BUY_VTI.getSecurity()), batch.getSecurityId(0));
+        assertEquals(BUY_VTI_TFSA.getAccount(), batch.getAccount(1));
+        assertEquals(BASE_DATE.plusDays(99).toEpochDay(), batch.getTransactionEpochDay(99));
+        assertEquals(InvestmentAction.Buy, batch.getAction(50));
+    }
+}
@@ -25,14 +25,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import sh.kss.finmgr.lib.FinmgrTest;
 import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.FixedPointHoldingAccumulator;
+import sh.kss.finmgr.lib.entity.Holding;
+import sh.kss.finmgr.lib.entity.HoldingAccumulator;
+import sh.kss.finmgr.lib.entity.IndexedHoldingAccumulator;
 import sh.kss.finmgr.lib.entity.Portfolio;
+import sh.kss.finmgr.lib.entity.PortfolioAccumulator;
 import sh.kss.finmgr.lib.entity.Run;
 import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.service.EntityRegistry;
 import sh.kss.finmgr.lib.service.TransactionService;
 
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 /**
  * Tests for the average cost basis operation as used in the context of a finmgr Run
@@ -47,6 +59,9 @@ public class AverageCostBasisTest extends FinmgrTest {
     @Autowired
     private AverageCostBasis averageCostBasis;
 
+    @Autowired
+    private EntityRegistry entityRegistry;
+
     private static final Logger LOG = LoggerFactory.getLogger(AverageCostBasisTest.class);
 
 
@@ -60,11 +75,31 @@ public class AverageCostBasisTest extends FinmgrTest {
 
         LOG.debug(String.format("Creating a Run from input list of transactions: %s", transactions.toString()));
 
-        return Run.process(
+        Portfolio portfolio = Run.process(
             Portfolio.EMPTY_NON_REGISTERED,
             List.of(averageCostBasis),
             transactions
         );
+
+        // The fixed point and indexed working states must give exactly the same portfolio
+        List<Function<Holding, HoldingAccumulator>> holdingFactories = List.of(
+            FixedPointHoldingAccumulator::new,
+            holding -> new IndexedHoldingAccumulator(holding, entityRegistry)
+        );
+
+        for (Function<Holding, HoldingAccumulator> holdingFactory : holdingFactories) {
+
+            assertEquals(
+                portfolio,
+                Run.accumulate(
+                    new PortfolioAccumulator(Portfolio.EMPTY_NON_REGISTERED, holdingFactory),
+                    List.of(averageCostBasis),
+                    transactions
+                )
+            );
+        }
+
+        return portfolio;
     }
 
 
@@ -269,4 +304,133 @@ public class AverageCostBasisTest extends FinmgrTest {
             transactionService.getACB(portfolio, AccountType.TFSA, VTI)
         );
     }
+
+
+    /**
+     * Accumulating in place reaches the same portfolio as processing, after every transaction
+     *
+     */
+    @Test
+    public void accumulateMatchesProcessTest() {
+
+        List<InvestmentTransaction> transactions = List.of(
+            BUY_VTI,
+            BUY_VTI_HIGHER_PRICE,
+            BUY_VTI_TFSA,
+            VTI_RETURN_OF_CAPITAL,
+            VTI_DIVIDEND,
+            SELL_VTI,
+            SELL_VTI,
+            BUY_VTI,
+            SELL_VTI_LOWER_PRICE
+        );
+
+        for (int i = 0; i <= transactions.size(); i++) {
+
+            List<InvestmentTransaction> prefix = transactions.subList(0, i);
+
+            assertEquals(
+                operationsTest(prefix),
+                Run.accumulate(Portfolio.EMPTY_NON_REGISTERED, List.of(averageCostBasis), prefix)
+            );
+        }
+    }
+
+
+    /**
+     * A checkpoint snapshot holds every transaction on or before its date
+     *
+     */
+    @Test
+    public void accumulateCheckpointsTest() {
+
+        List<InvestmentTransaction> transactions = List.of(
+            BUY_VTI,
+            BUY_VTI_HIGHER_PRICE.withTransactionDate(BASE_DATE.plusDays(1)),
+            BUY_VTI_TFSA.withTransactionDate(BASE_DATE.plusDays(1)),
+            SELL_VTI.withTransactionDate(BASE_DATE.plusDays(5))
+        );
+
+        List<LocalDate> checkpoints = List.of(
+            BASE_DATE.plusDays(10),
+            BASE_DATE.minusDays(1),
+            BASE_DATE.plusDays(1),
+            BASE_DATE.plusDays(3)
+        );
+
+        Map<LocalDate, Portfolio> snapshots = Run.accumulate(
+            Portfolio.EMPTY_NON_REGISTERED,
+            List.of(averageCostBasis),
+            transactions,
+            checkpoints
+        );
+
+        // Snapshots are returned in date order
+        assertEquals(checkpoints.stream().sorted().toList(), List.copyOf(snapshots.keySet()));
+
+        for (LocalDate checkpoint : checkpoints) {
+
+            List<InvestmentTransaction> prefix = transactions.stream()
+                .filter(transaction -> !transaction.getTransactionDate().isAfter(checkpoint))
+                .toList();
+
+            assertEquals(operationsTest(prefix), snapshots.get(checkpoint));
+        }
+    }
+
+
+    /**
+     * An operation that only implements process is applied to a snapshot of the working state
+     *
+     */
+    @Test
+    public void accumulateDefaultOperationTest() {
+
+        // Track the last security seen in the personal holding
+        TransactionOperation lastSecurity = (portfolio, transaction) -> {
+
+            Map<AccountType, Holding> holdings = new HashMap<>(portfolio.getHoldings());
+            holdings.put(AccountType.PERSONAL, Holding.EMPTY.withSecurities(Set.of(transaction.getSecurity())));
+
+            return portfolio.withHoldings(Map.copyOf(holdings));
+        };
+
+        List<TransactionOperation> operations = List.of(averageCostBasis, lastSecurity);
+        List<InvestmentTransaction> transactions = List.of(BUY_VTI, BUY_VTI_TFSA, SELL_VTI);
+
+        assertEquals(
+            Run.process(Portfolio.EMPTY_NON_REGISTERED, operations, transactions),
+            Run.accumulate(Portfolio.EMPTY_NON_REGISTERED, operations, transactions)
+        );
+    }
+
+
+    /**
+     * The history holds the same portfolio as processing each prefix of the transactions
+     *
+     */
+    @Test
+    public void processHistoryTest() {
+
+        List<InvestmentTransaction> transactions = List.of(
+            BUY_VTI,
+            BUY_VTI_TFSA,
+            BUY_VTI_HIGHER_PRICE,
+            VTI_RETURN_OF_CAPITAL,
+            SELL_VTI,
+            SELL_VTI
+        );
+
+        List<Portfolio> history = Run.processHistory(Portfolio.EMPTY_NON_REGISTERED, List.of(averageCostBasis), transactions);
+
+        assertEquals(transactions.size(), history.size());
+
+        for (int i = 0; i < transactions.size(); i++) {
+
+            assertEquals(operationsTest(transactions.subList(0, i + 1)), history.get(i));
+        }
+
+        // The untouched TFSA holding is shared between versions rather than copied
+        assertSame(history.get(1).getHoldings().get(AccountType.TFSA), history.get(5).getHoldings().get(AccountType.TFSA));
+    }
 }
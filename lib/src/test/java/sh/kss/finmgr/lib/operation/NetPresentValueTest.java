@@ -20,6 +20,7 @@ package sh.kss.finmgr.lib.operation;
 import org.javamoney.moneta.Money;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -29,8 +30,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import sh.kss.finmgr.lib.FinmgrTest;
+import sh.kss.finmgr.lib.data.ClosingPrices;
 import sh.kss.finmgr.lib.data.MarketDataApi;
 import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.DailyResults;
 import sh.kss.finmgr.lib.entity.Portfolio;
 import sh.kss.finmgr.lib.entity.Run;
 import sh.kss.finmgr.lib.entity.Security;
@@ -38,9 +41,11 @@ import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
 
 import javax.money.MonetaryAmount;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -53,7 +58,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 @SpringBootTest
 public class NetPresentValueTest extends FinmgrTest {
 
-    @Mock
+    // The default range lookups of the interface run against the stubbed ones
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private MarketDataApi marketDataApiMock;
 
     @InjectMocks
@@ -182,4 +188,98 @@ public class NetPresentValueTest extends FinmgrTest {
         // The NPV on the last day should be 5_200
         assertEquals(Money.of(5_200, USD), result.get(endDate).get(AccountType.TFSA).get(netPresentValue.getName()).get(VTI));
     }
+
+    /**
+     * The planned prices are loaded in one range lookup per security before the daily loop, and the days are
+     * answered without point lookups
+     *
+     */
+    @Test
+    public void prefetchNpvTest() {
+        LocalDate startDate = BASE_DATE.minusDays(1);
+        LocalDate endDate = BASE_DATE.plusDays(2);
+
+        // Mock internet requests, VTI is first held on the day it is bought
+        Mockito.doReturn(new ClosingPrices(Map.of(
+            BASE_DATE, Money.of(50, USD),
+            BASE_DATE.plusDays(1), Money.of(51, USD),
+            endDate, Money.of(52, USD)), Set.of())).when(marketDataApiMock).fetchClosingPrices(VTI, BASE_DATE, endDate);
+
+        Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> result = dailyOperationsTest(
+            List.of(
+                BUY_VTI,
+                BUY_VTI_TFSA
+            ),
+            startDate,
+            endDate
+        );
+
+        assertEquals(Money.of(5_000, USD), result.get(BASE_DATE).get(AccountType.TFSA).get(netPresentValue.getName()).get(VTI));
+        assertEquals(Money.of(5_100, USD), result.get(BASE_DATE.plusDays(1)).get(AccountType.NON_REGISTERED).get(netPresentValue.getName()).get(VTI));
+        assertEquals(Money.of(5_200, USD), result.get(endDate).get(AccountType.TFSA).get(netPresentValue.getName()).get(VTI));
+
+        Mockito.verify(marketDataApiMock, Mockito.times(1)).fetchClosingPrices(VTI, BASE_DATE, endDate);
+        Mockito.verify(marketDataApiMock, Mockito.never()).findClosingPrice(Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * The days of a planned range that failed to fetch are looked up one at a time instead of being valued at zero
+     *
+     */
+    @Test
+    public void prefetchFailedWindowNpvTest() {
+        LocalDate startDate = BASE_DATE.minusDays(1);
+        LocalDate endDate = BASE_DATE.plusDays(2);
+        LocalDate failedDate = BASE_DATE.plusDays(1);
+
+        // Mock internet requests, the window holding the middle day failed
+        Mockito.doReturn(new ClosingPrices(Map.of(
+            BASE_DATE, Money.of(50, USD),
+            endDate, Money.of(52, USD)), Set.of(failedDate))).when(marketDataApiMock).fetchClosingPrices(VTI, BASE_DATE, endDate);
+        Mockito.when(marketDataApiMock.findClosingPrice(VTI, failedDate)).thenReturn(Optional.of(Money.of(51, USD)));
+
+        Map<LocalDate, Map<AccountType, Map<String, Map<Security, MonetaryAmount>>>> result = dailyOperationsTest(
+            List.of(
+                BUY_VTI,
+                BUY_VTI_TFSA
+            ),
+            startDate,
+            endDate
+        );
+
+        assertEquals(Money.of(5_000, USD), result.get(BASE_DATE).get(AccountType.TFSA).get(netPresentValue.getName()).get(VTI));
+        assertEquals(Money.of(5_100, USD), result.get(failedDate).get(AccountType.NON_REGISTERED).get(netPresentValue.getName()).get(VTI));
+        assertEquals(Money.of(5_200, USD), result.get(endDate).get(AccountType.TFSA).get(netPresentValue.getName()).get(VTI));
+
+        // Only the failed day goes back to the source
+        Mockito.verify(marketDataApiMock, Mockito.atLeastOnce()).findClosingPrice(VTI, failedDate);
+        Mockito.verify(marketDataApiMock, Mockito.never()).findClosingPrice(VTI, BASE_DATE);
+        Mockito.verify(marketDataApiMock, Mockito.never()).findClosingPrice(VTI, endDate);
+    }
+
+    /**
+     * The incremental evaluation only stores the days the NPV changed, and expands to the dense daily result
+     *
+     */
+    @Test
+    public void incrementalNpvTest() {
+        LocalDate endDate = BASE_DATE.plusDays(59);
+
+        // The price only moves once a week
+        Map<LocalDate, MonetaryAmount> closingPrices = new HashMap<>();
+        for (LocalDate date = BASE_DATE; !date.isAfter(endDate); date = date.plusDays(1)) {
+            closingPrices.put(date, Money.of(50 + (date.toEpochDay() - BASE_DATE.toEpochDay()) / 7, USD));
+        }
+        Mockito.when(marketDataApiMock.getClosingPrices(VTI, BASE_DATE, endDate)).thenReturn(closingPrices);
+
+        List<InvestmentTransaction> transactions = List.of(BUY_VTI, BUY_VTI_TFSA);
+
+        DailyResults results = Run.evaluate(Portfolio.EMPTY_NON_REGISTERED, List.of(averageCostBasis), transactions, List.of(netPresentValue), BASE_DATE, endDate);
+
+        assertEquals(dailyOperationsTest(transactions, BASE_DATE, endDate), results.toDailyMap());
+        // The first day and the eight weekly price moves, for each of the two accounts
+        assertEquals(18, results.getChangePointCount());
+        assertEquals(Money.of(5_000, USD), results.get(BASE_DATE.plusDays(6), AccountType.NON_REGISTERED, netPresentValue.getName()).get(VTI));
+        assertEquals(Money.of(5_800, USD), results.get(endDate, AccountType.TFSA, netPresentValue.getName()).get(VTI));
+    }
 }
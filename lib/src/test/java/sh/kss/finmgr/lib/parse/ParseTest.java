@@ -17,12 +17,21 @@
  */
 package sh.kss.finmgr.lib.parse;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sh.kss.finmgr.lib.FinmgrTest;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -67,4 +76,70 @@ public abstract class ParseTest extends FinmgrTest {
 
         return lines;
     }
+
+
+    /**
+     * Write an RBC activity export with one purchase row for each symbol
+     *
+     * @param path    where to write the export
+     * @param symbols the symbols purchased
+     */
+    protected static void writeRbcCsv(Path path, String... symbols) throws IOException {
+
+        StringBuilder csv = new StringBuilder();
+
+        // RBC exports have 8 lines of preamble before the header
+        for (int i = 0; i < 8; i++) {
+
+            csv.append("\"Activity Export\"\n");
+        }
+
+        csv.append("\"Date\",\"Activity\",\"Symbol\",\"Symbol Description\",\"Quantity\",\"Price\",\"Settlement Date\",\"Account\",\"Value\",\"Currency\",\"Description\"\n");
+
+        for (String symbol : symbols) {
+
+            csv.append(String.format("\"January 4, 2010\",\"Buy\",\"%s\",\"%s ETF\",\"10\",\"50.00\",\"January 7, 2010\",\"12345678\",\"-500.00\",\"CAD\",\"BUY 10 %s\"\n", symbol, symbol, symbol));
+        }
+
+        Files.writeString(path, csv, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a PDF with one text line for each input line, starting a new page every linesPerPage lines
+     *
+     * @param path         where to write the document
+     * @param lines        the lines of text, characters the standard fonts cannot encode are replaced
+     * @param linesPerPage the number of lines on each page
+     */
+    protected static void writePdf(Path path, List<String> lines, int linesPerPage) throws IOException {
+
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.COURIER);
+
+        try (PDDocument document = new PDDocument()) {
+
+            for (int start = 0; start < lines.size(); start += linesPerPage) {
+
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+
+                    content.beginText();
+                    content.setFont(font, 6);
+                    content.setLeading(7);
+                    content.newLineAtOffset(20, 770);
+
+                    for (String line : lines.subList(start, Math.min(start + linesPerPage, lines.size()))) {
+
+                        content.showText(line.replaceAll("[^\\x20-\\x7e]", " "));
+                        content.newLine();
+                    }
+
+                    content.endText();
+                }
+            }
+
+            document.save(path.toFile());
+        }
+    }
 }
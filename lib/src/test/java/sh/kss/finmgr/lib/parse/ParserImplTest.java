@@ -18,15 +18,30 @@
 package sh.kss.finmgr.lib.parse;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
-public class ParserImplTest {
+public class ParserImplTest extends ParseTest {
 
     @Autowired
     private Parser parser;
 
+    @TempDir
+    Path uploadDir;
+
     @Test
     public void canParsePdf() {
 
@@ -41,4 +56,57 @@ public class ParserImplTest {
     public void canParseXslx() {
 
     }
+
+    /**
+     * Parallel ingestion merges the files in traversal order, recursing into directories by name
+     *
+     */
+    @Test
+    public void ingestMergesInTraversalOrderTest() throws IOException {
+
+        Files.createDirectories(uploadDir.resolve("a"));
+        writeRbcCsv(uploadDir.resolve("a/c.csv"), "VTI", "VAB");
+        writeRbcCsv(uploadDir.resolve("b.csv"), "XIC");
+        writeRbcCsv(uploadDir.resolve("d.csv"), "XEF", "XEC", "ZAG");
+        Files.writeString(uploadDir.resolve("notes.txt"), "not a statement");
+
+        ParseReport report = parser.ingestPath(uploadDir.toString());
+
+        // Every file is reported, including the unsupported one
+        assertEquals(4, report.getResults().size());
+        assertTrue(report.getFailures().isEmpty());
+
+        List<String> symbols = report.getTransactions().stream()
+            .map(transaction -> transaction.getSecurity().getValue())
+            .toList();
+
+        assertEquals(List.of("VTI", "VAB", "XIC", "XEF", "XEC", "ZAG"), symbols);
+
+        // The same transactions are found by the serial traversal
+        List<InvestmentTransaction> serial = parser.traversePath(uploadDir.toString());
+
+        assertEquals(new HashSet<>(serial), new HashSet<>(report.getTransactions()));
+    }
+
+    /**
+     * A file that throws while parsing is reported without dropping the other files
+     *
+     */
+    @Test
+    public void ingestReportsFailuresTest() throws IOException {
+
+        writeRbcCsv(uploadDir.resolve("a.csv"), "VTI");
+        Files.writeString(uploadDir.resolve("b.xlsx"), "not a workbook");
+
+        ParseReport report = parser.ingestPath(uploadDir.toString());
+
+        assertEquals(2, report.getResults().size());
+        assertEquals(1, report.getTransactions().size());
+
+        List<FileParseResult> failures = report.getFailures();
+
+        assertEquals(1, failures.size());
+        assertEquals("b.xlsx", failures.get(0).getFile().getName());
+        assertFalse(failures.get(0).getElapsed().isNegative());
+    }
 }
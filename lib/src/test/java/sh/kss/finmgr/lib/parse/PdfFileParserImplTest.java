@@ -0,0 +1,191 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.parse.brokerage.QuestradePdf;
+import sh.kss.finmgr.lib.parse.brokerage.QuestradePdfOld;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Test the page at a time PDF extraction against extracting the whole document
+ */
+@SpringBootTest
+public class PdfFileParserImplTest extends ParseTest {
+
+    /**
+     * The text version of an example Questrade PDF document
+     */
+    @Value("classpath:questrade/2011-jan.txt")
+    Resource resourceFile;
+
+    @Autowired
+    private PdfFileParser pdfFileParser;
+
+    @TempDir
+    Path uploadDir;
+
+    /**
+     * Streaming the pages yields the same lines as splitting the text of the whole document
+     *
+     */
+    @Test
+    public void pageLinesMatchWholeDocumentTest() throws IOException {
+
+        List<String> fixture = getLinesFromFile(resourceFile.getFile());
+
+        for (int linesPerPage : new int[] {7, 40, 100}) {
+
+            Path statement = uploadDir.resolve(String.format("statement-%d.pdf", linesPerPage));
+            writePdf(statement, fixture, linesPerPage);
+
+            try (PDDocument document = Loader.loadPDF(statement.toFile())) {
+
+                List<String> whole = Arrays.asList(new PDFTextStripper().getText(document).split("\\r?\\n"));
+
+                List<String> streamed = new ArrayList<>();
+                PdfPageLines lines = new PdfPageLines(document, new PDFTextStripper());
+
+                assertEquals(whole.subList(whole.size() - 7, whole.size()), lines.tail(7));
+                assertEquals(whole.subList(0, 55), lines.head(55));
+
+                lines.forEachRemaining(streamed::add);
+
+                assertEquals(whole, streamed);
+            }
+        }
+    }
+
+    /**
+     * A statement is matched from its first lines and the streamed transactions are the same as parsing every line
+     *
+     */
+    @Test
+    public void streamStatementTest() throws IOException {
+
+        Path statement = uploadDir.resolve("statement.pdf");
+        writePdf(statement, getLinesFromFile(resourceFile.getFile()), 40);
+
+        List<String> whole;
+
+        try (PDDocument document = Loader.loadPDF(statement.toFile())) {
+
+            whole = Arrays.asList(new PDFTextStripper().getText(document).split("\\r?\\n"));
+        }
+
+        QuestradePdfOld questradeOld = new QuestradePdfOld();
+
+        List<InvestmentTransaction> streamed = new ArrayList<>();
+        int count = pdfFileParser.parsePdf(statement.toFile(), streamed::add);
+
+        assertEquals(1, count);
+        assertEquals(questradeOld.parse(whole), streamed);
+        assertEquals(Money.of(1500, "CAD"), streamed.get(0).getNetAmount());
+    }
+
+    /**
+     * A multi-line transaction is emitted before the transactions found on the lines it spans
+     *
+     */
+    @Test
+    public void multiLineOrderTest() {
+
+        List<InvestmentTransaction> transactions = new QuestradePdf().parse(List.of(
+            "Questrade, Inc.",
+            "1/5/2011 1/7/2011 Buy",
+            "VANGUARD TOTAL",
+            "1/6/2011 1/6/2011 Deposit CASH 0 $0.000 $0.00 $0.00 $100.00",
+            "10 $50.000 ($500.00) $4.95 ($504.95)",
+            "1/8/2011 1/8/2011 Fee MONTHLY 0 $0.000 $0.00 $0.00 ($5.00)"
+        ));
+
+        assertEquals(
+            List.of(InvestmentAction.Buy, InvestmentAction.Deposit, InvestmentAction.Fee),
+            transactions.stream().map(InvestmentTransaction::getAction).toList()
+        );
+    }
+
+    /**
+     * Parsing many statements on 8 threads produces the same transactions as parsing them one at a time
+     *
+     */
+    @Test
+    public void concurrentParseTest() throws IOException, InterruptedException, ExecutionException {
+
+        final int THREADS = 8;
+        final int FILES = 32;
+
+        List<String> fixture = getLinesFromFile(resourceFile.getFile());
+        List<File> statements = new ArrayList<>();
+
+        // Vary the page breaks so concurrent parses are at different points of different documents
+        for (int i = 0; i < FILES; i++) {
+
+            Path statement = uploadDir.resolve(String.format("statement-%d.pdf", i));
+            writePdf(statement, fixture, 20 + i);
+            statements.add(statement.toFile());
+        }
+
+        List<List<InvestmentTransaction>> expected = new ArrayList<>();
+
+        for (File statement : statements) {
+
+            expected.add(pdfFileParser.parsePdf(statement));
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+
+            List<Future<List<InvestmentTransaction>>> futures = new ArrayList<>();
+
+            for (File statement : statements) {
+
+                futures.add(executor.submit(() -> pdfFileParser.parsePdf(statement)));
+            }
+
+            for (int i = 0; i < FILES; i++) {
+
+                assertEquals(expected.get(i), futures.get(i).get());
+                assertEquals(1, expected.get(i).size());
+            }
+        }
+    }
+}
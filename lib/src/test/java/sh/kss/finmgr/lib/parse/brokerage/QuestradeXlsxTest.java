@@ -0,0 +1,149 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse.brokerage;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.parse.ParseTest;
+import sh.kss.finmgr.lib.parse.XlsxFileParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Test the Questrade xlsx parser through the streaming xlsx file parser
+ */
+@SpringBootTest
+public class QuestradeXlsxTest extends ParseTest {
+
+    @Autowired
+    private XlsxFileParser xlsxFileParser;
+
+    private final QuestradeXlsx questradeXlsx = new QuestradeXlsx();
+
+    @TempDir
+    Path uploadDir;
+
+    /**
+     * Every row after the header is streamed as a transaction, blank cells included
+     *
+     */
+    @Test
+    public void streamWorkbookTest() throws IOException {
+
+        Path export = uploadDir.resolve("activity.xlsx");
+        writeWorkbook(export, questradeXlsx.HEADER_COLUMNS,
+            new String[] {"2020-01-06 12:00:00 AM", "2020-01-08 12:00:00 AM", "Buy", "VTI", "VANGUARD TOTAL", "10", "150.25", "-1502.50", "-4.95", "-1507.45", "USD", "12345678", "Trades", "Individual TFSA"},
+            new String[] {"2020-01-31 12:00:00 AM", "2020-01-31 12:00:00 AM", null, "", "INTEREST", "0", "0", "0", "0", "-1.25", "CAD", "12345678", "Interest", "Individual Margin"}
+        );
+
+        List<InvestmentTransaction> streamed = new ArrayList<>();
+        int count = xlsxFileParser.parseXlsx(export.toFile(), streamed::add);
+
+        assertEquals(2, count);
+        assertEquals(streamed, xlsxFileParser.parseXlsx(export.toFile()));
+
+        InvestmentTransaction expectedBuy = InvestmentTransaction.builder()
+            .transactionDate(LocalDate.of(2020, 1, 6))
+            .settlementDate(LocalDate.of(2020, 1, 8))
+            .action(InvestmentAction.Buy)
+            .security(VTI)
+            .description("VANGUARD TOTAL")
+            .quantity(new Quantity(BigDecimal.TEN))
+            .price(Money.of(new BigDecimal("150.25"), USD))
+            .grossAmount(Money.of(new BigDecimal("-1502.50"), USD))
+            .commission(Money.of(new BigDecimal("-4.95"), USD))
+            .netAmount(Money.of(new BigDecimal("-1507.45"), USD))
+            .currency(USD)
+            .account(new Account("12345678", "12345678", AccountType.TFSA))
+            .build();
+
+        assertEquals(expectedBuy, streamed.get(0));
+
+        // The missing action cell falls back to the activity type
+        assertEquals(InvestmentAction.Fee, streamed.get(1).getAction());
+        assertEquals(new Security("", CAD), streamed.get(1).getSecurity());
+        assertEquals(AccountType.NON_REGISTERED, streamed.get(1).getAccount().getAccountType());
+    }
+
+    /**
+     * A workbook with an unknown header yields no transactions
+     *
+     */
+    @Test
+    public void unmatchedHeaderTest() throws IOException {
+
+        Path export = uploadDir.resolve("other.xlsx");
+        writeWorkbook(export, new String[] {"Date", "Amount"}, new String[] {"2020-01-06", "100"});
+
+        assertEquals(0, xlsxFileParser.parseXlsx(export.toFile(), transaction -> {}));
+
+        // A header that is missing its last columns is not a match either
+        Path truncated = uploadDir.resolve("truncated.xlsx");
+        String[] header = new String[questradeXlsx.HEADER_COLUMNS.length - 1];
+        System.arraycopy(questradeXlsx.HEADER_COLUMNS, 0, header, 0, header.length);
+        writeWorkbook(truncated, header);
+
+        assertEquals(0, xlsxFileParser.parseXlsx(truncated.toFile()).size());
+    }
+
+    private static void writeWorkbook(Path path, String[]... rows) throws IOException {
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(path)) {
+
+            Sheet sheet = workbook.createSheet("Activities");
+
+            for (int r = 0; r < rows.length; r++) {
+
+                Row row = sheet.createRow(r);
+
+                for (int c = 0; c < rows[r].length; c++) {
+
+                    // Null leaves the cell out of the row entirely
+                    if (rows[r][c] != null) {
+
+                        row.createCell(c).setCellValue(rows[r][c]);
+                    }
+                }
+            }
+
+            workbook.write(out);
+        }
+    }
+}
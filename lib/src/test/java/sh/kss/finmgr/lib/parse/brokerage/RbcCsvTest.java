@@ -0,0 +1,158 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.parse.brokerage;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.parse.CsvFileParser;
+import sh.kss.finmgr.lib.parse.CsvTokenizer;
+import sh.kss.finmgr.lib.parse.ParseTest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test the RBC csv parser and the streaming csv file parser
+ */
+@SpringBootTest
+public class RbcCsvTest extends ParseTest {
+
+    @Autowired
+    private CsvFileParser csvFileParser;
+
+    private final RbcCsv rbcCsv = new RbcCsv();
+
+    @TempDir
+    Path uploadDir;
+
+    /**
+     * A purchase row is parsed into a transaction
+     *
+     */
+    @Test
+    public void parseBuyRowTest() {
+
+        Optional<InvestmentTransaction> transaction = rbcCsv.parse(
+            "\"January 4, 2010\",\"Buy\",\"VTI\",\"VANGUARD TOTAL\",\"10\",\"50.00\",\"January 7, 2010\",\"12345678\",\"-500.00\",\"USD\",\"BUY 10 VTI\""
+        );
+
+        InvestmentTransaction expectedTransaction = InvestmentTransaction.builder()
+            .transactionDate(LocalDate.of(2010, 1, 4))
+            .settlementDate(LocalDate.of(2010, 1, 7))
+            .action(InvestmentAction.Buy)
+            .security(new Security("VTI", USD))
+            .description("BUY 10 VTI")
+            .quantity(new Quantity(BigDecimal.TEN))
+            .price(Money.of(50, USD))
+            .account(new Account("12345678", "12345678", AccountType.NON_REGISTERED))
+            .grossAmount(Money.of(-500, USD))
+            .netAmount(Money.of(-500, USD))
+            .currency(USD)
+            .build();
+
+        assertTrue(transaction.isPresent());
+        assertEquals(expectedTransaction, transaction.get());
+    }
+
+    /**
+     * Preamble and header rows are not transactions
+     *
+     */
+    @Test
+    public void headerRowIsNotParsedTest() {
+
+        assertFalse(rbcCsv.parse("\"Date\",\"Activity\",\"Symbol\",\"Symbol Description\",\"Quantity\",\"Price\",\"Settlement Date\",\"Account\",\"Value\",\"Currency\",\"Description\"").isPresent());
+        assertFalse(rbcCsv.parse("\"Activity Export\"").isPresent());
+        assertFalse(rbcCsv.parse("").isPresent());
+    }
+
+    /**
+     * Quoted fields may contain delimiters and escaped quotes, and trailing empty fields are kept
+     *
+     */
+    @Test
+    public void tokenizeTest() {
+
+        assertEquals(List.of("a", "b, c", "say \"hi\"", ""), CsvTokenizer.tokenize("\"a\",\"b, c\",\"say \"\"hi\"\"\",\"\""));
+        assertEquals(List.of("1", "", "x"), CsvTokenizer.tokenize("1,,x"));
+        assertEquals(List.of("a", ""), CsvTokenizer.tokenize("\"a\","));
+        assertEquals(List.of(""), CsvTokenizer.tokenize(""));
+    }
+
+    /**
+     * The file parser matches the header and streams every row to the consumer
+     *
+     */
+    @Test
+    public void streamFileTest() throws IOException {
+
+        Path export = uploadDir.resolve("activity.csv");
+        writeRbcCsv(export, "VTI", "VAB", "XIC");
+
+        List<InvestmentTransaction> streamed = new ArrayList<>();
+        int count = csvFileParser.parseCsv(export.toFile(), streamed::add);
+
+        assertEquals(3, count);
+        assertEquals(streamed, csvFileParser.parseCsv(export.toFile()));
+
+        // A file that is shorter than the header is not a match
+        Path truncated = uploadDir.resolve("truncated.csv");
+        Files.write(truncated, Files.readAllLines(export).subList(0, 5));
+
+        assertEquals(0, csvFileParser.parseCsv(truncated.toFile()).size());
+    }
+
+    /**
+     * Files parsed through the file parser share one instance of each security and account
+     *
+     */
+    @Test
+    public void parsedEntitiesAreInternedTest() throws IOException {
+
+        writeRbcCsv(uploadDir.resolve("a.csv"), "VTI", "VAB");
+        writeRbcCsv(uploadDir.resolve("b.csv"), "VTI");
+
+        List<InvestmentTransaction> a = csvFileParser.parseCsv(uploadDir.resolve("a.csv").toFile());
+        List<InvestmentTransaction> b = csvFileParser.parseCsv(uploadDir.resolve("b.csv").toFile());
+
+        assertSame(a.get(0).getSecurity(), b.get(0).getSecurity());
+        assertSame(a.get(0).getAccount(), a.get(1).getAccount());
+        assertSame(a.get(0).getAccount(), b.get(0).getAccount());
+    }
+}
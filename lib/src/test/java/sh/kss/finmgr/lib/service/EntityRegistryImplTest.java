@@ -0,0 +1,139 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import org.junit.jupiter.api.Test;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.Security;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test interning and the dense ids of the entity registry
+ */
+public class EntityRegistryImplTest {
+
+    private static final CurrencyUnit CAD = Monetary.getCurrency("CAD");
+    private static final CurrencyUnit USD = Monetary.getCurrency("USD");
+
+    /**
+     * Equal values share a canonical instance and ids are assigned densely in registration order
+     *
+     */
+    @Test
+    public void internTest() {
+
+        EntityRegistry registry = new EntityRegistryImpl();
+
+        Security vti = registry.getSecurity("VTI", USD);
+
+        assertSame(vti, registry.getSecurity("VTI", USD));
+        assertSame(vti, registry.intern(new Security("VTI", USD)));
+        assertNotSame(vti, registry.getSecurity("VTI", CAD));
+
+        assertEquals(0, registry.getSecurityId(vti));
+        assertEquals(1, registry.getSecurityId(new Security("VTI", CAD)));
+        assertEquals(2, registry.getSecurityId(new Security("VAB", CAD)));
+        assertEquals(3, registry.getSecurityCount());
+        assertSame(vti, registry.getSecurity(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> registry.getSecurity(3));
+
+        // An account id with another alias or type is a different account
+        Account account = registry.getAccount("12345678", "12345678", AccountType.NON_REGISTERED);
+
+        assertSame(account, registry.getAccount("12345678", "12345678", AccountType.NON_REGISTERED));
+        assertNotSame(account, registry.getAccount("12345678", "Savings", AccountType.TFSA));
+        assertSame(account, registry.intern(new Account("12345678", "12345678", AccountType.NON_REGISTERED)));
+        assertEquals(2, registry.getAccountCount());
+        assertEquals(0, registry.getAccountId(account));
+    }
+
+    /**
+     * Threads registering the same values concurrently agree on one instance and id for each
+     *
+     */
+    @Test
+    public void concurrentInternTest() throws Exception {
+
+        EntityRegistry registry = new EntityRegistryImpl();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+
+            List<Future<List<Security>>> futures = new ArrayList<>();
+
+            for (int thread = 0; thread < 8; thread++) {
+
+                futures.add(executor.submit(() -> {
+
+                    List<Security> securities = new ArrayList<>();
+
+                    for (int i = 0; i < 1_000; i++) {
+
+                        securities.add(registry.getSecurity("S" + i, CAD));
+                    }
+
+                    return securities;
+                }));
+            }
+
+            List<Security> first = futures.get(0).get();
+
+            for (Future<List<Security>> future : futures) {
+
+                List<Security> securities = future.get();
+
+                for (int i = 0; i < securities.size(); i++) {
+
+                    assertSame(first.get(i), securities.get(i));
+                }
+            }
+
+            // Every id from 0 to the count maps back to a distinct security
+            Set<Security> byId = new HashSet<>();
+
+            for (int id = 0; id < registry.getSecurityCount(); id++) {
+
+                Security security = registry.getSecurity(id);
+
+                assertEquals(id, registry.getSecurityId(security));
+                byId.add(security);
+            }
+
+            assertEquals(1_000, byId.size());
+
+        } finally {
+
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.service;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.FieldError;
+import sh.kss.finmgr.lib.FinmgrTest;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransactionValidator;
+import sh.kss.finmgr.lib.entity.transaction.TransactionBatch;
+import sh.kss.finmgr.lib.entity.transaction.ValidationRule;
+import sh.kss.finmgr.lib.parse.FileParseResult;
+import sh.kss.finmgr.lib.parse.ParseReport;
+
+import javax.money.MonetaryException;
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test batch validation against the single transaction validator
+ */
+public class ValidationServiceImplTest extends FinmgrTest {
+
+    private final InvestmentTransactionValidator validator = new InvestmentTransactionValidator();
+
+    private final List<InvestmentTransaction> transactions = List.of(
+        BUY_VTI,
+        SELL_VTI_LOWER_PRICE,
+        VTI_DIVIDEND,
+        VTI_RETURN_OF_CAPITAL,
+        VTI_CAPITAL_GAIN,
+        BUY_VTI.withCommission(Money.of(5, USD)),
+        BUY_VTI.withSettlementDate(BASE_DATE.minusDays(1)),
+        BUY_VTI.withGrossAmount(Money.of(-9_000, USD)),
+        BUY_VTI.withPrice(Money.of(100, CAD)),
+        BUY_VTI.withDescription(" "),
+        SELL_VTI.withQuantity(Quantity.HUNDRED),
+        SELL_VTI.withGrossAmount(Money.of(-10_000, USD)),
+        BUY_VTI.withQuantity(new Quantity(BUY_VTI.getQuantity().getValue().negate())),
+        VTI_DIVIDEND.withCapitalGain(Money.of(-1, USD)).withReturnOfCapital(Money.of(-1, USD)),
+        BUY_VTI.withAction(InvestmentAction.Reinvest).withNetAmount(Money.of(-10_000, USD)));
+
+    /**
+     * Every transaction breaks the same rules as the fields and codes rejected by validate, where validate does not throw
+     *
+     */
+    @Test
+    public void checkMatchesValidatorTest() {
+
+        for (InvestmentTransaction transaction : transactions) {
+
+            assertCheckMatchesValidator(transaction);
+        }
+    }
+
+    /**
+     * The empty, zero and arithmetic rules compare values as validate does, down to the whitespace of a description,
+     * the scale of a zero quantity, the rounding of the gross product and the rejections that decide the net sum
+     *
+     */
+    @Test
+    public void checkMatchesValidatorComparisonsTest() {
+
+        List<InvestmentTransaction> edgeCases = List.of(
+            BUY_VTI.withQuantity(new Quantity(new BigDecimal("0.00"))),
+            BUY_VTI.withQuantity(new Quantity(BigDecimal.ZERO)),
+            SELL_VTI.withQuantity(new Quantity(new BigDecimal("0.000"))),
+            BUY_VTI.withGrossAmount(Money.of(new BigDecimal("-10000.00"), USD)),
+            BUY_VTI
+                .withPrice(Money.of(new BigDecimal("1.000000000000000001"), USD))
+                .withQuantity(new Quantity(new BigDecimal("1.1")))
+                .withGrossAmount(Money.of(new BigDecimal("-1.1"), USD))
+                .withNetAmount(Money.of(new BigDecimal("-6.1"), USD)),
+            BUY_VTI
+                .withPrice(Money.of(new BigDecimal("1.000000000000000001"), USD))
+                .withQuantity(new Quantity(new BigDecimal("1.1")))
+                .withGrossAmount(Money.of(new BigDecimal("-1.1000000000000000011"), USD))
+                .withNetAmount(Money.of(new BigDecimal("-6.1000000000000000011"), USD)),
+            // Trimmed as validate trims, not as String.isBlank strips
+            BUY_VTI.withDescription("\u2003"),
+            BUY_VTI.withDescription("\u0001"),
+            // A rejected net amount fails the sum without looking at the missing commission
+            BUY_VTI.withCommission(null).withNetAmount(Money.of(-10_005, CAD)));
+
+        for (InvestmentTransaction transaction : edgeCases) {
+
+            assertCheckMatchesValidator(transaction);
+        }
+
+        // A zero quantity of another scale is not zero to validate, only the gross product catches it
+        assertEquals(Set.of(ValidationRule.GROSS_AMOUNT_PRODUCT), ValidationRule.of(validator.check(edgeCases.get(0))));
+    }
+
+    /**
+     * Breaches are counted by rule and by the file each transaction was parsed from
+     *
+     */
+    @Test
+    public void countsBySourceTest() {
+
+        ValidationService validationService = new ValidationServiceImpl();
+
+        ParseReport parseReport = new ParseReport(List.of(
+            FileParseResult.success(new File("a.csv"), transactions.subList(0, 6), Duration.ZERO),
+            FileParseResult.success(new File("empty.csv"), List.of(), Duration.ZERO),
+            FileParseResult.success(new File("b.csv"), transactions.subList(6, transactions.size()), Duration.ZERO)));
+
+        ValidationReport report = validationService.validate(parseReport);
+
+        assertEquals(transactions.size(), report.size());
+        assertFalse(report.isValid());
+        assertEquals(5, report.getInvalidRows()[0]);
+        assertEquals("a.csv", report.getSource(5));
+        assertEquals("b.csv", report.getSource(6));
+
+        Map<String, Map<ValidationRule, Integer>> bySource = report.getCountsBySource();
+
+        assertEquals(Map.of(ValidationRule.COMMISSION_POSITIVE, 1, ValidationRule.NET_AMOUNT_SUM, 1), bySource.get("a.csv"));
+        assertEquals(Map.of(), bySource.get("empty.csv"));
+        assertEquals(1, bySource.get("b.csv").get(ValidationRule.SETTLED_BEFORE_TRANSACTION));
+        assertEquals(4, report.getCounts().get(ValidationRule.NET_AMOUNT_SUM));
+    }
+
+    /**
+     * Large lists and batches are checked in concurrent chunks with the same result as checking each row
+     *
+     */
+    @Test
+    public void chunkedMatchesSerialTest() {
+
+        List<InvestmentTransaction> large = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+
+            large.add(transactions.get(i % transactions.size()));
+        }
+
+        Collections.shuffle(large, new Random(1));
+
+        long[] expected = new long[large.size()];
+
+        for (int i = 0; i < large.size(); i++) {
+
+            expected[i] = validator.check(large.get(i));
+        }
+
+        ValidationService validationService = new ValidationServiceImpl();
+        ValidationReport listReport = validationService.validate("list", large);
+        ValidationReport batchReport = validationService.validate("batch", TransactionBatch.of(new EntityRegistryImpl(), large));
+
+        long[] listErrors = new long[large.size()];
+        long[] batchErrors = new long[large.size()];
+
+        for (int i = 0; i < large.size(); i++) {
+
+            listErrors[i] = listReport.getErrors(i);
+            batchErrors[i] = batchReport.getErrors(i);
+        }
+
+        assertArrayEquals(expected, listErrors);
+        assertArrayEquals(expected, batchErrors);
+        assertEquals(listReport.getCounts(), batchReport.getCounts());
+    }
+
+    /**
+     * Assert that check breaks the same rules as the fields and codes rejected by validate, where validate does not
+     * throw
+     *
+     * @param transaction the transaction to run through both
+     */
+    private void assertCheckMatchesValidator(InvestmentTransaction transaction) {
+
+        Errors errors = new BeanPropertyBindingResult(transaction, transaction.getClass().toString());
+
+        try {
+
+            validator.validate(transaction, errors);
+
+        } catch (MonetaryException e) {
+
+            // The arithmetic of validate cannot mix currencies, check reports the amount instead
+            assertTrue(ValidationRule.of(validator.check(transaction)).contains(ValidationRule.PRICE_CURRENCY));
+
+            return;
+        }
+
+        Set<String> expected = new TreeSet<>();
+
+        for (FieldError error : errors.getFieldErrors()) {
+
+            expected.add(error.getField() + "." + error.getCode());
+        }
+
+        Set<String> actual = new TreeSet<>();
+
+        for (ValidationRule rule : ValidationRule.of(validator.check(transaction))) {
+
+            actual.add(rule.getField() + "." + rule.getCode());
+        }
+
+        assertEquals(expected, actual, transaction.getDescription());
+    }
+}
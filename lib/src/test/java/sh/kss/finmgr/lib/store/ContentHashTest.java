@@ -0,0 +1,54 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Test identifying documents by their content
+ */
+public class ContentHashTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * The hash is the hex SHA-256 of the content, whatever the file is named
+     *
+     */
+    @Test
+    public void sha256Test() throws IOException {
+
+        Path first = Files.writeString(directory.resolve("a.csv"), "abc", StandardCharsets.UTF_8);
+        Path renamed = Files.writeString(directory.resolve("b.csv"), "abc", StandardCharsets.UTF_8);
+        Path other = Files.writeString(directory.resolve("c.csv"), "abd", StandardCharsets.UTF_8);
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ContentHash.sha256(first));
+        assertEquals(ContentHash.sha256(first), ContentHash.sha256(renamed));
+        assertNotEquals(ContentHash.sha256(first), ContentHash.sha256(other));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.kss.finmgr.lib.FinmgrTest;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Quantity;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import javax.money.MonetaryAmount;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test writing transactions column by column and decoding them whole or by column
+ */
+public class TransactionColumnFileTest extends FinmgrTest {
+
+    @TempDir
+    Path fileDir;
+
+    private final List<InvestmentTransaction> transactions = List.of(
+        BUY_VTI,
+        BUY_VTI_TFSA,
+        SELL_VTI_LOWER_PRICE,
+        VTI_DIVIDEND,
+        VTI_RETURN_OF_CAPITAL,
+        VTI_CAPITAL_GAIN.withTransactionDate(BASE_DATE.minusDays(30)),
+        // Quantities keep their scale, amounts may mix currencies and exceed a long
+        BUY_VTI.withQuantity(new Quantity(new BigDecimal("1.500"))).withPrice(Money.of(new BigDecimal("133.337"), CAD)),
+        BUY_VTI.withGrossAmount(Money.of(new BigDecimal("1E+30"), USD)).withEligibleDividend(Money.of(new BigDecimal("0.000000001"), USD)),
+        VTI_DIVIDEND.withAction(InvestmentAction.Deposit).withSecurity(null).withDescription("Contribution"));
+
+    /**
+     * Every field of every transaction is read back equal
+     *
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+
+        Path path = fileDir.resolve("transactions.col");
+
+        TransactionColumnFile.write(path, transactions);
+
+        TransactionColumnFile file = TransactionColumnFile.open(path);
+
+        assertEquals(transactions.size(), file.size());
+        assertEquals(transactions, file.readAll());
+
+        // An empty file has every column
+        TransactionColumnFile.write(path, List.of());
+
+        assertEquals(List.of(), TransactionColumnFile.open(path).readAll());
+    }
+
+    /**
+     * A single column is decoded without the others, sparse columns are null where the row has no value
+     *
+     */
+    @Test
+    public void columnTest() throws IOException {
+
+        Path path = fileDir.resolve("transactions.col");
+
+        TransactionColumnFile.write(path, transactions);
+
+        TransactionColumnFile file = TransactionColumnFile.open(path);
+
+        assertArrayEquals(transactions.stream().mapToLong(transaction -> transaction.getTransactionDate().toEpochDay()).toArray(), file.getEpochDays(TransactionColumn.TRANSACTION_DATE));
+        assertArrayEquals(transactions.stream().map(InvestmentTransaction::getSecurity).toArray(), file.getSecurities());
+
+        MonetaryAmount[] returnOfCapital = file.getAmounts(TransactionColumn.RETURN_OF_CAPITAL);
+
+        assertArrayEquals(transactions.stream().map(InvestmentTransaction::getReturnOfCapital).toArray(), returnOfCapital);
+        assertEquals(2, Arrays.stream(returnOfCapital).filter(amount -> amount != null).count());
+
+        assertThrows(IllegalArgumentException.class, () -> file.getAmounts(TransactionColumn.QUANTITY));
+        assertThrows(IllegalArgumentException.class, () -> file.getEpochDays(TransactionColumn.NET_AMOUNT));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.kss.finmgr.lib.FinmgrTest;
+import sh.kss.finmgr.lib.entity.Account;
+import sh.kss.finmgr.lib.entity.AccountType;
+import sh.kss.finmgr.lib.entity.InvestmentAction;
+import sh.kss.finmgr.lib.entity.Security;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Test queries on the transaction index against filtering the whole log
+ */
+public class TransactionIndexImplTest extends FinmgrTest {
+
+    @TempDir
+    Path logDir;
+
+    private final List<Account> accounts = List.of(
+        NON_REG_ACCOUNT,
+        new Account("456-def", "foo2", AccountType.TFSA),
+        new Account("789-ghi", "foo3", AccountType.RRSP));
+
+    private final List<Security> securities = List.of(VTI, new Security("XIC", CAD), new Security("ZAG", CAD));
+
+    /**
+     * Every combination of filters finds the same positions as filtering each transaction, and stays correct as the
+     * log grows between queries
+     *
+     */
+    @Test
+    public void findMatchesFilterTest() {
+
+        TransactionLogImpl log = new TransactionLogImpl();
+        log.setLocation(logDir.toString());
+
+        TransactionIndexImpl index = new TransactionIndexImpl();
+        index.setTransactionLog(log);
+
+        Random random = new Random(7);
+        List<InvestmentTransaction> appended = new ArrayList<>();
+
+        for (int round = 0; round < 3; round++) {
+
+            for (int document = 0; document < 10; document++) {
+
+                List<InvestmentTransaction> transactions = new ArrayList<>();
+
+                for (int i = 0; i < 300; i++) {
+
+                    transactions.add(transaction(random, appended.size() + transactions.size()));
+                }
+
+                log.append("document-" + round + "-" + document, transactions);
+                appended.addAll(transactions);
+            }
+
+            for (int i = 0; i < 50; i++) {
+
+                TransactionQuery query = TransactionQuery.builder()
+                    .account(random.nextBoolean() ? accounts.get(random.nextInt(accounts.size())).getId() : null)
+                    .symbol(random.nextBoolean() ? securities.get(random.nextInt(securities.size())).getValue() : null)
+                    .action(random.nextBoolean() ? InvestmentAction.Buy : null)
+                    .fromDate(random.nextBoolean() ? BASE_DATE.plusDays(random.nextInt(1_000)) : null)
+                    .toDate(random.nextBoolean() ? BASE_DATE.plusDays(1_000 + random.nextInt(8_000)) : null)
+                    .cursor(random.nextInt(appended.size()))
+                    .build();
+
+                assertEquals(expected(appended, query), found(index.find(query)), query.toString());
+            }
+        }
+
+        assertEquals(appended.size(), index.size());
+        assertFalse(index.find(TransactionQuery.ALL.withSymbol("UNKNOWN")).hasNext());
+    }
+
+    /**
+     * Pages that follow the cursor of the previous page cover the matches once, in log order
+     *
+     */
+    @Test
+    public void cursorPaginationTest() {
+
+        TransactionLogImpl log = new TransactionLogImpl();
+        log.setLocation(logDir.toString());
+
+        TransactionIndexImpl index = new TransactionIndexImpl();
+        index.setTransactionLog(log);
+
+        Random random = new Random(3);
+        List<InvestmentTransaction> appended = new ArrayList<>();
+
+        for (int i = 0; i < 2_000; i++) {
+
+            appended.add(transaction(random, i));
+        }
+
+        log.append("document", appended);
+
+        TransactionQuery query = TransactionQuery.ALL.withSymbol("XIC");
+        List<Long> paged = new ArrayList<>();
+
+        while (true) {
+
+            PrimitiveIterator.OfLong positions = index.find(query);
+
+            for (int i = 0; i < 100 && positions.hasNext(); i++) {
+
+                paged.add(positions.nextLong());
+            }
+
+            if (!positions.hasNext()) {
+
+                break;
+            }
+
+            query = query.withCursor(positions.nextLong());
+        }
+
+        assertEquals(expected(appended, TransactionQuery.ALL.withSymbol("XIC")), paged);
+    }
+
+    private InvestmentTransaction transaction(Random random, int index) {
+
+        Security security = securities.get(random.nextInt(securities.size()));
+
+        InvestmentTransaction transaction = (random.nextBoolean() ? BUY_VTI : SELL_VTI)
+            .withAccount(accounts.get(random.nextInt(accounts.size())))
+            .withTransactionDate(BASE_DATE.plusDays(index + random.nextInt(300)))
+            .withDescription("Transaction " + index);
+
+        // Some cash transactions without a security
+        if (random.nextInt(10) == 0) {
+
+            return transaction.withSecurity(null).withAction(InvestmentAction.Deposit).withNetAmount(Money.of(100, USD));
+        }
+
+        return transaction.withSecurity(security);
+    }
+
+    private static List<Long> expected(List<InvestmentTransaction> transactions, TransactionQuery query) {
+
+        Predicate<InvestmentTransaction> filter = transaction ->
+            (query.getAccount() == null || query.getAccount().equals(transaction.getAccount().getId()))
+                && (query.getSymbol() == null || transaction.getSecurity() != null && query.getSymbol().equals(transaction.getSecurity().getValue()))
+                && (query.getAction() == null || query.getAction() == transaction.getAction())
+                && (query.getFromDate() == null || !transaction.getTransactionDate().isBefore(query.getFromDate()))
+                && (query.getToDate() == null || !transaction.getTransactionDate().isAfter(query.getToDate()));
+
+        List<Long> positions = new ArrayList<>();
+
+        for (int i = (int) query.getCursor(); i < transactions.size(); i++) {
+
+            if (filter.test(transactions.get(i))) {
+
+                positions.add((long) i);
+            }
+        }
+
+        return positions;
+    }
+
+    private static List<Long> found(PrimitiveIterator.OfLong positions) {
+
+        List<Long> found = new ArrayList<>();
+
+        positions.forEachRemaining((long position) -> found.add(position));
+
+        return found;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+    finmgr - A financial transaction framework
+    Copyright (C) 2024 Kennedy Software Solutions Inc.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package sh.kss.finmgr.lib.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sh.kss.finmgr.lib.FinmgrTest;
+import sh.kss.finmgr.lib.entity.transaction.InvestmentTransaction;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test appending to, reading and recovering the segmented transaction log
+ */
+public class TransactionLogImplTest extends FinmgrTest {
+
+    @TempDir
+    Path logDir;
+
+    /**
+     * Appends are read back in order across segments and survive reopening the log
+     *
+     */
+    @Test
+    public void appendAndReadTest() throws IOException {
+
+        TransactionLogImpl log = open();
+        List<InvestmentTransaction> appended = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+
+            List<InvestmentTransaction> document = document(i);
+
+            assertTrue(log.append("document-" + i, document));
+            appended.addAll(document);
+        }
+
+        // A source is only appended once
+        assertFalse(log.append("document-3", document(3)));
+
+        assertEquals(60, log.size());
+        assertEquals(appended, log.readAll());
+        assertEquals(appended.subList(7, 17), log.read(7, 10));
+        assertEquals(appended.subList(55, 60), log.read(55, 10));
+
+        try (Stream<Path> segments = Files.list(logDir)) {
+
+            assertTrue(segments.count() > 1);
+        }
+
+        TransactionLogImpl reopened = open();
+
+        assertEquals(60, reopened.size());
+        assertTrue(reopened.contains("document-19"));
+        assertEquals(appended, reopened.readAll());
+    }
+
+    /**
+     * Sparse positions are read across segments and records, and the visitor can stop the read
+     *
+     */
+    @Test
+    public void readPositionsTest() {
+
+        TransactionLogImpl log = open();
+        List<InvestmentTransaction> appended = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+
+            log.append("document-" + i, document(i));
+            appended.addAll(document(i));
+        }
+
+        List<Long> positions = new ArrayList<>();
+        List<InvestmentTransaction> read = new ArrayList<>();
+
+        log.read(LongStream.of(1, 2, 9, 31, 59).iterator(), (position, transaction) -> positions.add(position) && read.add(transaction));
+
+        assertEquals(List.of(1L, 2L, 9L, 31L, 59L), positions);
+        assertEquals(List.of(appended.get(1), appended.get(2), appended.get(9), appended.get(31), appended.get(59)), read);
+
+        positions.clear();
+        log.read(LongStream.range(40, 60).iterator(), (position, transaction) -> positions.add(position) && positions.size() < 3);
+
+        assertEquals(List.of(40L, 41L, 42L), positions);
+    }
+
+    /**
+     * A record torn by a crash is cut off when the log is opened, and appending continues after the last whole record
+     *
+     */
+    @Test
+    public void tornRecordTest() throws IOException {
+
+        TransactionLogImpl log = open();
+
+        log.append("document-0", document(0));
+        log.append("document-1", document(1));
+
+        try (Stream<Path> segments = Files.list(logDir); FileChannel channel = FileChannel.open(segments.findFirst().orElseThrow(), StandardOpenOption.WRITE)) {
+
+            channel.truncate(channel.size() - 5);
+        }
+
+        TransactionLogImpl reopened = open();
+
+        assertEquals(3, reopened.size());
+        assertFalse(reopened.contains("document-1"));
+
+        assertTrue(reopened.append("document-1", document(1)));
+        assertEquals(Stream.concat(document(0).stream(), document(1).stream()).toList(), open().readAll());
+    }
+
+    private TransactionLogImpl open() {
+
+        TransactionLogImpl log = new TransactionLogImpl();
+        log.setLocation(logDir.toString());
+        log.setSegmentBytes(1024);
+
+        return log;
+    }
+
+    private List<InvestmentTransaction> document(int index) {
+
+        return List.of(
+            BUY_VTI.withDescription("Buy " + index),
+            VTI_DIVIDEND.withDescription("Dividend " + index),
+            SELL_VTI_LOWER_PRICE.withDescription("Sell " + index));
+    }
+}